@@ -45,6 +45,8 @@ public class AllTests {
         suite.addTestSuite(ProxyDatabaseMetaDataTest.class);
         suite.addTestSuite(ProxyStatementTest.class);
         suite.addTestSuite(RegistrationTest.class);
+        suite.addTestSuite(SlowQueryLogTest.class);
+        suite.addTestSuite(SqlTraceTest.class);
         suite.addTestSuite(StateListenerTest.class);
         suite.addTestSuite(UpdateDefinitionTest.class);
         suite.addTestSuite(WrapperTest.class);
@@ -8,7 +8,9 @@ package org.logicalcobwebs.proxool;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.Statement;
 import java.util.Properties;
 
 /**
@@ -59,6 +61,89 @@ public class ConnectionInfoTest extends AbstractProxoolTest {
 
     }
 
+    /**
+     * Test that a detailed snapshot doesn't have to wait for the pool, and that we can leave out
+     * the SQL calls
+     */
+    public void testDetailWithoutLock() throws Exception {
+
+        String testName = "detailWithoutLock";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.TRACE_PROPERTY, String.valueOf(Boolean.TRUE));
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c = DriverManager.getConnection(url);
+        Statement s = c.createStatement();
+        s.execute(TestConstants.HYPERSONIC_TEST_SQL);
+        s.close();
+
+        // Hold the lock that connections need to be added or removed. We used to wait for that.
+        ConnectionPool cp = ConnectionPoolManager.getInstance().getConnectionPool(alias);
+        cp.acquireConnectionStatusWriteLock();
+        try {
+            ConnectionInfoIF[] connectionInfos = ProxoolFacade.getSnapshot(alias, true).getConnectionInfos();
+            assertEquals("connectionInfo count", 1, connectionInfos.length);
+            assertEquals("status", ConnectionInfoIF.STATUS_ACTIVE, connectionInfos[0].getStatus());
+            assertEquals("requester", Thread.currentThread().getName(), connectionInfos[0].getRequester());
+            assertEquals("sqlCalls", 1, connectionInfos[0].getSqlCalls().length);
+
+            connectionInfos = ProxoolFacade.getSnapshot(alias, true, false).getConnectionInfos();
+            assertEquals("connectionInfo count", 1, connectionInfos.length);
+            assertEquals("sqlCalls", 0, connectionInfos[0].getSqlCalls().length);
+        } finally {
+            cp.releaseConnectionStatusWriteLock();
+        }
+
+        c.close();
+        ConnectionInfoIF[] connectionInfos = ProxoolFacade.getSnapshot(alias, true, false).getConnectionInfos();
+        assertEquals("status", ConnectionInfoIF.STATUS_AVAILABLE, connectionInfos[0].getStatus());
+
+    }
+
+    /**
+     * Test that a connection only remembers the most recent SQL calls
+     */
+    public void testSqlHistorySize() throws Exception {
+
+        String testName = "sqlHistorySize";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.TRACE_PROPERTY, String.valueOf(Boolean.TRUE));
+        info.setProperty(ProxoolConstants.SQL_HISTORY_SIZE_PROPERTY, "2");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c = DriverManager.getConnection(url);
+        Statement s = c.createStatement();
+        s.execute(TestConstants.HYPERSONIC_TEST_SQL);
+        s.execute(TestConstants.HYPERSONIC_TEST_SQL);
+        s.execute(TestConstants.HYPERSONIC_TEST_SQL_2);
+        s.close();
+
+        String[] sqlCalls = ProxoolFacade.getSnapshot(alias, true).getConnectionInfos()[0].getSqlCalls();
+        assertEquals("sqlCalls", 2, sqlCalls.length);
+        assertTrue("most recent: " + sqlCalls[1], sqlCalls[1].indexOf("COUNT(2)") > -1);
+        c.close();
+
+        // It forgets them when it is served again
+        c = DriverManager.getConnection(url);
+        assertEquals("sqlCalls", 0, ProxoolFacade.getSnapshot(alias, true).getConnectionInfos()[0].getSqlCalls().length);
+        c.close();
+
+    }
+
     private int getCount(ConnectionInfoIF[] connectionInfos, int status) {
         int count = 0;
         for (int i = 0; i < connectionInfos.length; i++) {
@@ -189,6 +189,103 @@ public class ConnectionListenerTest extends AbstractProxoolTest {
         assertTrue("Expected 0 onDeath calls, but got " + this.onDeathCalls + ".", this.onDeathCalls == 0);
     }
 
+    /**
+     * Test that only sampled executions are passed to listeners, that sampled listeners are
+     * told the sample weight and that the rate can be changed while the pool is running.
+     * @throws Exception if the test fails.
+     */
+    public void testTraceSampleRate() throws Exception {
+        clear();
+        String alias = "traceSampleRate";
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.TRACE_SAMPLE_RATE_PROPERTY, "4");
+        ProxoolFacade.registerConnectionPool(url, info);
+        TestSampledConnectionListener sampledListener = new TestSampledConnectionListener();
+        ProxoolFacade.addConnectionListener(alias, sampledListener);
+        ProxoolFacade.addConnectionListener(alias, new TestConnectionListener());
+        assertEquals("traceSampleRate", 4, ProxoolFacade.getTraceSampleRate(alias));
+
+        Connection connection = DriverManager.getConnection(url);
+        for (int i = 0; i < 8; i++) {
+            connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL);
+        }
+        assertEquals("onExecuteCalls", 2, this.onExecuteCalls);
+        assertEquals("sampled onExecute calls", 2, sampledListener.executeCalls);
+        assertEquals("sampled onExecute weight", 8, sampledListener.executeWeight);
+
+        // Changing it doesn't redefine the pool, and redefining the pool doesn't undo it
+        ProxoolFacade.setTraceSampleRate(alias, 1);
+        info.setProperty(ProxoolConstants.VERBOSE_PROPERTY, "true");
+        ProxoolFacade.updateConnectionPool(url, info);
+        assertEquals("traceSampleRate", 1, ProxoolFacade.getTraceSampleRate(alias));
+        assertEquals("definition", 4, ProxoolFacade.getConnectionPoolDefinition(alias).getTraceSampleRate());
+        for (int i = 0; i < 3; i++) {
+            connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL);
+        }
+        try {
+            connection.createStatement().execute("DINGO");
+            fail("Expected DINGO to fail");
+        } catch (SQLException e) {
+            LOG.debug("Ignoring expected exception: " + e.getMessage());
+        }
+        connection.close();
+        assertEquals("onExecuteCalls", 5, this.onExecuteCalls);
+        assertEquals("sampled onExecute calls", 5, sampledListener.executeCalls);
+        assertEquals("sampled onExecute weight", 11, sampledListener.executeWeight);
+        assertEquals("sampled onFail weight", 1, sampledListener.failWeight);
+    }
+
+    /**
+     * Test that with a listener queue the listeners are told on another thread, that
+     * a slow listener doesn't hold up the statement and that events are dropped (and
+     * counted) when the queue is full.
+     * @throws Exception if the test fails.
+     */
+    public void testListenerQueue() throws Exception {
+        clear();
+        String alias = "listenerQueue";
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.LISTENER_QUEUE_SIZE_PROPERTY, "1");
+        ProxoolFacade.registerConnectionPool(url, info);
+        GatedConnectionListener gatedListener = new GatedConnectionListener();
+        ProxoolFacade.addConnectionListener(alias, gatedListener);
+
+        // The first one is queued and the listener waits for the gate, so there is no room for the others
+        Connection connection = DriverManager.getConnection(url);
+        for (int i = 0; i < 3; i++) {
+            connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL);
+        }
+        connection.close();
+        ConnectionPool cp = ConnectionPoolManager.getInstance().getConnectionPool(alias);
+        assertEquals("listenerEventDropCount", 2, cp.getListenerEventDropCount());
+        assertEquals("listenerEventDropCount", 2, ProxoolFacade.getSnapshot(alias, false).getListenerEventDropCount());
+
+        gatedListener.open();
+        assertEquals("executeCalls", 1, gatedListener.waitForExecuteCalls(1));
+        assertTrue("thread", gatedListener.thread != Thread.currentThread());
+        assertEquals("command", TestConstants.HYPERSONIC_TEST_SQL + ";", gatedListener.getCommand().trim());
+
+        // Turning it off tells them straight away, and the count stays
+        info.setProperty(ProxoolConstants.LISTENER_QUEUE_SIZE_PROPERTY, "0");
+        ProxoolFacade.updateConnectionPool(url, info);
+        connection = DriverManager.getConnection(url);
+        connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL);
+        connection.close();
+        assertEquals("executeCalls", 2, gatedListener.executeCalls);
+        assertTrue("thread", gatedListener.thread == Thread.currentThread());
+        assertEquals("listenerEventDropCount", 2, cp.getListenerEventDropCount());
+    }
+
     private void clear() {
         this.onBirthCalls = 0;
         this.onDeathCalls = 0;
@@ -239,6 +336,63 @@ public class ConnectionListenerTest extends AbstractProxoolTest {
             // Ignore
         }
     }
+
+    class TestSampledConnectionListener extends TestConnectionListener implements SampledConnectionListenerIF {
+
+        int executeCalls;
+
+        int executeWeight;
+
+        int failWeight;
+
+        public void onExecute(String command, long elapsedTime, int sampleWeight) {
+            executeCalls++;
+            executeWeight += sampleWeight;
+        }
+
+        public void onFail(String command, Exception exception, int sampleWeight) {
+            failWeight += sampleWeight;
+        }
+    }
+
+    /**
+     * Doesn't return from onExecute until it has been {@link #open opened}
+     */
+    class GatedConnectionListener extends TestConnectionListener {
+
+        boolean opened;
+
+        int executeCalls;
+
+        Thread thread;
+
+        public synchronized void onExecute(String command, long elapsedTime) {
+            while (!opened) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    LOG.debug("Interrupted", e);
+                }
+            }
+            super.onExecute(command, elapsedTime);
+            executeCalls++;
+            thread = Thread.currentThread();
+            notifyAll();
+        }
+
+        synchronized void open() {
+            opened = true;
+            notifyAll();
+        }
+
+        synchronized int waitForExecuteCalls(int count) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            while (executeCalls < count && System.currentTimeMillis() < end) {
+                wait(100);
+            }
+            return executeCalls;
+        }
+    }
 }
 
 /*
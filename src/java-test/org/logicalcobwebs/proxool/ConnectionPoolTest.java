@@ -7,6 +7,7 @@ package org.logicalcobwebs.proxool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.logicalcobwebs.proxool.admin.SnapshotIF;
 
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -108,6 +109,445 @@ public class ConnectionPoolTest extends AbstractProxoolTest {
 
     }
 
+    /**
+     * If we are at the maximum connection count and a maximum-wait-time is set
+     * then we should wait for a connection to be returned rather than be refused.
+     */
+    public void testMaximumWaitTime() throws Exception {
+
+        String testName = "maximumWaitTime";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        info.setProperty(ProxoolConstants.MAXIMUM_WAIT_TIME_PROPERTY, "20000");
+        info.setProperty(ProxoolConstants.VERBOSE_PROPERTY, "true");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        // Return the only connection in 2 seconds
+        new Thread(new Closer(DriverManager.getConnection(url), 2000)).start();
+
+        long startTime = System.currentTimeMillis();
+        Connection c2 = DriverManager.getConnection(url);
+        long waitTime = System.currentTimeMillis() - startTime;
+        assertTrue("didn't wait long enough (" + waitTime + " milliseconds)", waitTime > 1000);
+        c2.close();
+
+        ConnectionPoolStatisticsIF cps = ProxoolFacade.getConnectionPoolStatistics(alias);
+        assertEquals("refusedCount", 0, cps.getConnectionsRefusedCount());
+        assertEquals("waitedCount", 1, cps.getWaitedCount());
+        assertEquals("waitTimeoutCount", 0, cps.getWaitTimeoutCount());
+        assertEquals("waitingCount", 0, cps.getWaitingCount());
+        assertTrue("totalWaitTime", cps.getTotalWaitTime() > 1000);
+        assertEquals("connectionCount", 1, cps.getConnectionCount());
+
+    }
+
+    /**
+     * If nobody returns a connection within the maximum-wait-time then we
+     * should be refused.
+     */
+    public void testMaximumWaitTimeExceeded() throws Exception {
+
+        String testName = "maximumWaitTimeExceeded";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        info.setProperty(ProxoolConstants.MAXIMUM_WAIT_TIME_PROPERTY, "1000");
+        info.setProperty(ProxoolConstants.VERBOSE_PROPERTY, "true");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c1 = DriverManager.getConnection(url);
+
+        long startTime = System.currentTimeMillis();
+        try {
+            DriverManager.getConnection(url);
+            fail("Didn't expect to get second connection");
+        } catch (SQLException e) {
+            // Log message only so we don't get a worrying stack trace
+            LOG.debug("Ignoring expected exception: " + e.getMessage());
+        }
+        long waitTime = System.currentTimeMillis() - startTime;
+        assertTrue("didn't wait long enough (" + waitTime + " milliseconds)", waitTime >= 900);
+        c1.close();
+
+        ConnectionPoolStatisticsIF cps = ProxoolFacade.getConnectionPoolStatistics(alias);
+        assertEquals("refusedCount", 1, cps.getConnectionsRefusedCount());
+        assertEquals("waitTimeoutCount", 1, cps.getWaitTimeoutCount());
+        assertEquals("waitingCount", 0, cps.getWaitingCount());
+        assertEquals("availableConnectionCount", 1, cps.getAvailableConnectionCount());
+
+    }
+
+    /**
+     * If we are handed a connection whilst waiting and it fails its test then we should
+     * keep our place in the queue (and get the one that is built to replace it) rather
+     * than wait until we time out.
+     */
+    public void testMaximumWaitTimeWithFailedTest() throws Exception {
+
+        String testName = "maximumWaitTimeWithFailedTest";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        info.setProperty(ProxoolConstants.MAXIMUM_WAIT_TIME_PROPERTY, "10000");
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_TEST_SQL_PROPERTY, TestConstants.HYPERSONIC_TEST_SQL);
+        info.setProperty(ProxoolConstants.TEST_BEFORE_USE_PROPERTY, Boolean.TRUE.toString());
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        // The only connection will fail its test when we return it in 1 second
+        Connection c1 = DriverManager.getConnection(url);
+        long id1 = ProxoolFacade.getId(c1);
+        final Connection brokenConnection = ProxyFactory.getWrappedConnection(c1).getProxyConnection().getConnection();
+        ConnectionPoolManager.getInstance().getConnectionPool(alias).setConnectionValidator(new ConnectionValidatorIF() {
+            public boolean validate(ConnectionPoolDefinitionIF cpd, Connection connection) {
+                return connection != brokenConnection;
+            }
+        });
+        new Thread(new Closer(c1, 1000)).start();
+
+        long startTime = System.currentTimeMillis();
+        Connection c2 = DriverManager.getConnection(url);
+        long waitTime = System.currentTimeMillis() - startTime;
+        assertTrue("waited until we timed out (" + waitTime + " milliseconds)", waitTime < 5000);
+        assertTrue("served the broken connection", ProxoolFacade.getId(c2) != id1);
+        c2.close();
+
+        ConnectionPoolStatisticsIF cps = ProxoolFacade.getConnectionPoolStatistics(alias);
+        assertEquals("refusedCount", 0, cps.getConnectionsRefusedCount());
+        assertEquals("waitTimeoutCount", 0, cps.getWaitTimeoutCount());
+        assertEquals("waitingCount", 0, cps.getWaitingCount());
+        assertEquals("connectionCount", 1, cps.getConnectionCount());
+
+    }
+
+    /**
+     * Test that available connections are served longest available first, and that
+     * one that has been expired is never served.
+     */
+    public void testAvailableConnectionsServedInTurn() throws Exception {
+
+        String testName = "availableConnectionsServedInTurn";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "3");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c1 = DriverManager.getConnection(url);
+        Connection c2 = DriverManager.getConnection(url);
+        Connection c3 = DriverManager.getConnection(url);
+        long id1 = ProxoolFacade.getId(c1);
+        long id2 = ProxoolFacade.getId(c2);
+        long id3 = ProxoolFacade.getId(c3);
+        c2.close();
+        c3.close();
+        c1.close();
+
+        ConnectionPoolStatisticsIF cps = ProxoolFacade.getConnectionPoolStatistics(alias);
+        assertEquals("availableConnectionCount", 3, cps.getAvailableConnectionCount());
+        assertEquals("activeConnectionCount", 0, cps.getActiveConnectionCount());
+
+        ProxoolFacade.killConnecton(alias, id3, false);
+
+        c2 = DriverManager.getConnection(url);
+        assertEquals("first served", id2, ProxoolFacade.getId(c2));
+        c1 = DriverManager.getConnection(url);
+        assertEquals("second served", id1, ProxoolFacade.getId(c1));
+        c3 = DriverManager.getConnection(url);
+        assertTrue("expired connection was served", ProxoolFacade.getId(c3) != id3);
+        assertEquals("connectionCount", 3, cps.getConnectionCount());
+        assertEquals("availableConnectionCount", 0, cps.getAvailableConnectionCount());
+        assertEquals("activeConnectionCount", 3, cps.getActiveConnectionCount());
+        c1.close();
+        c2.close();
+        c3.close();
+        assertEquals("availableConnectionCount", 3, cps.getAvailableConnectionCount());
+
+    }
+
+    /**
+     * Test that a connection the house keeper takes offline (to test it, say) goes back
+     * to where it was in the queue when it becomes available again
+     */
+    public void testOfflineConnectionKeepsItsTurn() throws Exception {
+
+        String testName = "offlineConnectionKeepsItsTurn";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "3");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c1 = DriverManager.getConnection(url);
+        Connection c2 = DriverManager.getConnection(url);
+        Connection c3 = DriverManager.getConnection(url);
+        long id1 = ProxoolFacade.getId(c1);
+        long id2 = ProxoolFacade.getId(c2);
+        long id3 = ProxoolFacade.getId(c3);
+        c2.close();
+        c3.close();
+        c1.close();
+
+        // Take each one offline and back again, in the order they were built, like the house keeper does
+        ProxyConnectionIF[] proxyConnections = ConnectionPoolManager.getInstance().getConnectionPool(alias).getProxyConnections();
+        for (int i = 0; i < proxyConnections.length; i++) {
+            assertTrue("taken offline", proxyConnections[i].setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_OFFLINE));
+            assertTrue("made available", proxyConnections[i].setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_AVAILABLE));
+        }
+
+        c2 = DriverManager.getConnection(url);
+        assertEquals("first served", id2, ProxoolFacade.getId(c2));
+        c3 = DriverManager.getConnection(url);
+        assertEquals("second served", id3, ProxoolFacade.getId(c3));
+        c1 = DriverManager.getConnection(url);
+        assertEquals("third served", id1, ProxoolFacade.getId(c1));
+        c1.close();
+        c2.close();
+        c3.close();
+
+    }
+
+    /**
+     * Test that with a lifo borrow-order the connection returned most recently is
+     * served first, so that surplus connections are left alone.
+     */
+    public void testBorrowOrderLifo() throws Exception {
+
+        String testName = "borrowOrderLifo";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "3");
+        info.setProperty(ProxoolConstants.BORROW_ORDER_PROPERTY, ProxoolConstants.BORROW_ORDER_LIFO);
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c1 = DriverManager.getConnection(url);
+        Connection c2 = DriverManager.getConnection(url);
+        Connection c3 = DriverManager.getConnection(url);
+        long id1 = ProxoolFacade.getId(c1);
+        long id3 = ProxoolFacade.getId(c3);
+        c2.close();
+        c3.close();
+        c1.close();
+
+        // The same connection every time, one at a time
+        for (int i = 0; i < 3; i++) {
+            Connection c = DriverManager.getConnection(url);
+            assertEquals("served", id1, ProxoolFacade.getId(c));
+            c.close();
+        }
+
+        // And the one returned before that when we need two
+        c1 = DriverManager.getConnection(url);
+        c3 = DriverManager.getConnection(url);
+        assertEquals("first served", id1, ProxoolFacade.getId(c1));
+        assertEquals("second served", id3, ProxoolFacade.getId(c3));
+        c1.close();
+        c3.close();
+
+    }
+
+    /**
+     * Test that with a round-robin borrow-order connections are served in the order they
+     * were built, whatever order they were returned in.
+     */
+    public void testBorrowOrderRoundRobin() throws Exception {
+
+        String testName = "borrowOrderRoundRobin";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "3");
+        info.setProperty(ProxoolConstants.BORROW_ORDER_PROPERTY, ProxoolConstants.BORROW_ORDER_ROUND_ROBIN);
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c1 = DriverManager.getConnection(url);
+        Connection c2 = DriverManager.getConnection(url);
+        Connection c3 = DriverManager.getConnection(url);
+        long[] ids = {ProxoolFacade.getId(c1), ProxoolFacade.getId(c2), ProxoolFacade.getId(c3)};
+        c3.close();
+        c2.close();
+        c1.close();
+
+        // Round and round, one at a time
+        for (int i = 0; i < 6; i++) {
+            Connection c = DriverManager.getConnection(url);
+            assertEquals("served #" + i, ids[i % 3], ProxoolFacade.getId(c));
+            c.close();
+        }
+
+    }
+
+    /**
+     * Test that borrows are counted according to whether the connection was
+     * idle, built on demand or refused
+     */
+    public void testBorrowStatistics() throws Exception {
+
+        String testName = "borrowStatistics";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        // Built on demand, then served from idle twice
+        DriverManager.getConnection(url).close();
+        DriverManager.getConnection(url).close();
+        Connection c = DriverManager.getConnection(url);
+
+        // There isn't room for another
+        try {
+            DriverManager.getConnection(url);
+            fail("Didn't expect to get a second connection");
+        } catch (SQLException e) {
+            LOG.debug("Ignoring expected exception: " + e.getMessage());
+        }
+        c.close();
+
+        SnapshotIF snapshot = ProxoolFacade.getSnapshot(alias, false);
+        assertEquals("onDemandBorrowCount", 1, snapshot.getOnDemandBorrowCount());
+        assertEquals("idleBorrowCount", 2, snapshot.getIdleBorrowCount());
+        assertEquals("refusedCount", 1, snapshot.getRefusedCount());
+        assertTrue("totalOnDemandBorrowTime", snapshot.getTotalOnDemandBorrowTime() >= 0);
+        assertTrue("totalIdleBorrowTime", snapshot.getTotalIdleBorrowTime() >= 0);
+        assertTrue("totalRefusedBorrowTime", snapshot.getTotalRefusedBorrowTime() >= 0);
+        assertEquals("buildFailureCount", 0, snapshot.getBuildFailureCount());
+
+    }
+
+    /**
+     * Test that a caller that waits and is handed a connection that the prototyper has
+     * just built counts it as built on demand
+     */
+    public void testBorrowStatisticsHandedOver() throws Exception {
+
+        String testName = "borrowStatisticsHandedOver";
+        final String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        info.setProperty(ProxoolConstants.MAXIMUM_WAIT_TIME_PROPERTY, "20000");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c1 = DriverManager.getConnection(url);
+        Borrower borrower = new Borrower(url);
+        Thread thread = new Thread(borrower);
+        thread.start();
+        ResultMonitor waitingMonitor = new ResultMonitor() {
+            public boolean check() throws Exception {
+                return ProxoolFacade.getConnectionPoolStatistics(alias).getWaitingCount() == 1;
+            }
+        };
+        assertEquals("waiting", ResultMonitor.SUCCESS, waitingMonitor.getResult());
+
+        // Make room for the prototyper to build another one, which it hands straight over
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "2");
+        info.setProperty(ProxoolConstants.MINIMUM_CONNECTION_COUNT_PROPERTY, "2");
+        ProxoolFacade.updateConnectionPool(url, info);
+        PrototyperController.triggerSweep(alias);
+        thread.join(20000);
+        assertNotNull("borrowed", borrower.getConnection());
+        borrower.getConnection().close();
+        c1.close();
+
+        SnapshotIF snapshot = ProxoolFacade.getSnapshot(alias, false);
+        assertEquals("onDemandBorrowCount", 2, snapshot.getOnDemandBorrowCount());
+        assertEquals("idleBorrowCount", 0, snapshot.getIdleBorrowCount());
+
+    }
+
+    /**
+     * Test that with thread-affinity a thread gets back the connection it returned
+     * last time, and doesn't get it back once it has been expired.
+     */
+    public void testThreadAffinity() throws Exception {
+
+        String testName = "threadAffinity";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "3");
+        info.setProperty(ProxoolConstants.THREAD_AFFINITY_PROPERTY, "true");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c1 = DriverManager.getConnection(url);
+        Connection c2 = DriverManager.getConnection(url);
+        long id1 = ProxoolFacade.getId(c1);
+        long id2 = ProxoolFacade.getId(c2);
+        c1.close();
+        c2.close();
+
+        // Without thread-affinity we'd get #1 back because it has been available longest
+        Connection c = DriverManager.getConnection(url);
+        assertEquals("reclaimed", id2, ProxoolFacade.getId(c));
+        c.close();
+
+        ProxoolFacade.killConnecton(alias, id2, false);
+        c = DriverManager.getConnection(url);
+        assertEquals("after expiry", id1, ProxoolFacade.getId(c));
+        c.close();
+
+        ConnectionPoolStatisticsIF cps = ProxoolFacade.getConnectionPoolStatistics(alias);
+        assertEquals("threadAffinityHitCount", 1, cps.getThreadAffinityHitCount());
+        assertEquals("threadAffinityMissCount", 3, cps.getThreadAffinityMissCount());
+        assertEquals("availableConnectionCount", 1, cps.getAvailableConnectionCount());
+
+    }
+
     /**
      * Checks whether shutdown is patient enough to wait for active connections
      */
@@ -162,6 +602,32 @@ public class ConnectionPoolTest extends AbstractProxoolTest {
         assertTrue("shutdown was too quick", shutdownTime > 1000);
     }
 
+    /**
+     * Gets a connection (waiting if it has to) and keeps it
+     */
+    class Borrower implements Runnable {
+
+        private String url;
+
+        private Connection connection;
+
+        public Borrower(String url) {
+            this.url = url;
+        }
+
+        public void run() {
+            try {
+                connection = DriverManager.getConnection(url);
+            } catch (SQLException e) {
+                LOG.error("Couldn't get connection", e);
+            }
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+    }
+
     class Closer implements Runnable {
 
         private Connection connection;
@@ -10,6 +10,9 @@ import org.apache.commons.logging.LogFactory;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Properties;
 
 /**
@@ -133,6 +136,136 @@ public class ConnectionResetterTest extends AbstractProxoolTest {
 
     }
 
+    /**
+     * Test that work which hasn't been committed is rolled back when a connection
+     * is returned to the pool, and that work which has been committed isn't
+     */
+    public void testUncommittedWork() throws Exception {
+
+        String testName = "uncommittedWork";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c = DriverManager.getConnection(url);
+        Statement s = c.createStatement();
+        s.execute("DROP TABLE RESETTER IF EXISTS");
+        s.execute("CREATE TABLE RESETTER (a integer)");
+        s.close();
+
+        // Committed
+        c.setAutoCommit(false);
+        s = c.createStatement();
+        s.executeUpdate("INSERT INTO RESETTER VALUES (1)");
+        s.close();
+        c.commit();
+        c.close();
+
+        // Not committed
+        c = DriverManager.getConnection(url);
+        c.setAutoCommit(false);
+        s = c.createStatement();
+        s.executeUpdate("INSERT INTO RESETTER VALUES (2)");
+        s.close();
+        c.close();
+
+        c = DriverManager.getConnection(url);
+        assertTrue("autoCommit", c.getAutoCommit());
+        s = c.createStatement();
+        ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM RESETTER");
+        rs.next();
+        assertEquals("rows", 1, rs.getInt(1));
+        rs.close();
+        s.execute("DROP TABLE RESETTER");
+        s.close();
+        c.close();
+
+        assertEquals("connectionCount", ProxoolFacade.getSnapshot(alias).getConnectionCount(),
+                ProxoolFacade.getSnapshot(alias).getAvailableConnectionCount());
+
+    }
+
+    /**
+     * Test that a connection that starts off with autoCommit off has its uncommitted
+     * work rolled back, and is left with autoCommit off, when it is returned to the pool
+     */
+    public void testDefaultAutoCommitOff() throws Exception {
+
+        String testName = "defaultAutoCommitOff";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        ProxoolFacade.registerConnectionPool(url, info);
+        ProxoolFacade.addConnectionListener(alias, new AutoCommitOffListener());
+
+        Connection c = DriverManager.getConnection(url);
+        assertTrue("autoCommit", !c.getAutoCommit());
+        Statement s = c.createStatement();
+        s.execute("DROP TABLE RESETTER_DEFAULT IF EXISTS");
+        s.execute("CREATE TABLE RESETTER_DEFAULT (a integer)");
+        s.close();
+        c.commit();
+        c.close();
+
+        // Not committed, and autoCommit never touched
+        c = DriverManager.getConnection(url);
+        s = c.createStatement();
+        s.executeUpdate("INSERT INTO RESETTER_DEFAULT VALUES (1)");
+        s.close();
+        c.close();
+
+        // Turned on, which is put back
+        c = DriverManager.getConnection(url);
+        c.setAutoCommit(true);
+        c.close();
+
+        c = DriverManager.getConnection(url);
+        assertTrue("autoCommit", !c.getAutoCommit());
+        s = c.createStatement();
+        ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM RESETTER_DEFAULT");
+        rs.next();
+        assertEquals("rows", 0, rs.getInt(1));
+        rs.close();
+        s.execute("DROP TABLE RESETTER_DEFAULT");
+        s.close();
+        c.commit();
+        c.close();
+
+        assertEquals("connectionCount", 1, ProxoolFacade.getSnapshot(alias).getConnectionCount());
+
+    }
+
+    /**
+     * Turns autoCommit off for each connection that is made
+     */
+    private static class AutoCommitOffListener implements ConnectionListenerIF {
+
+        public void onBirth(Connection connection) throws SQLException {
+            connection.setAutoCommit(false);
+        }
+
+        public void onDeath(Connection connection, int reasonCode) throws SQLException {
+        }
+
+        public void onExecute(String command, long elapsedTime) {
+        }
+
+        public void onFail(String command, Exception exception) {
+        }
+    }
+
 }
 
 /*
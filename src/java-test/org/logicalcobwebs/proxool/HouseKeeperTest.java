@@ -8,6 +8,7 @@ package org.logicalcobwebs.proxool;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.logicalcobwebs.proxool.admin.SnapshotIF;
+import org.logicalcobwebs.proxool.admin.SnapshotResultMonitor;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -325,6 +326,283 @@ public class HouseKeeperTest extends AbstractProxoolTest {
 
     }
 
+    /**
+     * Test that a connection that worked recently isn't tested before use, even if the
+     * test would fail.
+     */
+    public void testValidationInterval() throws Exception {
+
+        String testName = "validationInterval";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_TEST_SQL_PROPERTY, "Invalid test");
+        info.setProperty(ProxoolConstants.TEST_BEFORE_USE_PROPERTY, Boolean.TRUE.toString());
+        info.setProperty(ProxoolConstants.VALIDATION_INTERVAL_PROPERTY, "60000");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        // The connection has only just been built, and then it executes something, so
+        // the (invalid) test is never run
+        for (int i = 0; i < 2; i++) {
+            Connection connection = DriverManager.getConnection(url);
+            try {
+                connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL);
+            } finally {
+                connection.close();
+            }
+        }
+        assertEquals("servedCount", 2, ProxoolFacade.getSnapshot(alias).getServedCount());
+        assertEquals("connectionCount", 1, ProxoolFacade.getSnapshot(alias).getConnectionCount());
+
+    }
+
+    /**
+     * Test that test-with-is-valid falls back to the house-keeping-test-sql if the driver
+     * doesn't support Connection.isValid() (and the version of Hypersonic we test with doesn't)
+     */
+    public void testWithIsValid() throws Exception {
+
+        String testName = "withIsValid";
+        String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_TEST_SQL_PROPERTY, TestConstants.HYPERSONIC_TEST_SQL);
+        info.setProperty(ProxoolConstants.TEST_BEFORE_USE_PROPERTY, Boolean.TRUE.toString());
+        info.setProperty(ProxoolConstants.TEST_AFTER_USE_PROPERTY, Boolean.TRUE.toString());
+        info.setProperty(ProxoolConstants.TEST_WITH_IS_VALID_PROPERTY, Boolean.TRUE.toString());
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        for (int i = 0; i < 3; i++) {
+            Connection connection = DriverManager.getConnection(url);
+            try {
+                connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL);
+            } finally {
+                connection.close();
+            }
+        }
+
+        // Every test passed so we're still using the same connection
+        assertEquals("connectionCount", 1, ProxoolFacade.getSnapshot(alias).getConnectionCount());
+        assertEquals("availableConnectionCount", 1, ProxoolFacade.getSnapshot(alias).getAvailableConnectionCount());
+
+    }
+
+    /**
+     * Test that the house keeper only tests house-keeping-batch-size connections
+     * each time it runs, and that it counts how many times it has run.
+     */
+    public void testHouseKeepingBatchSize() throws Exception {
+
+        String testName = "houseKeepingBatchSize";
+        final String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        // Every connection will fail the test
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_TEST_SQL_PROPERTY, "SELECT NOTHING FROM NOWHERE");
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE_PROPERTY, "2");
+        info.setProperty(ProxoolConstants.MINIMUM_CONNECTION_COUNT_PROPERTY, "6");
+        // Only the first sweep happens by itself during the test
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_SLEEP_TIME_PROPERTY, "60000");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        DeathListener listener = new DeathListener(ConnectionListenerIF.HOUSE_KEEPER_TEST_FAIL);
+        ProxoolFacade.addConnectionListener(alias, listener);
+
+        ResultMonitor srm = new SnapshotResultMonitor(alias) {
+            public boolean check(SnapshotIF snapshot) throws Exception {
+                SnapshotIF s = ProxoolFacade.getSnapshot(alias);
+                return (s.getHouseKeepingCount() == 1 && s.getAvailableConnectionCount() == 6);
+            }
+        };
+        assertEquals("Timeout", ResultMonitor.SUCCESS, srm.getResult());
+
+        int failedBefore = listener.getCount();
+        assertTrue("Already being swept", HouseKeeperController.sweepNow(alias));
+        assertEquals("Connections that failed the test", 2, listener.getCount() - failedBefore);
+
+        SnapshotIF snapshot = ProxoolFacade.getSnapshot(alias, false);
+        assertEquals("houseKeepingCount", 2, snapshot.getHouseKeepingCount());
+        assertTrue("totalHouseKeepingTime", snapshot.getTotalHouseKeepingTime() >= 0);
+
+    }
+
+    /**
+     * Test that connections get different lifetimes when there is some jitter, and that
+     * old connections are replaced before they are expired so that there are never fewer
+     * available.
+     */
+    public void testMaximumConnectionLifetimeJitter() throws Exception {
+
+        String testName = "maximumConnectionLifetimeJitter";
+        final String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MINIMUM_CONNECTION_COUNT_PROPERTY, "3");
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "10");
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_PROPERTY, "2000");
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER_PROPERTY, "1500");
+        // We'll sweep when we want to
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_SLEEP_TIME_PROPERTY, "60000");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        ResultMonitor srm = new SnapshotResultMonitor(alias) {
+            public boolean check(SnapshotIF snapshot) throws Exception {
+                return ProxoolFacade.getSnapshot(alias).getAvailableConnectionCount() == 3;
+            }
+        };
+        assertEquals("Timeout", ResultMonitor.SUCCESS, srm.getResult());
+
+        ProxyConnectionIF[] proxyConnections = ConnectionPoolManager.getInstance().getConnectionPool(alias).getProxyConnections();
+        assertEquals("connections", 3, proxyConnections.length);
+        boolean allTheSame = true;
+        for (int i = 0; i < proxyConnections.length; i++) {
+            long jitter = proxyConnections[i].getLifetimeJitter();
+            assertTrue("jitter " + jitter + " out of range", jitter >= 0 && jitter <= 1500);
+            allTheSame &= (jitter == proxyConnections[0].getLifetimeJitter());
+        }
+        assertTrue("Every connection has the same lifetime", !allTheSame);
+
+        final int[] lowestAvailable = {Integer.MAX_VALUE};
+        final int[] lowestAvailableAtBirth = {Integer.MAX_VALUE};
+        DeathListener listener = new DeathListener(ConnectionListenerIF.MAXIMUM_CONNECTION_LIFETIME_EXCEEDED) {
+            public synchronized void onBirth(Connection connection) throws SQLException {
+                // The connection it replaces should still be available
+                try {
+                    int available = ProxoolFacade.getConnectionPoolStatistics(alias).getAvailableConnectionCount();
+                    lowestAvailableAtBirth[0] = Math.min(lowestAvailableAtBirth[0], available);
+                } catch (ProxoolException e) {
+                    throw new SQLException(e.getMessage());
+                }
+            }
+
+            public synchronized void onDeath(Connection connection, int reasonCode) throws SQLException {
+                super.onDeath(connection, reasonCode);
+                try {
+                    int available = ProxoolFacade.getConnectionPoolStatistics(alias).getAvailableConnectionCount();
+                    lowestAvailable[0] = Math.min(lowestAvailable[0], available);
+                } catch (ProxoolException e) {
+                    throw new SQLException(e.getMessage());
+                }
+            }
+        };
+        ProxoolFacade.addConnectionListener(alias, listener);
+
+        // Old enough now, whatever the jitter
+        Thread.sleep(2100);
+        assertTrue("Already being swept", HouseKeeperController.sweepNow(alias));
+
+        assertEquals("Connections expired", 3, listener.getCount());
+        assertEquals("Lowest available connection count", 3, lowestAvailable[0]);
+        assertEquals("Lowest available connection count whilst building replacements", 3, lowestAvailableAtBirth[0]);
+        assertEquals("availableConnectionCount", 3, ProxoolFacade.getConnectionPoolStatistics(alias).getAvailableConnectionCount());
+
+    }
+
+    /**
+     * Test that connections that have been idle for too long are closed, but
+     * not below the minimum-connection-count
+     */
+    public void testMaximumIdleTime() throws Exception {
+
+        String testName = "maximumIdleTime";
+        final String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MINIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "5");
+        info.setProperty(ProxoolConstants.MAXIMUM_IDLE_TIME_PROPERTY, "100");
+        // We'll sweep when we want to
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_SLEEP_TIME_PROPERTY, "60000");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        DeathListener listener = new DeathListener(ConnectionListenerIF.MAXIMUM_IDLE_TIME_EXCEEDED);
+        ProxoolFacade.addConnectionListener(alias, listener);
+
+        Connection[] connections = new Connection[4];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = DriverManager.getConnection(url);
+        }
+        for (int i = 0; i < connections.length; i++) {
+            connections[i].close();
+        }
+        assertEquals("connectionCount", 4, ProxoolFacade.getSnapshot(alias, false).getConnectionCount());
+
+        Thread.sleep(300);
+        assertTrue("Already being swept", HouseKeeperController.sweepNow(alias));
+
+        assertEquals("Connections closed because they were idle", 3, listener.getCount());
+        assertEquals("connectionCount", 1, ProxoolFacade.getSnapshot(alias, false).getConnectionCount());
+
+        // And the one that is left still works
+        Connection connection = DriverManager.getConnection(url);
+        connection.close();
+
+    }
+
+    /**
+     * Test that sweeping a pool now (as we do when we detect a fatal SQL exception)
+     * leaves it alone if it is already being swept
+     */
+    public void testSweepNowWhileSweeping() throws Exception {
+
+        String testName = "sweepNowWhileSweeping";
+        final String alias = testName;
+
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MAXIMUM_IDLE_TIME_PROPERTY, "100");
+        // We'll sweep when we want to
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_SLEEP_TIME_PROPERTY, "60000");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        final boolean[] sweptDuringSweep = {false};
+        DeathListener listener = new DeathListener(ConnectionListenerIF.MAXIMUM_IDLE_TIME_EXCEEDED) {
+            public synchronized void onDeath(Connection connection, int reasonCode) throws SQLException {
+                super.onDeath(connection, reasonCode);
+                sweptDuringSweep[0] |= HouseKeeperController.sweepNow(alias);
+            }
+        };
+        ProxoolFacade.addConnectionListener(alias, listener);
+
+        Connection connection = DriverManager.getConnection(url);
+        connection.close();
+
+        Thread.sleep(300);
+        assertTrue("Already being swept", HouseKeeperController.sweepNow(alias));
+        assertEquals("Connections closed because they were idle", 1, listener.getCount());
+        assertTrue("Swept again whilst it was being swept", !sweptDuringSweep[0]);
+
+    }
+
     class Listener implements ConnectionListenerIF {
 
         boolean called;
@@ -340,6 +618,34 @@ public class HouseKeeperTest extends AbstractProxoolTest {
         public void onFail(String command, Exception exception) {}
 
     }
+
+    class DeathListener implements ConnectionListenerIF {
+
+        private int reasonCode;
+
+        private int count;
+
+        DeathListener(int reasonCode) {
+            this.reasonCode = reasonCode;
+        }
+
+        public void onBirth(Connection connection) throws SQLException {}
+
+        public synchronized void onDeath(Connection connection, int reasonCode) throws SQLException {
+            if (reasonCode == this.reasonCode) {
+                count++;
+            }
+        }
+
+        public void onExecute(String command, long elapsedTime) {}
+
+        public void onFail(String command, Exception exception) {}
+
+        synchronized int getCount() {
+            return count;
+        }
+
+    }
 }
 
 /*
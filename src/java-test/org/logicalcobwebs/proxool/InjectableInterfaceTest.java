@@ -54,6 +54,42 @@ public class InjectableInterfaceTest extends AbstractProxoolTest {
         assertTrue("c1.isClosed()", c1.isClosed());
     }
 
+    /**
+     * Make sure that an interface injected into one pool's connections doesn't
+     * find its way into another pool's connections just because they both use
+     * the same driver.
+     */
+    public void testInjectableInterfaceIsPerPool() throws Exception {
+        String alias = "injectableInterfaceIsPerPool";
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.INJECTABLE_CONNECTION_INTERFACE_NAME_PROPERTY, HsqlConnectionIF.class.getName());
+        Connection c1 = DriverManager.getConnection(url, info);
+        assertTrue("c1 instanceof HsqlConnectionIF", c1 instanceof HsqlConnectionIF);
+
+        String otherAlias = "injectableInterfaceIsPerPool2";
+        String otherUrl = TestHelper.buildProxoolUrl(otherAlias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties otherInfo = new Properties();
+        otherInfo.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        otherInfo.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        Connection c2 = DriverManager.getConnection(otherUrl, otherInfo);
+        assertTrue("c2 instanceof HsqlConnectionIF", !(c2 instanceof HsqlConnectionIF));
+
+        // And we get the same class back next time
+        Connection c3 = DriverManager.getConnection(url, info);
+        assertSame("proxy class", c1.getClass(), c3.getClass());
+
+        c1.close();
+        c2.close();
+        c3.close();
+    }
+
     /**
      * Get a statement and cast it into the appropriate interface
      */
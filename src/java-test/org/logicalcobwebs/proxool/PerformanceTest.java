@@ -13,6 +13,7 @@ import org.logicalcobwebs.proxool.admin.SnapshotIF;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
@@ -196,6 +197,246 @@ public class PerformanceTest extends AbstractProxoolTest  implements StatisticsL
 
     }
 
+    /**
+     * Measure how long it takes to serve a connection and to prepare a statement. Both
+     * of these build a proxy, so this is mostly a measure of what that costs.
+     * @throws Exception if anything goes wrong
+     */
+    public void testProxyPerformance() throws Exception {
+
+        String alias = "testProxyPerformance";
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MINIMUM_CONNECTION_COUNT_PROPERTY, "1");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        final int warmUp = 10000;
+        final int iterations = 100000;
+
+        // Serve and return a connection
+        for (int i = 0; i < warmUp; i++) {
+            DriverManager.getConnection(url).close();
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < iterations; i++) {
+            DriverManager.getConnection(url).close();
+        }
+        long borrowElapsed = System.currentTimeMillis() - start;
+
+        // Prepare and close a statement
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            for (int i = 0; i < warmUp; i++) {
+                connection.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL).close();
+            }
+            start = System.currentTimeMillis();
+            for (int i = 0; i < iterations; i++) {
+                connection.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL).close();
+            }
+        } finally {
+            connection.close();
+        }
+        long prepareElapsed = System.currentTimeMillis() - start;
+
+        LOG.info("Served " + iterations + " connections at "
+            + millisecondsFormat.format((double) (1000 * borrowElapsed) / (double) iterations) + " microseconds per connection");
+        LOG.info("Prepared " + iterations + " statements at "
+            + millisecondsFormat.format((double) (1000 * prepareElapsed) / (double) iterations) + " microseconds per statement");
+
+    }
+
+    /**
+     * Measure how long it takes to call a method on a connection and on a prepared
+     * statement. This is a measure of what it costs to go through the proxy.
+     * @throws Exception if anything goes wrong
+     */
+    public void testMethodCallPerformance() throws Exception {
+
+        String alias = "testMethodCallPerformance";
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        final int warmUp = 100000;
+        final int iterations = 1000000;
+
+        Connection connection = DriverManager.getConnection(url);
+        long connectionElapsed;
+        long statementElapsed;
+        try {
+            // Call a method on the connection
+            for (int i = 0; i < warmUp; i++) {
+                connection.getAutoCommit();
+            }
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < iterations; i++) {
+                connection.getAutoCommit();
+            }
+            connectionElapsed = System.currentTimeMillis() - start;
+
+            // Set a parameter on a prepared statement
+            PreparedStatement ps = connection.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL + " WHERE 1 = ?");
+            try {
+                for (int i = 0; i < warmUp; i++) {
+                    ps.setInt(1, i);
+                }
+                start = System.currentTimeMillis();
+                for (int i = 0; i < iterations; i++) {
+                    ps.setInt(1, i);
+                }
+                statementElapsed = System.currentTimeMillis() - start;
+            } finally {
+                ps.close();
+            }
+        } finally {
+            connection.close();
+        }
+
+        LOG.info("Called getAutoCommit() " + iterations + " times at "
+            + millisecondsFormat.format((double) (1000000 * connectionElapsed) / (double) iterations) + " nanoseconds per call");
+        LOG.info("Called setInt() " + iterations + " times at "
+            + millisecondsFormat.format((double) (1000000 * statementElapsed) / (double) iterations) + " nanoseconds per call");
+
+    }
+
+    /**
+     * How long it takes to prepare, execute and close the same statement with and
+     * without a {@link ConnectionPoolDefinitionIF#getStatementCacheSize statement cache}
+     */
+    /**
+     * How much test-before-use costs when we test every time and when a recent success
+     * means we can skip it
+     */
+    public void testValidationPerformance() throws Exception {
+
+        final int iterations = 20000;
+        long[] elapsed = new long[2];
+        for (int run = 0; run < 2; run++) {
+            String alias = "testValidationPerformance" + run;
+            String url = TestHelper.buildProxoolUrl(alias,
+                    TestConstants.HYPERSONIC_DRIVER,
+                    TestConstants.HYPERSONIC_TEST_URL);
+            Properties info = new Properties();
+            info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+            info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+            info.setProperty(ProxoolConstants.HOUSE_KEEPING_TEST_SQL_PROPERTY, TestConstants.HYPERSONIC_TEST_SQL);
+            info.setProperty(ProxoolConstants.TEST_BEFORE_USE_PROPERTY, Boolean.TRUE.toString());
+            info.setProperty(ProxoolConstants.VALIDATION_INTERVAL_PROPERTY, run == 0 ? "0" : "60000");
+            ProxoolFacade.registerConnectionPool(url, info);
+
+            for (int i = 0; i < iterations * 2; i++) {
+                if (i == iterations) {
+                    // That was the warm up
+                    elapsed[run] = System.currentTimeMillis();
+                }
+                Connection connection = DriverManager.getConnection(url);
+                connection.close();
+            }
+            elapsed[run] = System.currentTimeMillis() - elapsed[run];
+        }
+
+        LOG.info("Served " + iterations + " connections with test-before-use at "
+            + millisecondsFormat.format((double) (1000 * elapsed[0]) / (double) iterations) + " microseconds each testing every time and "
+            + millisecondsFormat.format((double) (1000 * elapsed[1]) / (double) iterations) + " microseconds each with a validation-interval");
+
+    }
+
+    public void testStatementCachePerformance() throws Exception {
+
+        final int iterations = 20000;
+        long[] elapsed = new long[2];
+        for (int run = 0; run < 2; run++) {
+            String alias = "testStatementCachePerformance" + run;
+            String url = TestHelper.buildProxoolUrl(alias,
+                    TestConstants.HYPERSONIC_DRIVER,
+                    TestConstants.HYPERSONIC_TEST_URL);
+            Properties info = new Properties();
+            info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+            info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+            info.setProperty(ProxoolConstants.STATEMENT_CACHE_SIZE_PROPERTY, run == 0 ? "0" : "10");
+            ProxoolFacade.registerConnectionPool(url, info);
+
+            Connection connection = DriverManager.getConnection(url);
+            try {
+                for (int i = 0; i < iterations * 2; i++) {
+                    if (i == iterations) {
+                        // That was the warm up
+                        elapsed[run] = System.currentTimeMillis();
+                    }
+                    PreparedStatement ps = connection.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL + " WHERE 1 = ?");
+                    ps.setInt(1, 1);
+                    ps.executeQuery().close();
+                    ps.close();
+                }
+                elapsed[run] = System.currentTimeMillis() - elapsed[run];
+            } finally {
+                connection.close();
+            }
+        }
+
+        LOG.info("Prepared, executed and closed " + iterations + " statements at "
+            + millisecondsFormat.format((double) (1000 * elapsed[0]) / (double) iterations) + " microseconds each without a cache and "
+            + millisecondsFormat.format((double) (1000 * elapsed[1]) / (double) iterations) + " microseconds each with one");
+
+    }
+
+    /**
+     * How long it takes to set parameters on, and execute, a batch with
+     * {@link ConnectionPoolDefinitionIF#isTrace trace} on
+     */
+    public void testTracePerformance() throws Exception {
+
+        String alias = "testTracePerformance";
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.TRACE_PROPERTY, "true");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        final int batches = 200;
+        final int batchSize = 1000;
+        long elapsed = 0;
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            PreparedStatement ps = connection.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL + " WHERE 1 = ? AND 'a' = ?");
+            try {
+                for (int i = 0; i < batches * 2; i++) {
+                    if (i == batches) {
+                        // That was the warm up
+                        elapsed = System.currentTimeMillis();
+                    }
+                    for (int j = 0; j < batchSize; j++) {
+                        ps.setInt(1, j);
+                        ps.setString(2, "a");
+                        ps.addBatch();
+                    }
+                    ps.clearBatch();
+                    ps.executeBatch();
+                }
+                elapsed = System.currentTimeMillis() - elapsed;
+            } finally {
+                ps.close();
+            }
+        } finally {
+            connection.close();
+        }
+
+        LOG.info("Traced " + batches + " batches of " + batchSize + " at "
+            + millisecondsFormat.format((double) (1000 * elapsed) / (double) (batches * batchSize)) + " microseconds per entry");
+
+    }
+
     class DisagreeableSnapshotter implements Runnable {
 
         private String alias;
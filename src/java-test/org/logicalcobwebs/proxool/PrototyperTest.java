@@ -12,6 +12,7 @@ import org.logicalcobwebs.proxool.admin.SnapshotResultMonitor;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.Properties;
 
 /**
@@ -132,6 +133,72 @@ public class PrototyperTest extends AbstractProxoolTest {
 
     }
 
+    /**
+     * Test that the minimum number of connections can be built at the same time and
+     * that the build statistics add up
+     */
+    public void testBuildStatistics() throws Exception {
+
+        String testName = "buildStatistics";
+        final String alias = testName;
+
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.MINIMUM_CONNECTION_COUNT_PROPERTY, "6");
+        info.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, "10");
+        info.setProperty(ProxoolConstants.PROTOTYPE_COUNT_PROPERTY, "0");
+        info.setProperty(ProxoolConstants.SIMULTANEOUS_BUILD_THROTTLE_PROPERTY, "3");
+        info.setProperty(ProxoolConstants.HOUSE_KEEPING_SLEEP_TIME_PROPERTY, "1000");
+        String url = TestHelper.buildProxoolUrl(alias, TestConstants.HYPERSONIC_DRIVER, TestConstants.HYPERSONIC_TEST_URL);
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        ResultMonitor srm = new SnapshotResultMonitor(alias) {
+            public boolean check(SnapshotIF snapshot) throws Exception {
+                SnapshotIF s = ProxoolFacade.getSnapshot(alias);
+                // A connection is available a moment before its build is counted
+                return (s.getAvailableConnectionCount() == 6 && s.getBuildingCount() == 0);
+            }
+        };
+        assertEquals("Timeout", ResultMonitor.SUCCESS, srm.getResult());
+
+        SnapshotIF snapshot = ProxoolFacade.getSnapshot(alias, false);
+        assertEquals("connectionCount", 6, snapshot.getConnectionCount());
+        assertEquals("builtCount", 6, snapshot.getBuiltCount());
+        assertEquals("buildingCount", 0, snapshot.getBuildingCount());
+        assertEquals("buildQueueSize", 0, snapshot.getBuildQueueSize());
+        assertTrue("totalBuildTime", snapshot.getTotalBuildTime() >= 0);
+
+    }
+
+    /**
+     * Test that builds that fail are counted
+     */
+    public void testBuildFailureCount() throws Exception {
+
+        String testName = "buildFailureCount";
+        final String alias = testName;
+
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, "nobody");
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, "wrong");
+        String url = TestHelper.buildProxoolUrl(alias, TestConstants.HYPERSONIC_DRIVER, TestConstants.HYPERSONIC_TEST_URL);
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        try {
+            DriverManager.getConnection(url).close();
+            fail("Didn't expect to get a connection with the wrong password");
+        } catch (SQLException e) {
+            LOG.debug("Ignoring expected exception: " + e.getMessage());
+        }
+
+        SnapshotIF snapshot = ProxoolFacade.getSnapshot(alias, false);
+        assertEquals("buildFailureCount", 1, snapshot.getBuildFailureCount());
+        assertEquals("builtCount", 0, snapshot.getBuiltCount());
+        assertEquals("refusedCount", 1, snapshot.getRefusedCount());
+
+    }
+
 }
 
 
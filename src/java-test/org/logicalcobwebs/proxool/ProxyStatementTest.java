@@ -9,11 +9,14 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.logicalcobwebs.proxool.admin.SnapshotIF;
 
 /**
  * Test whether ProxyStatement works
@@ -193,6 +196,101 @@ public class ProxyStatementTest extends AbstractProxoolTest {
         assertEquals("servedCount", 0, ProxoolFacade.getSnapshot(alias).getActiveConnectionCount());
 
     }
+
+    /**
+     * That a closed prepared statement is cached and used again next time the same
+     * SQL is prepared, and that the least recently used one is closed when the cache is full
+     */
+    public void testStatementCache() throws Exception {
+
+        String testName = "statementCache";
+        final String alias = testName;
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.STATEMENT_CACHE_SIZE_PROPERTY, "2");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c = DriverManager.getConnection(url);
+        PreparedStatement s1 = c.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL);
+        Statement delegate1 = ProxoolFacade.getDelegateStatement(s1);
+        s1.executeQuery().close();
+        s1.close();
+        // Closing it again is harmless
+        s1.close();
+        try {
+            s1.executeQuery();
+            fail("Expected the closed statement to refuse to execute");
+        } catch (SQLException e) {
+            // Good
+        }
+
+        PreparedStatement s2 = c.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL);
+        assertSame("Cached statement", delegate1, ProxoolFacade.getDelegateStatement(s2));
+        s2.executeQuery().close();
+        s2.close();
+
+        // Different result set type, so a different statement
+        PreparedStatement s3 = c.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        assertNotSame("Different key", delegate1, ProxoolFacade.getDelegateStatement(s3));
+        s3.close();
+        PreparedStatement s4 = c.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL_2);
+        s4.close();
+        c.close();
+
+        SnapshotIF snapshot = ProxoolFacade.getSnapshot(alias);
+        assertEquals("statementCacheHitCount", 1, snapshot.getStatementCacheHitCount());
+        assertEquals("statementCacheMissCount", 3, snapshot.getStatementCacheMissCount());
+        assertEquals("statementCacheEvictionCount", 1, snapshot.getStatementCacheEvictionCount());
+
+    }
+
+    /**
+     * That settings changed on a statement are put back before it is cached, that its result
+     * set is closed, and that one with a cursor name isn't cached at all
+     */
+    public void testStatementCacheSettings() throws Exception {
+
+        String testName = "statementCacheSettings";
+        final String alias = testName;
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.STATEMENT_CACHE_SIZE_PROPERTY, "2");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection c = DriverManager.getConnection(url);
+        PreparedStatement s1 = c.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL);
+        Statement delegate1 = ProxoolFacade.getDelegateStatement(s1);
+        int maxRows = s1.getMaxRows();
+        int queryTimeout = s1.getQueryTimeout();
+        s1.setMaxRows(maxRows + 1);
+        s1.setQueryTimeout(queryTimeout + 10);
+        s1.setEscapeProcessing(false);
+        ResultSet rs = s1.executeQuery();
+        s1.close();
+        // A closed result set has no more rows
+        assertTrue("Result set closed with its statement", !rs.next());
+
+        PreparedStatement s2 = c.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL);
+        assertSame("Cached statement", delegate1, ProxoolFacade.getDelegateStatement(s2));
+        assertEquals("maxRows", maxRows, s2.getMaxRows());
+        assertEquals("queryTimeout", queryTimeout, s2.getQueryTimeout());
+        s2.setCursorName("dingo");
+        s2.close();
+
+        PreparedStatement s3 = c.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL);
+        assertNotSame("Not cached", delegate1, ProxoolFacade.getDelegateStatement(s3));
+        s3.close();
+        c.close();
+
+    }
 }
 
 
@@ -0,0 +1,162 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Test {@link SlowQueryLog}
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class SlowQueryLogTest extends AbstractProxoolTest {
+
+    /**
+     * @see junit.framework.TestCase#TestCase
+     */
+    public SlowQueryLogTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that sampled statements are logged, with their parameters, when trace is off
+     */
+    public void testSampled() throws Exception {
+
+        String testName = "slowQuerySampled";
+        String alias = testName;
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.SLOW_QUERY_SAMPLE_RATE_PROPERTY, "2");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        MessageAppender appender = new MessageAppender();
+        Logger logger = Logger.getLogger("org.logicalcobwebs.proxool." + alias);
+        // The test configuration only logs errors
+        Level level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+        try {
+            Connection connection = DriverManager.getConnection(url);
+            PreparedStatement ps = connection.prepareStatement("SELECT COUNT(1) FROM INFORMATION_SCHEMA.SYSTEM_TABLES WHERE TABLE_NAME = ?");
+            for (int i = 0; i < 4; i++) {
+                ps.setString(1, "table" + i);
+                ps.execute();
+            }
+            ps.close();
+            connection.close();
+
+            // Every other one, and they are logged on another thread
+            List messages = appender.waitForMessages(2);
+            assertEquals("messages", 2, messages.size());
+            String message = (String) messages.get(0);
+            assertTrue("sampled: " + message, message.startsWith("Sampled query on connection #"));
+            assertTrue("parameter: " + message, message.indexOf("'table1'") > -1);
+            assertTrue("requester: " + message, message.indexOf(Thread.currentThread().getName()) > -1);
+            assertTrue("parameter: " + messages.get(1), ((String) messages.get(1)).indexOf("'table3'") > -1);
+        } finally {
+            logger.removeAppender(appender);
+            logger.setLevel(level);
+        }
+    }
+
+    /**
+     * Test that statements that reach the threshold are logged
+     */
+    public void testThreshold() throws Exception {
+
+        String testName = "slowQueryThreshold";
+        String alias = testName;
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.SLOW_QUERY_THRESHOLD_PROPERTY, "1");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        MessageAppender appender = new MessageAppender();
+        Logger logger = Logger.getLogger("org.logicalcobwebs.proxool." + alias);
+        // The test configuration only logs errors
+        Level level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+        try {
+            ConnectionPool cp = ConnectionPoolManager.getInstance().getConnectionPool(alias);
+            assertTrue("slowQueryLogged", cp.isSlowQueryLogged());
+            Connection connection = DriverManager.getConnection(url);
+            ProxyConnectionIF proxyConnection = ProxyFactory.getWrappedConnection(connection).getProxyConnection();
+            cp.queryExecuted(proxyConnection, "fast", 0, null);
+            cp.queryExecuted(proxyConnection, "slow", 1, null);
+            connection.close();
+
+            List messages = appender.waitForMessages(1);
+            assertEquals("messages", 1, messages.size());
+            String message = (String) messages.get(0);
+            assertTrue("slow: " + message, message.startsWith("Slow query on connection #" + proxyConnection.getId()));
+            assertTrue("sql: " + message, message.endsWith("took 1 milliseconds: slow"));
+        } finally {
+            logger.removeAppender(appender);
+            logger.setLevel(level);
+        }
+    }
+
+    /**
+     * Remembers the slow query messages it is sent
+     */
+    class MessageAppender extends AppenderSkeleton {
+
+        private List messages = new ArrayList();
+
+        protected synchronized void append(LoggingEvent event) {
+            String message = String.valueOf(event.getMessage());
+            if (message.indexOf(" query on connection #") > -1) {
+                messages.add(message);
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait (a while) until we have been sent this many messages
+         * @param count how many
+         * @return the messages we have been sent
+         */
+        synchronized List waitForMessages(int count) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            while (messages.size() < count && System.currentTimeMillis() < end) {
+                wait(100);
+            }
+            // Give it a moment in case there are any we weren't expecting
+            wait(100);
+            return new ArrayList(messages);
+        }
+
+        public boolean requiresLayout() {
+            return false;
+        }
+
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Test {@link SqlTrace}.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class SqlTraceTest extends AbstractProxoolTest {
+
+    /**
+     * @see junit.framework.TestCase#TestCase
+     */
+    public SqlTraceTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that each type of parameter is rendered in the right place
+     */
+    public void testParameters() {
+        SqlTrace sqlTrace = new SqlTrace();
+        sqlTrace.setParameter(1, "a");
+        sqlTrace.setParameter(2, new Integer(2));
+        sqlTrace.setParameter(3, null);
+        sqlTrace.setParameter(4, Boolean.TRUE);
+        sqlTrace.setParameter(6, new ByteArrayInputStream(new byte[0]));
+        sqlTrace.addEntry("select * from t where a = ? and b = ? and c = ? and d = ? and e = ? and f = ?");
+        assertEquals("sql", "select * from t where a = 'a' and b = 2 and c = NULL and d = true and e = ? and f = ByteArrayInputStream; ",
+                sqlTrace.toString());
+    }
+
+    /**
+     * Test that the parameters of one entry aren't used for the next
+     */
+    public void testBatch() {
+        SqlTrace sqlTrace = new SqlTrace();
+        sqlTrace.setParameter(1, new Integer(1));
+        sqlTrace.addEntry("insert into t values (?)");
+        sqlTrace.addEntry("insert into t values (?)");
+        sqlTrace.setParameter(1, new Integer(3));
+        sqlTrace.addEntry("insert into t values (?);");
+        assertEquals("sql", "insert into t values (1); insert into t values (?); insert into t values (3);", sqlTrace.toString());
+    }
+
+    /**
+     * Test that a large batch is cut short
+     */
+    public void testLargeBatch() {
+        SqlTrace sqlTrace = new SqlTrace();
+        final int count = SqlTrace.MAXIMUM_ENTRIES + 1000;
+        for (int i = 0; i < count; i++) {
+            sqlTrace.setParameter(1, new Integer(i));
+            sqlTrace.addEntry("insert into t values (?)");
+        }
+        assertEquals("entryCount", count, sqlTrace.getEntryCount());
+        String sql = sqlTrace.toString();
+        assertTrue("first entry", sql.startsWith("insert into t values (0); insert into t values (1); "));
+        assertTrue("rest counted", sql.endsWith("(and 1000 more)"));
+    }
+
+}
@@ -28,7 +28,9 @@ public class AllTests {
         TestSuite suite = new TestSuite();
         suite.addTestSuite(StatisticsListenerTest.class);
         suite.addTestSuite(StatisticsTest.class);
+        suite.addTestSuite(HistogramTest.class);
         suite.addTestSuite(SnapshotTest.class);
+        suite.addTestSuite(SqlDigestTableTest.class);
 
         // create a wrapper for global initialization code.
         TestSetup wrapper = new TestSetup(suite) {
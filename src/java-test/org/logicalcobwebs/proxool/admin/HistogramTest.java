@@ -0,0 +1,82 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.admin;
+
+import org.logicalcobwebs.proxool.AbstractProxoolTest;
+
+/**
+ * Test {@link Histogram}.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class HistogramTest extends AbstractProxoolTest {
+
+    /**
+     * @see junit.framework.TestCase#TestCase
+     */
+    public HistogramTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that values go in buckets in order and that the bucket a value goes in
+     * never reports it as smaller, or more than an eighth bigger
+     */
+    public void testBuckets() {
+        int lastBucket = 0;
+        for (long value = 0; value < 100000; value++) {
+            int bucket = Histogram.getBucket(value);
+            assertTrue("bucket for " + value + " went backwards", bucket >= lastBucket);
+            long highestValue = Histogram.getHighestValue(bucket);
+            assertTrue("highest value " + highestValue + " for " + value, highestValue >= value && highestValue - value <= value / 8);
+            lastBucket = bucket;
+        }
+        long value = Integer.MAX_VALUE;
+        assertEquals("largest", value, Histogram.getHighestValue(Histogram.getBucket(value)));
+    }
+
+    /**
+     * Test the percentiles of the values 1 to 1000
+     */
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        assertEquals("empty", 0, histogram.getPercentile(99));
+        for (int i = 1000; i > 0; i--) {
+            histogram.record(i);
+        }
+        assertEquals("count", 1000, histogram.getCount());
+        assertEquals("maximum", 1000, histogram.getMaximum());
+        assertEquals("0%", 1, histogram.getPercentile(0));
+        assertBetween("50%", 500, 500 + 500 / 8, histogram.getPercentile(50));
+        assertBetween("90%", 900, 900 + 900 / 8, histogram.getPercentile(90));
+        assertBetween("99%", 990, 1000, histogram.getPercentile(99));
+        assertEquals("100%", 1000, histogram.getPercentile(100));
+
+        // Something enormous goes in the last bucket but we still know what it was
+        histogram.record(Long.MAX_VALUE);
+        assertEquals("maximum", Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    /**
+     * Test that nothing changes once it has been stopped
+     */
+    public void testStop() {
+        Histogram histogram = new Histogram();
+        histogram.record(5);
+        histogram.stop();
+        histogram.record(10);
+        assertEquals("count", 1, histogram.getCount());
+        assertEquals("maximum", 5, histogram.getMaximum());
+    }
+
+    private void assertBetween(String message, long lowest, long highest, long value) {
+        assertTrue(message + " was " + value + " but should be between " + lowest + " and " + highest,
+                value >= lowest && value <= highest);
+    }
+
+}
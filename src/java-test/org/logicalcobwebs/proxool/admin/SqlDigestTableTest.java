@@ -0,0 +1,188 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.admin;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.logicalcobwebs.proxool.AbstractProxoolTest;
+import org.logicalcobwebs.proxool.ProxoolConstants;
+import org.logicalcobwebs.proxool.ProxoolFacade;
+import org.logicalcobwebs.proxool.TestConstants;
+import org.logicalcobwebs.proxool.TestHelper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Test {@link SqlDigestTable}
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class SqlDigestTableTest extends AbstractProxoolTest {
+
+    private static final Log LOG = LogFactory.getLog(SqlDigestTableTest.class);
+
+    /**
+     * @see junit.framework.TestCase#TestCase
+     */
+    public SqlDigestTableTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that literals, comments, whitespace and IN lists are taken out
+     */
+    public void testFingerprint() {
+        assertEquals("literals", "select * from t where a = ? and b = ? and c = ? and d = ?",
+                SqlDigestTable.getFingerprint("select * from t where a = 'it''s' and b = 42 and c = 1.5e-3 and d = .5"));
+        assertEquals("whitespace and comments", "select a from t where b = ?",
+                SqlDigestTable.getFingerprint("  select a\n\t from t -- the table\n where /* the column */ b = 7 "));
+        assertEquals("names with digits", "select t1.col2 from t1 where x = ?",
+                SqlDigestTable.getFingerprint("select t1.col2 from t1 where x = 0x1F"));
+        assertEquals("quoted names", "select \"col 1\" from t where a = ?",
+                SqlDigestTable.getFingerprint("select \"col 1\" from t where a = 'x'"));
+        assertEquals("in list", "select a from t where b in (...) and c IN (...)",
+                SqlDigestTable.getFingerprint("select a from t where b in (1, 2, 3) and c IN('x','y')"));
+        assertEquals("in list with one", "select a from t where b in (...)",
+                SqlDigestTable.getFingerprint("select a from t where b in (1)"));
+        assertEquals("not a list", "select max(a) from t where b in (select c from u) and join(?)",
+                SqlDigestTable.getFingerprint("select max(a) from t where b in (select c from u) and join(1)"));
+        assertEquals("same shape", SqlDigestTable.getFingerprint(TestConstants.HYPERSONIC_TEST_SQL),
+                SqlDigestTable.getFingerprint(TestConstants.HYPERSONIC_TEST_SQL_2));
+
+        StringBuffer longSql = new StringBuffer("select a from t where b in (");
+        for (int i = 0; i < SqlDigestTable.MAXIMUM_SQL_LENGTH; i++) {
+            longSql.append("c" + i + ", ");
+        }
+        longSql.append("d)");
+        assertEquals("length", SqlDigestTable.MAXIMUM_SQL_LENGTH, SqlDigestTable.getFingerprint(longSql.toString()).length());
+    }
+
+    /**
+     * Test that the table stays the same size, that the least used shape makes way
+     * and that the digests come out slowest first
+     */
+    public void testTable() {
+        SqlDigestTable table = new SqlDigestTable(2);
+        table.record("a", 10, false);
+        table.record("a", 30, true);
+        table.record("b", 100, false);
+        table.record("b", 5, false);
+        table.record("c", 1, false);
+
+        SqlDigestIF[] sqlDigests = table.getSqlDigests();
+        assertEquals("size", 2, sqlDigests.length);
+        assertEquals("slowest first", "b", sqlDigests[0].getSql());
+        assertEquals("newest", "c", sqlDigests[1].getSql());
+
+        table.record("c", 500, false);
+        table.record("c", 20, false);
+        sqlDigests = table.getSqlDigests();
+        assertEquals("slowest first", "c", sqlDigests[0].getSql());
+        assertEquals("count", 3, sqlDigests[0].getCount());
+        assertEquals("totalTime", 521, sqlDigests[0].getTotalTime());
+        assertEquals("maximumTime", 500, sqlDigests[0].getMaximumTime());
+        assertEquals("errorCount", 0, sqlDigests[0].getErrorCount());
+        assertEquals("histogram", 3, sqlDigests[0].getTimeHistogram().getCount());
+
+        // The copies don't change
+        table.record("c", 1, true);
+        assertEquals("copy", 3, sqlDigests[0].getCount());
+        assertEquals("errorCount", 1, table.getSqlDigests()[0].getErrorCount());
+    }
+
+    /**
+     * Test that a shape that turns up after the table is full, and runs more often
+     * than anything else, finds its way in and stays there even though there are
+     * always new shapes arriving
+     */
+    public void testTableLateArrival() {
+        SqlDigestTable table = new SqlDigestTable(3);
+        for (int i = 0; i < 10; i++) {
+            table.record("a", 1, false);
+            table.record("b", 1, false);
+        }
+        table.record("c", 1, false);
+
+        for (int i = 0; i < 10; i++) {
+            table.record("hot", 1, false);
+            table.record("hot", 1, false);
+            table.record("once" + i, 1, false);
+        }
+
+        SqlDigestIF[] sqlDigests = table.getSqlDigests();
+        assertEquals("size", 3, sqlDigests.length);
+        SqlDigestIF hot = null;
+        for (int i = 0; i < sqlDigests.length; i++) {
+            if (sqlDigests[i].getSql().equals("hot")) {
+                hot = sqlDigests[i];
+            }
+        }
+        assertNotNull("hot was squeezed out", hot);
+        // It doesn't claim the executions it inherited
+        assertTrue("count " + hot.getCount(), hot.getCount() > 2 && hot.getCount() <= 20);
+        assertEquals("histogram", hot.getCount(), hot.getTimeHistogram().getCount());
+    }
+
+    /**
+     * Test that a pool counts the statements it executes
+     */
+    public void testPool() throws Exception {
+
+        String testName = "sqlDigestPool";
+        String alias = testName;
+        String url = TestHelper.buildProxoolUrl(alias,
+                TestConstants.HYPERSONIC_DRIVER,
+                TestConstants.HYPERSONIC_TEST_URL);
+        Properties info = new Properties();
+        info.setProperty(ProxoolConstants.USER_PROPERTY, TestConstants.HYPERSONIC_USER);
+        info.setProperty(ProxoolConstants.PASSWORD_PROPERTY, TestConstants.HYPERSONIC_PASSWORD);
+        info.setProperty(ProxoolConstants.SQL_DIGEST_SIZE_PROPERTY, "10");
+        ProxoolFacade.registerConnectionPool(url, info);
+
+        Connection connection = DriverManager.getConnection(url);
+        connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL);
+        connection.createStatement().execute(TestConstants.HYPERSONIC_TEST_SQL_2);
+        PreparedStatement ps = connection.prepareStatement(TestConstants.HYPERSONIC_TEST_SQL);
+        ps.execute();
+        ps.close();
+        try {
+            connection.createStatement().execute("SELECT 1 FROM NO_SUCH_TABLE WHERE A = 'x'");
+            fail("Expected the select to fail");
+        } catch (SQLException e) {
+            LOG.debug("Ignoring expected exception: " + e.getMessage());
+        }
+        connection.close();
+
+        SqlDigestIF[] sqlDigests = ProxoolFacade.getSqlDigests(alias);
+        assertEquals("shapes", 2, sqlDigests.length);
+        SqlDigestIF select = null;
+        SqlDigestIF failed = null;
+        for (int i = 0; i < sqlDigests.length; i++) {
+            if (sqlDigests[i].getSql().indexOf("NO_SUCH_TABLE") > -1) {
+                failed = sqlDigests[i];
+            } else {
+                select = sqlDigests[i];
+            }
+        }
+        assertEquals("select", SqlDigestTable.getFingerprint(TestConstants.HYPERSONIC_TEST_SQL), select.getSql());
+        assertEquals("select count", 3, select.getCount());
+        assertEquals("select errorCount", 0, select.getErrorCount());
+        assertEquals("failed", "SELECT ? FROM NO_SUCH_TABLE WHERE A = ?", failed.getSql());
+        assertEquals("failed errorCount", 1, failed.getErrorCount());
+
+        // Turning it off forgets them
+        info.setProperty(ProxoolConstants.SQL_DIGEST_SIZE_PROPERTY, "0");
+        ProxoolFacade.updateConnectionPool(url, info);
+        assertEquals("off", 0, ProxoolFacade.getSqlDigests(alias).length);
+    }
+
+}
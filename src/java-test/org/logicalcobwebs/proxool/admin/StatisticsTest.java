@@ -17,6 +17,7 @@ import org.logicalcobwebs.proxool.TestHelper;
 
 import java.sql.DriverManager;
 import java.text.DecimalFormat;
+import java.util.Date;
 import java.util.Properties;
 
 /**
@@ -84,6 +85,7 @@ public class StatisticsTest extends AbstractProxoolTest {
         assertEquals("servedCount", 1L, statistics.getServedCount());
         assertEquals("servedPerSecond", 0.09, 0.11, statistics.getServedPerSecond());
         assertEquals("refusedCount", 0L, statistics.getRefusedCount());
+        assertEquals("activeTimeHistogram", 1L, statistics.getActiveTimeHistogram().getCount());
 
     }
 
@@ -115,6 +117,44 @@ public class StatisticsTest extends AbstractProxoolTest {
         }
         double avg = (double) (System.currentTimeMillis() - start) / (double) loops;
         LOG.info("Statistics take " + DECIMAL_FORMAT.format(avg * 1000) + " microseconds");
+        admin.cancelAll();
+
+    }
+
+    /**
+     * Test that connections returned by lots of threads at once are all counted
+     */
+    public void testConcurrentUpdates() throws Exception {
+
+        final Statistics statistics = new Statistics(new Date());
+        final int loops = 10000;
+        Thread[] threads = new Thread[10];
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < loops; j++) {
+                        statistics.connectionReturned(2);
+                        statistics.connectionRefused(0);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        double avg = (double) (System.currentTimeMillis() - start) / (double) (loops * threads.length);
+        LOG.info("Statistics take " + DECIMAL_FORMAT.format(avg * 1000) + " microseconds with " + threads.length + " threads");
+
+        assertEquals("servedCount", loops * threads.length, statistics.getServedCount());
+        assertEquals("refusedCount", loops * threads.length, statistics.getRefusedCount());
+        assertEquals("averageActiveTime", 2.0, statistics.getAverageActiveTime(), 0.0001);
+
+        // Once it's stopped the counts don't change
+        statistics.setStopDate(new Date());
+        statistics.connectionReturned(2);
+        assertEquals("servedCount", loops * threads.length, statistics.getServedCount());
 
     }
 
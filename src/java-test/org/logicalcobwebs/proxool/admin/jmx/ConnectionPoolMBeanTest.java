@@ -57,6 +57,26 @@ public class ConnectionPoolMBeanTest extends AbstractJMXTest {
         ProxoolFacade.removeConnectionPool(alias);
     }
 
+    /**
+     * Test that a statistic can be fetched from the MBean.
+     * @throws java.lang.Exception if an error occours.
+     */
+    public void testGetStatistic() throws Exception {
+        final String alias = "testGetStatistic";
+        // Creating the pool serves one connection
+        createBasicPool(alias);
+        final ObjectName objectName = ProxoolJMXHelper.getObjectName(alias);
+        final Long servedCount = (Long) this.mBeanServer.getAttribute(objectName, "servedCount");
+        assertEquals("servedCount", 1, servedCount.longValue());
+        final Long idleBorrowCount = (Long) this.mBeanServer.getAttribute(objectName, "idleBorrowCount");
+        final Long onDemandBorrowCount = (Long) this.mBeanServer.getAttribute(objectName, "onDemandBorrowCount");
+        assertEquals("borrowCount", 1, idleBorrowCount.longValue() + onDemandBorrowCount.longValue());
+        // The sql-digest-size isn't set so there aren't any
+        final String[] sqlDigests = (String[]) this.mBeanServer.getAttribute(objectName, "sqlDigests");
+        assertEquals("sqlDigests", 0, sqlDigests.length);
+        ProxoolFacade.removeConnectionPool(alias);
+    }
+
     /**
      * Test that a list attributes can be fetched from the MBean.
      * @throws java.lang.Exception if an error occours.
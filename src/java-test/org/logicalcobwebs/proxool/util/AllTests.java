@@ -27,6 +27,9 @@ public class AllTests {
     public static Test suite() {
         TestSuite suite = new TestSuite();
         suite.addTestSuite(ListenerContainerTest.class);
+        suite.addTestSuite(CopyOnWriteMapTest.class);
+        suite.addTestSuite(StripedCounterTest.class);
+        suite.addTestSuite(RingBufferTest.class);
 
         // create a wrapper for global initialization code.
         TestSetup wrapper = new TestSetup(suite) {
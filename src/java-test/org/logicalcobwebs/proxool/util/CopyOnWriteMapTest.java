@@ -0,0 +1,70 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.util;
+
+import org.logicalcobwebs.proxool.AbstractProxoolTest;
+
+/**
+ * Test {@link CopyOnWriteMap}.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class CopyOnWriteMapTest extends AbstractProxoolTest {
+
+    /**
+     * @see junit.framework.TestCase#TestCase
+     */
+    public CopyOnWriteMapTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that putIfAbsent keeps the first value and put replaces it
+     */
+    public void testPutIfAbsent() {
+        CopyOnWriteMap map = new CopyOnWriteMap();
+        assertNull("empty", map.get("a"));
+        assertEquals("first", "1", map.putIfAbsent("a", "1"));
+        assertEquals("second", "1", map.putIfAbsent("a", "2"));
+        assertEquals("get", "1", map.get("a"));
+        map.put("a", "3");
+        assertEquals("replaced", "3", map.get("a"));
+        assertEquals("size", 1, map.size());
+    }
+
+    /**
+     * Test that threads racing to add the same keys all end up with the same values
+     */
+    public void testConcurrentPutIfAbsent() throws InterruptedException {
+        final CopyOnWriteMap map = new CopyOnWriteMap();
+        final int keyCount = 100;
+        final Object[][] seen = new Object[4][keyCount];
+        Thread[] threads = new Thread[seen.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int t = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int k = 0; k < keyCount; k++) {
+                        seen[t][k] = map.putIfAbsent(new Integer(k), new Object());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertEquals("size", keyCount, map.size());
+        for (int k = 0; k < keyCount; k++) {
+            for (int t = 0; t < seen.length; t++) {
+                assertSame("key " + k + ", thread " + t, map.get(new Integer(k)), seen[t][k]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.util;
+
+import org.logicalcobwebs.proxool.AbstractProxoolTest;
+
+/**
+ * Test {@link RingBuffer}.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class RingBufferTest extends AbstractProxoolTest {
+
+    /**
+     * @see junit.framework.TestCase#TestCase
+     */
+    public RingBufferTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that only the most recent ones are kept, oldest first
+     */
+    public void testWrapAround() {
+        RingBuffer ringBuffer = new RingBuffer(3);
+        assertEquals("empty", 0, ringBuffer.toArray().length);
+        assertNull("empty last", ringBuffer.getLast());
+        for (int i = 1; i <= 5; i++) {
+            ringBuffer.add(new Integer(i));
+        }
+        Object[] contents = ringBuffer.toArray();
+        assertEquals("length", 3, contents.length);
+        assertEquals("oldest", new Integer(3), contents[0]);
+        assertEquals("newest", new Integer(5), contents[2]);
+        assertEquals("last", new Integer(5), ringBuffer.getLast());
+    }
+
+    /**
+     * Test that clearing forgets everything but that we can carry on adding
+     */
+    public void testClear() {
+        RingBuffer ringBuffer = new RingBuffer(3);
+        ringBuffer.add("a");
+        ringBuffer.add("b");
+        ringBuffer.clear();
+        assertEquals("cleared", 0, ringBuffer.toArray().length);
+        assertNull("cleared last", ringBuffer.getLast());
+        ringBuffer.add("c");
+        Object[] contents = ringBuffer.toArray();
+        assertEquals("length", 1, contents.length);
+        assertEquals("c", "c", contents[0]);
+    }
+
+    /**
+     * Test that a capacity of zero remembers nothing
+     */
+    public void testZeroCapacity() {
+        RingBuffer ringBuffer = new RingBuffer(0);
+        ringBuffer.add("a");
+        assertEquals("length", 0, ringBuffer.toArray().length);
+        assertNull("last", ringBuffer.getLast());
+    }
+
+    /**
+     * Test that a reader copying while a thread is adding always gets
+     * ones that were added in order, and never more than the capacity
+     */
+    public void testConcurrentRead() throws InterruptedException {
+        final RingBuffer ringBuffer = new RingBuffer(10);
+        final int adds = 100000;
+        Thread writer = new Thread() {
+            public void run() {
+                for (int i = 0; i < adds; i++) {
+                    ringBuffer.add(new Integer(i));
+                }
+            }
+        };
+        writer.start();
+        while (writer.isAlive()) {
+            Object[] contents = ringBuffer.toArray();
+            assertTrue("length " + contents.length, contents.length <= 10);
+            for (int i = 1; i < contents.length; i++) {
+                assertEquals("in order", ((Integer) contents[i - 1]).intValue() + 1, ((Integer) contents[i]).intValue());
+            }
+        }
+        writer.join();
+        assertEquals("last", new Integer(adds - 1), ringBuffer.getLast());
+    }
+
+}
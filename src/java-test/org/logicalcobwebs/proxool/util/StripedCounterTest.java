@@ -0,0 +1,78 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.util;
+
+import org.logicalcobwebs.proxool.AbstractProxoolTest;
+
+/**
+ * Test {@link StripedCounter}.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class StripedCounterTest extends AbstractProxoolTest {
+
+    /**
+     * @see junit.framework.TestCase#TestCase
+     */
+    public StripedCounterTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that adds and moves are summed across all the stripes
+     * (including for negative hints)
+     */
+    public void testAddAndMove() {
+        StripedCounter counter = new StripedCounter(3, 4);
+        for (long hint = -10; hint < 10; hint++) {
+            counter.add(hint, 0, 1);
+        }
+        assertEquals("0", 20, counter.get(0));
+        counter.move(-3, 0, 2);
+        counter.move(7, 0, 2);
+        counter.move(Long.MAX_VALUE, 0, 1);
+        assertEquals("0", 17, counter.get(0));
+        assertEquals("1", 1, counter.get(1));
+        assertEquals("2", 2, counter.get(2));
+        counter.reset();
+        assertEquals("0 after reset", 0, counter.get(0));
+        assertEquals("2 after reset", 0, counter.get(2));
+    }
+
+    /**
+     * Test that lots of threads moving a value around at the
+     * same time never lose track of it.
+     */
+    public void testConcurrentMoves() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter(2);
+        final int threadCount = 10;
+        final int moves = 10000;
+        for (int i = 0; i < threadCount; i++) {
+            counter.add(i, 0, 1);
+        }
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final long hint = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < moves; j++) {
+                        counter.move(hint, 0, 1);
+                        counter.move(hint, 1, 0);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+        }
+        assertEquals("0", threadCount, counter.get(0));
+        assertEquals("1", 0, counter.get(1));
+    }
+
+}
@@ -7,7 +7,10 @@ package org.logicalcobwebs.proxool;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.logicalcobwebs.proxool.admin.SqlDigestTable;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Connection;
@@ -30,17 +33,78 @@ abstract class AbstractProxyStatement {
 
     private static final DateFormat DATE_FORMAT = new SimpleDateFormat("dd-MMM-yyyy.HH:mm:ss");
 
+    /** A setting that we put back before the statement is cached. See {@link #settingChanged}. */
+    protected static final int MAX_ROWS = 0;
+
+    /** @see #MAX_ROWS */
+    protected static final int QUERY_TIMEOUT = 1;
+
+    /** @see #MAX_ROWS */
+    protected static final int FETCH_SIZE = 2;
+
+    /** @see #MAX_ROWS */
+    protected static final int FETCH_DIRECTION = 3;
+
+    /** @see #MAX_ROWS */
+    protected static final int MAX_FIELD_SIZE = 4;
+
+    /** @see #MAX_ROWS */
+    protected static final int ESCAPE_PROCESSING = 5;
+
+    private static final int SETTING_COUNT = 6;
+
     private Statement statement;
 
     private ConnectionPool connectionPool;
 
     private ProxyConnectionIF proxyConnection;
 
-    private Map parameters;
-
     private String sqlStatement;
 
-    private StringBuffer sqlLog = new StringBuffer();
+    /** What we are going to execute next, if we are tracing. Null until we start. */
+    private SqlTrace sqlTrace;
+
+    /** Identifies the statement in the {@link StatementCache}, or null if it can't be cached */
+    private StatementCache.Key statementKey;
+
+    /** Whether we have been closed and the delegate statement put back in the cache */
+    private boolean parked;
+
+    /** Whether there is a batch that hasn't been executed yet */
+    private boolean batchPending;
+
+    /** Which settings have been changed, one bit for each (like 1 << {@link #MAX_ROWS}) */
+    private int changedSettings;
+
+    /** What each changed setting was before it was changed. Null until one is. */
+    private int[] originalSettings;
+
+    /** Set if something was changed that we can't put back, so the statement mustn't be cached */
+    private boolean uncacheable;
+
+    /**
+     * The result sets we've handed out since the last execute, so that we can close them
+     * before the statement is cached. Null until there are some.
+     */
+    private List resultSets;
+
+    /**
+     * The SQL we are about to execute if it isn't the {@link #sqlStatement} (or the first
+     * statement in a batch). Only kept if the pool is {@link ConnectionPool#isSqlDigested digesting SQL}.
+     */
+    private String executeSql;
+
+    /** The {@link SqlDigestTable#getFingerprint fingerprint} of the {@link #sqlStatement}, once we need it */
+    private String sqlStatementFingerprint;
+
+    /** Whether we have decided if the next execution is {@link #isTrace traced} */
+    private boolean traceSampleChosen;
+
+    /**
+     * How many executions the next one stands for if it is traced, or 0 if it isn't.
+     * @see ConnectionPool#getTraceSampleWeight
+     */
+    private int traceSampleWeight;
 
     /**
      * @param statement the real statement that we will delegate to
@@ -48,12 +112,15 @@ abstract class AbstractProxyStatement {
      * @param proxyConnection the connection that was used to create the statement
      * @param sqlStatement the SQL statement that was used to create this statement
      * (optional, can be null) so that we can use if for tracing.
+     * @param statementKey identifies the statement in the {@link StatementCache}
+     * (null if it can't be cached)
      */
-    public AbstractProxyStatement(Statement statement, ConnectionPool connectionPool, ProxyConnectionIF proxyConnection, String sqlStatement) {
+    public AbstractProxyStatement(Statement statement, ConnectionPool connectionPool, ProxyConnectionIF proxyConnection, String sqlStatement, StatementCache.Key statementKey) {
         this.statement = statement;
         this.connectionPool = connectionPool;
         this.proxyConnection = proxyConnection;
         this.sqlStatement = sqlStatement;
+        this.statementKey = statementKey;
     }
 
     /**
@@ -107,13 +174,171 @@ abstract class AbstractProxyStatement {
     }
 
     /**
-     * Close the statement and tell the ProxyConnection that it did so.
+     * Close the statement and tell the ProxyConnection that it did so. If the statement
+     * can be cached then we {@link ProxyConnection#parkStatement park} it instead and
+     * only close it for real if that fails. Closing a parked statement again does nothing.
      * @throws SQLException if it couldn't be closed
      * @see ProxyConnectionIF#registerClosedStatement
      */
     public void close() throws SQLException {
-        statement.close();
-        proxyConnection.registerClosedStatement(statement);
+        if (parked) {
+            return;
+        }
+        if (statementKey != null && park()) {
+            parked = true;
+        } else {
+            statement.close();
+            proxyConnection.registerClosedStatement(statement);
+        }
+    }
+
+    /**
+     * Clear the statement so that it is ready to be used again and put it in the cache
+     * @return true if it is now in the cache
+     * @throws SQLException if we couldn't tell whether the connection is still open
+     */
+    private boolean park() throws SQLException {
+        if (uncacheable) {
+            return false;
+        }
+        try {
+            // Closing a statement closes its result sets, so the next user doesn't see them
+            if (resultSets != null) {
+                for (int i = 0; i < resultSets.size(); i++) {
+                    ((ResultSet) resultSets.get(i)).close();
+                }
+                resultSets = null;
+            }
+            if (changedSettings != 0) {
+                restoreSettings();
+            }
+            if (statement instanceof PreparedStatement) {
+                ((PreparedStatement) statement).clearParameters();
+            }
+            if (batchPending) {
+                statement.clearBatch();
+                batchPending = false;
+            }
+            statement.clearWarnings();
+        } catch (SQLException e) {
+            // It doesn't matter why. We'll just close it instead.
+            LOG.debug("Couldn't clear statement so it won't be cached", e);
+            return false;
+        }
+        return ((ProxyConnection) proxyConnection).parkStatement(statementKey, statement);
+    }
+
+    /**
+     * Remember what a setting was before it is changed so that we can put it back before
+     * the statement is cached. Otherwise, say, the max rows would carry on truncating the
+     * results of whoever prepares the same SQL next.
+     * @param setting which one (like {@link #MAX_ROWS})
+     */
+    protected void settingChanged(int setting) {
+        if (statementKey == null || (changedSettings & (1 << setting)) != 0) {
+            return;
+        }
+        if (originalSettings == null) {
+            originalSettings = new int[SETTING_COUNT];
+        }
+        try {
+            switch (setting) {
+                case MAX_ROWS:
+                    originalSettings[setting] = statement.getMaxRows();
+                    break;
+                case QUERY_TIMEOUT:
+                    originalSettings[setting] = statement.getQueryTimeout();
+                    break;
+                case FETCH_SIZE:
+                    originalSettings[setting] = statement.getFetchSize();
+                    break;
+                case FETCH_DIRECTION:
+                    originalSettings[setting] = statement.getFetchDirection();
+                    break;
+                case MAX_FIELD_SIZE:
+                    originalSettings[setting] = statement.getMaxFieldSize();
+                    break;
+                default:
+                    // Escape processing. There's no getter, but it is always on to start with.
+                    originalSettings[setting] = 1;
+            }
+            changedSettings |= 1 << setting;
+        } catch (SQLException e) {
+            // Then we can't put it back. We'll just close it instead.
+            LOG.debug("Couldn't read statement setting so it won't be cached", e);
+            uncacheable = true;
+        }
+    }
+
+    /**
+     * Put back the settings that have been {@link #settingChanged changed}
+     * @throws SQLException if we couldn't
+     */
+    private void restoreSettings() throws SQLException {
+        for (int setting = 0; setting < SETTING_COUNT; setting++) {
+            if ((changedSettings & (1 << setting)) != 0) {
+                int original = originalSettings[setting];
+                switch (setting) {
+                    case MAX_ROWS:
+                        statement.setMaxRows(original);
+                        break;
+                    case QUERY_TIMEOUT:
+                        statement.setQueryTimeout(original);
+                        break;
+                    case FETCH_SIZE:
+                        statement.setFetchSize(original);
+                        break;
+                    case FETCH_DIRECTION:
+                        statement.setFetchDirection(original);
+                        break;
+                    case MAX_FIELD_SIZE:
+                        statement.setMaxFieldSize(original);
+                        break;
+                    default:
+                        statement.setEscapeProcessing(original != 0);
+                }
+            }
+        }
+        changedSettings = 0;
+    }
+
+    /**
+     * Remember a result set that we handed out so that we can close it before the
+     * statement is cached (closing it for real would have done that)
+     * @param resultSet what the delegate statement returned
+     */
+    protected void resultSetReturned(ResultSet resultSet) {
+        if (statementKey != null) {
+            if (resultSets == null) {
+                resultSets = new ArrayList(1);
+            }
+            resultSets.add(resultSet);
+        }
+    }
+
+    /**
+     * Call this if something is changed that we can't put back (like the cursor name)
+     * so that the statement is closed for real rather than cached.
+     */
+    protected void setUncacheable() {
+        uncacheable = true;
+    }
+
+    /**
+     * Whether we have been closed and the delegate statement given back to the
+     * {@link StatementCache}, in which case somebody else might be using it now.
+     * @return true if parked
+     */
+    protected boolean isParked() {
+        return parked;
+    }
+
+    /**
+     * Remember whether there is a batch that we should clear before the statement is cached
+     * @param batchPending true if addBatch has been called since the last executeBatch
+     */
+    protected void setBatchPending(boolean batchPending) {
+        this.batchPending = batchPending;
     }
 
     protected Connection getConnection() {
@@ -131,143 +356,154 @@ abstract class AbstractProxyStatement {
     /**
      * Add a parameter so that we can show its value when tracing
      * @param index within the procedure
-     * @param value an object describing its value
+     * @param value the value (could be null)
      */
     protected void putParameter(int index, Object value) {
-
-        // Lazily instantiate parameters if necessary
-        if (parameters == null) {
-            parameters = new TreeMap(new Comparator() {
-                public int compare(Object o1, Object o2) {
-                    int c = 0;
-
-                    if (o1 instanceof Integer && o2 instanceof Integer) {
-                        c = ((Integer) o1).compareTo(((Integer) o2));
-                    }
-
-                    return c;
-                }
-            });
-        }
-
-        Object key = new Integer(index);
-        if (value == null) {
-            parameters.put(key, "NULL");
-        } else if (value instanceof String) {
-            parameters.put(key, "'" + value + "'");
-        } else if (value instanceof Number) {
-            parameters.put(key, value);
-        } else if (value instanceof Boolean) {
-            parameters.put(key, ((Boolean) value).toString());
-        } else if (value instanceof Date) {
-            parameters.put(key, "'" + getDateAsString((Date) value) + "'");
-        } else {
-            String className = value.getClass().getName();
-            StringTokenizer st = new StringTokenizer(className, ".");
-            while (st.hasMoreTokens()) {
-                className = st.nextToken();
-            }
-            parameters.put(key, className);
-        }
+        getSqlTrace().setParameter(index, value);
     }
 
     /**
-     * Trace the call that was just made
+     * Trace the call that was just made, and pass it on to the slow query log if that's on
      * @param startTime so we can log how long it took
      * @param exception if anything went wrong during execution
      * @throws SQLException if the {@link ConnectionPool#onExecute onExecute} method threw one.
      */
     protected void trace(long startTime, Exception exception) throws SQLException {
 
+        // The slow query log doesn't need trace on, just the SQL and parameters we've captured
+        if (connectionPool.isSlowQueryLogged()) {
+            connectionPool.queryExecuted(proxyConnection, sqlTrace != null ? (Object) sqlTrace : sqlStatement,
+                    System.currentTimeMillis() - startTime, exception);
+        }
+
         if (isTrace()) {
             // Log if configured to
             if (connectionPool.getLog().isDebugEnabled() && connectionPool.getDefinition().isTrace()) {
-                connectionPool.getLog().debug(sqlLog.toString() + " (" + (System.currentTimeMillis() - startTime) + " milliseconds"
+                connectionPool.getLog().debug(getSqlTrace() + " (" + (System.currentTimeMillis() - startTime) + " milliseconds"
                         + (exception != null ? ", threw a " + exception.getClass().getName()  + ": " + exception.getMessage() + ")" : ")"));
             }
             // Send to any listener
-            connectionPool.onExecute(sqlLog.toString(), (System.currentTimeMillis() - startTime), exception);
+            if (connectionPool.isConnectionListenedTo()) {
+                connectionPool.onExecute(getSqlTrace(), (System.currentTimeMillis() - startTime), exception, traceSampleWeight);
+            }
         }
 
-        // Clear parameters for next time
-        if (parameters != null) {
-            parameters.clear();
-        }
-        sqlStatement = null;
-        sqlLog.setLength(0);
+        // Start again next time. The connection might still have hold of the old one.
+        sqlTrace = null;
+        traceSampleChosen = false;
 
     }
 
     protected void startExecute() {
+        // Executing closes the statement's result sets anyway
+        if (resultSets != null) {
+            resultSets.clear();
+        }
+        // Remember that there might be something to roll back
+        ((ProxyConnection) proxyConnection).setUncommittedWork(true);
         if (isTrace()) {
-            ((ProxyConnection) proxyConnection).addSqlCall(sqlLog.toString());
+            // We don't render the SQL here, just hand it over in case somebody asks
+            ((ProxyConnection) proxyConnection).addSqlCall(getSqlTrace());
         }
     }
 
     /**
-     * Get the parameters that have been built up and use them to fill in any parameters
-     * withing the sqlStatement and produce a log. If the log already exists (for instance,
-     * if a batch is being peformed) then it is appended to the end.
+     * Remember the SQL that is going to be executed so that we can count it in the
+     * {@link ConnectionPool#getSqlDigests SQL digests}
+     * @param sql the SQL being executed or added to a batch, or null to use the SQL
+     * that the statement was prepared with
+     * @param batch true if it is being added to a batch, in which case we only remember the first
      */
-    protected void appendToSqlLog() {
-        if (sqlStatement != null && sqlStatement.length() > 0 && isTrace()) {
-            int parameterIndex = 0;
-            StringTokenizer st = new StringTokenizer(sqlStatement, "?");
-            while (st.hasMoreTokens()) {
-                if (parameterIndex > 0) {
-                    if (parameters != null) {
-                        final Object value = parameters.get(new Integer(parameterIndex));
-                        if (value != null) {
-                            sqlLog.append(value);
-                        } else {
-                            sqlLog.append("?");
-                        }
-                    } else {
-                            sqlLog.append("?");
-                    }
-                }
-                parameterIndex++;
-                sqlLog.append(st.nextToken());
-            }
-            if (sqlStatement.endsWith("?")) {
-                if (parameterIndex > 0) {
-                    if (parameters != null) {
-                        final Object value = parameters.get(new Integer(parameterIndex));
-                        if (value != null) {
-                            sqlLog.append(value);
-                        } else {
-                            sqlLog.append("?");
-                        }
-                    } else {
-                            sqlLog.append("?");
-                    }
+    protected void rememberExecuteSql(String sql, boolean batch) {
+        if (connectionPool.isSqlDigested() && (!batch || executeSql == null)) {
+            executeSql = sql;
+        }
+    }
+
+    /**
+     * Tell the pool that we have executed something
+     * @param startTime when the execution started
+     * @param exception if anything went wrong during execution
+     * @see ConnectionPool#statementExecuted
+     */
+    protected void executed(long startTime, Exception exception) {
+        String fingerprint = null;
+        if (connectionPool.isSqlDigested()) {
+            if (executeSql != null && !executeSql.equals(sqlStatement)) {
+                fingerprint = SqlDigestTable.getFingerprint(executeSql);
+            } else if (sqlStatement != null) {
+                if (sqlStatementFingerprint == null) {
+                    sqlStatementFingerprint = SqlDigestTable.getFingerprint(sqlStatement);
                 }
+                fingerprint = sqlStatementFingerprint;
             }
-            if (sqlStatement != null && !sqlStatement.trim().endsWith(";")) {
-                sqlLog.append("; ");
-            }
+            executeSql = null;
+        }
+        connectionPool.statementExecuted(startTime, fingerprint, exception != null);
+    }
+
+    /**
+     * Remember that the connection just worked, so that it doesn't need testing for a while
+     * @param startTime when the execution started. We don't bother looking at the clock again.
+     * @see ConnectionPoolDefinitionIF#getValidationInterval
+     */
+    protected void executeSucceeded(long startTime) {
+        ((ProxyConnection) proxyConnection).setTimeLastSuccess(startTime);
+    }
+
+    /**
+     * Add the SQL, and the parameters that have been set, to the trace. If there is
+     * already something there (for instance, if a batch is being performed) then it
+     * is added to the end.
+     * @param sql the SQL being executed or added to a batch, or null to use the SQL
+     * that the statement was prepared with
+     */
+    protected void appendToSqlLog(String sql) {
+        if (isCapture()) {
+            getSqlTrace().addEntry(sql != null ? sql : sqlStatement);
         }
-        if (parameters != null) {
-            parameters.clear();
+    }
+
+    private SqlTrace getSqlTrace() {
+        if (sqlTrace == null) {
+            sqlTrace = new SqlTrace();
         }
+        return sqlTrace;
     }
 
+    /**
+     * Whether we are tracing the execution that we are building up to (or have just done).
+     * That's if trace is on or somebody is listening, and if this is one of the executions
+     * we {@link ConnectionPoolDefinitionIF#getTraceSampleRate sample}. We decide the first time
+     * we are asked (usually when the first parameter is set) and stick with it until we've traced it.
+     * @return true if we are tracing
+     */
     protected boolean isTrace() {
-        return getConnectionPool().isConnectionListenedTo() || (getConnectionPool().getDefinition().isTrace());
+        if (!getConnectionPool().isConnectionListenedTo() && !getConnectionPool().getDefinition().isTrace()) {
+            return false;
+        }
+        if (!traceSampleChosen) {
+            traceSampleWeight = getConnectionPool().getTraceSampleWeight();
+            traceSampleChosen = true;
+        }
+        return traceSampleWeight > 0;
     }
 
     /**
-     * Sets sqlStatement if it isn't already set
-     * @param sqlStatement the statement we are sending the database
+     * Whether we need to remember the SQL and its parameters. That's if we are
+     * {@link #isTrace tracing} or if the statement might go in the
+     * {@link ConnectionPool#isSlowQueryLogged slow query log}.
+     * @return true if we should capture them
      */
-    protected void setSqlStatementIfNull(String sqlStatement) {
-        if (this.sqlStatement == null) {
-            this.sqlStatement = sqlStatement;
-        }
+    protected boolean isCapture() {
+        return isTrace() || getConnectionPool().isSlowQueryLogged();
     }
 
     protected static String getDateAsString(Date date) {
-        return DATE_FORMAT.format(date);
+        // SimpleDateFormat isn't thread safe and the trace might be rendered by anyone
+        synchronized (DATE_FORMAT) {
+            return DATE_FORMAT.format(date);
+        }
     }
 
 }
@@ -76,13 +76,26 @@ public class CompositeConnectionListener extends AbstractListenerContainer imple
      * @see ConnectionListenerIF#onExecute(String, long)
      */
     public void onExecute(String command, long elapsedTime) 
+    {
+        onExecute(command, elapsedTime, 1);
+    }
+
+    /**
+     * Tells {@link SampledConnectionListenerIF sampled listeners} the sample weight
+     * and the others just the command and time.
+     * @see SampledConnectionListenerIF#onExecute(String, long, int)
+     */
+    public void onExecute(String command, long elapsedTime, int sampleWeight) 
     {
         Object[] listeners = getListeners();
         
         for(int i=0; i<listeners.length; i++) {
             try {
-                ConnectionListenerIF connectionListener = (ConnectionListenerIF) listeners[i];
-                connectionListener.onExecute(command, elapsedTime);
+                if (listeners[i] instanceof SampledConnectionListenerIF) {
+                    ((SampledConnectionListenerIF) listeners[i]).onExecute(command, elapsedTime, sampleWeight);
+                } else {
+                    ((ConnectionListenerIF) listeners[i]).onExecute(command, elapsedTime);
+                }
             }
             catch (RuntimeException re) {
                 LOG.warn("RuntimeException received from listener "+listeners[i]+" when dispatching onExecute event", re);
@@ -94,13 +107,26 @@ public class CompositeConnectionListener extends AbstractListenerContainer imple
      * @see ConnectionListenerIF#onFail(String, Exception)
      */
     public void onFail(String command, Exception exception) 
+    {
+        onFail(command, exception, 1);
+    }
+
+    /**
+     * Tells {@link SampledConnectionListenerIF sampled listeners} the sample weight
+     * and the others just the command and exception.
+     * @see SampledConnectionListenerIF#onFail(String, Exception, int)
+     */
+    public void onFail(String command, Exception exception, int sampleWeight) 
     {
         Object[] listeners = getListeners();
         
         for(int i=0; i<listeners.length; i++) {
             try {
-                ConnectionListenerIF connectionListener = (ConnectionListenerIF) listeners[i];
-                connectionListener.onFail(command, exception);
+                if (listeners[i] instanceof SampledConnectionListenerIF) {
+                    ((SampledConnectionListenerIF) listeners[i]).onFail(command, exception, sampleWeight);
+                } else {
+                    ((ConnectionListenerIF) listeners[i]).onFail(command, exception);
+                }
             }
             catch (RuntimeException re) {
                 LOG.warn("RuntimeException received from listener "+listeners[i]+" when dispatching onFail event", re);
@@ -83,6 +83,13 @@ public interface ConnectionListenerIF {
      */
     static final int FATAL_SQL_EXCEPTION_DETECTED = 8;
 
+    /**
+     * We are killing a connection because it has been idle for longer than the
+     * {@link org.logicalcobwebs.proxool.ProxoolConstants#MAXIMUM_IDLE_TIME MAXIMUM_IDLE_TIME}
+     * @see #onDeath(java.sql.Connection, int)
+     */
+    static final int MAXIMUM_IDLE_TIME_EXCEEDED = 9;
+
     /**
      * Happens everytime we create a new connection. You can use this
      * to allocate resources to a connection that might be useful during
@@ -103,6 +110,7 @@ public interface ConnectionListenerIF {
      * {@link #FATAL_SQL_EXCEPTION_DETECTED},
      * {@link #MANUAL_EXPIRY},
      * {@link #MAXIMUM_CONNECTION_LIFETIME_EXCEEDED},
+     * {@link #MAXIMUM_IDLE_TIME_EXCEEDED},
      * {@link #RESET_FAIL},
      * {@link #SHUTDOWN}, or
      * {@link #VALIDATION_FAIL}
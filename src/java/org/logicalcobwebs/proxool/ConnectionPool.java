@@ -10,8 +10,14 @@ import org.apache.commons.logging.LogFactory;
 import org.logicalcobwebs.concurrent.ReaderPreferenceReadWriteLock;
 import org.logicalcobwebs.concurrent.WriterPreferenceReadWriteLock;
 import org.logicalcobwebs.proxool.admin.Admin;
+import org.logicalcobwebs.proxool.admin.SqlDigestIF;
+import org.logicalcobwebs.proxool.admin.SqlDigestTable;
+import org.logicalcobwebs.proxool.admin.StatisticsIF;
+import org.logicalcobwebs.proxool.admin.StatisticsListenerIF;
 import org.logicalcobwebs.proxool.util.FastArrayList;
+import org.logicalcobwebs.proxool.util.StripedCounter;
 
+import java.lang.ref.WeakReference;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
@@ -37,6 +43,10 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
      */
     private Log log;
 
+    /**
+     * Guards the list of {@link #proxyConnections connections} (adding and removing them). It
+     * is no longer used when the status of a connection changes - see {@link #connectionCountByState}.
+     */
     private ReaderPreferenceReadWriteLock connectionStatusReadWriteLock = new ReaderPreferenceReadWriteLock();
 
     /**
@@ -52,18 +62,32 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
     private static final String MSG_MAX_CONNECTION_COUNT =
             "Couldn't get connection because we are at maximum connection count and there are none available";
 
-    /** This is the pool itself */
+    /** This is the pool itself. Every connection, whatever its status. */
     private List proxyConnections;
 
-    /** This is the "round robin" that makes sure we use all the connections */
+    /**
+     * Just the connections that are available, longest available first (which
+     * makes sure we use all the connections)
+     */
+    private FreeConnectionList freeConnections = new FreeConnectionList();
+
+    /**
+     * Where the next search starts if the {@link ConnectionPoolDefinitionIF#getBorrowOrder borrow-order}
+     * is round-robin. It isn't synchronized: if two callers read the same value they just try the
+     * same connection and one of them moves on.
+     */
     private int nextAvailableConnection = 0;
 
     private long connectionsServedCount = 0;
 
     private long connectionsRefusedCount = 0;
 
-    /** This keeps a count of how many connections there are in each state */
-    private int[] connectionCountByState = new int[4];
+    /**
+     * This keeps a count of how many connections there are in each state. It's striped by
+     * connection ID so that connections changing status at the same time don't have to
+     * wait for each other.
+     */
+    private StripedCounter connectionCountByState = new StripedCounter(4);
 
     private ConnectionPoolDefinition definition;
 
@@ -79,6 +103,39 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
 
     private Admin admin;
 
+    /**
+     * Statistics for each shape of SQL statement, or null if we aren't keeping them.
+     * @see ConnectionPoolDefinitionIF#getSqlDigestSize
+     */
+    private volatile SqlDigestTable sqlDigestTable;
+
+    /**
+     * Counts statements so that we can {@link ConnectionPoolDefinitionIF#getSlowQuerySampleRate sample}
+     * them for the slow query log. Not guarded: if two threads count at once then we miss one,
+     * which doesn't matter for a sample.
+     */
+    private int slowQuerySampleCount;
+
+    /**
+     * One in this many executions is traced. It starts off as the
+     * {@link ConnectionPoolDefinitionIF#getTraceSampleRate trace-sample-rate} but can be
+     * {@link #setTraceSampleRate changed} without redefining the pool.
+     */
+    private volatile int traceSampleRate = ConnectionPoolDefinitionIF.DEFAULT_TRACE_SAMPLE_RATE;
+
+    /** Counts executions so that we can sample them for tracing. Not guarded, like {@link #slowQuerySampleCount}. */
+    private int traceSampleCount;
+
+    /**
+     * Passes execute events (and statistics) to the listeners on another thread, or null
+     * if they are told straight away.
+     * @see ConnectionPoolDefinitionIF#getListenerQueueSize
+     */
+    private volatile ListenerEventQueue listenerEventQueue;
+
+    /** How many events the queues we've stopped using dropped, so that the count doesn't go backwards */
+    private long listenerEventDropCount;
+
     private boolean locked = false;
 
     private Date dateStarted = new Date();
@@ -99,6 +156,57 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
     private ConnectionResetter connectionResetter;
 
     private ConnectionValidatorIF connectionValidator;
+
+    /**
+     * Callers waiting for a connection to be returned.
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    private ConnectionWaitQueue waitQueue = new ConnectionWaitQueue();
+
+    /**
+     * If {@link ConnectionPoolDefinitionIF#isThreadAffinity thread-affinity} is on then this
+     * holds a {@link WeakReference weak reference} to the last connection that each thread
+     * returned. It's only a hint: the connection stays in the pool for anyone else to use
+     * and the weak reference means we never keep a connection alive after it has been removed.
+     */
+    private ThreadLocal lastConnection = new ThreadLocal();
+
+    private static final int THREAD_AFFINITY_HIT = 0;
+
+    private static final int THREAD_AFFINITY_MISS = 1;
+
+    /** Hits and misses of the {@link #lastConnection} */
+    private StripedCounter threadAffinityCounts = new StripedCounter(2);
+
+    static final int STATEMENT_CACHE_HIT = 0;
+
+    static final int STATEMENT_CACHE_MISS = 1;
+
+    static final int STATEMENT_CACHE_EVICTION = 2;
+
+    /** Hits, misses and evictions of every connection's {@link StatementCache} */
+    private StripedCounter statementCacheCounts = new StripedCounter(3);
+
+    private static final int IDLE_BORROW_COUNT = 0;
+
+    private static final int TOTAL_IDLE_BORROW_TIME = 1;
+
+    private static final int ON_DEMAND_BORROW_COUNT = 2;
+
+    private static final int TOTAL_ON_DEMAND_BORROW_TIME = 3;
+
+    private static final int TOTAL_REFUSED_BORROW_TIME = 4;
+
+    /** How many connections we served (and refused) and how long it took, split by where the connection came from */
+    private StripedCounter borrowCounts = new StripedCounter(5);
+
+    private final Object houseKeepingLock = new Object();
+
+    /** How many sweeps the house keeper has done. Guarded by {@link #houseKeepingLock}. */
+    private long houseKeepingCount;
+
+    /** How long they took altogether (milliseconds). Guarded by {@link #houseKeepingLock}. */
+    private long totalHouseKeepingTime;
     
     
     protected ConnectionPool(ConnectionPoolDefinition definition) throws ProxoolException {
@@ -119,6 +227,7 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         if (definition.getStatistics() != null) {
             try {
                 admin = new Admin(definition);
+                updateStatisticsDispatcher();
             } catch (ProxoolException e) {
                 log.error("Failed to initialise statistics", e);
             }
@@ -140,117 +249,97 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
      */
     protected Connection getConnection() throws SQLException {
 
+        final long startTime = System.currentTimeMillis();
         String requester = Thread.currentThread().getName();
 
+        ProxyConnection proxyConnection = null;
+
         /*
          *If we're busy, we need to return as quickly as possible. Because this is unsynchronized
          * we run the risk of refusing a connection when we might actually be able to. But that will
          * only happen when we're right at or near maximum connections anyway.
          */
 
-        try {
-            prototyper.quickRefuse();
-        } catch (SQLException e) {
-            connectionsRefusedCount++;
-            if (admin != null) {
-                admin.connectionRefused();
+        if (getDefinition().isThreadAffinity()) {
+            proxyConnection = reclaimLastConnection();
+        }
+
+        if (proxyConnection == null) {
+            try {
+                prototyper.quickRefuse();
+            } catch (SQLException e) {
+                // Unless we're allowed to wait for one to be returned
+                proxyConnection = waitForConnection();
+                if (proxyConnection == null) {
+                    connectionRefused(startTime);
+                    log.info(displayStatistics() + " - " + MSG_MAX_CONNECTION_COUNT);
+                    timeOfLastRefusal = System.currentTimeMillis();
+                    setUpState(StateListenerIF.STATE_OVERLOADED);
+                    throw e;
+                }
             }
-            log.info(displayStatistics() + " - " + MSG_MAX_CONNECTION_COUNT);
-            timeOfLastRefusal = System.currentTimeMillis();
-            setUpState(StateListenerIF.STATE_OVERLOADED);
-            throw e;
         }
 
-        prototyper.checkSimultaneousBuildThrottle();       
-        
-        ProxyConnection proxyConnection = null;
+        if (proxyConnection == null) {
 
-        try {
+            prototyper.checkSimultaneousBuildThrottle();
 
-            // We need to look at all the connections, but we don't want to keep looping round forever
-            for (int connectionsTried = 0; connectionsTried < proxyConnections.size(); connectionsTried++) {
-                // By doing this in a try/catch we avoid needing to synch on the size().  We need to do be
-                // able to cope with connections being removed whilst we are going round this loop
-                try {
-                    proxyConnection = (ProxyConnection) proxyConnections.get(nextAvailableConnection);
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    // This is thrown by a Vector (which we no longer use), but is
-                    // kept here for a while.
-                    nextAvailableConnection = 0;
-                    proxyConnection = (ProxyConnection) proxyConnections.get(nextAvailableConnection);
-                } catch (IndexOutOfBoundsException e) {
-                    // This is thrown by a true List
-                    nextAvailableConnection = 0;
-                    proxyConnection = (ProxyConnection) proxyConnections.get(nextAvailableConnection);
-                }
-                // setActive() returns false if the ProxyConnection wasn't available.  You
-                // can't set it active twice (at least, not without making it available again
-                // in between)
-                if (proxyConnection != null && proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_ACTIVE)) {
-
-                    // Okay. So we have it. But is it working ok?
-                    if (getDefinition().isTestBeforeUse()) {
-                        if (!testConnection(proxyConnection)) {
-                            // Oops. No it's not. Let's choose another.
-                            proxyConnection = null;
+            try {
+
+                proxyConnection = findAvailableConnection();
+
+                // Did we get one?
+                if (proxyConnection == null) {
+                    try {
+                        // No!  Let's see if we can create one
+                        proxyConnection = prototyper.buildConnection(ProxyConnection.STATUS_ACTIVE, "on demand");
+
+                        // Okay. So we have it. But is it working ok?
+                        if (getDefinition().isTestBeforeUse()) {
+                            if (!testConnection(proxyConnection)) {
+                                // Oops. No it's not. There's not much more we can do for now
+                                throw new SQLException("Created a new connection but it failed its test");
+                            }
                         }
-                    }
-                    if (proxyConnection != null) {
-                        nextAvailableConnection++;
-                        break;
-                    }
-                } else {
-                    proxyConnection = null;
-                }
-                nextAvailableConnection++;
-            }
-            // Did we get one?
-            if (proxyConnection == null) {
-                try {
-                    // No!  Let's see if we can create one
-                    proxyConnection = prototyper.buildConnection(ProxyConnection.STATUS_ACTIVE, "on demand");
-                    
-                    // Okay. So we have it. But is it working ok?
-                    if (getDefinition().isTestBeforeUse()) {
-                        if (!testConnection(proxyConnection)) {
-                            // Oops. No it's not. There's not much more we can do for now
-                            throw new SQLException("Created a new connection but it failed its test");
+                    } catch (SQLException e) {
+                        throw e;
+                    } catch (ProxoolException e) {
+                        // Perhaps somebody else beat us to the last connection. If so, wait in line (if we're allowed)
+                        if (prototyper.getConnectionCount() >= getDefinition().getMaximumConnectionCount()) {
+                            proxyConnection = waitForConnection();
                         }
+                        if (proxyConnection == null) {
+                            log.debug("Couldn't get connection", e);
+                            throw new SQLException(e.toString());
+                        }
+                    } catch (Throwable e) {
+                        log.error("Couldn't get connection", e);
+                        throw new SQLException(e.toString());
                     }
-                } catch (SQLException e) {
-                    throw e;
-                } catch (ProxoolException e) {
-                    log.debug("Couldn't get connection", e);
-                    throw new SQLException(e.toString());
-                } catch (Throwable e) {
-                    log.error("Couldn't get connection", e);
-                    throw new SQLException(e.toString());
                 }
-            }
 
-        } catch (SQLException e) {
-            throw e;
-        } catch (Throwable t) {
-            log.error("Problem getting connection", t);
-            throw new SQLException(t.toString());
-        } finally {
-            if (proxyConnection != null) {
-                connectionsServedCount++;
-                proxyConnection.setRequester(requester);
-            } else {
-                connectionsRefusedCount++;
-                if (admin != null) {
-                    admin.connectionRefused();
+            } catch (SQLException e) {
+                throw e;
+            } catch (Throwable t) {
+                log.error("Problem getting connection", t);
+                throw new SQLException(t.toString());
+            } finally {
+                if (proxyConnection == null) {
+                    connectionRefused(startTime);
+                    timeOfLastRefusal = System.currentTimeMillis();
+                    setUpState(StateListenerIF.STATE_OVERLOADED);
                 }
-                timeOfLastRefusal = System.currentTimeMillis();
-                setUpState(StateListenerIF.STATE_OVERLOADED);
             }
-        }
 
-        if (proxyConnection == null) {
-            throw new SQLException("Unknown reason for not getting connection. Sorry.");
+            if (proxyConnection == null) {
+                throw new SQLException("Unknown reason for not getting connection. Sorry.");
+            }
         }
 
+        connectionsServedCount++;
+        connectionServed(proxyConnection, startTime);
+        proxyConnection.setRequester(requester);
+
         if (log.isDebugEnabled() && getDefinition().isVerbose()) {
             log.debug(displayStatistics() + " - Connection #" + proxyConnection.getId() + " served");
         }
@@ -261,10 +350,261 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         return ProxyFactory.getWrappedConnection(proxyConnection);
     }
 
+    /**
+     * Record how long it took to serve a connection. If it was born after the caller asked
+     * for it then it was built on demand, whether the caller built it or, if they had to wait,
+     * it was built by someone else and handed over. Otherwise it was an idle hit. Call this
+     * before the connection's {@link ProxyConnectionIF#setRequester requester} is set: the clock
+     * only counts milliseconds, so a connection that was born in the same millisecond that the
+     * caller asked might already have been served to somebody else.
+     * @param proxyConnection the connection being served
+     * @param startTime when the caller asked for it
+     */
+    private void connectionServed(ProxyConnectionIF proxyConnection, long startTime) {
+        long borrowTime = System.currentTimeMillis() - startTime;
+        boolean onDemand = proxyConnection.getBirthTime() >= startTime && proxyConnection.getRequester() == null;
+        long hint = Thread.currentThread().hashCode();
+        borrowCounts.add(hint, onDemand ? ON_DEMAND_BORROW_COUNT : IDLE_BORROW_COUNT, 1);
+        borrowCounts.add(hint, onDemand ? TOTAL_ON_DEMAND_BORROW_TIME : TOTAL_IDLE_BORROW_TIME, borrowTime);
+        if (admin != null) {
+            admin.connectionServed(borrowTime, onDemand);
+        }
+    }
+
+    /**
+     * Record that we couldn't serve a connection
+     * @param startTime when the caller asked for it
+     */
+    private void connectionRefused(long startTime) {
+        long borrowTime = System.currentTimeMillis() - startTime;
+        connectionsRefusedCount++;
+        borrowCounts.add(Thread.currentThread().hashCode(), TOTAL_REFUSED_BORROW_TIME, borrowTime);
+        if (admin != null) {
+            admin.connectionRefused(borrowTime);
+        }
+    }
+
+    /**
+     * Try and get back the connection that this thread returned last time.
+     * @return the connection (already {@link ConnectionInfoIF#STATUS_ACTIVE active})
+     * or null if we couldn't have it
+     * @see ConnectionPoolDefinitionIF#isThreadAffinity
+     */
+    private ProxyConnection reclaimLastConnection() {
+
+        ProxyConnection proxyConnection = null;
+        WeakReference reference = (WeakReference) lastConnection.get();
+        if (reference != null) {
+            proxyConnection = (ProxyConnection) reference.get();
+            // This fails if somebody else is using it, or if it has been removed
+            if (proxyConnection != null
+                    && !proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_ACTIVE)) {
+                proxyConnection = null;
+            }
+            if (proxyConnection != null && getDefinition().isTestBeforeUse() && !testConnection(proxyConnection)) {
+                proxyConnection = null;
+            }
+        }
+
+        threadAffinityCounts.add(Thread.currentThread().hashCode(),
+                proxyConnection != null ? THREAD_AFFINITY_HIT : THREAD_AFFINITY_MISS, 1);
+        return proxyConnection;
+    }
+
+    /**
+     * Remember that this thread just returned this connection so that it can
+     * {@link #reclaimLastConnection try and get it back} next time.
+     * @param proxyConnection the connection that was returned
+     */
+    private void rememberLastConnection(ProxyConnectionIF proxyConnection) {
+        WeakReference reference = (WeakReference) lastConnection.get();
+        // Most of the time it's the same one as last time, so there's nothing to do
+        if (reference == null || reference.get() != proxyConnection) {
+            lastConnection.set(new WeakReference(proxyConnection));
+        }
+    }
+
+    /**
+     * Look for an available connection and make it active. Which one we choose depends on
+     * the {@link ConnectionPoolDefinitionIF#getBorrowOrder borrow-order}.
+     * @return the connection (already {@link ConnectionInfoIF#STATUS_ACTIVE active})
+     * or null if there weren't any available
+     */
+    private ProxyConnection findAvailableConnection() {
+
+        final String borrowOrder = getDefinition().getBorrowOrder();
+        if (ProxoolConstants.BORROW_ORDER_ROUND_ROBIN.equals(borrowOrder)) {
+            return findNextAvailableConnection();
+        }
+        final boolean lifo = ProxoolConstants.BORROW_ORDER_LIFO.equals(borrowOrder);
+
+        ProxyConnection proxyConnection = lifo ? freeConnections.pollLast() : freeConnections.poll();
+        while (proxyConnection != null) {
+            // setStatus() returns false if the ProxyConnection isn't available any more (the
+            // house keeper might have taken it offline since it was put on the list)
+            if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_ACTIVE)) {
+                // Okay. So we have it. But is it working ok?
+                if (!getDefinition().isTestBeforeUse() || testConnection(proxyConnection)) {
+                    break;
+                }
+                // Oops. No it's not. Let's choose another.
+            }
+            proxyConnection = lifo ? freeConnections.pollLast() : freeConnections.poll();
+        }
+
+        return proxyConnection;
+    }
+
+    /**
+     * Go round the connections in the order they were built, starting where we left off last
+     * time, and make the first available one active.
+     * @return the connection (already {@link ConnectionInfoIF#STATUS_ACTIVE active})
+     * or null if there weren't any available
+     */
+    private ProxyConnection findNextAvailableConnection() {
+
+        // We need to look at all the connections, but we don't want to keep looping round forever
+        for (int connectionsTried = 0; connectionsTried < proxyConnections.size() && freeConnections.size() > 0; connectionsTried++) {
+            int index = nextAvailableConnection;
+            if (index >= proxyConnections.size()) {
+                index = 0;
+            }
+            nextAvailableConnection = index + 1;
+            ProxyConnection proxyConnection;
+            try {
+                proxyConnection = (ProxyConnection) proxyConnections.get(index);
+            } catch (IndexOutOfBoundsException e) {
+                // A connection was removed whilst we were looking. Start again from the beginning.
+                nextAvailableConnection = 0;
+                continue;
+            }
+            // setStatus() returns false if the ProxyConnection isn't available (and changing the
+            // status takes it off the list of free connections too)
+            if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_ACTIVE)) {
+                // Okay. So we have it. But is it working ok?
+                if (!getDefinition().isTestBeforeUse() || testConnection(proxyConnection)) {
+                    return proxyConnection;
+                }
+                // Oops. No it's not. Let's choose another.
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Wait in line for a connection to be returned to the pool. Only happens if the
+     * {@link ConnectionPoolDefinitionIF#getMaximumWaitTime maximum-wait-time} is set.
+     * @return the connection (already {@link ConnectionInfoIF#STATUS_ACTIVE active})
+     * or null if we can't wait, the wait queue is full or we waited too long
+     */
+    private ProxyConnection waitForConnection() {
+
+        final long maximumWaitTime = getDefinition().getMaximumWaitTime();
+        if (maximumWaitTime <= 0) {
+            return null;
+        }
+
+        ConnectionWaitQueue.Waiter waiter = waitQueue.join(getDefinition().getMaximumWaitQueueSize());
+        if (waiter == null) {
+            log.info(displayStatistics() + " - Couldn't wait for a connection because there are already "
+                    + getDefinition().getMaximumWaitQueueSize() + " waiting");
+            return null;
+        }
+
+        final long deadline = System.currentTimeMillis() + maximumWaitTime;
+        ProxyConnection proxyConnection = null;
+        try {
+            while (proxyConnection == null && isConnectionPoolUp()) {
+                // One might have been made available before whoever returned it knew we were waiting
+                proxyConnection = findAvailableConnection();
+                if (proxyConnection != null) {
+                    break;
+                }
+                proxyConnection = waitQueue.await(waiter, deadline);
+                if (proxyConnection != null) {
+                    // It was handed straight over so it didn't go through setStatus(). Start the clock again.
+                    proxyConnection.setTimeLastStartActive(System.currentTimeMillis());
+                    if (getDefinition().isTestBeforeUse() && !testConnection(proxyConnection)) {
+                        // It's gone, and so have we from the queue. Get back in line.
+                        proxyConnection = null;
+                        waitQueue.rejoin(waiter);
+                    }
+                } else if (System.currentTimeMillis() >= deadline) {
+                    break;
+                } else {
+                    // We were woken up because there might be room to build a new one.
+                    proxyConnection = findAvailableConnection();
+                    if (proxyConnection == null) {
+                        try {
+                            proxyConnection = prototyper.buildConnection(ProxyConnectionIF.STATUS_ACTIVE, "on demand (after waiting)");
+                            if (getDefinition().isTestBeforeUse() && !testConnection(proxyConnection)) {
+                                proxyConnection = null;
+                            }
+                        } catch (Throwable t) {
+                            // Someone beat us to it (or the build failed). Keep waiting.
+                            if (log.isDebugEnabled()) {
+                                log.debug("Couldn't build connection whilst waiting: " + t.getMessage());
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (admin != null) {
+                admin.connectionWaited(System.currentTimeMillis() - (deadline - maximumWaitTime));
+            }
+            // It's possible that we were handed one just as we gave up
+            ProxyConnection lateConnection = waitQueue.leave(waiter);
+            if (lateConnection != null) {
+                if (proxyConnection == null) {
+                    proxyConnection = lateConnection;
+                    proxyConnection.setTimeLastStartActive(System.currentTimeMillis());
+                } else {
+                    releaseConnection(lateConnection, false);
+                }
+            }
+        }
+
+        if (proxyConnection == null && System.currentTimeMillis() >= deadline) {
+            waitQueue.registerTimeout();
+            log.info(displayStatistics() + " - Gave up waiting for a connection after " + maximumWaitTime + " milliseconds");
+        }
+        return proxyConnection;
+    }
+
+    /**
+     * Make an active connection available for someone else, or hand it straight over to the caller
+     * that has been waiting longest.
+     * @param proxyConnection the connection to release
+     * @param remember whether this thread should {@link #rememberLastConnection remember} it, if it
+     * is made available (if it is handed over then this thread can't have it back)
+     * @return true if its status changed to available or it was handed over
+     */
+    private boolean releaseConnection(ProxyConnectionIF proxyConnection, boolean remember) {
+        if (waitQueue.hasWaiters() && proxyConnection.isActive()
+                && waitQueue.handOff((ProxyConnection) proxyConnection)) {
+            return true;
+        } else if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_ACTIVE, ProxyConnectionIF.STATUS_AVAILABLE)) {
+            if (remember) {
+                rememberLastConnection(proxyConnection);
+            }
+            // Somebody might have joined the queue after we looked, and looked for an available
+            // connection before this one was. Wake them so that they look again.
+            if (waitQueue.hasWaiters()) {
+                waitQueue.wakeLongestWaiter();
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     /**
      * Test the connection (if required)
      * If the connection fails the test, it is removed from the pool.
      * If no ConnectionValidatorIF is defined, then the test always succeed.
+     * If the connection {@link #isRecentlySuccessful worked recently} then we don't bother.
      * 
      * @param proxyConnection the connection to test
      * @return TRUE if the connection pass the test, FALSE if it fails
@@ -274,9 +614,13 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         if( connectionValidator == null ) {
             return true;
         }
+
+        if (isRecentlySuccessful(proxyConnection)) {
+            return true;
+        }
         
         // validate the connection
-        boolean success = connectionValidator.validate(getDefinition(), proxyConnection.getConnection());
+        boolean success = validateConnection(proxyConnection);
         
         if( success ) {
             if (LOG.isDebugEnabled()) {
@@ -303,13 +647,22 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         try {
             acquireConnectionStatusWriteLock();
             if (proxyConnection.getDefinition() == getDefinition()) {
+                // Count it before anyone else can see it (and change its status)
+                connectionCountByState.add(proxyConnection.getId(), proxyConnection.getStatus(), 1);
                 proxyConnections.add(proxyConnection);
-                connectionCountByState[proxyConnection.getStatus()]++;
+                if (proxyConnection.isAvailable()) {
+                    freeConnections.add((ProxyConnection) proxyConnection);
+                }
                 added = true;
             }
         } finally {
             releaseConnectionStatusWriteLock();
         }
+        // If somebody is waiting for a connection then they can have this one
+        if (added && waitQueue.hasWaiters()
+                && proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_ACTIVE)) {
+            releaseConnection(proxyConnection, false);
+        }
         return added;
     }
 
@@ -352,8 +705,8 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
                 testConnection(proxyConnection);
             }
 
-            // Let's make it available for someone else
-            if (!proxyConnection.setStatus(ProxyConnectionIF.STATUS_ACTIVE, ProxyConnectionIF.STATUS_AVAILABLE)) {
+            // Let's make it available for someone else (or give it to whoever has waited longest)
+            if (!releaseConnection(proxyConnection, getDefinition().isThreadAffinity())) {
                 if (proxyConnection.getStatus() == ProxyConnectionIF.STATUS_AVAILABLE) {
                     // This is *probably* because the connection has been closed twice.
                     // Although we can't tell for sure. We'll have to refactor this to use
@@ -475,6 +828,9 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
                 long startFinalize = System.currentTimeMillis();
                 shutdownThread = Thread.currentThread();
 
+                // Anyone waiting for a connection is going to be disappointed
+                waitQueue.wakeAll();
+
                 if (delay > 0) {
                     log.info("Shutting down '" + alias + "' pool started at "
                             + dateStarted + " - waiting for " + delay
@@ -500,12 +856,18 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
                         admin.cancelAll();
                     }
 
+                    // Pass on whatever the listeners haven't heard about yet
+                    ListenerEventQueue listenerEventQueue = this.listenerEventQueue;
+                    if (listenerEventQueue != null) {
+                        listenerEventQueue.stop();
+                    }
+
                     /* Patience, patience. */
 
-                    if (connectionCountByState[ProxyConnectionIF.STATUS_ACTIVE] != 0) {
+                    if (getActiveConnectionCount() != 0) {
                         long endWait = startFinalize + delay;
                         LOG.info("Waiting until " + new Date(endWait) + " for all connections to become inactive (active count is "
-                                + connectionCountByState[ProxyConnectionIF.STATUS_ACTIVE] + ").");
+                                + getActiveConnectionCount() + ").");
                         while (true) {
                             long timeout = endWait - System.currentTimeMillis();
                             if (timeout > 0) {
@@ -517,7 +879,7 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
                                     }
                                 }
                             }
-                            int activeCount = connectionCountByState[ProxyConnectionIF.STATUS_ACTIVE];
+                            int activeCount = getActiveConnectionCount();
                             if (activeCount == 0) {
                                 break;
                             }
@@ -582,33 +944,28 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
     }
 
     /**
-     * You should {@link #acquireConnectionStatusReadLock acquire}
-     * a read lock if you want this to be accurate (but that might have
-     * an impact on the performance of your pool).
+     * Each connection is counted exactly once across all the states, but the
+     * states are not all read at exactly the same moment.
      * @see ConnectionPoolStatisticsIF#getAvailableConnectionCount
      */
     public int getAvailableConnectionCount() {
-        return connectionCountByState[ConnectionInfoIF.STATUS_AVAILABLE];
+        return (int) connectionCountByState.get(ConnectionInfoIF.STATUS_AVAILABLE);
     }
 
     /**
-     * You should {@link #acquireConnectionStatusReadLock acquire}
-     * a read lock if you want this to be accurate (but that might have
-     * an impact on the performance of your pool).
+     * @see #getAvailableConnectionCount
      * @see ConnectionPoolStatisticsIF#getActiveConnectionCount
      */
     public int getActiveConnectionCount() {
-        return connectionCountByState[ConnectionInfoIF.STATUS_ACTIVE];
+        return (int) connectionCountByState.get(ConnectionInfoIF.STATUS_ACTIVE);
     }
 
     /**
-     * You should {@link #acquireConnectionStatusReadLock acquire}
-     * a read lock if you want this to be accurate (but that might have
-     * an impact on the performance of your pool).
+     * @see #getAvailableConnectionCount
      * @see ConnectionPoolStatisticsIF#getOfflineConnectionCount
      */
     public int getOfflineConnectionCount() {
-        return connectionCountByState[ConnectionInfoIF.STATUS_OFFLINE];
+        return (int) connectionCountByState.get(ConnectionInfoIF.STATUS_OFFLINE);
     }
 
     protected String displayStatistics() {
@@ -691,25 +1048,44 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         } // END if (proxyConnection.setOffline())
     }
 
-    protected void registerRemovedConnection(int status) {
+    /**
+     * Call this when a connection is closed for real
+     * @param proxyConnection the connection that was removed
+     * @param status the status it had when it was removed
+     */
+    protected void registerRemovedConnection(ProxyConnection proxyConnection, int status) {
         prototyper.connectionRemoved();
-        connectionCountByState[status]--;
+        freeConnections.remove(proxyConnection);
+        connectionCountByState.add(proxyConnection.getId(), status, -1);
+        // There might be room to build one for whoever has waited longest
+        waitQueue.wakeLongestWaiter();
     }
 
     /**
-     * You should {@link #acquireConnectionStatusWriteLock acquire} a write lock
-     * before calling this method
+     * The connection should hold the lock on its own status whilst
+     * calling this method (but there's no need to lock the whole pool).
+     * It also keeps the list of {@link #freeConnections available connections} up to date.
+     * @param proxyConnection the connection that changed
      * @param oldStatus so we know which count to decrement
      * @param newStatus so we know which count to increment
      */
-    protected void changeStatus(int oldStatus, int newStatus) {
-        // LOG.debug("About to change status");
-        connectionCountByState[oldStatus]--;
-        connectionCountByState[newStatus]++;
-        // LOG.debug("Changing status from " + oldStatus + " to " + newStatus);
+    protected void changeStatus(ProxyConnection proxyConnection, int oldStatus, int newStatus) {
+        if (newStatus == ProxyConnectionIF.STATUS_AVAILABLE) {
+            if (oldStatus == ProxyConnectionIF.STATUS_OFFLINE) {
+                // Back from the house keeper, so back where it was
+                freeConnections.unpark(proxyConnection);
+            } else {
+                freeConnections.add(proxyConnection);
+            }
+        } else if (oldStatus == ProxyConnectionIF.STATUS_AVAILABLE && newStatus == ProxyConnectionIF.STATUS_OFFLINE) {
+            freeConnections.park(proxyConnection);
+        } else if (oldStatus == ProxyConnectionIF.STATUS_AVAILABLE || oldStatus == ProxyConnectionIF.STATUS_OFFLINE) {
+            freeConnections.remove(proxyConnection);
+        }
+        connectionCountByState.move(proxyConnection.getId(), oldStatus, newStatus);
         // Check to see if shutdown is waiting for all connections to become
         // non-active
-        if (shutdownThread != null && connectionCountByState[ProxyConnectionIF.STATUS_ACTIVE] == 0) {
+        if (shutdownThread != null && getActiveConnectionCount() == 0) {
             synchronized (shutdownThread) {
                 shutdownThread.notify();
             }
@@ -734,6 +1110,7 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
      * calling expireAllConnections() if you're in a hurry.
      */
     protected synchronized void setDefinition(ConnectionPoolDefinition definition) throws ProxoolException {
+        ConnectionPoolDefinition oldDefinition = this.definition;
         this.definition = definition;
 
         try {
@@ -746,6 +1123,55 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
             throw new ProxoolException("Definition did not contain driver");
         }
 
+        // Start again if the size changes. We lose what we had, but it's not worth trying to keep it.
+        int sqlDigestSize = definition.getSqlDigestSize();
+        if (sqlDigestSize <= 0) {
+            sqlDigestTable = null;
+        } else if (sqlDigestTable == null || sqlDigestTable.getSize() != sqlDigestSize) {
+            sqlDigestTable = new SqlDigestTable(sqlDigestSize);
+        }
+
+        // Only if it has changed, so that we don't undo a change made with setTraceSampleRate
+        if (oldDefinition == null || oldDefinition.getTraceSampleRate() != definition.getTraceSampleRate()) {
+            traceSampleRate = definition.getTraceSampleRate();
+        }
+
+        // Anything already queued still gets passed on by the old queue before its thread stops
+        ListenerEventQueue oldListenerEventQueue = listenerEventQueue;
+        int listenerQueueSize = definition.getListenerQueueSize();
+        if (oldListenerEventQueue == null
+                || oldListenerEventQueue.getCapacity() != listenerQueueSize
+                || oldListenerEventQueue.isBlocking() != definition.isListenerQueueBlocking()) {
+            listenerEventQueue = listenerQueueSize > 0
+                    ? new ListenerEventQueue(log, definition.getAlias(), listenerQueueSize, definition.isListenerQueueBlocking(), compositeConnectionListener)
+                    : null;
+            if (oldListenerEventQueue != null) {
+                oldListenerEventQueue.stop();
+                listenerEventDropCount += oldListenerEventQueue.getDroppedCount();
+            }
+            updateStatisticsDispatcher();
+        }
+
+    }
+
+    /**
+     * Have the statistics listeners told through the {@link #listenerEventQueue listener queue}
+     * if there is one, so that they don't hold up the thread that rolls the statistics.
+     */
+    private void updateStatisticsDispatcher() {
+        if (admin != null) {
+            final ListenerEventQueue listenerEventQueue = this.listenerEventQueue;
+            if (listenerEventQueue != null) {
+                final StatisticsListenerIF statisticsListener = admin.getStatisticsListener();
+                admin.setStatisticsDispatcher(new StatisticsListenerIF() {
+                    public void statistics(String alias, StatisticsIF statistics) {
+                        listenerEventQueue.statistics(statisticsListener, alias, statistics);
+                    }
+                });
+            } else {
+                admin.setStatisticsDispatcher(null);
+            }
+        }
     }
 
     /**
@@ -788,15 +1214,149 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         this.compositeConnectionListener.onDeath(connection, reasonCode);
     }
 
-    /** Call the onExecute() method on each StateListenerIF . */
-    protected void onExecute(String command, long elapsedTime, Exception exception) throws SQLException {
-        if (exception == null) {
-            this.compositeConnectionListener.onExecute(command, elapsedTime);
+    /**
+     * Call the onExecute() (or onFail()) method on each ConnectionListenerIF, straight away
+     * or on another thread if there is a {@link ConnectionPoolDefinitionIF#getListenerQueueSize listener queue}
+     * @param command what was executed (rendered with toString() when the listeners are told)
+     * @param elapsedTime how long it took
+     * @param exception what it threw (or null)
+     * @param sampleWeight how many executions this one stands for (see {@link #getTraceSampleWeight})
+     */
+    protected void onExecute(Object command, long elapsedTime, Exception exception, int sampleWeight) throws SQLException {
+        ListenerEventQueue listenerEventQueue = this.listenerEventQueue;
+        if (listenerEventQueue != null) {
+            listenerEventQueue.execute(command, elapsedTime, exception, sampleWeight);
+        } else if (exception == null) {
+            this.compositeConnectionListener.onExecute(String.valueOf(command), elapsedTime, sampleWeight);
         } else {
-            this.compositeConnectionListener.onFail(command, exception);
+            this.compositeConnectionListener.onFail(String.valueOf(command), exception, sampleWeight);
+        }
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getListenerEventDropCount
+     */
+    public long getListenerEventDropCount() {
+        ListenerEventQueue listenerEventQueue = this.listenerEventQueue;
+        return listenerEventDropCount + (listenerEventQueue != null ? listenerEventQueue.getDroppedCount() : 0);
+    }
+
+    /**
+     * Decide whether to trace the execution that is about to happen
+     * @return 0 if we shouldn't trace it, otherwise how many executions it stands for
+     * (the {@link #getTraceSampleRate trace sample rate} when we decided)
+     */
+    protected int getTraceSampleWeight() {
+        int rate = traceSampleRate;
+        if (rate <= 1) {
+            return 1;
+        }
+        return ++traceSampleCount % rate == 0 ? rate : 0;
+    }
+
+    /**
+     * @see ProxoolFacade#getTraceSampleRate
+     */
+    protected int getTraceSampleRate() {
+        return Math.max(traceSampleRate, 1);
+    }
+
+    /**
+     * @see ProxoolFacade#setTraceSampleRate
+     */
+    protected void setTraceSampleRate(int traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+        if (log.isDebugEnabled()) {
+            log.debug("Tracing one in " + getTraceSampleRate() + " executions");
+        }
+    }
+
+    /**
+     * Call this when a new connection has been built (so that it shows up in the {@link Admin statistics})
+     * @param buildTime how long it took (milliseconds)
+     */
+    protected void connectionBuilt(long buildTime) {
+        if (admin != null) {
+            admin.connectionBuilt(buildTime);
+        }
+    }
+
+    /**
+     * Call this when building a new connection failed (so that it shows up in the {@link Admin statistics})
+     */
+    protected void connectionBuildFailed() {
+        if (admin != null) {
+            admin.connectionBuildFailed();
+        }
+    }
+
+    /**
+     * Call this when a statement has been executed (so that it shows up in the {@link Admin statistics}
+     * and the {@link #getSqlDigests SQL digests})
+     * @param startTime when it started. We only look at the clock again if we need to.
+     * @param sqlFingerprint what the statement looks like without its literals (null if we don't know
+     * or we aren't {@link #isSqlDigested digesting SQL})
+     * @param failed whether it threw an exception
+     */
+    protected void statementExecuted(long startTime, String sqlFingerprint, boolean failed) {
+        SqlDigestTable sqlDigestTable = this.sqlDigestTable;
+        if (admin != null || (sqlDigestTable != null && sqlFingerprint != null)) {
+            long executeTime = System.currentTimeMillis() - startTime;
+            if (admin != null) {
+                admin.statementExecuted(executeTime);
+            }
+            if (sqlDigestTable != null && sqlFingerprint != null) {
+                sqlDigestTable.record(sqlFingerprint, executeTime, failed);
+            }
         }
     }
 
+    /**
+     * Whether statements might get {@link SlowQueryLog logged} for being slow (or sampled). If they
+     * might then statements have to remember their SQL and parameters, even if trace is off.
+     * @return true if the {@link ConnectionPoolDefinitionIF#getSlowQueryThreshold slow-query-threshold}
+     * or the {@link ConnectionPoolDefinitionIF#getSlowQuerySampleRate slow-query-sample-rate} is set
+     */
+    protected boolean isSlowQueryLogged() {
+        return definition.getSlowQueryThreshold() > 0 || definition.getSlowQuerySampleRate() > 0;
+    }
+
+    /**
+     * Call this when a statement has been executed (if {@link #isSlowQueryLogged} is true) and we'll
+     * queue it for the {@link SlowQueryLog} if it was slow or if it is the one we sample.
+     * @param proxyConnection the connection that executed it
+     * @param sql what it executed. We don't render it unless we log it.
+     * @param executeTime how long it took
+     * @param exception what it threw (or null)
+     */
+    protected void queryExecuted(ProxyConnectionIF proxyConnection, Object sql, long executeTime, Exception exception) {
+        int threshold = definition.getSlowQueryThreshold();
+        int sampleRate = definition.getSlowQuerySampleRate();
+        boolean slow = threshold > 0 && executeTime >= threshold;
+        if (slow || (sampleRate > 0 && ++slowQuerySampleCount % sampleRate == 0)) {
+            SlowQueryLog.add(log, slow, proxyConnection.getId(), proxyConnection.getRequester(), executeTime, sql, exception);
+        }
+    }
+
+    /**
+     * Whether we are keeping statistics for each shape of SQL statement. If we aren't
+     * there's no point working out a statement's fingerprint.
+     * @return true if the {@link ConnectionPoolDefinitionIF#getSqlDigestSize sql-digest-size} is set
+     */
+    protected boolean isSqlDigested() {
+        return sqlDigestTable != null;
+    }
+
+    /**
+     * Statistics for each shape of SQL statement
+     * @return the digests, the ones that have taken the longest altogether first (empty
+     * if the {@link ConnectionPoolDefinitionIF#getSqlDigestSize sql-digest-size} isn't set)
+     */
+    protected SqlDigestIF[] getSqlDigests() {
+        SqlDigestTable sqlDigestTable = this.sqlDigestTable;
+        return sqlDigestTable != null ? sqlDigestTable.getSqlDigests() : new SqlDigestIF[0];
+    }
+
     /**
      * Is there a {@link ConnectionListenerIF listener} for connections
      * @return true if there is a listener registered.
@@ -821,27 +1381,47 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         }
     }
 
+    /**
+     * Calls {@link #getConnectionInfos(boolean) getConnectionInfos} including the SQL calls
+     * @return the connection infos
+     */
     protected Collection getConnectionInfos() {
-        Collection cis = null;
-        cis = new TreeSet();
-        Iterator i = proxyConnections.iterator();
-        while (i.hasNext()) {
-            ConnectionInfoIF connectionInfo = (ConnectionInfoIF) i.next();
+        return getConnectionInfos(true);
+    }
+
+    /**
+     * Describe each connection in the pool, sorted by ID. It doesn't lock the pool: each connection's
+     * {@link ProxyConnection#getState state} tells us everything that changes as it is served and returned.
+     * A connection might change status while we are looking, but what we say about it will be true of one
+     * moment.
+     * @param includeSqlCalls whether to copy each connection's {@link ConnectionInfoIF#getSqlCalls SQL calls}
+     * too. Leave them out if you don't need them because it's cheaper.
+     * @return the {@link ConnectionInfoIF connection infos}
+     */
+    protected Collection getConnectionInfos(boolean includeSqlCalls) {
+        Collection cis = new TreeSet();
+        ProxyConnectionIF[] all = getProxyConnections();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < all.length; i++) {
+            ProxyConnection proxyConnection = (ProxyConnection) all[i];
+            ConnectionState state = proxyConnection.getState();
             ConnectionInfo ci = new ConnectionInfo();
-            ci.setAge(connectionInfo.getAge());
-            ci.setBirthDate(connectionInfo.getBirthDate());
-            ci.setId(connectionInfo.getId());
-            ci.setMark(connectionInfo.getMark());
-            ci.setRequester(connectionInfo.getRequester());
-            ci.setStatus(connectionInfo.getStatus());
-            ci.setTimeLastStartActive(connectionInfo.getTimeLastStartActive());
-            ci.setTimeLastStopActive(connectionInfo.getTimeLastStopActive());
-            ci.setDelegateUrl(connectionInfo.getDelegateUrl());
-            ci.setProxyHashcode(connectionInfo.getProxyHashcode());
-            ci.setDelegateHashcode(connectionInfo.getDelegateHashcode());
-            String[] sqlCalls = connectionInfo.getSqlCalls();
-            for (int j = 0; j < sqlCalls.length; j++) {
-                ci.addSqlCall(sqlCalls[j]);
+            ci.setAge(now - proxyConnection.getBirthTime());
+            ci.setBirthDate(proxyConnection.getBirthDate());
+            ci.setId(proxyConnection.getId());
+            ci.setMark(state.getMark());
+            ci.setRequester(state.getRequester());
+            ci.setStatus(state.getStatus());
+            ci.setTimeLastStartActive(state.getTimeLastStartActive());
+            ci.setTimeLastStopActive(state.getTimeLastStopActive());
+            ci.setDelegateUrl(proxyConnection.getDelegateUrl());
+            ci.setProxyHashcode(proxyConnection.getProxyHashcode());
+            ci.setDelegateHashcode(proxyConnection.getDelegateHashcode());
+            if (includeSqlCalls) {
+                String[] sqlCalls = proxyConnection.getSqlCalls();
+                for (int j = 0; j < sqlCalls.length; j++) {
+                    ci.addSqlCall(sqlCalls[j]);
+                }
             }
             cis.add(ci);
         }
@@ -856,19 +1436,10 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
      */
     public boolean expireConnection(long id, boolean forceExpiry) {
         boolean success = false;
-        ProxyConnection proxyConnection = null;
-
-        // We need to look at all the connections, but we don't want to keep looping round forever
-        for (int connectionsTried = 0; connectionsTried < proxyConnections.size(); connectionsTried++) {
-            // By doing this in a try/catch we avoid needing to synch on the size().  We need to do be
-            // able to cope with connections being removed whilst we are going round this loop
-            try {
-                proxyConnection = (ProxyConnection) proxyConnections.get(nextAvailableConnection);
-            } catch (IndexOutOfBoundsException e) {
-                nextAvailableConnection = 0;
-                proxyConnection = (ProxyConnection) proxyConnections.get(nextAvailableConnection);
-            }
 
+        ProxyConnectionIF[] all = getProxyConnections();
+        for (int i = 0; i < all.length; i++) {
+            ProxyConnectionIF proxyConnection = all[i];
             if (proxyConnection.getId() == id) {
                 // This is the one
                 proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_OFFLINE);
@@ -877,13 +1448,11 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
                 success = true;
                 break;
             }
-
-            nextAvailableConnection++;
         }
 
         if (!success) {
             if (log.isDebugEnabled()) {
-                log.debug(displayStatistics() + " - couldn't find " + FormatHelper.formatMediumNumber(proxyConnection.getId())
+                log.debug(displayStatistics() + " - couldn't find " + FormatHelper.formatMediumNumber(id)
                         + " and I've just been asked to expire it");
             }
         }
@@ -908,14 +1477,17 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
      * original state.
      * @param connection the one to reset
      * @param id the id of the connection
+     * @param changedProperties the value last passed to each mutator, keyed by name (or null if none were called)
+     * @param defaultAutoCommit what autoCommit was when the connection was made
+     * @param uncommittedWork whether a statement has run since the last commit or rollback
      * @throws SQLException  if the call to {@link java.sql.Connection#isClosed()} fails
      * @return true if it was successfully reset, false if there was a problem (like the connection being already closed)
      */
-    protected boolean resetConnection(Connection connection, String id) throws SQLException {
+    protected boolean resetConnection(Connection connection, String id, Map changedProperties, boolean defaultAutoCommit, boolean uncommittedWork) throws SQLException {
         if (connection.isClosed()) {
             return false;
         } else {
-            return connectionResetter.reset(connection, id);
+            return connectionResetter.reset(connection, id, changedProperties, defaultAutoCommit, uncommittedWork);
         }
     }
 
@@ -970,6 +1542,17 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
 //        }
     }
 
+    /**
+     * Like {@link #acquirePrimaryReadLock} but gives up rather than waiting
+     * longer than this.
+     * @param msecs how long to wait (zero means don't wait at all)
+     * @return true if we got the lock (in which case you must release it)
+     * @throws InterruptedException if we couldn't
+     */
+    protected boolean attemptPrimaryReadLock(long msecs) throws InterruptedException {
+        return primaryReadWriteLock.readLock().attempt(msecs);
+    }
+
     /**
      * @see #acquirePrimaryReadLock
      */
@@ -1113,6 +1696,220 @@ class ConnectionPool implements ConnectionPoolStatisticsIF {
         return getPrototyper().getConnectionCount();
     }
 
+    /**
+     * @see ConnectionPoolStatisticsIF#getWaitingCount
+     */
+    public int getWaitingCount() {
+        return waitQueue.getWaitingCount();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getWaitedCount
+     */
+    public long getWaitedCount() {
+        return waitQueue.getWaitedCount();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getTotalWaitTime
+     */
+    public long getTotalWaitTime() {
+        return waitQueue.getTotalWaitTime();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getWaitTimeoutCount
+     */
+    public long getWaitTimeoutCount() {
+        return waitQueue.getWaitTimeoutCount();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getThreadAffinityHitCount
+     */
+    public long getThreadAffinityHitCount() {
+        return threadAffinityCounts.get(THREAD_AFFINITY_HIT);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getThreadAffinityMissCount
+     */
+    public long getThreadAffinityMissCount() {
+        return threadAffinityCounts.get(THREAD_AFFINITY_MISS);
+    }
+
+    /**
+     * Count something that happened to a connection's {@link StatementCache}
+     * @param proxyConnection the connection whose cache it was
+     * @param event {@link #STATEMENT_CACHE_HIT}, {@link #STATEMENT_CACHE_MISS} or {@link #STATEMENT_CACHE_EVICTION}
+     */
+    protected void statementCacheEvent(ProxyConnectionIF proxyConnection, int event) {
+        statementCacheCounts.add(proxyConnection.getId(), event, 1);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getStatementCacheHitCount
+     */
+    public long getStatementCacheHitCount() {
+        return statementCacheCounts.get(STATEMENT_CACHE_HIT);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getStatementCacheMissCount
+     */
+    public long getStatementCacheMissCount() {
+        return statementCacheCounts.get(STATEMENT_CACHE_MISS);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getStatementCacheEvictionCount
+     */
+    public long getStatementCacheEvictionCount() {
+        return statementCacheCounts.get(STATEMENT_CACHE_EVICTION);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getBuildQueueSize
+     */
+    public long getBuildQueueSize() {
+        return prototyper.getBuildQueueSize();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getBuildingCount
+     */
+    public long getBuildingCount() {
+        return prototyper.getBuildingCount();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getBuiltCount
+     */
+    public long getBuiltCount() {
+        return prototyper.getBuiltCount();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getTotalBuildTime
+     */
+    public long getTotalBuildTime() {
+        return prototyper.getTotalBuildTime();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getBuildFailureCount
+     */
+    public long getBuildFailureCount() {
+        return prototyper.getBuildFailureCount();
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getIdleBorrowCount
+     */
+    public long getIdleBorrowCount() {
+        return borrowCounts.get(IDLE_BORROW_COUNT);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getTotalIdleBorrowTime
+     */
+    public long getTotalIdleBorrowTime() {
+        return borrowCounts.get(TOTAL_IDLE_BORROW_TIME);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getOnDemandBorrowCount
+     */
+    public long getOnDemandBorrowCount() {
+        return borrowCounts.get(ON_DEMAND_BORROW_COUNT);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getTotalOnDemandBorrowTime
+     */
+    public long getTotalOnDemandBorrowTime() {
+        return borrowCounts.get(TOTAL_ON_DEMAND_BORROW_TIME);
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getTotalRefusedBorrowTime
+     */
+    public long getTotalRefusedBorrowTime() {
+        return borrowCounts.get(TOTAL_REFUSED_BORROW_TIME);
+    }
+
+    /**
+     * Whether the connection proved that it works so recently that it doesn't need testing
+     * @param proxyConnection the connection
+     * @return true if it {@link ProxyConnection#getTimeLastSuccess worked} within the
+     * {@link ConnectionPoolDefinitionIF#getValidationInterval validation-interval}
+     */
+    protected boolean isRecentlySuccessful(ProxyConnectionIF proxyConnection) {
+        final long validationInterval = getDefinition().getValidationInterval();
+        return validationInterval > 0
+                && System.currentTimeMillis() - ((ProxyConnection) proxyConnection).getTimeLastSuccess() < validationInterval;
+    }
+
+    /**
+     * Ask the validator whether the connection works. Unlike {@link #testConnection} this
+     * doesn't remove the connection if it fails.
+     * @param proxyConnection the connection to test
+     * @return true if it passed (or there isn't a validator)
+     */
+    protected boolean validateConnection(ProxyConnectionIF proxyConnection) {
+        boolean success;
+        if (connectionValidator == null) {
+            success = true;
+        } else if (connectionValidator instanceof DefaultConnectionValidator) {
+            // This one can keep its statement with the connection
+            success = ((DefaultConnectionValidator) connectionValidator).validate(getDefinition(), (ProxyConnection) proxyConnection);
+        } else {
+            success = connectionValidator.validate(getDefinition(), proxyConnection.getConnection());
+        }
+        if (success) {
+            ((ProxyConnection) proxyConnection).setTimeLastSuccess(System.currentTimeMillis());
+        }
+        return success;
+    }
+
+    /**
+     * Use a different validator. The default runs the
+     * {@link ConnectionPoolDefinitionIF#getHouseKeepingTestSql house-keeping-test-sql}.
+     * @param connectionValidator the validator to use
+     */
+    protected void setConnectionValidator(ConnectionValidatorIF connectionValidator) {
+        this.connectionValidator = connectionValidator;
+    }
+
+    /**
+     * Called by the {@link HouseKeeper} each time it finishes a sweep
+     * @param duration how long the sweep took (milliseconds)
+     */
+    protected void houseKeepingSwept(long duration) {
+        synchronized (houseKeepingLock) {
+            houseKeepingCount++;
+            totalHouseKeepingTime += duration;
+        }
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getHouseKeepingCount
+     */
+    public long getHouseKeepingCount() {
+        synchronized (houseKeepingLock) {
+            return houseKeepingCount;
+        }
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getTotalHouseKeepingTime
+     */
+    public long getTotalHouseKeepingTime() {
+        synchronized (houseKeepingLock) {
+            return totalHouseKeepingTime;
+        }
+    }
+
     
 }
 
@@ -85,6 +85,42 @@ class ConnectionPoolDefinition implements ConnectionPoolDefinitionIF {
 
     private long maximumActiveTime;
 
+    private long maximumWaitTime;
+
+    private int maximumWaitQueueSize;
+
+    private boolean threadAffinity;
+
+    private int statementCacheSize;
+
+    private int houseKeepingBatchSize;
+
+    private long validationInterval;
+
+    private boolean testWithIsValid;
+
+    private long maximumIdleTime;
+
+    private int minimumIdle;
+
+    private String borrowOrder;
+
+    private long maximumConnectionLifetimeJitter;
+
+    private int sqlHistorySize;
+
+    private int sqlDigestSize;
+
+    private int slowQueryThreshold;
+
+    private int slowQuerySampleRate;
+
+    private int traceSampleRate;
+
+    private int listenerQueueSize;
+
+    private boolean listenerQueueBlocking;
+
     private boolean verbose;
 
     private boolean trace;
@@ -268,6 +304,7 @@ class ConnectionPoolDefinition implements ConnectionPoolDefinitionIF {
         changed = changed || setLoggingProperty(key, value, pretend);
         changed = changed || setInjectableProperty(key, value, pretend);
         changed = changed || setJndiProperty(key, value, pretend);
+        changed = changed || setBorrowProperty(key, value, pretend);
 
         if (key.equals(ProxoolConstants.USER_PROPERTY)) {
             proxoolProperty = false;
@@ -530,6 +567,146 @@ class ConnectionPoolDefinition implements ConnectionPoolDefinitionIF {
         return changed;
     }
 
+    /**
+     * Subset of {@link #setAnyProperty} to avoid overly long method
+     * @see #setAnyProperty
+     */
+    private boolean setBorrowProperty(String key, String value, boolean pretend) throws ProxoolException {
+        boolean changed = false;
+        if (key.equals(ProxoolConstants.MAXIMUM_WAIT_TIME_PROPERTY)) {
+            if (getMaximumWaitTime() != getLong(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setMaximumWaitTime(getLong(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.MAXIMUM_WAIT_QUEUE_SIZE_PROPERTY)) {
+            if (getMaximumWaitQueueSize() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setMaximumWaitQueueSize(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.THREAD_AFFINITY_PROPERTY)) {
+            final boolean valueAsBoolean = Boolean.valueOf(value).booleanValue();
+            if (isThreadAffinity() != valueAsBoolean) {
+                changed = true;
+                if (!pretend) {
+                    setThreadAffinity(valueAsBoolean);
+                }
+            }
+        } else if (key.equals(ProxoolConstants.STATEMENT_CACHE_SIZE_PROPERTY)) {
+            if (getStatementCacheSize() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setStatementCacheSize(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE_PROPERTY)) {
+            if (getHouseKeepingBatchSize() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setHouseKeepingBatchSize(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.VALIDATION_INTERVAL_PROPERTY)) {
+            if (getValidationInterval() != getLong(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setValidationInterval(getLong(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.TEST_WITH_IS_VALID_PROPERTY)) {
+            final boolean valueAsBoolean = Boolean.valueOf(value).booleanValue();
+            if (isTestWithIsValid() != valueAsBoolean) {
+                changed = true;
+                if (!pretend) {
+                    setTestWithIsValid(valueAsBoolean);
+                }
+            }
+        } else if (key.equals(ProxoolConstants.MAXIMUM_IDLE_TIME_PROPERTY)) {
+            if (getMaximumIdleTime() != getLong(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setMaximumIdleTime(getLong(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.MINIMUM_IDLE_PROPERTY)) {
+            if (getMinimumIdle() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setMinimumIdle(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.BORROW_ORDER_PROPERTY)) {
+            final String borrowOrder = getBorrowOrder(key, value);
+            if (isChanged(getBorrowOrder(), borrowOrder)) {
+                changed = true;
+                if (!pretend) {
+                    setBorrowOrder(borrowOrder);
+                }
+            }
+        } else if (key.equals(ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER_PROPERTY)) {
+            if (getMaximumConnectionLifetimeJitter() != getLong(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setMaximumConnectionLifetimeJitter(getLong(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.SQL_HISTORY_SIZE_PROPERTY)) {
+            if (getSqlHistorySize() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setSqlHistorySize(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.SQL_DIGEST_SIZE_PROPERTY)) {
+            if (getSqlDigestSize() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setSqlDigestSize(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.SLOW_QUERY_THRESHOLD_PROPERTY)) {
+            if (getSlowQueryThreshold() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setSlowQueryThreshold(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.SLOW_QUERY_SAMPLE_RATE_PROPERTY)) {
+            if (getSlowQuerySampleRate() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setSlowQuerySampleRate(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.TRACE_SAMPLE_RATE_PROPERTY)) {
+            if (getTraceSampleRate() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setTraceSampleRate(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.LISTENER_QUEUE_SIZE_PROPERTY)) {
+            if (getListenerQueueSize() != getInt(key, value)) {
+                changed = true;
+                if (!pretend) {
+                    setListenerQueueSize(getInt(key, value));
+                }
+            }
+        } else if (key.equals(ProxoolConstants.LISTENER_QUEUE_BLOCKING_PROPERTY)) {
+            final boolean valueAsBoolean = Boolean.valueOf(value).booleanValue();
+            if (isListenerQueueBlocking() != valueAsBoolean) {
+                changed = true;
+                if (!pretend) {
+                    setListenerQueueBlocking(valueAsBoolean);
+                }
+            }
+        }
+        return changed;
+    }
+
     /**
      * Subset of {@link #setAnyProperty} to avoid overly long method
      * @see #setAnyProperty
@@ -556,6 +733,21 @@ class ConnectionPoolDefinition implements ConnectionPoolDefinitionIF {
         }
     }
 
+    private String getBorrowOrder(String key, String value) throws ProxoolException {
+        final String borrowOrder = value.trim().toLowerCase();
+        if (borrowOrder.length() == 0) {
+            return DEFAULT_BORROW_ORDER;
+        } else if (borrowOrder.equals(ProxoolConstants.BORROW_ORDER_FIFO)
+                || borrowOrder.equals(ProxoolConstants.BORROW_ORDER_LIFO)
+                || borrowOrder.equals(ProxoolConstants.BORROW_ORDER_ROUND_ROBIN)) {
+            return borrowOrder;
+        } else {
+            throw new ProxoolException("'" + key + "' property must be one of " + ProxoolConstants.BORROW_ORDER_FIFO
+                    + ", " + ProxoolConstants.BORROW_ORDER_LIFO + " or " + ProxoolConstants.BORROW_ORDER_ROUND_ROBIN
+                    + ". Found '" + value + "' instead.");
+        }
+    }
+
     private long getLong(String key, String value) throws ProxoolException {
         try {
             return Long.parseLong(value);
@@ -606,6 +798,24 @@ class ConnectionPoolDefinition implements ConnectionPoolDefinitionIF {
         clone.setRecentlyStartedThreshold(recentlyStartedThreshold);
         clone.setOverloadWithoutRefusalLifetime(overloadWithoutRefusalLifetime);
         clone.setMaximumActiveTime(maximumActiveTime);
+        clone.setMaximumWaitTime(maximumWaitTime);
+        clone.setMaximumWaitQueueSize(maximumWaitQueueSize);
+        clone.setThreadAffinity(threadAffinity);
+        clone.setStatementCacheSize(statementCacheSize);
+        clone.setHouseKeepingBatchSize(houseKeepingBatchSize);
+        clone.setValidationInterval(validationInterval);
+        clone.setTestWithIsValid(testWithIsValid);
+        clone.setMaximumIdleTime(maximumIdleTime);
+        clone.setMinimumIdle(minimumIdle);
+        clone.setBorrowOrder(borrowOrder);
+        clone.setMaximumConnectionLifetimeJitter(maximumConnectionLifetimeJitter);
+        clone.setSqlHistorySize(sqlHistorySize);
+        clone.setSqlDigestSize(sqlDigestSize);
+        clone.setSlowQueryThreshold(slowQueryThreshold);
+        clone.setSlowQuerySampleRate(slowQuerySampleRate);
+        clone.setTraceSampleRate(traceSampleRate);
+        clone.setListenerQueueSize(listenerQueueSize);
+        clone.setListenerQueueBlocking(listenerQueueBlocking);
         clone.setVerbose(verbose);
         clone.setTrace(trace);
         clone.setStatistics(statistics);
@@ -646,6 +856,24 @@ class ConnectionPoolDefinition implements ConnectionPoolDefinitionIF {
         recentlyStartedThreshold = DEFAULT_RECENTLY_STARTED_THRESHOLD;
         overloadWithoutRefusalLifetime = DEFAULT_OVERLOAD_WITHOUT_REFUSAL_THRESHOLD;
         maximumActiveTime = DEFAULT_MAXIMUM_ACTIVE_TIME;
+        maximumWaitTime = DEFAULT_MAXIMUM_WAIT_TIME;
+        maximumWaitQueueSize = DEFAULT_MAXIMUM_WAIT_QUEUE_SIZE;
+        threadAffinity = false;
+        statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+        houseKeepingBatchSize = DEFAULT_HOUSE_KEEPING_BATCH_SIZE;
+        validationInterval = DEFAULT_VALIDATION_INTERVAL;
+        testWithIsValid = false;
+        maximumIdleTime = DEFAULT_MAXIMUM_IDLE_TIME;
+        minimumIdle = DEFAULT_MINIMUM_IDLE;
+        borrowOrder = DEFAULT_BORROW_ORDER;
+        maximumConnectionLifetimeJitter = DEFAULT_MAXIMUM_CONNECTION_LIFETIME_JITTER;
+        sqlHistorySize = DEFAULT_SQL_HISTORY_SIZE;
+        sqlDigestSize = DEFAULT_SQL_DIGEST_SIZE;
+        slowQueryThreshold = DEFAULT_SLOW_QUERY_THRESHOLD;
+        slowQuerySampleRate = DEFAULT_SLOW_QUERY_SAMPLE_RATE;
+        traceSampleRate = DEFAULT_TRACE_SAMPLE_RATE;
+        listenerQueueSize = DEFAULT_LISTENER_QUEUE_SIZE;
+        listenerQueueBlocking = false;
         verbose = false;
         trace = false;
         statistics = null;
@@ -960,6 +1188,258 @@ class ConnectionPoolDefinition implements ConnectionPoolDefinitionIF {
         this.maximumActiveTime = maximumActiveTime;
     }
 
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    public long getMaximumWaitTime() {
+        return maximumWaitTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    public void setMaximumWaitTime(long maximumWaitTime) {
+        this.maximumWaitTime = maximumWaitTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitQueueSize
+     */
+    public int getMaximumWaitQueueSize() {
+        return maximumWaitQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitQueueSize
+     */
+    public void setMaximumWaitQueueSize(int maximumWaitQueueSize) {
+        this.maximumWaitQueueSize = maximumWaitQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isThreadAffinity
+     */
+    public boolean isThreadAffinity() {
+        return threadAffinity;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isThreadAffinity
+     */
+    public void setThreadAffinity(boolean threadAffinity) {
+        this.threadAffinity = threadAffinity;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getStatementCacheSize
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getStatementCacheSize
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getHouseKeepingBatchSize
+     */
+    public int getHouseKeepingBatchSize() {
+        return houseKeepingBatchSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getHouseKeepingBatchSize
+     */
+    public void setHouseKeepingBatchSize(int houseKeepingBatchSize) {
+        this.houseKeepingBatchSize = houseKeepingBatchSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getValidationInterval
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getValidationInterval
+     */
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isTestWithIsValid
+     */
+    public boolean isTestWithIsValid() {
+        return testWithIsValid;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isTestWithIsValid
+     */
+    public void setTestWithIsValid(boolean testWithIsValid) {
+        this.testWithIsValid = testWithIsValid;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumIdleTime
+     */
+    public long getMaximumIdleTime() {
+        return maximumIdleTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumIdleTime
+     */
+    public void setMaximumIdleTime(long maximumIdleTime) {
+        this.maximumIdleTime = maximumIdleTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMinimumIdle
+     */
+    public int getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMinimumIdle
+     */
+    public void setMinimumIdle(int minimumIdle) {
+        this.minimumIdle = minimumIdle;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getBorrowOrder
+     */
+    public String getBorrowOrder() {
+        return borrowOrder;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getBorrowOrder
+     */
+    public void setBorrowOrder(String borrowOrder) {
+        this.borrowOrder = borrowOrder;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumConnectionLifetimeJitter
+     */
+    public long getMaximumConnectionLifetimeJitter() {
+        return maximumConnectionLifetimeJitter;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumConnectionLifetimeJitter
+     */
+    public void setMaximumConnectionLifetimeJitter(long maximumConnectionLifetimeJitter) {
+        this.maximumConnectionLifetimeJitter = maximumConnectionLifetimeJitter;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlHistorySize
+     */
+    public int getSqlHistorySize() {
+        return sqlHistorySize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlHistorySize
+     */
+    public void setSqlHistorySize(int sqlHistorySize) {
+        this.sqlHistorySize = sqlHistorySize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlDigestSize
+     */
+    public int getSqlDigestSize() {
+        return sqlDigestSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlDigestSize
+     */
+    public void setSqlDigestSize(int sqlDigestSize) {
+        this.sqlDigestSize = sqlDigestSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQueryThreshold
+     */
+    public int getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQueryThreshold
+     */
+    public void setSlowQueryThreshold(int slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQuerySampleRate
+     */
+    public int getSlowQuerySampleRate() {
+        return slowQuerySampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQuerySampleRate
+     */
+    public void setSlowQuerySampleRate(int slowQuerySampleRate) {
+        this.slowQuerySampleRate = slowQuerySampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getTraceSampleRate
+     */
+    public int getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getTraceSampleRate
+     */
+    public void setTraceSampleRate(int traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getListenerQueueSize
+     */
+    public int getListenerQueueSize() {
+        return listenerQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getListenerQueueSize
+     */
+    public void setListenerQueueSize(int listenerQueueSize) {
+        this.listenerQueueSize = listenerQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isListenerQueueBlocking
+     */
+    public boolean isListenerQueueBlocking() {
+        return listenerQueueBlocking;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isListenerQueueBlocking
+     */
+    public void setListenerQueueBlocking(boolean listenerQueueBlocking) {
+        this.listenerQueueBlocking = listenerQueueBlocking;
+    }
+
     /**
      * @see ConnectionPoolDefinitionIF#getDebugLevel
      * @deprecated use {@link #isVerbose} instead
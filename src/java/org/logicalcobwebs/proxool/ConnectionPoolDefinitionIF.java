@@ -60,6 +60,51 @@ public interface ConnectionPoolDefinitionIF {
     /** 60000 */
     public static final int DEFAULT_RECENTLY_STARTED_THRESHOLD = 60000;
 
+    /** 0 (refuse immediately) */
+    public static final int DEFAULT_MAXIMUM_WAIT_TIME = 0;
+
+    /** 100 */
+    public static final int DEFAULT_MAXIMUM_WAIT_QUEUE_SIZE = 100;
+
+    /** 0 (no statement cache) */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 0;
+
+    /** 0 (test every available connection) */
+    public static final int DEFAULT_HOUSE_KEEPING_BATCH_SIZE = 0;
+
+    /** 0 (always test) */
+    public static final long DEFAULT_VALIDATION_INTERVAL = 0;
+
+    /** 0 (idle connections are never closed) */
+    public static final long DEFAULT_MAXIMUM_IDLE_TIME = 0;
+
+    /** 0 */
+    public static final int DEFAULT_MINIMUM_IDLE = 0;
+
+    /** fifo */
+    public static final String DEFAULT_BORROW_ORDER = ProxoolConstants.BORROW_ORDER_FIFO;
+
+    /** 0 (every connection lives for the maximum-connection-lifetime) */
+    public static final long DEFAULT_MAXIMUM_CONNECTION_LIFETIME_JITTER = 0;
+
+    /** 100 */
+    public static final int DEFAULT_SQL_HISTORY_SIZE = 100;
+
+    /** 0 (no SQL digests) */
+    public static final int DEFAULT_SQL_DIGEST_SIZE = 0;
+
+    /** 0 (no slow query log) */
+    public static final int DEFAULT_SLOW_QUERY_THRESHOLD = 0;
+
+    /** 0 (no sampling) */
+    public static final int DEFAULT_SLOW_QUERY_SAMPLE_RATE = 0;
+
+    /** 1 (trace every execution) */
+    public static final int DEFAULT_TRACE_SAMPLE_RATE = 1;
+
+    /** 0 (listeners are told on the caller's thread) */
+    public static final int DEFAULT_LISTENER_QUEUE_SIZE = 0;
+
     public static final int DEBUG_LEVEL_QUIET = 0;
 
     public static final int DEBUG_LEVEL_LOUD = 1;
@@ -154,6 +199,107 @@ public interface ConnectionPoolDefinitionIF {
      than your slowest expected response! */
     long getMaximumActiveTime();
 
+    /** If the pool is at its maximum connection count and none are available then
+     a caller will queue for this long (milliseconds) waiting for one to be returned
+     before it is refused. Callers are served in the order they started waiting.
+     If this is zero then we refuse immediately (which is the behaviour before
+     this property was introduced). */
+    long getMaximumWaitTime();
+
+    /** The maximum number of callers that can be waiting for a connection at the same
+     time. Any more than this are refused immediately. Only relevant if the
+     {@link #getMaximumWaitTime maximum-wait-time} is greater than zero. */
+    int getMaximumWaitQueueSize();
+
+    /** If this is true then each thread remembers the last connection it returned and
+     tries to get that same one back next time (if nobody else is using it) before it
+     takes one from the rest of the pool. Good for threads that get and close connections
+     many times in a row. */
+    boolean isThreadAffinity();
+
+    /** The number of prepared and callable statements that each connection keeps open
+     after they have been closed, so that preparing the same SQL again doesn't mean
+     going back to the database. The least recently used statement is closed for real
+     when there are more than this. If this is zero then statements are not cached. */
+    int getStatementCacheSize();
+
+    /** The most available connections that the house keeper tests each time it runs. It
+     tests the ones that have been idle the longest. If this is zero then it tests all
+     of them. */
+    int getHouseKeepingBatchSize();
+
+    /** If a connection has executed a statement successfully (or passed a test) within this
+     many milliseconds then we don't bother testing it, whether that's for test-before-use,
+     test-after-use or the house keeper. If this is zero then we always test. */
+    long getValidationInterval();
+
+    /** If true then connections are tested by asking the driver (using the JDBC 4
+     Connection.isValid method) rather than running the house-keeping-test-sql. If the
+     driver doesn't support it then the SQL is used after all. */
+    boolean isTestWithIsValid();
+
+    /** If a connection has been available (not used) for longer than this many milliseconds
+     then the house keeper closes it, as long as that leaves at least the minimum-connection-count
+     and minimum-idle. It closes the ones that have been idle the longest first. If this is zero
+     then idle connections are never closed. */
+    long getMaximumIdleTime();
+
+    /** The house keeper won't close idle connections (because of the maximum-idle-time) if
+     that would leave fewer than this many available. The prototype-count is kept too, whichever
+     is bigger. */
+    int getMinimumIdle();
+
+    /** Which available connection we serve next. "fifo" serves the one that has been available
+     longest, so all the connections get used. "lifo" serves the one that was returned most
+     recently, so a small working set stays busy and the rest sit idle (and can be closed
+     because of the maximum-idle-time). "round-robin" works through the connections in the
+     order they were built, whenever they were returned. */
+    String getBorrowOrder();
+
+    /** Each connection's lifetime is shortened by a random amount up to this many milliseconds,
+     chosen when it is built. It stops connections that were built at the same time (when the
+     pool started, say) all expiring, and being rebuilt, at the same time. */
+    long getMaximumConnectionLifetimeJitter();
+
+    /** If {@link #isTrace trace} is on then each connection remembers this many of the SQL calls
+     it has made since it was served (the most recent ones). Zero means it doesn't remember any. */
+    int getSqlHistorySize();
+
+    /** If this is more than zero then we keep statistics for each shape of SQL statement that is
+     executed (with its literals taken out), for up to this many shapes. The ones that are run least
+     make way for new ones. */
+    int getSqlDigestSize();
+
+    /** If this is more than zero then any statement that takes at least this many milliseconds to
+     execute is logged (with its parameters, the connection and the thread that was using it). It
+     doesn't need {@link #isTrace trace} to be on. */
+    int getSlowQueryThreshold();
+
+    /** If this is more than zero then one in this many of the statements that aren't slow enough
+     to reach the {@link #getSlowQueryThreshold slow-query-threshold} are logged in the same way, so
+     that you can see what normal looks like. */
+    int getSlowQuerySampleRate();
+
+    /** If {@link #isTrace trace} is on, or there is a {@link ConnectionListenerIF connection listener},
+     then one in this many executions is traced (its parameters remembered and the listeners told
+     about it). The pool starts with this rate but you can change it while it is running with
+     {@link ProxoolFacade#setTraceSampleRate ProxoolFacade}. */
+    int getTraceSampleRate();
+
+    /** If this is more than zero then {@link ConnectionListenerIF#onExecute execute} and
+     {@link ConnectionListenerIF#onFail fail} events, and the statistics that are rolled, are
+     put in a queue of this many events and the listeners are told about them on a thread of
+     the pool's own. That way a slow listener doesn't add to the time each statement takes.
+     What happens when the queue is full depends on {@link #isListenerQueueBlocking listener-queue-blocking}.
+     Birth and death events are always sent straight away because the listener might want to
+     use the connection. */
+    int getListenerQueueSize();
+
+    /** What to do when the {@link #getListenerQueueSize listener queue} is full. If true then the
+     thread that wants to queue an event waits until there is room. If false then the event is
+     dropped (and counted, see {@link ConnectionPoolStatisticsIF#getListenerEventDropCount}). */
+    boolean isListenerQueueBlocking();
+
     /**
      * @deprecated use {@link #isVerbose} instead
      */
@@ -63,6 +63,174 @@ public interface ConnectionPoolStatisticsIF {
     Date getDateStarted();
 
     long getConnectionCount();
+
+    /**
+     * The number of callers that are waiting for a connection right now.
+     * @return waitingCount
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    int getWaitingCount();
+
+    /**
+     * The number of callers that have had to wait for a connection (whether
+     * or not they got one in the end).
+     * @return waitedCount
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    long getWaitedCount();
+
+    /**
+     * The total time that callers have spent waiting for a connection.
+     * Divide by {@link #getWaitedCount} to get the average.
+     * @return totalWaitTime (milliseconds)
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    long getTotalWaitTime();
+
+    /**
+     * The number of callers that were refused because they waited for the
+     * whole of the {@link ConnectionPoolDefinitionIF#getMaximumWaitTime maximum-wait-time}
+     * without getting a connection. (These are included in the
+     * {@link #getConnectionsRefusedCount refused count} too.)
+     * @return waitTimeoutCount
+     */
+    long getWaitTimeoutCount();
+
+    /**
+     * The number of times a thread got back the same connection it returned last
+     * time, without looking at the rest of the pool.
+     * @return threadAffinityHitCount
+     * @see ConnectionPoolDefinitionIF#isThreadAffinity
+     */
+    long getThreadAffinityHitCount();
+
+    /**
+     * The number of times a thread couldn't get back the connection it returned last
+     * time (because it never returned one, somebody else is using it, or it has gone)
+     * and had to look at the rest of the pool instead.
+     * @return threadAffinityMissCount
+     * @see ConnectionPoolDefinitionIF#isThreadAffinity
+     */
+    long getThreadAffinityMissCount();
+
+    /**
+     * The number of times a prepared or callable statement was taken from the
+     * connection's statement cache instead of being prepared again.
+     * @return statementCacheHitCount
+     * @see ConnectionPoolDefinitionIF#getStatementCacheSize
+     */
+    long getStatementCacheHitCount();
+
+    /**
+     * The number of times a prepared or callable statement wasn't in the connection's
+     * statement cache and had to be prepared by the delegate driver.
+     * @return statementCacheMissCount
+     * @see ConnectionPoolDefinitionIF#getStatementCacheSize
+     */
+    long getStatementCacheMissCount();
+
+    /**
+     * The number of cached statements that were closed for real to make room
+     * for another one.
+     * @return statementCacheEvictionCount
+     * @see ConnectionPoolDefinitionIF#getStatementCacheSize
+     */
+    long getStatementCacheEvictionCount();
+
+    /**
+     * The number of connections the prototyper wants to build (to achieve the minimum
+     * connection count or the prototype count) but hasn't started building yet.
+     * @return buildQueueSize
+     * @see ConnectionPoolDefinitionIF#getSimultaneousBuildThrottle
+     */
+    long getBuildQueueSize();
+
+    /**
+     * The number of connections being built right now, either by the prototyper
+     * or on demand.
+     * @return buildingCount
+     */
+    long getBuildingCount();
+
+    /**
+     * The number of connections that have been built since the pool started.
+     * @return builtCount
+     */
+    long getBuiltCount();
+
+    /**
+     * The total time it took to build all the connections, in milliseconds. Divide by
+     * {@link #getBuiltCount} to get the average.
+     * @return totalBuildTime
+     */
+    long getTotalBuildTime();
+
+    /**
+     * The number of times building a new connection failed (the database refused it, say) since
+     * the pool started.
+     * @return buildFailureCount
+     */
+    long getBuildFailureCount();
+
+    /**
+     * The number of times a connection was served that already existed (an idle hit) rather
+     * than one built for the caller.
+     * @return idleBorrowCount
+     * @see #getTotalIdleBorrowTime
+     */
+    long getIdleBorrowCount();
+
+    /**
+     * The total time callers spent getting a connection that already existed, in milliseconds. Divide
+     * by {@link #getIdleBorrowCount} to get the average.
+     * @return totalIdleBorrowTime
+     */
+    long getTotalIdleBorrowTime();
+
+    /**
+     * The number of times a connection was served that had to be built while the caller
+     * waited (because none were available).
+     * @return onDemandBorrowCount
+     * @see #getTotalOnDemandBorrowTime
+     */
+    long getOnDemandBorrowCount();
+
+    /**
+     * The total time callers spent getting a connection that was built on demand, in milliseconds.
+     * Divide by {@link #getOnDemandBorrowCount} to get the average.
+     * @return totalOnDemandBorrowTime
+     */
+    long getTotalOnDemandBorrowTime();
+
+    /**
+     * The total time callers spent asking for a connection before being refused, in milliseconds.
+     * Divide by {@link #getConnectionsRefusedCount} to get the average.
+     * @return totalRefusedBorrowTime
+     */
+    long getTotalRefusedBorrowTime();
+
+    /**
+     * The number of listener events dropped because the listener queue was full, since the
+     * pool started.
+     * @see ConnectionPoolDefinitionIF#getListenerQueueSize
+     * @return listenerEventDropCount
+     */
+    long getListenerEventDropCount();
+
+    /**
+     * The number of times the house keeper has finished checking the connections in
+     * the pool since it started.
+     * @return houseKeepingCount
+     * @see ConnectionPoolDefinitionIF#getHouseKeepingSleepTime
+     */
+    long getHouseKeepingCount();
+
+    /**
+     * The total time the house keeper has spent checking the connections, in milliseconds.
+     * Divide by {@link #getHouseKeepingCount} to get the average.
+     * @return totalHouseKeepingTime
+     */
+    long getTotalHouseKeepingTime();
 }
 
 /*
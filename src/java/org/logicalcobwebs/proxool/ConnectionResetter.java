@@ -11,6 +11,7 @@ import org.apache.commons.logging.Log;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -49,11 +50,25 @@ public class ConnectionResetter {
      */
     private Map defaultValues = new HashMap();
 
+    /**
+     * The mutators we reset, by name, so that we can look up the ones that
+     * were actually called
+     * @see #initialise
+     * @see #reset
+     */
+    private Map mutatorsByName = new HashMap();
+
     /**
      * We use this to guess if we are changing a property that will need resetting
      */
     protected static final String MUTATOR_PREFIX = "set";
 
+    /**
+     * Each connection remembers what autoCommit started off as, and we always set it
+     * back again, so we always know its state. That's why we treat this one separately.
+     */
+    protected static final String SET_AUTO_COMMIT_METHOD = "setAutoCommit";
+
     private String driverName;
 
     /**
@@ -196,6 +211,12 @@ public class ConnectionResetter {
                         defaultValues.remove(mutator);
                     }
 
+                    Iterator k = accessorMutatorMap.values().iterator();
+                    while (k.hasNext()) {
+                        Method mutator = (Method) k.next();
+                        mutatorsByName.put(mutator.getName(), mutator);
+                    }
+
                     initialised = true;
                 }
             }
@@ -203,13 +224,21 @@ public class ConnectionResetter {
     }
 
     /**
-     * Reset this connection to its default values. If anything goes wrong, it is logged
+     * Reset this connection to its default values. We don't ask the connection what its
+     * current values are: we only reset the properties that have been changed (to
+     * something other than their default) since it was served, so in the common case this
+     * doesn't need to talk to the database at all. If anything goes wrong, it is logged
      * as a warning or info but it silently continues.
      * @param connection to be reset
      * @param id used in log messages
+     * @param changedProperties the value last passed to each mutator (keyed by mutator name)
+     * since the connection was served, or null if none were called
+     * @param defaultAutoCommit what autoCommit was when the connection was made
+     * @param uncommittedWork whether a statement has been executed since the last commit or
+     * rollback. If it hasn't then there is nothing to roll back.
      * @return true if the reset was error free, or false if it encountered errors. (in which case it should probably not be reused)
      */
-    protected boolean reset(Connection connection, String id) {
+    protected boolean reset(Connection connection, String id, Map changedProperties, boolean defaultAutoCommit, boolean uncommittedWork) {
         boolean errorsEncountered = false;
 
         try {
@@ -219,13 +248,16 @@ public class ConnectionResetter {
             log.warn(id + " - Problem calling connection.clearWarnings()", e);
         }
 
-        // Let's see the state of autoCommit. It will help us give better advice in the log messages
-        boolean autoCommit = true;
-        try {
-            autoCommit = connection.getAutoCommit();
-        } catch (SQLException e) {
-            errorsEncountered = true;
-            log.warn(id + " - Problem calling connection.getAutoCommit()", e);
+        if (changedProperties == null) {
+            changedProperties = Collections.EMPTY_MAP;
+        }
+
+        // We always set autoCommit back to what it was when the connection was made, so
+        // the last value that was set is the current one.
+        boolean autoCommit = defaultAutoCommit;
+        Object autoCommitValue = changedProperties.get(SET_AUTO_COMMIT_METHOD);
+        if (autoCommitValue instanceof Boolean) {
+            autoCommit = ((Boolean) autoCommitValue).booleanValue();
         }
 
 /*
@@ -241,7 +273,7 @@ public class ConnectionResetter {
             with an implementation-defined subclass code".
 
 */
-        if (!autoCommit) {
+        if (!autoCommit && uncommittedWork) {
             try {
                 connection.rollback();
             } catch (SQLException e) {
@@ -255,22 +287,23 @@ public class ConnectionResetter {
         // or something). We want to know about transactions that are pending.
         // It doesn't seem like a very good idea to close a connection with
         // pending transactions.
-        Iterator i = accessorMutatorMap.keySet().iterator();
+        Iterator i = changedProperties.keySet().iterator();
         while (i.hasNext()) {
-            Method accessor = (Method) i.next();
-            Method mutator = (Method) accessorMutatorMap.get(accessor);
+            Method mutator = (Method) mutatorsByName.get(i.next());
+            if (mutator == null) {
+                // Either autoCommit (see below) or something we don't know how to reset
+                continue;
+            }
+            Object currentValue = changedProperties.get(mutator.getName());
             Object[] args = {defaultValues.get(mutator)};
+            if (currentValue == null ? args[0] == null : currentValue.equals(args[0])) {
+                // It was set back to the default. Nothing to do.
+                continue;
+            }
             try {
-                Object currentValue = accessor.invoke(connection, null);
-                if (currentValue == null && args[0] == null) {
-                    // Nothing to do then
-                } else if (currentValue.equals(args[0])) {
-                    // Nothing to do here either
-                } else {
-                    mutator.invoke(connection, args);
-                    if (log.isDebugEnabled()) {
-                        log.debug(id + " - Reset: " + mutator.getName() + "(" + args[0] + ") from " + currentValue);
-                    }
+                mutator.invoke(connection, args);
+                if (log.isDebugEnabled()) {
+                    log.debug(id + " - Reset: " + mutator.getName() + "(" + args[0] + ") from " + currentValue);
                 }
             } catch (Throwable t) {
                 errorsEncountered = true;
@@ -281,15 +314,15 @@ public class ConnectionResetter {
         }
 
         // Finally. reset autoCommit.
-        if (!autoCommit) {
+        if (autoCommit != defaultAutoCommit) {
             try {
                 // Setting autoCommit to true might well commit all pending
                 // transactions. But that's beyond our control.
-                connection.setAutoCommit(true);
-                log.debug(id + " - autoCommit reset back to true");
+                connection.setAutoCommit(defaultAutoCommit);
+                log.debug(id + " - autoCommit reset back to " + defaultAutoCommit);
             } catch (Throwable t) {
                 errorsEncountered = true;
-                log.warn(id + " - Problem calling connection.commit() or connection.setAutoCommit(true)", t);
+                log.warn(id + " - Problem calling connection.setAutoCommit(" + defaultAutoCommit + ")", t);
             }
         }
 
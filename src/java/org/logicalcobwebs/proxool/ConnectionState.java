@@ -0,0 +1,80 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+/**
+ * The parts of a {@link ProxyConnection} that change as it is served and returned, as they
+ * were at one moment. It never changes once it is built: the connection builds a new one
+ * every time its status changes and publishes it, so a {@link ConnectionPool#getConnectionInfos
+ * detailed snapshot} can read a consistent picture of every connection without locking anything.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+final class ConnectionState {
+
+    private final int status;
+
+    private final int mark;
+
+    private final String requester;
+
+    private final long timeLastStartActive;
+
+    private final long timeLastStopActive;
+
+    /**
+     * @param status see {@link ConnectionInfoIF#getStatus}
+     * @param mark see {@link ConnectionInfoIF#getMark}
+     * @param requester see {@link ConnectionInfoIF#getRequester}
+     * @param timeLastStartActive see {@link ConnectionInfoIF#getTimeLastStartActive}
+     * @param timeLastStopActive see {@link ConnectionInfoIF#getTimeLastStopActive}
+     */
+    ConnectionState(int status, int mark, String requester, long timeLastStartActive, long timeLastStopActive) {
+        this.status = status;
+        this.mark = mark;
+        this.requester = requester;
+        this.timeLastStartActive = timeLastStartActive;
+        this.timeLastStopActive = timeLastStopActive;
+    }
+
+    /**
+     * @see ConnectionInfoIF#getStatus
+     */
+    int getStatus() {
+        return status;
+    }
+
+    /**
+     * @see ConnectionInfoIF#getMark
+     */
+    int getMark() {
+        return mark;
+    }
+
+    /**
+     * @see ConnectionInfoIF#getRequester
+     */
+    String getRequester() {
+        return requester;
+    }
+
+    /**
+     * @see ConnectionInfoIF#getTimeLastStartActive
+     */
+    long getTimeLastStartActive() {
+        return timeLastStartActive;
+    }
+
+    /**
+     * @see ConnectionInfoIF#getTimeLastStopActive
+     */
+    long getTimeLastStopActive() {
+        return timeLastStopActive;
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+import java.util.LinkedList;
+
+/**
+ * A fair, bounded queue of callers that are waiting for a connection because
+ * the pool is at its {@link ConnectionPoolDefinitionIF#getMaximumConnectionCount maximum}
+ * and there are none available. Callers are served strictly in the order that they
+ * started waiting: when a connection is returned it is {@link #handOff handed}
+ * directly to the caller that has waited longest (without ever becoming available
+ * to anyone else).
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+ */
+class ConnectionWaitQueue {
+
+    /** The waiters, longest waiting first. Guarded by itself. */
+    private LinkedList waiters = new LinkedList();
+
+    /**
+     * The same as the size of {@link #waiters}. Only changed while holding that lock, but
+     * volatile so that {@link #hasWaiters} always sees a caller that has already joined.
+     */
+    private volatile int waitingCount;
+
+    /** Guarded by {@link #waiters} */
+    private long waitedCount;
+
+    /** Guarded by {@link #waiters} */
+    private long totalWaitTime;
+
+    /** Guarded by {@link #waiters} */
+    private long timeoutCount;
+
+    /**
+     * Join the back of the queue.
+     * @param maximumSize the most callers we allow to wait at once
+     * @return the place in the queue, or null if the queue is already full
+     */
+    protected Waiter join(int maximumSize) {
+        synchronized (waiters) {
+            if (waiters.size() >= maximumSize) {
+                return null;
+            }
+            Waiter waiter = new Waiter();
+            waiters.addLast(waiter);
+            waitingCount = waiters.size();
+            waitedCount++;
+            return waiter;
+        }
+    }
+
+    /**
+     * Wait until we are handed a connection, we are {@link #wakeLongestWaiter woken}
+     * so that we can try again, or the deadline passes.
+     * @param waiter the place in the queue we got from {@link #join}
+     * @param deadline the time (in milliseconds) that we give up
+     * @return the connection we have been handed, or null if we didn't get one
+     */
+    protected ProxyConnection await(Waiter waiter, long deadline) {
+        synchronized (waiter) {
+            if (waiter.connection == null && !waiter.woken) {
+                long timeout = deadline - System.currentTimeMillis();
+                if (timeout > 0) {
+                    try {
+                        waiter.wait(timeout);
+                    } catch (InterruptedException e) {
+                        // Treat it like a timeout. Our caller checks the deadline.
+                    }
+                }
+            }
+            waiter.woken = false;
+            ProxyConnection proxyConnection = waiter.connection;
+            waiter.connection = null;
+            return proxyConnection;
+        }
+    }
+
+    /**
+     * Go back to the front of the queue after we were {@link #handOff handed} a
+     * connection that we couldn't use (because it failed its test). We had already
+     * waited longest, and we look again straight away because there might now be
+     * room to build one.
+     * @param waiter the place in the queue we got from {@link #join}
+     */
+    protected void rejoin(Waiter waiter) {
+        synchronized (waiters) {
+            waiters.addFirst(waiter);
+            waitingCount = waiters.size();
+        }
+        synchronized (waiter) {
+            waiter.woken = true;
+        }
+    }
+
+    /**
+     * Leave the queue (whether or not we got a connection). It's possible
+     * that a connection was handed to us after we decided to give up, so
+     * you must deal with anything that is returned.
+     * @param waiter the place in the queue we got from {@link #join}
+     * @return a connection that was handed to us too late, or null
+     */
+    protected ProxyConnection leave(Waiter waiter) {
+        synchronized (waiters) {
+            waiters.remove(waiter);
+            waitingCount = waiters.size();
+            totalWaitTime += System.currentTimeMillis() - waiter.startTime;
+        }
+        synchronized (waiter) {
+            waiter.cancelled = true;
+            ProxyConnection proxyConnection = waiter.connection;
+            waiter.connection = null;
+            return proxyConnection;
+        }
+    }
+
+    /**
+     * Call this if a caller waited for the whole of the
+     * {@link ConnectionPoolDefinitionIF#getMaximumWaitTime maximum-wait-time}
+     * and didn't get a connection.
+     */
+    protected void registerTimeout() {
+        synchronized (waiters) {
+            timeoutCount++;
+        }
+    }
+
+    /**
+     * Give a connection to the caller that has been waiting longest. The
+     * connection should already be {@link ConnectionInfoIF#STATUS_ACTIVE active}.
+     * @param proxyConnection the connection to hand over
+     * @return true if somebody took it, false if nobody is waiting
+     */
+    protected boolean handOff(ProxyConnection proxyConnection) {
+        while (true) {
+            Waiter waiter = null;
+            synchronized (waiters) {
+                if (waiters.isEmpty()) {
+                    return false;
+                }
+                waiter = (Waiter) waiters.removeFirst();
+                waitingCount = waiters.size();
+            }
+            synchronized (waiter) {
+                if (!waiter.cancelled) {
+                    waiter.connection = proxyConnection;
+                    waiter.notify();
+                    return true;
+                }
+            }
+            // That one gave up just as we got to it. Try the next one.
+        }
+    }
+
+    /**
+     * Wake the caller that has been waiting longest without giving it a
+     * connection. Do this when there might be room to build a new connection
+     * (because one has been removed) so that it can try again.
+     */
+    protected void wakeLongestWaiter() {
+        Waiter waiter = null;
+        synchronized (waiters) {
+            if (waiters.isEmpty()) {
+                return;
+            }
+            waiter = (Waiter) waiters.getFirst();
+        }
+        synchronized (waiter) {
+            waiter.woken = true;
+            waiter.notify();
+        }
+    }
+
+    /**
+     * Wake all the waiters (for instance, because we are shutting down)
+     */
+    protected void wakeAll() {
+        Object[] all = null;
+        synchronized (waiters) {
+            all = waiters.toArray();
+        }
+        for (int i = 0; i < all.length; i++) {
+            Waiter waiter = (Waiter) all[i];
+            synchronized (waiter) {
+                waiter.woken = true;
+                waiter.notify();
+            }
+        }
+    }
+
+    /**
+     * Whether anyone is waiting. This is unsynchronized so it might already be out of date,
+     * but it always includes anyone who finished {@link #join joining} before we asked.
+     * @return true if there is at least one waiter
+     */
+    protected boolean hasWaiters() {
+        return waitingCount > 0;
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getWaitingCount
+     */
+    protected int getWaitingCount() {
+        synchronized (waiters) {
+            return waiters.size();
+        }
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getWaitedCount
+     */
+    protected long getWaitedCount() {
+        synchronized (waiters) {
+            return waitedCount;
+        }
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getTotalWaitTime
+     */
+    protected long getTotalWaitTime() {
+        synchronized (waiters) {
+            return totalWaitTime;
+        }
+    }
+
+    /**
+     * @see ConnectionPoolStatisticsIF#getWaitTimeoutCount
+     */
+    protected long getWaitTimeoutCount() {
+        synchronized (waiters) {
+            return timeoutCount;
+        }
+    }
+
+    /**
+     * A place in the queue. All fields are guarded by the waiter itself.
+     */
+    static class Waiter {
+
+        private long startTime = System.currentTimeMillis();
+
+        private ProxyConnection connection;
+
+        private boolean woken;
+
+        private boolean cancelled;
+
+    }
+
+}
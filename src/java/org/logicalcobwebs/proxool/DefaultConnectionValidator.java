@@ -5,17 +5,45 @@
  */
 package org.logicalcobwebs.proxool;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.Statement;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.logicalcobwebs.proxool.util.CopyOnWriteMap;
 
 /**
+ * Tests a connection by running the {@link ConnectionPoolDefinitionIF#getHouseKeepingTestSql
+ * house-keeping-test-sql} or, if {@link ConnectionPoolDefinitionIF#isTestWithIsValid
+ * test-with-is-valid} is set and the driver supports it, by calling Connection.isValid().
  * @author Bertrand Renuart
  */
 public class DefaultConnectionValidator implements ConnectionValidatorIF {
 
+    /** How long we let Connection.isValid() take (seconds) */
+    protected static final int IS_VALID_TIMEOUT = 5;
+
+    /** Connection.isValid(int), or null if this JRE doesn't have it (it's new in JDBC 4) */
+    private static final Method IS_VALID_METHOD;
+
+    static {
+        Method isValidMethod = null;
+        try {
+            isValidMethod = Connection.class.getMethod("isValid", new Class[] {Integer.TYPE});
+        } catch (NoSuchMethodException e) {
+            // Never mind. We'll just use the SQL.
+        }
+        IS_VALID_METHOD = isValidMethod;
+    }
+
+    private static final Object[] IS_VALID_ARGS = new Object[] {new Integer(IS_VALID_TIMEOUT)};
+
+    /** Connection classes whose drivers don't support isValid(). We don't ask them again. */
+    private static final CopyOnWriteMap IS_VALID_UNSUPPORTED = new CopyOnWriteMap();
+
     /**
      * 
      */
@@ -31,6 +59,13 @@ public class DefaultConnectionValidator implements ConnectionValidatorIF {
      * @see org.logicalcobwebs.proxool.ConnectionValidatorIF#validate(org.logicalcobwebs.proxool.ConnectionPoolDefinition, java.sql.Connection)
      */
     public boolean validate(ConnectionPoolDefinitionIF cpd, Connection connection) {
+        if (cpd.isTestWithIsValid()) {
+            Boolean valid = isValid(cpd, connection);
+            if (valid != null) {
+                return valid.booleanValue();
+            }
+        }
+
         // make sure a test SQL is defined
         //
         final String testSql = cpd.getHouseKeepingTestSql();
@@ -71,6 +106,98 @@ public class DefaultConnectionValidator implements ConnectionValidatorIF {
         }
     }
 
+    /**
+     * Like {@link #validate(ConnectionPoolDefinitionIF, Connection)} but the test SQL is run
+     * with a statement that is prepared once and kept by the connection, rather than
+     * creating a new statement every time.
+     * @param cpd the definition
+     * @param proxyConnection the connection to test
+     * @return true if it passed
+     */
+    protected boolean validate(ConnectionPoolDefinitionIF cpd, ProxyConnection proxyConnection) {
+        if (cpd.isTestWithIsValid()) {
+            Boolean valid = isValid(cpd, proxyConnection.getConnection());
+            if (valid != null) {
+                return valid.booleanValue();
+            }
+        }
+
+        final String testSql = cpd.getHouseKeepingTestSql();
+        if (testSql == null || (testSql.length() == 0)) {
+            Log log = getPoolLog(cpd.getAlias());
+            log.warn("Connection validation requested but house-keeping-test-sql not defined");
+            return false;
+        }
+
+        try {
+            PreparedStatement ps = proxyConnection.getValidationStatement(testSql);
+            if (ps.execute()) {
+                ps.getResultSet().close();
+            }
+            return true;
+        } catch (Throwable t) {
+            Log log = getPoolLog(cpd.getAlias());
+            if (log.isDebugEnabled()) {
+                log.debug("A connection failed the validation test with error: " + t);
+            }
+            // We don't know what state it's in now
+            proxyConnection.closeValidationStatement();
+            return false;
+        }
+    }
+
+    /**
+     * Ask the driver whether the connection is valid
+     * @param cpd the definition
+     * @param connection the connection to test
+     * @return whether it is valid, or null if the driver (or JRE) doesn't support isValid()
+     */
+    private Boolean isValid(ConnectionPoolDefinitionIF cpd, Connection connection) {
+        if (IS_VALID_METHOD == null || IS_VALID_UNSUPPORTED.get(connection.getClass()) != null) {
+            return null;
+        }
+        try {
+            Boolean valid = (Boolean) IS_VALID_METHOD.invoke(connection, IS_VALID_ARGS);
+            if (!valid.booleanValue()) {
+                Log log = getPoolLog(cpd.getAlias());
+                if (log.isDebugEnabled()) {
+                    log.debug("A connection failed the validation test because isValid() returned false");
+                }
+            }
+            return valid;
+        } catch (InvocationTargetException e) {
+            Throwable t = e.getTargetException();
+            if (isUnsupported(t)) {
+                getPoolLog(cpd.getAlias()).info(connection.getClass().getName()
+                        + " doesn't support isValid() so we'll use the house-keeping-test-sql instead (" + t + ")");
+                IS_VALID_UNSUPPORTED.put(connection.getClass(), Boolean.TRUE);
+                return null;
+            }
+            Log log = getPoolLog(cpd.getAlias());
+            if (log.isDebugEnabled()) {
+                log.debug("A connection failed the validation test with error: " + t);
+            }
+            return Boolean.FALSE;
+        } catch (IllegalAccessException e) {
+            IS_VALID_UNSUPPORTED.put(connection.getClass(), Boolean.TRUE);
+            return null;
+        }
+    }
+
+    /**
+     * Whether this is what a driver throws when it doesn't implement a method (rather
+     * than because the connection is broken)
+     * @param t what was thrown
+     * @return true if the method isn't supported
+     */
+    private static boolean isUnsupported(Throwable t) {
+        // A driver compiled before JDBC 4 won't have the method at all. SQLFeatureNotSupportedException
+        // is also new in JDBC 4 so we have to check it by name.
+        return t instanceof AbstractMethodError
+                || t instanceof UnsupportedOperationException
+                || t.getClass().getName().equals("java.sql.SQLFeatureNotSupportedException");
+    }
+
 
 	/**
 	 * 
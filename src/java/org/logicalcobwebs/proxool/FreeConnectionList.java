@@ -0,0 +1,159 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+/**
+ * The connections that are {@link ConnectionInfoIF#STATUS_AVAILABLE available}, kept
+ * separately from the full list of connections so that serving one doesn't mean
+ * looking through all of them. It's a doubly linked list threaded through the
+ * connections themselves, so adding, taking and removing are all constant time
+ * and don't create any garbage.
+ * <p>
+ * The pool keeps it in step with the status of each connection (see
+ * {@link ConnectionPool#changeStatus}). Taking a connection off the list doesn't
+ * change its status - you still have to {@link ProxyConnection#setStatus(int, int) make}
+ * it active, and that might fail if the house keeper got there first.
+ * </p>
+ * <p>
+ * When the house keeper takes an available connection offline to look at it, we
+ * {@link #park park} it where it is instead of taking it off the list, so that if it
+ * becomes available again it goes back to the same place and the borrow order isn't
+ * disturbed. Parked connections are skipped when we take one.
+ * </p>
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+class FreeConnectionList {
+
+    /** The connection that has been available longest. Guarded by this. */
+    private ProxyConnection head;
+
+    /** The connection that became available most recently. Guarded by this. */
+    private ProxyConnection tail;
+
+    /** How many connections are on the list and not parked. Guarded by this. */
+    private int size;
+
+    /**
+     * Add a connection to the end of the list (if it isn't already on it)
+     * @param proxyConnection the connection that just became available
+     */
+    protected synchronized void add(ProxyConnection proxyConnection) {
+        if (proxyConnection.inFreeList) {
+            return;
+        }
+        proxyConnection.inFreeList = true;
+        proxyConnection.freeListPrevious = tail;
+        proxyConnection.freeListNext = null;
+        if (tail == null) {
+            head = proxyConnection;
+        } else {
+            tail.freeListNext = proxyConnection;
+        }
+        tail = proxyConnection;
+        size++;
+    }
+
+    /**
+     * Leave a connection where it is on the list but skip it until it is
+     * {@link #unpark unparked}
+     * @param proxyConnection the connection that has been taken offline
+     */
+    protected synchronized void park(ProxyConnection proxyConnection) {
+        if (proxyConnection.inFreeList && !proxyConnection.freeListParked) {
+            proxyConnection.freeListParked = true;
+            size--;
+        }
+    }
+
+    /**
+     * Make a {@link #park parked} connection available again from where it was on the
+     * list. If it isn't on the list then it is added to the end.
+     * @param proxyConnection the connection that is available again
+     */
+    protected synchronized void unpark(ProxyConnection proxyConnection) {
+        if (proxyConnection.freeListParked) {
+            proxyConnection.freeListParked = false;
+            size++;
+        } else {
+            add(proxyConnection);
+        }
+    }
+
+    /**
+     * Take the connection that has been available longest off the list
+     * @return the connection, or null if the list is empty
+     */
+    protected synchronized ProxyConnection poll() {
+        ProxyConnection proxyConnection = head;
+        while (proxyConnection != null && proxyConnection.freeListParked) {
+            proxyConnection = proxyConnection.freeListNext;
+        }
+        if (proxyConnection != null) {
+            unlink(proxyConnection);
+        }
+        return proxyConnection;
+    }
+
+    /**
+     * Take the connection that became available most recently off the list
+     * @return the connection, or null if the list is empty
+     */
+    protected synchronized ProxyConnection pollLast() {
+        ProxyConnection proxyConnection = tail;
+        while (proxyConnection != null && proxyConnection.freeListParked) {
+            proxyConnection = proxyConnection.freeListPrevious;
+        }
+        if (proxyConnection != null) {
+            unlink(proxyConnection);
+        }
+        return proxyConnection;
+    }
+
+    /**
+     * Remove a connection from the list (if it is on it, parked or not)
+     * @param proxyConnection the connection that is no longer available
+     */
+    protected synchronized void remove(ProxyConnection proxyConnection) {
+        if (proxyConnection.inFreeList) {
+            unlink(proxyConnection);
+        }
+    }
+
+    /**
+     * How many connections are on the list (not counting parked ones)
+     * @return size
+     */
+    protected synchronized int size() {
+        return size;
+    }
+
+    private void unlink(ProxyConnection proxyConnection) {
+        ProxyConnection previous = proxyConnection.freeListPrevious;
+        ProxyConnection next = proxyConnection.freeListNext;
+        if (previous == null) {
+            head = next;
+        } else {
+            previous.freeListNext = next;
+        }
+        if (next == null) {
+            tail = previous;
+        } else {
+            next.freeListPrevious = previous;
+        }
+        proxyConnection.freeListPrevious = null;
+        proxyConnection.freeListNext = null;
+        proxyConnection.inFreeList = false;
+        if (proxyConnection.freeListParked) {
+            proxyConnection.freeListParked = false;
+        } else {
+            size--;
+        }
+    }
+
+}
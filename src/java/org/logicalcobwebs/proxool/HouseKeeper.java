@@ -8,8 +8,11 @@ package org.logicalcobwebs.proxool;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.sql.Connection;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Responisble for house keeping one pool
@@ -25,157 +28,369 @@ class HouseKeeper {
 
     private ConnectionPool connectionPool;
 
+    /** Sorts connections so that the one that has been idle the longest comes first */
+    private static final Comparator LONGEST_IDLE_FIRST = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            long idleSince1 = getIdleSince((ProxyConnectionIF) o1);
+            long idleSince2 = getIdleSince((ProxyConnectionIF) o2);
+            return idleSince1 < idleSince2 ? -1 : (idleSince1 == idleSince2 ? 0 : 1);
+        }
+    };
+
     private long timeLastSwept;
 
+    /**
+     * Whether one of the {@link HouseKeeperController}'s threads (or somebody calling
+     * {@link HouseKeeperController#sweepNow}) is sweeping us right now, so that another
+     * one doesn't start too. Guarded by the controller.
+     */
+    boolean sweeping;
+
     public HouseKeeper(ConnectionPool connectionPool) {
         this.connectionPool = connectionPool;
     }
 
-   protected void sweep() throws ProxoolException {
-       ConnectionPoolDefinitionIF definition = connectionPool.getDefinition();
-       Log log = connectionPool.getLog();
-       Statement testStatement = null;
-       try {
-
-           connectionPool.acquirePrimaryReadLock();
-
-           // Right, now we know we're the right thread then we can carry on house keeping
-           Connection connection = null;
-           ProxyConnectionIF proxyConnection = null;
-
-           int recentlyStartedActiveConnectionCountTemp = 0;
-
-           // sanity check
-           int[] verifiedConnectionCountByState = new int[4];
-
-           ProxyConnectionIF[] proxyConnections = connectionPool.getProxyConnections();
-           for (int i = 0; i < proxyConnections.length; i++) {
-               proxyConnection = proxyConnections[i];
-               connection = proxyConnection.getConnection();
-
-               if (!connectionPool.isConnectionPoolUp()) {
-                   break;
-               }
-
-               // First lets check whether the connection still works. We should only validate
-               // connections that are not is use!  SetOffline only succeeds if the connection
-               // is available.
-               if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_OFFLINE)) {
-                   try {
-                       testStatement = connection.createStatement();
-
-                       // Some DBs return an object even if DB is shut down
-                       if (proxyConnection.isReallyClosed()) {
-                           proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL);
-                           connectionPool.removeProxyConnection(proxyConnection, ConnectionListenerIF.HOUSE_KEEPER_TEST_FAIL, "it appears to be closed", ConnectionPool.FORCE_EXPIRY, true);
-                       }
-
-                       String sql = definition.getHouseKeepingTestSql();
-                       if (sql != null && sql.length() > 0) {
-                           // A Test Statement has been provided. Execute it!
-                           boolean testResult = false;
-                           try {
-                               testResult = testStatement.execute(sql);
-                           } finally {
-                               if (log.isDebugEnabled() && definition.isVerbose()) {
-                                   log.debug(connectionPool.displayStatistics() + " - Testing connection " + proxyConnection.getId() + (testResult ? ": True" : ": False"));
-                               }
-                           }
-                       }
-
-                       proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_AVAILABLE);
-                   } catch (Throwable e) {
-                       // There is a problem with this connection.  Let's remove it!
-                       proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL);
-                       connectionPool.removeProxyConnection(proxyConnection, ConnectionListenerIF.HOUSE_KEEPER_TEST_FAIL, "it has problems: " + e, ConnectionPool.REQUEST_EXPIRY, true);
-                   } finally {
-                       try {
-                           testStatement.close();
-                       } catch (Throwable t) {
-                           // Never mind.
-                       }
-                   }
-               } // END if (poolableConnection.setOffline())
-               // Now to check whether the connection is due for expiry
-               if (proxyConnection.getAge() > definition.getMaximumConnectionLifetime()) {
-                   final String reason = "age is " + proxyConnection.getAge() + "ms";
-                   // Check whether we can make it offline
-                   if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_OFFLINE)) {
-                       if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL)) {
-                           // It is.  Expire it now .
-                           connectionPool.expireProxyConnection(proxyConnection, ConnectionListenerIF.MAXIMUM_CONNECTION_LIFETIME_EXCEEDED, reason, ConnectionPool.REQUEST_EXPIRY);
-                       }
-                   } else {
-                       // Oh no, it's in use.  Never mind, we'll mark it for expiry
-                       // next time it is available.  This will happen in the
-                       // putConnection() method.
-                       proxyConnection.markForExpiry(reason);
-                       if (log.isDebugEnabled()) {
-                           log.debug(connectionPool.displayStatistics() + " - #" + FormatHelper.formatMediumNumber(proxyConnection.getId())
-                                   + " marked for expiry.");
-                       }
-                   } // END if (poolableConnection.setOffline())
-               } // END if (poolableConnection.getAge() > maximumConnectionLifetime)
-
-               // Now let's see if this connection has been active for a
-               // suspiciously long time.
-               if (proxyConnection.isActive()) {
-
-                   long activeTime = System.currentTimeMillis() - proxyConnection.getTimeLastStartActive();
-
-                   if (activeTime < definition.getRecentlyStartedThreshold()) {
-
-                       // This connection hasn't been active for all that long
-                       // after all. And as long as we have at least one
-                       // connection that is "actively active" then we don't
-                       // consider the pool to be down.
-                       recentlyStartedActiveConnectionCountTemp++;
-                   }
-
-                   if (activeTime > definition.getMaximumActiveTime()) {
-
-                       // This connection has been active for way too long. We're
-                       // going to kill it :)
-                       connectionPool.removeProxyConnection(proxyConnection, ConnectionListenerIF.MAXIMUM_ACTIVE_TIME_EXPIRED, 
-                               "it has been active for too long", ConnectionPool.FORCE_EXPIRY, true);
-                       String lastSqlCallMsg;
-                       if (proxyConnection.getLastSqlCall() != null) {
-                           lastSqlCallMsg = ", and the last SQL it performed is '" + proxyConnection.getLastSqlCall() + "'.";
-                       } else if (!proxyConnection.getDefinition().isTrace()) {
-                           lastSqlCallMsg = ", but the last SQL it performed is unknown because the trace property is not enabled.";
-                       } else {
-                           lastSqlCallMsg = ", but the last SQL it performed is unknown.";
-                       }
-                       log.warn("#" + FormatHelper.formatMediumNumber(proxyConnection.getId()) + " was active for " + activeTime
-                               + " milliseconds and has been removed automaticaly. The Thread responsible was named '"
-                               + proxyConnection.getRequester() + "'" + lastSqlCallMsg);
-
-                   }
-
-               }
-
-               // What have we got?
-               verifiedConnectionCountByState[proxyConnection.getStatus()]++;
-
-           }
-
-           calculateUpState(recentlyStartedActiveConnectionCountTemp);
-       } catch (Throwable e) {
-           // We don't want the housekeeping thread to fall over!
-           log.error("Housekeeping log.error( :", e);
-       } finally {
-           connectionPool.releasePrimaryReadLock();
-           timeLastSwept = System.currentTimeMillis();
-           if (definition.isVerbose()) {
-               if (log.isDebugEnabled()) {
-                   log.debug(connectionPool.displayStatistics() + " - House keeping triggerSweep done");
-               }
-           }
-       }
-
-       PrototyperController.triggerSweep(definition.getAlias());
-
-   }
+    /**
+     * Check the connections in the pool. First we close any that have been idle for
+     * too long (see {@link #evictIdleConnections}). Then we test the available ones (or up to
+     * {@link ConnectionPoolDefinitionIF#getHouseKeepingBatchSize house-keeping-batch-size} of
+     * them, starting with the ones that have been idle the longest), several at once if the
+     * {@link HouseKeeperController} has threads to spare. Then we check whether any connection
+     * has lived, or been active, for too long. We only hold the primary read lock while we deal
+     * with each connection so that shutting the pool down doesn't have to wait for the whole sweep.
+     * @throws ProxoolException if there was a problem
+     */
+    protected void sweep() throws ProxoolException {
+        ConnectionPoolDefinitionIF definition = connectionPool.getDefinition();
+        Log log = connectionPool.getLog();
+        long startTime = System.currentTimeMillis();
+        try {
+
+            ProxyConnectionIF[] proxyConnections = connectionPool.getProxyConnections();
+
+            evictIdleConnections(proxyConnections);
+
+            HouseKeeperController.test(this, getConnectionsToTest(proxyConnections, definition.getHouseKeepingBatchSize()));
+
+            int recentlyStartedActiveConnectionCountTemp = 0;
+            for (int i = 0; i < proxyConnections.length && connectionPool.isConnectionPoolUp(); i++) {
+                if (checkConnection(proxyConnections[i])) {
+                    recentlyStartedActiveConnectionCountTemp++;
+                }
+            }
+
+            calculateUpState(recentlyStartedActiveConnectionCountTemp);
+        } catch (Throwable e) {
+            // We don't want the housekeeping thread to fall over!
+            log.error("Housekeeping log.error( :", e);
+        } finally {
+            timeLastSwept = System.currentTimeMillis();
+            connectionPool.houseKeepingSwept(timeLastSwept - startTime);
+            if (definition.isVerbose()) {
+                if (log.isDebugEnabled()) {
+                    log.debug(connectionPool.displayStatistics() + " - House keeping triggerSweep done");
+                }
+            }
+        }
+
+        PrototyperController.triggerSweep(definition.getAlias());
+
+    }
+
+    /**
+     * Choose which connections to test: the available ones, but no more than the batch size.
+     * If there are more than that then we choose the ones that have been idle the longest
+     * because they are the ones most likely to have been dropped by the database (or by
+     * a firewall). The ones in use recently have more or less been tested already.
+     * @param proxyConnections all the connections
+     * @param batchSize the most to choose (zero means no limit)
+     * @return the connections to test (never null)
+     */
+    private static ProxyConnectionIF[] getConnectionsToTest(ProxyConnectionIF[] proxyConnections, int batchSize) {
+        List available = new ArrayList(proxyConnections.length);
+        for (int i = 0; i < proxyConnections.length; i++) {
+            if (proxyConnections[i].isAvailable()) {
+                available.add(proxyConnections[i]);
+            }
+        }
+        if (batchSize > 0 && available.size() > batchSize) {
+            Collections.sort(available, LONGEST_IDLE_FIRST);
+            available = available.subList(0, batchSize);
+        }
+        return (ProxyConnectionIF[]) available.toArray(new ProxyConnectionIF[available.size()]);
+    }
+
+    /**
+     * Close available connections that have been idle for longer than the
+     * {@link ConnectionPoolDefinitionIF#getMaximumIdleTime maximum-idle-time}, longest idle
+     * first. We stop once we get down to the
+     * {@link ConnectionPoolDefinitionIF#getMinimumConnectionCount minimum-connection-count},
+     * or to the number of available connections we want to keep warm (the larger of
+     * {@link ConnectionPoolDefinitionIF#getMinimumIdle minimum-idle} and
+     * {@link ConnectionPoolDefinitionIF#getPrototypeCount prototype-count}). Otherwise the
+     * prototyper would just build them again.
+     * @param proxyConnections all the connections
+     * @throws InterruptedException if we couldn't acquire the primary read lock
+     */
+    private void evictIdleConnections(ProxyConnectionIF[] proxyConnections) throws InterruptedException {
+        ConnectionPoolDefinitionIF definition = connectionPool.getDefinition();
+        long maximumIdleTime = definition.getMaximumIdleTime();
+        if (maximumIdleTime <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List idle = new ArrayList();
+        for (int i = 0; i < proxyConnections.length; i++) {
+            if (proxyConnections[i].isAvailable() && now - getIdleSince(proxyConnections[i]) > maximumIdleTime) {
+                idle.add(proxyConnections[i]);
+            }
+        }
+        Collections.sort(idle, LONGEST_IDLE_FIRST);
+
+        int keepAvailable = Math.max(definition.getMinimumIdle(), definition.getPrototypeCount());
+        for (int i = 0; i < idle.size(); i++) {
+            ProxyConnectionIF proxyConnection = (ProxyConnectionIF) idle.get(i);
+            connectionPool.acquirePrimaryReadLock();
+            try {
+                if (!connectionPool.isConnectionPoolUp()
+                        || connectionPool.getConnectionCount() <= definition.getMinimumConnectionCount()
+                        || connectionPool.getAvailableConnectionCount() <= keepAvailable) {
+                    break;
+                }
+                // Take it offline first so that nobody can be given it while we look
+                if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_OFFLINE)) {
+                    long idleTime = System.currentTimeMillis() - getIdleSince(proxyConnection);
+                    if (idleTime > maximumIdleTime) {
+                        if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL)) {
+                            connectionPool.expireProxyConnection(proxyConnection, ConnectionListenerIF.MAXIMUM_IDLE_TIME_EXCEEDED,
+                                    "it has been idle for " + idleTime + "ms", ConnectionPool.REQUEST_EXPIRY);
+                        }
+                    } else {
+                        // Somebody used it since we looked
+                        proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_AVAILABLE);
+                    }
+                }
+            } finally {
+                connectionPool.releasePrimaryReadLock();
+            }
+        }
+    }
+
+    /**
+     * When a connection was last used (or when it was built if it hasn't been used yet)
+     * @param proxyConnection the connection
+     * @return the time it became idle
+     */
+    private static long getIdleSince(ProxyConnectionIF proxyConnection) {
+        return Math.max(proxyConnection.getBirthTime(), proxyConnection.getTimeLastStopActive());
+    }
+
+    /**
+     * Test a connection (as long as it is still available) and remove it if there's
+     * something wrong with it. Called by the {@link HouseKeeperController}, maybe from
+     * another thread.
+     * @param proxyConnection the connection to test
+     */
+    protected void testConnection(ProxyConnectionIF proxyConnection) {
+        try {
+            connectionPool.acquirePrimaryReadLock();
+        } catch (InterruptedException e) {
+            LOG.error("Couldn't acquire primary read lock", e);
+            return;
+        }
+        try {
+            if (!connectionPool.isConnectionPoolUp()) {
+                return;
+            }
+            ConnectionPoolDefinitionIF definition = connectionPool.getDefinition();
+            Log log = connectionPool.getLog();
+
+            if (connectionPool.isRecentlySuccessful(proxyConnection)) {
+                // It was used successfully not long ago. No need to test it.
+                return;
+            }
+
+            String sql = definition.getHouseKeepingTestSql();
+            boolean useValidator = (sql != null && sql.length() > 0) || definition.isTestWithIsValid();
+
+            // We should only validate connections that are not is use!  SetOffline only
+            // succeeds if the connection is available.
+            if (!proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_OFFLINE)) {
+                return;
+            }
+
+            if (useValidator) {
+                // Let the pool's validator do it (it keeps its test statement with the connection)
+                boolean testResult = false;
+                try {
+                    testResult = connectionPool.validateConnection(proxyConnection);
+                } finally {
+                    if (log.isDebugEnabled() && definition.isVerbose()) {
+                        log.debug(connectionPool.displayStatistics() + " - Testing connection " + proxyConnection.getId() + (testResult ? ": True" : ": False"));
+                    }
+                }
+                if (testResult) {
+                    proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_AVAILABLE);
+                } else {
+                    // There is a problem with this connection.  Let's remove it!
+                    proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL);
+                    connectionPool.removeProxyConnection(proxyConnection, ConnectionListenerIF.HOUSE_KEEPER_TEST_FAIL, "it failed the test", ConnectionPool.REQUEST_EXPIRY, true);
+                }
+            } else {
+                // There's no test SQL so the best we can do is check that it isn't closed
+                Statement testStatement = null;
+                try {
+                    testStatement = proxyConnection.getConnection().createStatement();
+
+                    // Some DBs return an object even if DB is shut down
+                    if (proxyConnection.isReallyClosed()) {
+                        proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL);
+                        connectionPool.removeProxyConnection(proxyConnection, ConnectionListenerIF.HOUSE_KEEPER_TEST_FAIL, "it appears to be closed", ConnectionPool.FORCE_EXPIRY, true);
+                    }
+
+                    proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_AVAILABLE);
+                } catch (Throwable e) {
+                    // There is a problem with this connection.  Let's remove it!
+                    proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL);
+                    connectionPool.removeProxyConnection(proxyConnection, ConnectionListenerIF.HOUSE_KEEPER_TEST_FAIL, "it has problems: " + e, ConnectionPool.REQUEST_EXPIRY, true);
+                } finally {
+                    try {
+                        if (testStatement != null) {
+                            testStatement.close();
+                        }
+                    } catch (Throwable t) {
+                        // Never mind.
+                    }
+                }
+            }
+        } finally {
+            connectionPool.releasePrimaryReadLock();
+        }
+    }
+
+    /**
+     * Expire a connection if it has lived too long and remove it if it has been
+     * active for too long.
+     * @param proxyConnection the connection to check
+     * @return true if it is active but only became so recently
+     * @throws InterruptedException if we couldn't acquire the primary read lock
+     */
+    private boolean checkConnection(ProxyConnectionIF proxyConnection) throws InterruptedException {
+        // Make before break: build the replacement while the old one is still available,
+        // and without the primary read lock so that a shutdown doesn't wait for a login
+        if (isDueForExpiry(proxyConnection) && proxyConnection.isAvailable() && connectionPool.isConnectionPoolUp()) {
+            buildReplacement(proxyConnection);
+        }
+
+        connectionPool.acquirePrimaryReadLock();
+        try {
+            if (!connectionPool.isConnectionPoolUp()) {
+                return false;
+            }
+            ConnectionPoolDefinitionIF definition = connectionPool.getDefinition();
+            Log log = connectionPool.getLog();
+            boolean recentlyStartedActive = false;
+
+            // Now to check whether the connection is due for expiry
+            if (isDueForExpiry(proxyConnection)) {
+                final String reason = "age is " + proxyConnection.getAge() + "ms";
+                // Check whether we can make it offline
+                if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_AVAILABLE, ProxyConnectionIF.STATUS_OFFLINE)) {
+                    if (proxyConnection.setStatus(ProxyConnectionIF.STATUS_OFFLINE, ProxyConnectionIF.STATUS_NULL)) {
+                        // It is.  Expire it now .
+                        connectionPool.expireProxyConnection(proxyConnection, ConnectionListenerIF.MAXIMUM_CONNECTION_LIFETIME_EXCEEDED, reason, ConnectionPool.REQUEST_EXPIRY);
+                    }
+                } else {
+                    // Oh no, it's in use.  Never mind, we'll mark it for expiry
+                    // next time it is available.  This will happen in the
+                    // putConnection() method.
+                    proxyConnection.markForExpiry(reason);
+                    if (log.isDebugEnabled()) {
+                        log.debug(connectionPool.displayStatistics() + " - #" + FormatHelper.formatMediumNumber(proxyConnection.getId())
+                                + " marked for expiry.");
+                    }
+                } // END if (poolableConnection.setOffline())
+            } // END if (poolableConnection.getAge() > maximumConnectionLifetime)
+
+            // Now let's see if this connection has been active for a
+            // suspiciously long time.
+            if (proxyConnection.isActive()) {
+
+                long activeTime = System.currentTimeMillis() - proxyConnection.getTimeLastStartActive();
+
+                if (activeTime < definition.getRecentlyStartedThreshold()) {
+
+                    // This connection hasn't been active for all that long
+                    // after all. And as long as we have at least one
+                    // connection that is "actively active" then we don't
+                    // consider the pool to be down.
+                    recentlyStartedActive = true;
+                }
+
+                if (activeTime > definition.getMaximumActiveTime()) {
+
+                    // This connection has been active for way too long. We're
+                    // going to kill it :)
+                    connectionPool.removeProxyConnection(proxyConnection, ConnectionListenerIF.MAXIMUM_ACTIVE_TIME_EXPIRED,
+                            "it has been active for too long", ConnectionPool.FORCE_EXPIRY, true);
+                    String lastSqlCallMsg;
+                    if (proxyConnection.getLastSqlCall() != null) {
+                        lastSqlCallMsg = ", and the last SQL it performed is '" + proxyConnection.getLastSqlCall() + "'.";
+                    } else if (!proxyConnection.getDefinition().isTrace()) {
+                        lastSqlCallMsg = ", but the last SQL it performed is unknown because the trace property is not enabled.";
+                    } else {
+                        lastSqlCallMsg = ", but the last SQL it performed is unknown.";
+                    }
+                    log.warn("#" + FormatHelper.formatMediumNumber(proxyConnection.getId()) + " was active for " + activeTime
+                            + " milliseconds and has been removed automaticaly. The Thread responsible was named '"
+                            + proxyConnection.getRequester() + "'" + lastSqlCallMsg);
+
+                }
+
+            }
+            return recentlyStartedActive;
+        } finally {
+            connectionPool.releasePrimaryReadLock();
+        }
+    }
+
+    /**
+     * Whether a connection has lived longer than the
+     * {@link ConnectionPoolDefinitionIF#getMaximumConnectionLifetime maximum-connection-lifetime}
+     * (less its jitter)
+     * @param proxyConnection the connection
+     * @return true if it should be expired
+     */
+    private boolean isDueForExpiry(ProxyConnectionIF proxyConnection) {
+        return proxyConnection.getAge() > connectionPool.getDefinition().getMaximumConnectionLifetime() - proxyConnection.getLifetimeJitter();
+    }
+
+    /**
+     * Build a connection to take the place of one that is about to expire so that there
+     * aren't fewer available in the meantime. We don't bother if we're already at the
+     * {@link ConnectionPoolDefinitionIF#getMaximumConnectionCount maximum-connection-count}
+     * (the old one will have to go first) and if the build fails then we expire the old one
+     * anyway and leave it to the prototyper.
+     * @param proxyConnection the connection that is about to expire
+     */
+    private void buildReplacement(ProxyConnectionIF proxyConnection) {
+        Prototyper prototyper = connectionPool.getPrototyper();
+        if (prototyper.getConnectionCount() >= connectionPool.getDefinition().getMaximumConnectionCount()) {
+            return;
+        }
+        try {
+            prototyper.buildConnection(ProxyConnectionIF.STATUS_AVAILABLE, "to replace #"
+                    + FormatHelper.formatMediumNumber(proxyConnection.getId()));
+        } catch (Throwable e) {
+            // Perhaps somebody else built the last one we were allowed.
+            Log log = connectionPool.getLog();
+            if (log.isDebugEnabled()) {
+                log.debug(connectionPool.displayStatistics() + " - Couldn't build a replacement for #"
+                        + FormatHelper.formatMediumNumber(proxyConnection.getId()) + ": " + e.getMessage());
+            }
+        }
+    }
 
     /**
      * Get the time since the last sweep was completed
@@ -10,12 +10,15 @@ import org.apache.commons.logging.LogFactory;
 import org.logicalcobwebs.proxool.util.FastArrayList;
 
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Iterator;
 
 /**
- * Schedules when to run the house keeper
+ * Schedules when to run the house keeper. It keeps a few threads (never more than
+ * {@link #MAXIMUM_THREAD_COUNT}, however many pools there are) that sweep pools whose
+ * sweep is due and help each other test connections.
  * @version $Revision: 1.6 $, $Date: 2006/01/18 14:40:01 $
  * @author bill
  * @author $Author: billhorsman $ (current maintainer)
@@ -25,6 +28,22 @@ public class HouseKeeperController {
 
     private static final Log LOG = LogFactory.getLog(HouseKeeperController.class);
 
+    /**
+     * The most threads we will use for house keeping at once, however many pools there are.
+     * Different pools can be swept at the same time and the connections of one pool can
+     * be tested at the same time.
+     */
+    protected static final int MAXIMUM_THREAD_COUNT = 5;
+
+    /**
+     * How long a thread waits for something to do before it stops (milliseconds). The
+     * first thread keeps going because it needs to notice when a sweep is due.
+     */
+    protected static final long IDLE_TIMEOUT = 60000;
+
+    /** How long a thread waits before it looks for a sweep that is due again (milliseconds) */
+    private static final long SLEEP_TIME = 5000;
+
     private static Map houseKeepers = new HashMap();
 
     private static List houseKeeperList = new FastArrayList();
@@ -33,10 +52,21 @@ public class HouseKeeperController {
 
     private static List houseKeeperThreads = new FastArrayList();
 
+    /** The {@link TestBatch batches} that have connections waiting to be tested. Guarded by {@link #LOCK}. */
+    private static List testBatches = new LinkedList();
+
+    /** How many of the {@link #houseKeeperThreads} are waiting for something to do. Guarded by {@link #LOCK}. */
+    private static int idleThreadCount;
+
+    private static int nextThreadNumber = 1;
+
     private static final Object LOCK = new Integer(1);
 
     private static HouseKeeper getHouseKeeper(String alias) throws ProxoolException {
-        final HouseKeeper houseKeeper = (HouseKeeper) houseKeepers.get(alias);
+        final HouseKeeper houseKeeper;
+        synchronized (LOCK) {
+            houseKeeper = (HouseKeeper) houseKeepers.get(alias);
+        }
         if (houseKeeper == null) {
             throw new ProxoolException("Tried to use an unregistered house keeper '" + alias + "'");
         }
@@ -44,7 +74,8 @@ public class HouseKeeperController {
     }
 
     /**
-     * Get the next house keeper that needs to be run
+     * Get the next house keeper that needs to be run (and isn't already being run by
+     * another thread). You must call {@link #sweepDone} when you've finished with it.
      * @return the house keeper to run, or null if there is nothing to do.
      */
     protected static HouseKeeper getHouseKeeperToRun() {
@@ -54,7 +85,8 @@ public class HouseKeeperController {
                 HouseKeeper hk = null;
                 try {
                     hk = (HouseKeeper) houseKeeperList.get(houseKeeperIndex);
-                    if (hk.isSweepDue()) {
+                    if (!hk.sweeping && hk.isSweepDue()) {
+                        hk.sweeping = true;
                         houseKeeper = hk;
                         break;
                     }
@@ -67,11 +99,178 @@ public class HouseKeeperController {
         return houseKeeper;
     }
 
-    protected static void sweepNow(String alias) {
+    /**
+     * Let other threads run this house keeper again
+     * @param houseKeeper the one returned by {@link #getHouseKeeperToRun} (or claimed by {@link #sweepNow})
+     */
+    protected static void sweepDone(HouseKeeper houseKeeper) {
+        synchronized (LOCK) {
+            houseKeeper.sweeping = false;
+        }
+    }
+
+    /**
+     * Sweep a pool in this thread, without waiting for it to be due. If somebody is
+     * already sweeping it then we leave them to it.
+     * @param alias identifies the pool
+     * @return true if we swept it, false if it was already being swept (or we couldn't)
+     */
+    protected static boolean sweepNow(String alias) {
+        HouseKeeper houseKeeper;
         try {
-            getHouseKeeper(alias).sweep();
+            houseKeeper = getHouseKeeper(alias);
         } catch (ProxoolException e) {
             LOG.error("Couldn't run house keeper for " + alias, e);
+            return false;
+        }
+        synchronized (LOCK) {
+            if (houseKeeper.sweeping) {
+                return false;
+            }
+            houseKeeper.sweeping = true;
+        }
+        try {
+            houseKeeper.sweep();
+            return true;
+        } catch (ProxoolException e) {
+            LOG.error("Couldn't run house keeper for " + alias, e);
+            return false;
+        } finally {
+            sweepDone(houseKeeper);
+        }
+    }
+
+    /**
+     * Test some connections and wait until they have all been tested. We test them
+     * in this thread but idle house keeper threads help out. If there aren't enough of
+     * those then we start some more (as long as there are fewer than
+     * {@link #MAXIMUM_THREAD_COUNT}).
+     * @param houseKeeper who wants them tested
+     * @param proxyConnections the connections to {@link HouseKeeper#testConnection test}
+     */
+    protected static void test(HouseKeeper houseKeeper, ProxyConnectionIF[] proxyConnections) {
+        if (proxyConnections.length == 0) {
+            return;
+        }
+        TestBatch batch = new TestBatch(houseKeeper, proxyConnections);
+        if (proxyConnections.length > 1) {
+            synchronized (LOCK) {
+                testBatches.add(batch);
+                // We'll test one of them ourselves. Don't start any threads if we've been shutdown.
+                int threadsWanted = proxyConnections.length - 1 - idleThreadCount;
+                while (threadsWanted > 0 && houseKeeperThreads.size() > 0 && houseKeeperThreads.size() < MAXIMUM_THREAD_COUNT) {
+                    startThread();
+                    threadsWanted--;
+                }
+                LOCK.notifyAll();
+            }
+        }
+        while (testNext(batch)) {
+            // Keep going
+        }
+        synchronized (LOCK) {
+            while (batch.remaining > 0) {
+                try {
+                    LOCK.wait();
+                } catch (InterruptedException e) {
+                    LOG.debug("Expected interruption of sleep");
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by a {@link HouseKeeperThread} to test a connection that somebody else's
+     * sweep is waiting for.
+     * @return true if there was one to test
+     */
+    protected static boolean helpTest() {
+        TestBatch batch;
+        synchronized (LOCK) {
+            if (testBatches.isEmpty()) {
+                return false;
+            }
+            batch = (TestBatch) testBatches.get(0);
+        }
+        testNext(batch);
+        return true;
+    }
+
+    /**
+     * Test the next connection in a batch
+     * @param batch the batch
+     * @return true if there was one left to test
+     */
+    private static boolean testNext(TestBatch batch) {
+        ProxyConnectionIF proxyConnection;
+        synchronized (LOCK) {
+            if (batch.next == batch.proxyConnections.length) {
+                return false;
+            }
+            proxyConnection = batch.proxyConnections[batch.next++];
+            if (batch.next == batch.proxyConnections.length) {
+                // Nobody else needs to help with this one
+                testBatches.remove(batch);
+            }
+        }
+        try {
+            batch.houseKeeper.testConnection(proxyConnection);
+        } catch (Throwable t) {
+            LOG.error("Couldn't test connection #" + proxyConnection.getId(), t);
+        } finally {
+            synchronized (LOCK) {
+                batch.remaining--;
+                if (batch.remaining == 0) {
+                    LOCK.notifyAll();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called by a {@link HouseKeeperThread} when it has nothing to do. Waits until
+     * there are connections to test or it is time to look for a sweep that is due.
+     * @param houseKeeperThread the thread that is waiting
+     * @return false if the thread should stop (because it has been cancelled or has had
+     * nothing to do for {@link #IDLE_TIMEOUT})
+     */
+    protected static boolean waitForWork(HouseKeeperThread houseKeeperThread) {
+        synchronized (LOCK) {
+            if (testBatches.isEmpty() && !houseKeeperThread.isCancelled()) {
+                idleThreadCount++;
+                try {
+                    LOCK.wait(SLEEP_TIME);
+                } catch (InterruptedException e) {
+                    LOG.debug("Expected interruption of sleep");
+                } finally {
+                    idleThreadCount--;
+                }
+            }
+            if (houseKeeperThread.isCancelled()) {
+                return false;
+            }
+            if (testBatches.isEmpty() && houseKeeperThreads.indexOf(houseKeeperThread) > 0
+                    && System.currentTimeMillis() - houseKeeperThread.getTimeLastBusy() > IDLE_TIMEOUT) {
+                houseKeeperThreads.remove(houseKeeperThread);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Stopping idle " + houseKeeperThread.getName() + " (" + houseKeeperThreads.size() + " running)");
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Start another thread. Call while holding {@link #LOCK}.
+     */
+    private static void startThread() {
+        HouseKeeperThread hkt = new HouseKeeperThread("HouseKeeper #" + nextThreadNumber++);
+        houseKeeperThreads.add(hkt);
+        hkt.start();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Started " + hkt.getName() + " (" + houseKeeperThreads.size() + " running)");
         }
     }
 
@@ -88,10 +287,7 @@ public class HouseKeeperController {
             houseKeeperList.add(houseKeeper);
 
             if (houseKeeperThreads.size() == 0) {
-                HouseKeeperThread hkt = new HouseKeeperThread("HouseKeeper");
-                LOG.debug("Starting a house keeper thread");
-                hkt.start();
-                houseKeeperThreads.add(hkt);
+                startThread();
             }
         }
     }
@@ -108,6 +304,7 @@ public class HouseKeeperController {
                 hkt.cancel();
             }
             houseKeeperThreads.clear();
+            LOCK.notifyAll();
         }
     }
 
@@ -120,8 +317,32 @@ public class HouseKeeperController {
      */
     protected static void cancel(String alias) throws ProxoolException {
         HouseKeeper hk = getHouseKeeper(alias);
-        houseKeepers.remove(alias);
-        houseKeeperList.remove(hk);
+        synchronized (LOCK) {
+            houseKeepers.remove(alias);
+            houseKeeperList.remove(hk);
+        }
+    }
+
+    /**
+     * The connections that one sweep wants testing
+     */
+    private static class TestBatch {
+
+        private HouseKeeper houseKeeper;
+
+        private ProxyConnectionIF[] proxyConnections;
+
+        /** The index of the next one to test. Guarded by {@link #LOCK}. */
+        private int next;
+
+        /** How many haven't finished being tested. Guarded by {@link #LOCK}. */
+        private int remaining;
+
+        TestBatch(HouseKeeper houseKeeper, ProxyConnectionIF[] proxyConnections) {
+            this.houseKeeper = houseKeeper;
+            this.proxyConnections = proxyConnections;
+            this.remaining = proxyConnections.length;
+        }
     }
 
 }
@@ -20,7 +20,10 @@ public class HouseKeeperThread extends Thread {
 
     private static final Log LOG = LogFactory.getLog(HouseKeeperThread.class);
 
-    private boolean stop;
+    private volatile boolean stop;
+
+    /** When we last did something useful */
+    private volatile long timeLastBusy = System.currentTimeMillis();
 
     public HouseKeeperThread(String name) {
         setDaemon(true);
@@ -30,8 +33,16 @@ public class HouseKeeperThread extends Thread {
     public void run() {
 
         while (!stop) {
-            HouseKeeper hk = HouseKeeperController.getHouseKeeperToRun();
-            while (hk != null && !stop) {
+            // Somebody's sweep is waiting for these so do them first
+            while (!stop && HouseKeeperController.helpTest()) {
+                timeLastBusy = System.currentTimeMillis();
+            }
+            // Once we've claimed a house keeper we must sweep it (and say we're done) even
+            // if we've been cancelled, otherwise nobody else will ever sweep it. So check
+            // before we claim one, not after.
+            HouseKeeper hk = stop ? null : HouseKeeperController.getHouseKeeperToRun();
+            while (hk != null) {
+                timeLastBusy = System.currentTimeMillis();
                 try {
 //                    if (LOG.isDebugEnabled()) {
 //                        LOG.debug("About to sweep " + hk.getAlias());
@@ -39,13 +50,13 @@ public class HouseKeeperThread extends Thread {
                     hk.sweep();
                 } catch (ProxoolException e) {
                     LOG.error("Couldn't sweep " + hk.getAlias(), e);
+                } finally {
+                    HouseKeeperController.sweepDone(hk);
                 }
-                hk = HouseKeeperController.getHouseKeeperToRun();
+                hk = stop ? null : HouseKeeperController.getHouseKeeperToRun();
             }
-            try {
-                Thread.sleep(5000);
-            } catch (InterruptedException e) {
-                LOG.error("Interrupted", e);
+            if (!HouseKeeperController.waitForWork(this)) {
+                break;
             }
         }
 
@@ -55,6 +66,18 @@ public class HouseKeeperThread extends Thread {
         stop = true;
     }
 
+    protected boolean isCancelled() {
+        return stop;
+    }
+
+    /**
+     * When this thread last swept a pool or tested a connection
+     * @return the time (milliseconds)
+     */
+    protected long getTimeLastBusy() {
+        return timeLastBusy;
+    }
+
 }
 
 
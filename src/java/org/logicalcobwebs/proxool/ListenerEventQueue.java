@@ -0,0 +1,305 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+import org.apache.commons.logging.Log;
+import org.logicalcobwebs.proxool.admin.StatisticsIF;
+import org.logicalcobwebs.proxool.admin.StatisticsListenerIF;
+
+/**
+ * Tells a pool's listeners about executions (and rolled statistics) on a thread of its
+ * own, so that a slow listener doesn't add to the time each statement takes. The thread
+ * that executed the statement just fills in the next free event in a ring of events that
+ * are all made up front, so queueing doesn't create any garbage. The SQL isn't rendered
+ * until the listeners are told. The dispatch thread takes everything that is queued in one
+ * go and tells the listeners about it without holding the lock, so the statements only
+ * ever wait for each other to fill in an event.
+ * <p>
+ * If the listeners can't keep up and the queue fills up then we either drop the event
+ * (and count it) or wait for room, depending on
+ * {@link ConnectionPoolDefinitionIF#isListenerQueueBlocking listener-queue-blocking}.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ * @see ConnectionPoolDefinitionIF#getListenerQueueSize
+ */
+class ListenerEventQueue {
+
+    private static final int EXECUTE = 1;
+
+    private static final int STATISTICS = 2;
+
+    private Log log;
+
+    private CompositeConnectionListener connectionListener;
+
+    private boolean blocking;
+
+    /** The queue, in a ring. It is its own lock. */
+    private Event[] events;
+
+    /** Where the oldest event is. Guarded by events. */
+    private int head;
+
+    /** How many events are queued (including the ones being dispatched). Guarded by events. */
+    private int size;
+
+    /** How many we've dropped altogether. Guarded by events. */
+    private long droppedCount;
+
+    /** How many we've dropped since we last said so. Guarded by events. */
+    private long unreportedDroppedCount;
+
+    /** Set once we've been asked to stop. Guarded by events. */
+    private boolean stopped;
+
+    private Thread dispatchThread;
+
+    /**
+     * @param log the pool's log
+     * @param alias the pool's alias (to name the thread)
+     * @param size the most events we queue
+     * @param blocking true to wait for room when the queue is full, false to drop the event
+     * @param connectionListener the listeners to tell about executions
+     */
+    protected ListenerEventQueue(Log log, String alias, int size, boolean blocking, CompositeConnectionListener connectionListener) {
+        this.log = log;
+        this.blocking = blocking;
+        this.connectionListener = connectionListener;
+        events = new Event[size];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new Event();
+        }
+        dispatchThread = new Thread("ListenerEventQueue-" + alias) {
+            public void run() {
+                dispatchAll();
+            }
+        };
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+    }
+
+    /**
+     * Queue an execution for the connection listeners
+     * @param command what was executed (not rendered yet)
+     * @param elapsedTime how long it took
+     * @param exception what it threw (or null)
+     * @param sampleWeight how many executions this one stands for
+     * @see ConnectionPool#onExecute
+     */
+    protected void execute(Object command, long elapsedTime, Exception exception, int sampleWeight) {
+        put(EXECUTE, command, elapsedTime, exception, sampleWeight, null, null, null);
+    }
+
+    /**
+     * Queue some statistics that have been rolled
+     * @param statisticsListener the listeners to tell
+     * @param alias the pool
+     * @param statistics what was collected
+     */
+    protected void statistics(StatisticsListenerIF statisticsListener, String alias, StatisticsIF statistics) {
+        put(STATISTICS, null, 0, null, 0, statisticsListener, alias, statistics);
+    }
+
+    /**
+     * Fill in the next free event, waiting for room if we're blocking
+     */
+    private void put(int type, Object command, long elapsedTime, Exception exception, int sampleWeight,
+                     StatisticsListenerIF statisticsListener, String alias, StatisticsIF statistics) {
+        Event event = null;
+        // A listener that executes something on this pool mustn't wait for itself
+        if (Thread.currentThread() != dispatchThread) {
+            synchronized (events) {
+                while (size == events.length && !stopped) {
+                    if (!blocking) {
+                        droppedCount++;
+                        unreportedDroppedCount++;
+                        return;
+                    }
+                    try {
+                        events.wait();
+                    } catch (InterruptedException e) {
+                        log.debug("Interrupted whilst waiting for room in the listener queue");
+                        droppedCount++;
+                        unreportedDroppedCount++;
+                        return;
+                    }
+                }
+                if (!stopped) {
+                    event = events[(head + size) % events.length];
+                    event.set(type, command, elapsedTime, exception, sampleWeight, statisticsListener, alias, statistics);
+                    size++;
+                    if (size == 1) {
+                        events.notifyAll();
+                    }
+                    return;
+                }
+            }
+        }
+        // Too late to queue it, or it's our own thread, so tell them now
+        event = new Event();
+        event.set(type, command, elapsedTime, exception, sampleWeight, statisticsListener, alias, statistics);
+        dispatch(event);
+    }
+
+    /**
+     * Run by the dispatch thread. Take everything that is queued, tell the listeners
+     * about it and make room, until we're stopped and there is nothing left.
+     */
+    private void dispatchAll() {
+        while (true) {
+            int first;
+            int count;
+            long dropped;
+            synchronized (events) {
+                while (size == 0 && !stopped) {
+                    try {
+                        events.wait();
+                    } catch (InterruptedException e) {
+                        log.debug("Interruption", e);
+                    }
+                }
+                if (size == 0) {
+                    return;
+                }
+                first = head;
+                count = size;
+                dropped = unreportedDroppedCount;
+                unreportedDroppedCount = 0;
+            }
+
+            if (dropped > 0) {
+                log.warn("Listeners couldn't keep up so " + dropped + " events weren't passed on");
+            }
+            // Nobody else touches these until we make room below
+            for (int i = 0; i < count; i++) {
+                Event event = events[(first + i) % events.length];
+                dispatch(event);
+                event.clear();
+            }
+
+            synchronized (events) {
+                head = (head + count) % events.length;
+                size -= count;
+                events.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Tell the listeners about one event
+     * @param event the event
+     */
+    private void dispatch(Event event) {
+        try {
+            if (event.type == EXECUTE) {
+                if (event.exception == null) {
+                    connectionListener.onExecute(String.valueOf(event.command), event.elapsedTime, event.sampleWeight);
+                } else {
+                    connectionListener.onFail(String.valueOf(event.command), event.exception, event.sampleWeight);
+                }
+            } else {
+                event.statisticsListener.statistics(event.alias, event.statistics);
+            }
+        } catch (Throwable t) {
+            log.error("Couldn't pass event on to listeners", t);
+        }
+    }
+
+    /**
+     * Stop queueing. Anything already queued is still passed on, and anything that
+     * turns up afterwards is passed on straight away.
+     */
+    protected void stop() {
+        synchronized (events) {
+            stopped = true;
+            events.notifyAll();
+        }
+    }
+
+    /**
+     * The most events we queue
+     * @return size
+     */
+    protected int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * Whether we wait for room when the queue is full
+     * @return true if we wait, false if we drop
+     */
+    protected boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * How many events are waiting to be passed on
+     * @return size
+     */
+    protected int getSize() {
+        synchronized (events) {
+            return size;
+        }
+    }
+
+    /**
+     * How many events we've dropped because the queue was full
+     * @return droppedCount
+     */
+    protected long getDroppedCount() {
+        synchronized (events) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * Something for the listeners to hear about. Reused once they have.
+     */
+    private static class Event {
+
+        int type;
+
+        Object command;
+
+        long elapsedTime;
+
+        Exception exception;
+
+        int sampleWeight;
+
+        StatisticsListenerIF statisticsListener;
+
+        String alias;
+
+        StatisticsIF statistics;
+
+        void set(int type, Object command, long elapsedTime, Exception exception, int sampleWeight,
+                 StatisticsListenerIF statisticsListener, String alias, StatisticsIF statistics) {
+            this.type = type;
+            this.command = command;
+            this.elapsedTime = elapsedTime;
+            this.exception = exception;
+            this.sampleWeight = sampleWeight;
+            this.statisticsListener = statisticsListener;
+            this.alias = alias;
+            this.statistics = statistics;
+        }
+
+        /**
+         * Let go of what we were told about
+         */
+        void clear() {
+            command = null;
+            exception = null;
+            statisticsListener = null;
+            alias = null;
+            statistics = null;
+        }
+    }
+
+}
@@ -28,7 +28,20 @@ public class Prototyper {
 
     private final Object lock = new Integer(1);
 
-    private boolean sweepNeeded = true;
+    /**
+     * Whether we are waiting in the {@link PrototyperController}'s queue for a
+     * thread to build a connection. Guarded by the controller.
+     */
+    boolean queued;
+
+    /** How many connections we have built. Guarded by {@link #lock}. */
+    private long builtCount;
+
+    /** How long it took to build them all, in milliseconds. Guarded by {@link #lock}. */
+    private long totalBuildTime;
+
+    /** How many times building a connection failed. Guarded by {@link #lock}. */
+    private long buildFailureCount;
 
     /** This allows us to have a unique ID for each connection */
     private long nextConnectionId = 1;
@@ -57,65 +70,62 @@ public class Prototyper {
         this.log = connectionPool.getLog();
     }
 
-    protected boolean isSweepNeeded() {
-        return sweepNeeded;
-    }
-
+    /**
+     * Ask for a thread to come along and {@link #sweep} because we might
+     * need more connections. If we are already building as many as we are
+     * allowed to then we'll ask again when one of those is finished.
+     */
     protected void triggerSweep() {
-        sweepNeeded = true;
+        if (!cancel && getBuildQueueSize() > 0
+                && connectionsBeingMade < getDefinition().getSimultaneousBuildThrottle()) {
+            PrototyperController.enqueue(this);
+        }
     }
 
     /**
-     * Trigger prototyping immediately
-     * @return true if something was prototyped
+     * Build one connection if we need one. If we need more than that then we ask for another
+     * thread to start on the next one while we build this one (as long as we aren't already
+     * building as many as the {@link ConnectionPoolDefinitionIF#getSimultaneousBuildThrottle
+     * simultaneous-build-throttle} allows). Called by the {@link PrototyperController controller's}
+     * threads, which keep calling it until it returns false.
+     * @return true if something was prototyped (and so it is worth calling again)
      */
     protected boolean sweep() {
 
         boolean somethingDone = false;
         try {
+            if (cancel || !connectionPool.isConnectionPoolUp()) {
+                return false;
+            }
 
-            while (!cancel && connectionPool.isConnectionPoolUp()) {
-
-//                if (log.isDebugEnabled()) {
-//                    log.debug("Prototyping");
-//                }
-
-                String reason = null;
-                if (connectionCount >= getDefinition().getMaximumConnectionCount()) {
-                    // We don't want to make any more that the maximum
-                    break;
-                } else if (connectionCount < getDefinition().getMinimumConnectionCount()) {
-                    reason = "to achieve minimum of " + getDefinition().getMinimumConnectionCount();
-                } else if (connectionPool.getAvailableConnectionCount() < getDefinition().getPrototypeCount()) {
-                    reason = "to keep " + getDefinition().getPrototypeCount() + " available";
-                } else {
-                    // Nothing to do
-                    break;
+            String reason;
+            long id;
+            synchronized (lock) {
+                reason = getReasonToBuild();
+                if (reason == null || connectionsBeingMade >= getDefinition().getSimultaneousBuildThrottle()) {
+                    // Nothing to do, or we are already doing as much as we are allowed
+                    return false;
                 }
+                id = reserveConnection();
+            }
 
-                ProxyConnectionIF freshlyBuiltProxyConnection = null;
-                try {
-                    // If it has been shutdown then we should just stop now.
-                    if (!connectionPool.isConnectionPoolUp()) {
-                        break;
-                    }
-                    freshlyBuiltProxyConnection = buildConnection(ConnectionInfoIF.STATUS_AVAILABLE, reason);
-                    somethingDone = true;
-                } catch (Throwable e) {
-                    log.error("Prototype", e);
-                    // If there's been an exception, perhaps we should stop
-                    // prototyping for a while.  Otherwise if the database
-                    // has problems we end up trying the connection every 2ms
-                    // or so and then the log grows pretty fast.
-                    break;
-                    // Don't wory, we'll start again the next time the
-                    // housekeeping thread runs.
-                }
-                if (freshlyBuiltProxyConnection == null) {
-                    // That's strange. No double the buildConnection() method logged the
-                    // error, but we should have build a connection here.
-                }
+            // Let somebody else start on the next one while we build this one
+            triggerSweep();
+
+            try {
+                buildReservedConnection(id, ConnectionInfoIF.STATUS_AVAILABLE, reason);
+                somethingDone = true;
+            } catch (Throwable e) {
+                log.error("Prototype", e);
+                // If there's been an exception, perhaps we should stop
+                // prototyping for a while.  Otherwise if the database
+                // has problems we end up trying the connection every 2ms
+                // or so and then the log grows pretty fast.
+                // Don't wory, we'll start again the next time the
+                // housekeeping thread runs.
+                return false;
             }
+
         } catch (Throwable t) {
             log.error("Unexpected error", t);
         }
@@ -123,6 +133,79 @@ public class Prototyper {
         return somethingDone;
     }
 
+    /**
+     * Why we should build another connection
+     * @return the reason, or null if we don't need to. Call this holding the {@link #lock}.
+     */
+    private String getReasonToBuild() {
+        if (connectionCount >= getDefinition().getMaximumConnectionCount()) {
+            // We don't want to make any more that the maximum
+            return null;
+        } else if (connectionCount < getDefinition().getMinimumConnectionCount()) {
+            return "to achieve minimum of " + getDefinition().getMinimumConnectionCount();
+        } else if (connectionPool.getAvailableConnectionCount() + connectionsBeingMade < getDefinition().getPrototypeCount()) {
+            // Connections that are being made right now will probably be available soon
+            return "to keep " + getDefinition().getPrototypeCount() + " available";
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * How many more connections we want to build (to achieve the
+     * {@link ConnectionPoolDefinitionIF#getMinimumConnectionCount minimum} or the
+     * {@link ConnectionPoolDefinitionIF#getPrototypeCount prototype count}) that we haven't
+     * started building yet
+     * @return the number of connections, or zero
+     */
+    public int getBuildQueueSize() {
+        synchronized (lock) {
+            int forMinimum = getDefinition().getMinimumConnectionCount() - (int) connectionCount;
+            int forPrototype = getDefinition().getPrototypeCount() - connectionPool.getAvailableConnectionCount() - connectionsBeingMade;
+            int wanted = Math.max(forMinimum, forPrototype);
+            int allowed = getDefinition().getMaximumConnectionCount() - (int) connectionCount;
+            return Math.max(0, Math.min(wanted, allowed));
+        }
+    }
+
+    /**
+     * The number of connections being built right now
+     * @return connectionsBeingMade
+     */
+    public int getBuildingCount() {
+        return connectionsBeingMade;
+    }
+
+    /**
+     * How many connections we have built (whether by prototyping or on demand)
+     * @return builtCount
+     */
+    public long getBuiltCount() {
+        synchronized (lock) {
+            return builtCount;
+        }
+    }
+
+    /**
+     * How long it took to build all the {@link #getBuiltCount connections}
+     * @return the total time in milliseconds
+     */
+    public long getTotalBuildTime() {
+        synchronized (lock) {
+            return totalBuildTime;
+        }
+    }
+
+    /**
+     * How many times building a connection failed
+     * @return buildFailureCount
+     */
+    public long getBuildFailureCount() {
+        synchronized (lock) {
+            return buildFailureCount;
+        }
+    }
+
     /**
      * Build a new connection
      * @param status the initial status it will be created as (this allows us
@@ -132,8 +215,17 @@ public class Prototyper {
      * @return the new connection
      */
     protected ProxyConnection buildConnection(int status, String creator) throws SQLException, ProxoolException {
+        return buildReservedConnection(reserveConnection(), status, creator);
+    }
 
-        long id = 0;
+    /**
+     * Count a connection that we are about to build, so that nobody else builds
+     * one they don't need, and give it an ID
+     * @return the ID of the new connection
+     * @throws SQLException if we are already building too many
+     * @throws ProxoolException if we are at the maximum connection count
+     */
+    private long reserveConnection() throws SQLException, ProxoolException {
         synchronized (lock) {
 
             // Check that we are allowed to make another connection
@@ -146,10 +238,20 @@ public class Prototyper {
 
             connectionsBeingMade++;
             connectionCount++;
-            id = nextConnectionId++;
+            return nextConnectionId++;
         }
+    }
 
+    /**
+     * Build a connection that we have already {@link #reserveConnection reserved}
+     * @param id the ID we reserved
+     * @param status the initial status
+     * @param creator for log audit
+     * @return the new connection
+     */
+    private ProxyConnection buildReservedConnection(long id, int status, String creator) throws SQLException, ProxoolException {
 
+        long startTime = System.currentTimeMillis();
         ProxyConnection proxyConnection = null;
         Connection realConnection = null;
 
@@ -172,6 +274,7 @@ public class Prototyper {
             } catch (Exception e) {
                 log.error("Problem during onBirth (ignored)", e);
             }
+            proxyConnection.initialiseDefaultAutoCommit();
             
             //TODO BRE: the actual pool of connections is maintained by the ConnectionPool. I'm not 
             // very happy with the idea of letting the Prototyper add the newly build connection 
@@ -228,14 +331,24 @@ public class Prototyper {
             }
             throw new ProxoolException("Unexpected prototyping problem", t);
         } finally {
+            long buildTime = System.currentTimeMillis() - startTime;
             synchronized (lock) {
                 if (proxyConnection == null) {
                     // If there has been an exception then we won't be using this one and
                     // we need to decrement the counter
                     connectionCount--;
+                    buildFailureCount++;
+                } else {
+                    builtCount++;
+                    totalBuildTime += buildTime;
                 }
                 connectionsBeingMade--;
             }
+            if (proxyConnection != null) {
+                connectionPool.connectionBuilt(buildTime);
+            } else {
+                connectionPool.connectionBuildFailed();
+            }
 
         }
 
@@ -247,7 +360,9 @@ public class Prototyper {
      * This needs to be called _everytime_ a connection is removed.
      */
     protected void connectionRemoved() {
-        connectionCount--;
+        synchronized (lock) {
+            connectionCount--;
+        }
     }
 
     /**
@@ -272,6 +387,14 @@ public class Prototyper {
         return connectionCount;
     }
 
+    /**
+     * The pool we are prototyping for
+     * @return connectionPool
+     */
+    protected ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
     /**
      * Utility method
      * @return definition
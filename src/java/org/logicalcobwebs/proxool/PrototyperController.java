@@ -8,7 +8,10 @@ package org.logicalcobwebs.proxool;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Controls the {@link Prototyper prototypers}
@@ -21,24 +24,31 @@ public class PrototyperController {
 
     private static final Log LOG = LogFactory.getLog(PrototyperController.class);
 
-    private static PrototyperThread prototyperThread;
+    /**
+     * The most threads we will use to build connections at once, however many pools
+     * there are. Each pool is also limited by its
+     * {@link ConnectionPoolDefinitionIF#getSimultaneousBuildThrottle simultaneous-build-throttle}.
+     */
+    protected static final int MAXIMUM_THREAD_COUNT = 10;
 
-    private static boolean keepSweeping;
+    /** How long a thread waits for something to do before it stops (milliseconds) */
+    protected static final long IDLE_TIMEOUT = 60000;
 
-    private static final String LOCK = "LOCK";
+    private static final Object LOCK = new Integer(1);
+
+    /** The {@link Prototyper prototypers} that want a connection built. Guarded by {@link #LOCK}. */
+    private static List queue = new LinkedList();
+
+    /** The threads that are running. Guarded by {@link #LOCK}. */
+    private static List prototyperThreads = new ArrayList();
+
+    /** How many of the {@link #prototyperThreads} are waiting for something to do. Guarded by {@link #LOCK}. */
+    private static int idleThreadCount;
+
+    private static int nextThreadNumber = 1;
 
-    private static void startPrototyper() {
-        if (prototyperThread == null) {
-            synchronized(LOCK) {
-                if (prototyperThread == null) {
-                    prototyperThread = new PrototyperThread("Prototyper");
-                    prototyperThread.start();
-                }
-            }
-        }
-    }
     /**
-     * Trigger prototyping immediately. Runs inside a new Thread so
+     * Trigger prototyping immediately. A thread from the pool does the work so
      * control returns as quick as possible. You should call this whenever
      * you suspect that building more connections might be a good idea.
      * @param alias
@@ -47,60 +57,106 @@ public class PrototyperController {
         try {
             // Ensure that we're not in the process of shutting down the pool
             ConnectionPool cp = ConnectionPoolManager.getInstance().getConnectionPool(alias);
+            boolean locked = false;
             try {
-                cp.acquirePrimaryReadLock();
-                cp.getPrototyper().triggerSweep();
+                // Don't wait for the lock. The only thing that takes the write lock is shutdown,
+                // and then there's no point sweeping. Waiting could also deadlock because our
+                // caller (the house keeper, say) might already hold a read lock.
+                locked = cp.attemptPrimaryReadLock(0);
+                if (locked) {
+                    cp.getPrototyper().triggerSweep();
+                }
             } catch (InterruptedException e) {
                 LOG.error("Couldn't acquire primary read lock", e);
             } finally {
-                cp.releasePrimaryReadLock();
+                if (locked) {
+                    cp.releasePrimaryReadLock();
+                }
             }
         } catch (ProxoolException e) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Couldn't trigger prototyper triggerSweep for '" + alias + "'  - maybe it's just been shutdown");
             }
         }
-        startPrototyper();
-        try {
-            // If we are currently sweeping this will cause it to loop through
-            // once more
-            keepSweeping = true;
-            // If we aren't already started then this will start a new sweep
-            if (prototyperThread != null) {
-                prototyperThread.doNotify();
-            }
-        } catch (IllegalMonitorStateException e) {
-            LOG.debug("Hmm", e);
-            if (Thread.activeCount() > 10 && LOG.isInfoEnabled()) {
-                LOG.info("Suspicious thread count of " + Thread.activeCount());
+    }
+
+    /**
+     * Queue a prototyper so that one of our threads will {@link Prototyper#sweep sweep} it.
+     * If it is already queued then this does nothing. If there isn't a thread free to do it
+     * then we start one (as long as we have fewer than {@link #MAXIMUM_THREAD_COUNT}).
+     * @param prototyper the prototyper that wants to build a connection
+     */
+    protected static void enqueue(Prototyper prototyper) {
+        synchronized (LOCK) {
+            if (prototyper.queued) {
+                return;
             }
-        } catch (IllegalThreadStateException e) {
-            // Totally expected. Should happen all the time. Just means that
-            // we are already sweeping.
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Ignoring attempt to prototype whilst already prototyping");
+            prototyper.queued = true;
+            queue.add(prototyper);
+            if (queue.size() > idleThreadCount && prototyperThreads.size() < MAXIMUM_THREAD_COUNT) {
+                PrototyperThread prototyperThread = new PrototyperThread("Prototyper #" + nextThreadNumber++);
+                prototyperThreads.add(prototyperThread);
+                prototyperThread.start();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Started " + prototyperThread.getName() + " (" + prototyperThreads.size() + " running)");
+                }
             }
+            LOCK.notify();
         }
     }
 
-    public static boolean isKeepSweeping() {
-        return keepSweeping;
-    }
-
-    public static void sweepStarted() {
-        keepSweeping = false;
+    /**
+     * Called by a {@link PrototyperThread} when it wants something to do. Waits until
+     * a prototyper is queued.
+     * @param prototyperThread the thread asking
+     * @return the prototyper to sweep, or null if the thread should stop (because it has
+     * been cancelled or there has been nothing to do for {@link #IDLE_TIMEOUT})
+     */
+    protected static Prototyper take(PrototyperThread prototyperThread) {
+        synchronized (LOCK) {
+            long waitUntil = System.currentTimeMillis() + IDLE_TIMEOUT;
+            while (queue.isEmpty() && !prototyperThread.isCancelled()) {
+                long timeout = waitUntil - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    break;
+                }
+                idleThreadCount++;
+                try {
+                    LOCK.wait(timeout);
+                } catch (InterruptedException e) {
+                    LOG.debug("Expected interruption of sleep");
+                } finally {
+                    idleThreadCount--;
+                }
+            }
+            if (queue.isEmpty() || prototyperThread.isCancelled()) {
+                prototyperThreads.remove(prototyperThread);
+                return null;
+            }
+            Prototyper prototyper = (Prototyper) queue.remove(0);
+            prototyper.queued = false;
+            return prototyper;
+        }
     }
 
     /**
-     * Stop all house keeper threads
+     * Stop all prototyper threads
      */
     protected static void shutdown() {
         synchronized(LOCK) {
-            if (prototyperThread != null) {
+            Iterator i = prototyperThreads.iterator();
+            while (i.hasNext()) {
+                PrototyperThread prototyperThread = (PrototyperThread) i.next();
                 LOG.info("Stopping " + prototyperThread.getName() + " thread");
                 prototyperThread.cancel();
-                prototyperThread = null;
             }
+            prototyperThreads.clear();
+            i = queue.iterator();
+            while (i.hasNext()) {
+                ((Prototyper) i.next()).queued = false;
+            }
+            queue.clear();
+            LOCK.notifyAll();
         }
     }
 }
@@ -10,7 +10,9 @@ import org.apache.commons.logging.LogFactory;
 
 /**
  * Responsible for running {@link Prototyper#sweep sweep}. There
- * could be just one of the objects, or more.
+ * could be just one of the objects, or more: the {@link PrototyperController}
+ * starts them when there is work waiting and they stop once they have had
+ * nothing to do for a while.
  * @version $Revision: 1.6 $, $Date: 2006/01/18 14:40:01 $
  * @author bill
  * @author $Author: billhorsman $ (current maintainer)
@@ -22,7 +24,7 @@ public class PrototyperThread extends Thread {
 
     private static final Log LOG = LogFactory.getLog(PrototyperThread.class);
 
-    private boolean stop;
+    private volatile boolean stop;
 
     public PrototyperThread(String name) {
         super(PROTOTYPER_THREAD_GROUP, name);
@@ -32,48 +34,33 @@ public class PrototyperThread extends Thread {
     public void run() {
 
         while (!stop) {
-            int sweptCount = 0;
-            while (PrototyperController.isKeepSweeping() && !stop) {
-                PrototyperController.sweepStarted();
-                ConnectionPool[] cps = ConnectionPoolManager.getInstance().getConnectionPools();
-                for (int i = 0; i < cps.length && !stop; i++) {
-                    Prototyper p = cps[i].getPrototyper();
-                    try {
-                        cps[i].acquirePrimaryReadLock();
-                        if (cps[i].isConnectionPoolUp() && p.isSweepNeeded()) {
-                            p.sweep();
-                            sweptCount++;
-                        }
-                    } catch (InterruptedException e) {
-                        LOG.error("Couldn't acquire primary read lock", e);
-                    } finally {
-                        cps[i].releasePrimaryReadLock();
+            Prototyper p = PrototyperController.take(this);
+            if (p == null) {
+                break;
+            }
+            ConnectionPool cp = p.getConnectionPool();
+            try {
+                cp.acquirePrimaryReadLock();
+                try {
+                    // Keep going while there's work for this pool. We might have been
+                    // the one that stopped somebody else starting because of the throttle.
+                    while (!stop && p.sweep()) {
                     }
+                } finally {
+                    cp.releasePrimaryReadLock();
                 }
+            } catch (InterruptedException e) {
+                LOG.error("Couldn't acquire primary read lock", e);
             }
-//            if (LOG.isDebugEnabled()) {
-//                LOG.debug("Swept " + sweptCount + " pools");
-//            }
-
-            doWait();
         }
     }
 
     protected void cancel() {
         stop = true;
-        doNotify();
-    }
-
-    private synchronized void doWait() {
-        try {
-            wait();
-        } catch (InterruptedException e) {
-            LOG.debug("Expected interruption of sleep");
-        }
     }
 
-    protected synchronized void doNotify() {
-        notifyAll();
+    protected boolean isCancelled() {
+        return stop;
     }
 
 }
@@ -131,6 +131,114 @@ public interface ProxoolConstants {
     /** @see ProxoolDriver#getPropertyInfo */
     public final String MAXIMUM_ACTIVE_TIME_PROPERTY = PROPERTY_PREFIX + MAXIMUM_ACTIVE_TIME;
 
+    /** @see #MAXIMUM_WAIT_TIME_PROPERTY */
+    public final String MAXIMUM_WAIT_TIME = "maximum-wait-time";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String MAXIMUM_WAIT_TIME_PROPERTY = PROPERTY_PREFIX + MAXIMUM_WAIT_TIME;
+
+    /** @see #MAXIMUM_WAIT_QUEUE_SIZE_PROPERTY */
+    public final String MAXIMUM_WAIT_QUEUE_SIZE = "maximum-wait-queue-size";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String MAXIMUM_WAIT_QUEUE_SIZE_PROPERTY = PROPERTY_PREFIX + MAXIMUM_WAIT_QUEUE_SIZE;
+
+    /** @see #THREAD_AFFINITY_PROPERTY */
+    public final String THREAD_AFFINITY = "thread-affinity";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String THREAD_AFFINITY_PROPERTY = PROPERTY_PREFIX + THREAD_AFFINITY;
+
+    /** @see #STATEMENT_CACHE_SIZE_PROPERTY */
+    public final String STATEMENT_CACHE_SIZE = "statement-cache-size";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String STATEMENT_CACHE_SIZE_PROPERTY = PROPERTY_PREFIX + STATEMENT_CACHE_SIZE;
+
+    /** @see #HOUSE_KEEPING_BATCH_SIZE_PROPERTY */
+    public final String HOUSE_KEEPING_BATCH_SIZE = "house-keeping-batch-size";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String HOUSE_KEEPING_BATCH_SIZE_PROPERTY = PROPERTY_PREFIX + HOUSE_KEEPING_BATCH_SIZE;
+
+    /** @see #VALIDATION_INTERVAL_PROPERTY */
+    public final String VALIDATION_INTERVAL = "validation-interval";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String VALIDATION_INTERVAL_PROPERTY = PROPERTY_PREFIX + VALIDATION_INTERVAL;
+
+    /** @see #TEST_WITH_IS_VALID_PROPERTY */
+    public final String TEST_WITH_IS_VALID = "test-with-is-valid";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String TEST_WITH_IS_VALID_PROPERTY = PROPERTY_PREFIX + TEST_WITH_IS_VALID;
+
+    /** @see #MAXIMUM_IDLE_TIME_PROPERTY */
+    public final String MAXIMUM_IDLE_TIME = "maximum-idle-time";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String MAXIMUM_IDLE_TIME_PROPERTY = PROPERTY_PREFIX + MAXIMUM_IDLE_TIME;
+
+    /** @see #MINIMUM_IDLE_PROPERTY */
+    public final String MINIMUM_IDLE = "minimum-idle";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String MINIMUM_IDLE_PROPERTY = PROPERTY_PREFIX + MINIMUM_IDLE;
+
+    /** @see #BORROW_ORDER_PROPERTY */
+    public final String BORROW_ORDER = "borrow-order";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String BORROW_ORDER_PROPERTY = PROPERTY_PREFIX + BORROW_ORDER;
+
+    /** @see #MAXIMUM_CONNECTION_LIFETIME_JITTER_PROPERTY */
+    public final String MAXIMUM_CONNECTION_LIFETIME_JITTER = "maximum-connection-lifetime-jitter";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String MAXIMUM_CONNECTION_LIFETIME_JITTER_PROPERTY = PROPERTY_PREFIX + MAXIMUM_CONNECTION_LIFETIME_JITTER;
+
+    /** @see #SQL_HISTORY_SIZE_PROPERTY */
+    public final String SQL_HISTORY_SIZE = "sql-history-size";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String SQL_HISTORY_SIZE_PROPERTY = PROPERTY_PREFIX + SQL_HISTORY_SIZE;
+
+    /** @see #SQL_DIGEST_SIZE_PROPERTY */
+    public final String SQL_DIGEST_SIZE = "sql-digest-size";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String SQL_DIGEST_SIZE_PROPERTY = PROPERTY_PREFIX + SQL_DIGEST_SIZE;
+
+    /** @see #SLOW_QUERY_THRESHOLD_PROPERTY */
+    public final String SLOW_QUERY_THRESHOLD = "slow-query-threshold";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String SLOW_QUERY_THRESHOLD_PROPERTY = PROPERTY_PREFIX + SLOW_QUERY_THRESHOLD;
+
+    /** @see #SLOW_QUERY_SAMPLE_RATE_PROPERTY */
+    public final String SLOW_QUERY_SAMPLE_RATE = "slow-query-sample-rate";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String SLOW_QUERY_SAMPLE_RATE_PROPERTY = PROPERTY_PREFIX + SLOW_QUERY_SAMPLE_RATE;
+
+    /** @see #TRACE_SAMPLE_RATE_PROPERTY */
+    public final String TRACE_SAMPLE_RATE = "trace-sample-rate";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String TRACE_SAMPLE_RATE_PROPERTY = PROPERTY_PREFIX + TRACE_SAMPLE_RATE;
+
+    /** @see #LISTENER_QUEUE_SIZE_PROPERTY */
+    public final String LISTENER_QUEUE_SIZE = "listener-queue-size";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String LISTENER_QUEUE_SIZE_PROPERTY = PROPERTY_PREFIX + LISTENER_QUEUE_SIZE;
+
+    /** @see #LISTENER_QUEUE_BLOCKING_PROPERTY */
+    public final String LISTENER_QUEUE_BLOCKING = "listener-queue-blocking";
+
+    /** @see ProxoolDriver#getPropertyInfo */
+    public final String LISTENER_QUEUE_BLOCKING_PROPERTY = PROPERTY_PREFIX + LISTENER_QUEUE_BLOCKING;
+
     /** @see #INJECTABLE_CONNECTION_INTERFACE_NAME_PROPERTY */
     public final String INJECTABLE_CONNECTION_INTERFACE_NAME = "injectable-connection-interface";
 
@@ -210,6 +318,15 @@ public interface ProxoolConstants {
 
     public static final String STATISTICS_LOG_LEVEL_INFO = "INFO";
 
+    /** @see ConnectionPoolDefinitionIF#getBorrowOrder */
+    public static final String BORROW_ORDER_FIFO = "fifo";
+
+    /** @see ConnectionPoolDefinitionIF#getBorrowOrder */
+    public static final String BORROW_ORDER_LIFO = "lifo";
+
+    /** @see ConnectionPoolDefinitionIF#getBorrowOrder */
+    public static final String BORROW_ORDER_ROUND_ROBIN = "round-robin";
+
     /**
      * Element name for the container of properties passed directlry to the delegate driver.
      */
@@ -49,6 +49,24 @@ public class ProxoolDataSource implements DataSource, ObjectFactory {
     private long houseKeepingSleepTime;
     private String houseKeepingTestSql;
     private long maximumActiveTime;
+    private long maximumWaitTime;
+    private int maximumWaitQueueSize;
+    private boolean threadAffinity;
+    private int statementCacheSize;
+    private int houseKeepingBatchSize;
+    private long validationInterval;
+    private boolean testWithIsValid;
+    private long maximumIdleTime;
+    private int minimumIdle;
+    private String borrowOrder;
+    private long maximumConnectionLifetimeJitter;
+    private int sqlHistorySize;
+    private int sqlDigestSize;
+    private int slowQueryThreshold;
+    private int slowQuerySampleRate;
+    private int traceSampleRate;
+    private int listenerQueueSize;
+    private boolean listenerQueueBlocking;
     private int maximumConnectionCount;
     private long maximumConnectionLifetime;;
     private int minimumConnectionCount;
@@ -116,6 +134,24 @@ public class ProxoolDataSource implements DataSource, ObjectFactory {
             cpd.setHouseKeepingSleepTime(getHouseKeepingSleepTime());
             cpd.setHouseKeepingTestSql(getHouseKeepingTestSql());
             cpd.setMaximumActiveTime(getMaximumActiveTime());
+            cpd.setMaximumWaitTime(getMaximumWaitTime());
+            cpd.setMaximumWaitQueueSize(getMaximumWaitQueueSize());
+            cpd.setThreadAffinity(isThreadAffinity());
+            cpd.setStatementCacheSize(getStatementCacheSize());
+            cpd.setHouseKeepingBatchSize(getHouseKeepingBatchSize());
+            cpd.setValidationInterval(getValidationInterval());
+            cpd.setTestWithIsValid(isTestWithIsValid());
+            cpd.setMaximumIdleTime(getMaximumIdleTime());
+            cpd.setMinimumIdle(getMinimumIdle());
+            cpd.setBorrowOrder(getBorrowOrder());
+            cpd.setMaximumConnectionLifetimeJitter(getMaximumConnectionLifetimeJitter());
+            cpd.setSqlHistorySize(getSqlHistorySize());
+            cpd.setSqlDigestSize(getSqlDigestSize());
+            cpd.setSlowQueryThreshold(getSlowQueryThreshold());
+            cpd.setSlowQuerySampleRate(getSlowQuerySampleRate());
+            cpd.setTraceSampleRate(getTraceSampleRate());
+            cpd.setListenerQueueSize(getListenerQueueSize());
+            cpd.setListenerQueueBlocking(isListenerQueueBlocking());
             cpd.setMaximumConnectionCount(getMaximumConnectionCount());
             cpd.setMaximumConnectionLifetime(getMaximumConnectionLifetime());
             cpd.setMinimumConnectionCount(getMinimumConnectionCount());
@@ -329,6 +365,258 @@ public class ProxoolDataSource implements DataSource, ObjectFactory {
         this.maximumActiveTime = maximumActiveTime;
     }
 
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    public long getMaximumWaitTime() {
+        return maximumWaitTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    public void setMaximumWaitTime(long maximumWaitTime) {
+        this.maximumWaitTime = maximumWaitTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitQueueSize
+     */
+    public int getMaximumWaitQueueSize() {
+        return maximumWaitQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumWaitQueueSize
+     */
+    public void setMaximumWaitQueueSize(int maximumWaitQueueSize) {
+        this.maximumWaitQueueSize = maximumWaitQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isThreadAffinity
+     */
+    public boolean isThreadAffinity() {
+        return threadAffinity;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isThreadAffinity
+     */
+    public void setThreadAffinity(boolean threadAffinity) {
+        this.threadAffinity = threadAffinity;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getStatementCacheSize
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getStatementCacheSize
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getHouseKeepingBatchSize
+     */
+    public int getHouseKeepingBatchSize() {
+        return houseKeepingBatchSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getHouseKeepingBatchSize
+     */
+    public void setHouseKeepingBatchSize(int houseKeepingBatchSize) {
+        this.houseKeepingBatchSize = houseKeepingBatchSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getValidationInterval
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getValidationInterval
+     */
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isTestWithIsValid
+     */
+    public boolean isTestWithIsValid() {
+        return testWithIsValid;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isTestWithIsValid
+     */
+    public void setTestWithIsValid(boolean testWithIsValid) {
+        this.testWithIsValid = testWithIsValid;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumIdleTime
+     */
+    public long getMaximumIdleTime() {
+        return maximumIdleTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumIdleTime
+     */
+    public void setMaximumIdleTime(long maximumIdleTime) {
+        this.maximumIdleTime = maximumIdleTime;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMinimumIdle
+     */
+    public int getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMinimumIdle
+     */
+    public void setMinimumIdle(int minimumIdle) {
+        this.minimumIdle = minimumIdle;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getBorrowOrder
+     */
+    public String getBorrowOrder() {
+        return borrowOrder;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getBorrowOrder
+     */
+    public void setBorrowOrder(String borrowOrder) {
+        this.borrowOrder = borrowOrder;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumConnectionLifetimeJitter
+     */
+    public long getMaximumConnectionLifetimeJitter() {
+        return maximumConnectionLifetimeJitter;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getMaximumConnectionLifetimeJitter
+     */
+    public void setMaximumConnectionLifetimeJitter(long maximumConnectionLifetimeJitter) {
+        this.maximumConnectionLifetimeJitter = maximumConnectionLifetimeJitter;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlHistorySize
+     */
+    public int getSqlHistorySize() {
+        return sqlHistorySize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlHistorySize
+     */
+    public void setSqlHistorySize(int sqlHistorySize) {
+        this.sqlHistorySize = sqlHistorySize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlDigestSize
+     */
+    public int getSqlDigestSize() {
+        return sqlDigestSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSqlDigestSize
+     */
+    public void setSqlDigestSize(int sqlDigestSize) {
+        this.sqlDigestSize = sqlDigestSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQueryThreshold
+     */
+    public int getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQueryThreshold
+     */
+    public void setSlowQueryThreshold(int slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQuerySampleRate
+     */
+    public int getSlowQuerySampleRate() {
+        return slowQuerySampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getSlowQuerySampleRate
+     */
+    public void setSlowQuerySampleRate(int slowQuerySampleRate) {
+        this.slowQuerySampleRate = slowQuerySampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getTraceSampleRate
+     */
+    public int getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getTraceSampleRate
+     */
+    public void setTraceSampleRate(int traceSampleRate) {
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getListenerQueueSize
+     */
+    public int getListenerQueueSize() {
+        return listenerQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#getListenerQueueSize
+     */
+    public void setListenerQueueSize(int listenerQueueSize) {
+        this.listenerQueueSize = listenerQueueSize;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isListenerQueueBlocking
+     */
+    public boolean isListenerQueueBlocking() {
+        return listenerQueueBlocking;
+    }
+
+    /**
+     * @see ConnectionPoolDefinitionIF#isListenerQueueBlocking
+     */
+    public void setListenerQueueBlocking(boolean listenerQueueBlocking) {
+        this.listenerQueueBlocking = listenerQueueBlocking;
+    }
+
     /**
      * @see ConnectionPoolDefinitionIF#isVerbose
      */
@@ -565,6 +853,78 @@ public class ProxoolDataSource implements DataSource, ObjectFactory {
         if (property != null) {
             setMaximumActiveTime(Long.valueOf(property.getContent().toString()).intValue());
         }
+        property = reference.get(ProxoolConstants.MAXIMUM_WAIT_TIME_PROPERTY);
+        if (property != null) {
+            setMaximumWaitTime(Long.valueOf(property.getContent().toString()).longValue());
+        }
+        property = reference.get(ProxoolConstants.MAXIMUM_WAIT_QUEUE_SIZE_PROPERTY);
+        if (property != null) {
+            setMaximumWaitQueueSize(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.THREAD_AFFINITY_PROPERTY);
+        if (property != null) {
+            setThreadAffinity("true".equalsIgnoreCase(property.getContent().toString()));
+        }
+        property = reference.get(ProxoolConstants.STATEMENT_CACHE_SIZE_PROPERTY);
+        if (property != null) {
+            setStatementCacheSize(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE_PROPERTY);
+        if (property != null) {
+            setHouseKeepingBatchSize(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.VALIDATION_INTERVAL_PROPERTY);
+        if (property != null) {
+            setValidationInterval(Long.valueOf(property.getContent().toString()).longValue());
+        }
+        property = reference.get(ProxoolConstants.TEST_WITH_IS_VALID_PROPERTY);
+        if (property != null) {
+            setTestWithIsValid("true".equalsIgnoreCase(property.getContent().toString()));
+        }
+        property = reference.get(ProxoolConstants.MAXIMUM_IDLE_TIME_PROPERTY);
+        if (property != null) {
+            setMaximumIdleTime(Long.valueOf(property.getContent().toString()).longValue());
+        }
+        property = reference.get(ProxoolConstants.MINIMUM_IDLE_PROPERTY);
+        if (property != null) {
+            setMinimumIdle(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.BORROW_ORDER_PROPERTY);
+        if (property != null) {
+            setBorrowOrder(property.getContent().toString());
+        }
+        property = reference.get(ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER_PROPERTY);
+        if (property != null) {
+            setMaximumConnectionLifetimeJitter(Long.valueOf(property.getContent().toString()).longValue());
+        }
+        property = reference.get(ProxoolConstants.SQL_HISTORY_SIZE_PROPERTY);
+        if (property != null) {
+            setSqlHistorySize(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.SQL_DIGEST_SIZE_PROPERTY);
+        if (property != null) {
+            setSqlDigestSize(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.SLOW_QUERY_THRESHOLD_PROPERTY);
+        if (property != null) {
+            setSlowQueryThreshold(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.SLOW_QUERY_SAMPLE_RATE_PROPERTY);
+        if (property != null) {
+            setSlowQuerySampleRate(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.TRACE_SAMPLE_RATE_PROPERTY);
+        if (property != null) {
+            setTraceSampleRate(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.LISTENER_QUEUE_SIZE_PROPERTY);
+        if (property != null) {
+            setListenerQueueSize(Integer.valueOf(property.getContent().toString()).intValue());
+        }
+        property = reference.get(ProxoolConstants.LISTENER_QUEUE_BLOCKING_PROPERTY);
+        if (property != null) {
+            setListenerQueueBlocking("true".equalsIgnoreCase(property.getContent().toString()));
+        }
         property = reference.get(ProxoolConstants.MINIMUM_CONNECTION_COUNT_PROPERTY);
         if (property != null) {
             setMinimumConnectionCount(Integer.valueOf(property.getContent().toString()).intValue());
@@ -657,6 +1017,24 @@ public class ProxoolDataSource implements DataSource, ObjectFactory {
         recentlyStartedThreshold = ConnectionPoolDefinitionIF.DEFAULT_RECENTLY_STARTED_THRESHOLD;
         overloadWithoutRefusalLifetime = ConnectionPoolDefinitionIF.DEFAULT_OVERLOAD_WITHOUT_REFUSAL_THRESHOLD;
         maximumActiveTime = ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_ACTIVE_TIME;
+        maximumWaitTime = ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_WAIT_TIME;
+        maximumWaitQueueSize = ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_WAIT_QUEUE_SIZE;
+        threadAffinity = false;
+        statementCacheSize = ConnectionPoolDefinitionIF.DEFAULT_STATEMENT_CACHE_SIZE;
+        houseKeepingBatchSize = ConnectionPoolDefinitionIF.DEFAULT_HOUSE_KEEPING_BATCH_SIZE;
+        validationInterval = ConnectionPoolDefinitionIF.DEFAULT_VALIDATION_INTERVAL;
+        testWithIsValid = false;
+        maximumIdleTime = ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_IDLE_TIME;
+        minimumIdle = ConnectionPoolDefinitionIF.DEFAULT_MINIMUM_IDLE;
+        borrowOrder = ConnectionPoolDefinitionIF.DEFAULT_BORROW_ORDER;
+        maximumConnectionLifetimeJitter = ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_CONNECTION_LIFETIME_JITTER;
+        sqlHistorySize = ConnectionPoolDefinitionIF.DEFAULT_SQL_HISTORY_SIZE;
+        sqlDigestSize = ConnectionPoolDefinitionIF.DEFAULT_SQL_DIGEST_SIZE;
+        slowQueryThreshold = ConnectionPoolDefinitionIF.DEFAULT_SLOW_QUERY_THRESHOLD;
+        slowQuerySampleRate = ConnectionPoolDefinitionIF.DEFAULT_SLOW_QUERY_SAMPLE_RATE;
+        traceSampleRate = ConnectionPoolDefinitionIF.DEFAULT_TRACE_SAMPLE_RATE;
+        listenerQueueSize = ConnectionPoolDefinitionIF.DEFAULT_LISTENER_QUEUE_SIZE;
+        listenerQueueBlocking = false;
         verbose = false;
         trace = false;
         statistics = null;
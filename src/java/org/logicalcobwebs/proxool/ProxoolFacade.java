@@ -9,6 +9,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.logicalcobwebs.proxool.admin.Admin;
 import org.logicalcobwebs.proxool.admin.SnapshotIF;
+import org.logicalcobwebs.proxool.admin.SqlDigestIF;
 import org.logicalcobwebs.proxool.admin.StatisticsIF;
 import org.logicalcobwebs.proxool.admin.StatisticsListenerIF;
 
@@ -711,38 +712,31 @@ public class ProxoolFacade {
     }
 
     /**
-     * Gives a snapshot of what the pool is doing
+     * Gives a snapshot of what the pool is doing. Calls {@link #getSnapshot(java.lang.String, boolean, boolean) getSnapshot}
+     * including the SQL calls if you ask for detail.
      * @param alias identifies the pool
-     * @param detail if true then include detail of each connection. Note it you ask for
-     * detail then the pool must necessarily be locked for the duration it takes to gather
-     * the information (which isn't very long). You probably shouldn't do it that often (like
-     * not every second or something). Being locked means that connections cannot be
-     * served or returned (it doesn't mean that they can't be active).
+     * @param detail if true then include detail of each connection.
      * @return the current status of the pool
      * @throws ProxoolException if we couldn't find the pool
      */
     public static SnapshotIF getSnapshot(String alias, boolean detail) throws ProxoolException {
-        SnapshotIF snapshot = null;
-        ConnectionPool cp = ConnectionPoolManager.getInstance().getConnectionPool(alias);
-
-        if (detail) {
-            try {
-                // Only try for 10 seconds!
-                long start = System.currentTimeMillis();
-                if (cp.attemptConnectionStatusReadLock(10000)) {
-                    snapshot = Admin.getSnapshot(cp, cp.getDefinition(), cp.getConnectionInfos());
-                } else {
-                    LOG.warn("Give up waiting for detailed snapshot after " + (System.currentTimeMillis() - start) + " milliseconds. Serving standard snapshot instead.");
-                }
-            } finally {
-                cp.releaseConnectionStatusReadLock();
-            }
-        }
-        if (snapshot == null) {
-            snapshot = Admin.getSnapshot(cp, cp.getDefinition(), null);
-        }
+        return getSnapshot(alias, detail, detail);
+    }
 
-        return snapshot;
+    /**
+     * Gives a snapshot of what the pool is doing. Asking for detail doesn't lock the pool: each connection
+     * keeps a record of its state that we can read while connections are being served and
+     * returned. So it's cheap, but it's even cheaper if you leave out the SQL calls.
+     * @param alias identifies the pool
+     * @param detail if true then include detail of each connection.
+     * @param includeSqlCalls if true (and detail is true) then include the
+     * {@link ConnectionInfoIF#getSqlCalls SQL calls} each connection has made
+     * @return the current status of the pool
+     * @throws ProxoolException if we couldn't find the pool
+     */
+    public static SnapshotIF getSnapshot(String alias, boolean detail, boolean includeSqlCalls) throws ProxoolException {
+        ConnectionPool cp = ConnectionPoolManager.getInstance().getConnectionPool(alias);
+        return Admin.getSnapshot(cp, cp.getDefinition(), detail ? cp.getConnectionInfos(includeSqlCalls) : null);
     }
 
     /**
@@ -754,6 +748,43 @@ public class ProxoolFacade {
         return getSnapshot(alias, false);
     }
 
+    /**
+     * Change how many executions are traced, straight away. Unlike {@link #updateConnectionPool}
+     * this doesn't redefine the pool, so it's cheap enough to turn tracing down when the pool is
+     * busy and back up again afterwards. The new rate lasts until the
+     * {@link ConnectionPoolDefinitionIF#getTraceSampleRate trace-sample-rate} in the definition is changed.
+     * @param alias identifies the pool
+     * @param traceSampleRate one in this many executions is traced (1 or less means all of them)
+     * @throws ProxoolException if we couldn't find the pool
+     * @see ConnectionPoolDefinitionIF#getTraceSampleRate
+     */
+    public static void setTraceSampleRate(String alias, int traceSampleRate) throws ProxoolException {
+        ConnectionPoolManager.getInstance().getConnectionPool(alias).setTraceSampleRate(traceSampleRate);
+    }
+
+    /**
+     * How many executions are being traced
+     * @param alias identifies the pool
+     * @return one in this many executions is traced
+     * @throws ProxoolException if we couldn't find the pool
+     * @see #setTraceSampleRate
+     */
+    public static int getTraceSampleRate(String alias) throws ProxoolException {
+        return ConnectionPoolManager.getInstance().getConnectionPool(alias).getTraceSampleRate();
+    }
+
+    /**
+     * Statistics for each shape of SQL statement that the pool has executed (statements that only
+     * differ in their literal values count as one). They are only kept if the
+     * {@link ConnectionPoolDefinitionIF#getSqlDigestSize sql-digest-size} is set.
+     * @param alias identifies the pool
+     * @return the digests, the ones that have taken the longest altogether first (empty if we aren't keeping them)
+     * @throws ProxoolException if we couldn't find the pool
+     */
+    public static SqlDigestIF[] getSqlDigests(String alias) throws ProxoolException {
+        return ConnectionPoolManager.getInstance().getConnectionPool(alias).getSqlDigests();
+    }
+
     // all jmx operations are done through reflection
     // to avoid making the facade dependant on the JMX classes
     private static boolean registerForJmx(String alias, Properties properties) {
@@ -5,18 +5,21 @@
  */
 package org.logicalcobwebs.proxool;
 
-import org.logicalcobwebs.concurrent.WriterPreferenceReadWriteLock;
+import org.logicalcobwebs.concurrent.SynchronizedInt;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.logicalcobwebs.proxool.util.FastArrayList;
+import org.logicalcobwebs.proxool.util.RingBuffer;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.List;
 import java.text.DecimalFormat;
 
 /**
@@ -31,8 +34,6 @@ public class ProxyConnection implements ProxyConnectionIF {
 
     static final int STATUS_FORCE = -1;
 
-    private WriterPreferenceReadWriteLock statusReadWriteLock = new WriterPreferenceReadWriteLock();
-
     private static final Log LOG = LogFactory.getLog(ProxyConnection.class);
 
     private Connection connection;
@@ -43,7 +44,17 @@ public class ProxyConnection implements ProxyConnectionIF {
 
     private String reasonForMark;
 
-    private int status;
+    /**
+     * Only ever changed by {@link #setStatus(int, int)}, which holds the lock on it for
+     * long enough to keep the {@link ConnectionPool#changeStatus pool's counts} in step.
+     */
+    private SynchronizedInt status;
+
+    /**
+     * What the status and the things that go with it were last time they changed. Only
+     * {@link #publishState} replaces it, while it holds the lock on the {@link #status}.
+     */
+    private volatile ConnectionState state;
 
     private long id;
 
@@ -53,6 +64,15 @@ public class ProxyConnection implements ProxyConnectionIF {
 
     private long timeLastStopActive;
 
+    /** @see #getTimeLastSuccess */
+    private volatile long timeLastSuccess;
+
+    /** Chooses each connection's {@link #getLifetimeJitter lifetime jitter} */
+    private static final Random LIFETIME_JITTER_RANDOM = new Random();
+
+    /** @see #getLifetimeJitter */
+    private long lifetimeJitter;
+
     private ConnectionPool connectionPool;
 
     private ConnectionPoolDefinitionIF definition;
@@ -61,14 +81,60 @@ public class ProxyConnection implements ProxyConnectionIF {
 
     private Set openStatements = new HashSet();
 
+    /**
+     * Statements that have been closed but are kept open in case they are prepared again.
+     * Null unless the {@link ConnectionPoolDefinitionIF#getStatementCacheSize statement-cache-size} is set.
+     */
+    private StatementCache statementCache;
+
     private DecimalFormat idFormat = new DecimalFormat("0000");
 
-    private List sqlCalls = new FastArrayList();
+    /**
+     * The most recent SQL calls since the connection was served, if {@link ConnectionPoolDefinitionIF#isTrace trace}
+     * is on. Only the {@link ConnectionPoolDefinitionIF#getSqlHistorySize sql-history-size} most recent are kept.
+     * Null until the first call.
+     */
+    private volatile RingBuffer sqlCalls;
 
     /**
-     * Whether we have invoked a method that requires us to reset
+     * The value last passed to each mutator (keyed by its name) since the connection
+     * was served, so that we know what to reset. Null if none have been called.
      */
-    private boolean needToReset = false;
+    private Map changedProperties;
+
+    /**
+     * Whether a statement has been executed since the last commit or rollback
+     */
+    private boolean uncommittedWork;
+
+    /**
+     * What autoCommit was when we made the connection, so that we know whether there
+     * might be something to roll back and what to set it back to.
+     * @see #initialiseDefaultAutoCommit
+     */
+    private boolean defaultAutoCommit = true;
+
+    /**
+     * Runs the {@link ConnectionPoolDefinitionIF#getHouseKeepingTestSql house-keeping-test-sql}
+     * when we test the connection. Null until we need it. Whoever tests the connection has it
+     * to themselves at the time (it is either active or offline) so it is never shared.
+     */
+    private PreparedStatement validationStatement;
+
+    /** The SQL that the {@link #validationStatement} was prepared with */
+    private String validationSql;
+
+    /** Links for the pool's {@link FreeConnectionList}, which guards them */
+    ProxyConnection freeListPrevious;
+
+    /** @see #freeListPrevious */
+    ProxyConnection freeListNext;
+
+    /** @see #freeListPrevious */
+    boolean inFreeList;
+
+    /** @see #freeListPrevious */
+    boolean freeListParked;
 
     /**
      *
@@ -87,12 +153,22 @@ public class ProxyConnection implements ProxyConnectionIF {
         setId(id);
         this.connectionPool = connectionPool;
         this.definition = definition;
+        if (definition.getStatementCacheSize() > 0) {
+            statementCache = new StatementCache(this, definition.getStatementCacheSize());
+        }
         setBirthTime(System.currentTimeMillis());
+        // We just connected so we know it works
+        timeLastSuccess = getBirthTime();
+        if (definition.getMaximumConnectionLifetimeJitter() > 0) {
+            long maximumJitter = Math.min(definition.getMaximumConnectionLifetimeJitter(), definition.getMaximumConnectionLifetime());
+            lifetimeJitter = (long) (LIFETIME_JITTER_RANDOM.nextDouble() * maximumJitter);
+        }
 
-        this.status = status;
+        this.status = new SynchronizedInt(status);
         if (status == STATUS_ACTIVE) {
             setTimeLastStartActive(System.currentTimeMillis());
         }
+        publishState();
 
         // We only need to call this for the first connection we make. But it returns really
         // quickly and we don't call it that often so we shouldn't worry.
@@ -133,15 +209,42 @@ public class ProxyConnection implements ProxyConnectionIF {
     }
 
     /**
-     * The subclass should call this to indicate that a change has been made to
-     * the connection that might mean it needs to be reset (like setting autoCommit
+     * Call this whenever a mutator is called on the connection (like setting autoCommit
      * to false or something). We don't reset unless this has been called to avoid
-     * the overhead of unnecessary resetting.
+     * the overhead of unnecessary resetting, and then we only reset the properties
+     * that were changed.
      *
-     * @param needToReset true if the connection might need resetting.
+     * @param mutatorName the name of the method, e.g. setReadOnly
+     * @param value the value it was passed (null if it didn't take exactly one argument)
+     */
+    protected void registerChangedProperty(String mutatorName, Object value) {
+        if (changedProperties == null) {
+            changedProperties = new HashMap();
+        }
+        changedProperties.put(mutatorName, value);
+    }
+
+    /**
+     * Remember what autoCommit is for this connection now that it has been made (and
+     * the {@link ConnectionListenerIF#onBirth onBirth} listeners have had their say).
+     * We only ask once so that we don't need to ask each time it is returned.
+     */
+    protected void initialiseDefaultAutoCommit() {
+        try {
+            defaultAutoCommit = connection.getAutoCommit();
+        } catch (SQLException e) {
+            connectionPool.getLog().warn("#" + idFormat.format(getId()) + " - Couldn't find out whether autoCommit is on so we'll assume it is", e);
+        }
+    }
+
+    /**
+     * Call this when a statement is executed (or the transaction is committed
+     * or rolled back) so that we know whether we need to roll back when the
+     * connection is returned.
+     * @param uncommittedWork true if there might be something to roll back
      */
-    protected void setNeedToReset(boolean needToReset) {
-        this.needToReset = needToReset;
+    protected void setUncommittedWork(boolean uncommittedWork) {
+        this.uncommittedWork = uncommittedWork;
     }
 
     /**
@@ -170,6 +273,32 @@ public class ProxyConnection implements ProxyConnectionIF {
         openStatements.add(statement);
     }
 
+    /**
+     * The cache of closed statements, if there is one
+     * @return the cache, or null if the statement-cache-size is zero
+     */
+    protected StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * Called instead of {@link #registerClosedStatement} when a statement that could be
+     * cached is closed. If we are caching statements, and we didn't close it already
+     * ourselves, then it goes into the {@link #getStatementCache cache}.
+     * @param key how the statement was prepared
+     * @param statement the delegate statement that has just been closed
+     * @return true if it is now in the cache, or false if the caller should close it for real
+     * @throws SQLException if we couldn't tell whether the connection is still open
+     */
+    protected boolean parkStatement(StatementCache.Key key, Statement statement) throws SQLException {
+        if (statementCache != null && !isReallyClosed() && openStatements.remove(statement)) {
+            statementCache.put(key, statement);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     /**
      * @see ProxyConnectionIF#registerClosedStatement
      */
@@ -187,7 +316,13 @@ public class ProxyConnection implements ProxyConnectionIF {
      */
     public void reallyClose() throws SQLException {
         try {
-            connectionPool.registerRemovedConnection(getStatus());
+            synchronized (status.getLock()) {
+                connectionPool.registerRemovedConnection(this, getStatus());
+            }
+            if (statementCache != null) {
+                statementCache.clear();
+            }
+            closeValidationStatement();
             // Clean up the actual connection
             connection.close();
         } catch (Throwable t) {
@@ -196,6 +331,59 @@ public class ProxyConnection implements ProxyConnectionIF {
 
     }
 
+    /**
+     * When the connection last proved that it works: when it was built, when it last
+     * executed a statement without an exception or when it last passed a test.
+     * @return the time (milliseconds)
+     * @see ConnectionPoolDefinitionIF#getValidationInterval
+     */
+    protected long getTimeLastSuccess() {
+        return timeLastSuccess;
+    }
+
+    /**
+     * @see #getTimeLastSuccess
+     */
+    protected void setTimeLastSuccess(long timeLastSuccess) {
+        this.timeLastSuccess = timeLastSuccess;
+    }
+
+    /**
+     * Get the statement to test the connection with. We prepare it the first time
+     * and keep it until the connection is closed.
+     * @param sql the {@link ConnectionPoolDefinitionIF#getHouseKeepingTestSql house-keeping-test-sql}
+     * @return the statement
+     * @throws SQLException if it couldn't be prepared
+     */
+    protected PreparedStatement getValidationStatement(String sql) throws SQLException {
+        if (validationStatement != null && !sql.equals(validationSql)) {
+            // The definition must have changed
+            closeValidationStatement();
+        }
+        if (validationStatement == null) {
+            validationStatement = connection.prepareStatement(sql);
+            validationSql = sql;
+        }
+        return validationStatement;
+    }
+
+    /**
+     * Close the statement we test the connection with (if there is one). For instance,
+     * if the test failed and we aren't sure it is any good any more.
+     */
+    protected void closeValidationStatement() {
+        if (validationStatement != null) {
+            try {
+                validationStatement.close();
+            } catch (Throwable t) {
+                // Never mind
+                LOG.debug("Problem closing validation statement", t);
+            }
+            validationStatement = null;
+            validationSql = null;
+        }
+    }
+
     /**
      * @see ProxyConnectionIF#isReallyClosed
      */
@@ -229,17 +417,16 @@ public class ProxyConnection implements ProxyConnectionIF {
                 }
                 openStatements.clear();
 
-                if (needToReset) {
-                    // This call should be as quick as possible. Should we consider only
-                    // calling it if values have changed? The trouble with that is that it
-                    // means keeping track when they change and that might be even
-                    // slower
-                    if (!connectionPool.resetConnection(connection, "#" + getId())) {
+                if (changedProperties != null || (!defaultAutoCommit && uncommittedWork)) {
+                    // We only reset the properties that were changed, using the values we
+                    // remembered, so this shouldn't need to ask the driver anything.
+                    if (!connectionPool.resetConnection(connection, "#" + getId(), changedProperties, defaultAutoCommit, uncommittedWork)) {
                         connectionPool.removeProxyConnection(this, ConnectionListenerIF.RESET_FAIL, "it couldn't be reset", true, true);
                         removed = true;
                     }
-                    needToReset = false;
+                    changedProperties = null;
                 }
+                uncommittedWork = false;
             }
             // If we removed it above then putting it back will only cause a confusing log event later when
             // it is unable to be changed from ACTIVE to AVAILABLE.
@@ -257,7 +444,10 @@ public class ProxyConnection implements ProxyConnectionIF {
      * The lifecycle is: {@link #open()} then {@link #close()}
      */
     protected void open() {
-        sqlCalls.clear();
+        RingBuffer sqlCalls = this.sqlCalls;
+        if (sqlCalls != null) {
+            sqlCalls.clear();
+        }
     }
 
     public int getMark() {
@@ -265,7 +455,7 @@ public class ProxyConnection implements ProxyConnectionIF {
     }
 
     public int getStatus() {
-        return status;
+        return status.get();
     }
 
     /**
@@ -280,13 +470,18 @@ public class ProxyConnection implements ProxyConnectionIF {
      */
     public boolean setStatus(int oldStatus, int newStatus) {
         boolean success = false;
-        try {
-            statusReadWriteLock.writeLock().acquire();
-            connectionPool.acquireConnectionStatusWriteLock();
-            if (this.status == oldStatus || oldStatus == STATUS_FORCE) {
-                connectionPool.changeStatus(this.status, newStatus);
-                this.status = newStatus;
+        // We only lock this connection's status, not the whole pool. The pool's
+        // counts are striped so changing them doesn't hold anyone else up either.
+        synchronized (status.getLock()) {
+            final int previousStatus = status.get();
+            if (oldStatus == STATUS_FORCE) {
+                status.set(newStatus);
                 success = true;
+            } else {
+                success = status.commit(oldStatus, newStatus);
+            }
+            if (success) {
+                connectionPool.changeStatus(this, previousStatus, newStatus);
 
                 if (newStatus == oldStatus) {
                     LOG.warn("Unexpected attempt to change status from " + oldStatus + " to " + newStatus
@@ -296,16 +491,34 @@ public class ProxyConnection implements ProxyConnectionIF {
                 } else if (oldStatus == STATUS_ACTIVE) {
                     setTimeLastStopActive(System.currentTimeMillis());
                 }
+                publishState();
             }
-        } catch (InterruptedException e) {
-            LOG.error("Unable to acquire write lock for status");
-        } finally {
-            connectionPool.releaseConnectionStatusWriteLock();
-            statusReadWriteLock.writeLock().release();
         }
         return success;
     }
 
+    /**
+     * Replace the {@link #getState state} with one that matches what we look like now.
+     * Called whenever the status, requester or mark changes. (A connection that is handed
+     * straight over to a waiting caller gets its start time changed without a status change
+     * but it gets a new requester straight afterwards.)
+     */
+    private void publishState() {
+        synchronized (status.getLock()) {
+            state = new ConnectionState(status.get(), mark, requester, timeLastStartActive, timeLastStopActive);
+        }
+    }
+
+    /**
+     * What the status and the things that go with it were last time they changed. It's
+     * cheap to get and never changes, so you can use it to look at the connection without
+     * locking anything.
+     * @return the state
+     */
+    protected ConnectionState getState() {
+        return state;
+    }
+
     public long getId() {
         return id;
     }
@@ -335,6 +548,13 @@ public class ProxyConnection implements ProxyConnectionIF {
         return System.currentTimeMillis() - getBirthTime();
     }
 
+    /**
+     * @see ProxyConnectionIF#getLifetimeJitter
+     */
+    public long getLifetimeJitter() {
+        return lifetimeJitter;
+    }
+
     /**
      * @see ConnectionInfoIF#getBirthTime
      */
@@ -383,6 +603,7 @@ public class ProxyConnection implements ProxyConnectionIF {
      */
     public void setRequester(String requester) {
         this.requester = requester;
+        publishState();
     }
 
     /**
@@ -419,6 +640,7 @@ public class ProxyConnection implements ProxyConnectionIF {
     public void markForExpiry(String reason) {
         mark = MARK_FOR_EXPIRY;
         reasonForMark = reason;
+        publishState();
     }
 
     /**
@@ -485,15 +707,23 @@ public class ProxyConnection implements ProxyConnectionIF {
     }
 
     public String[] getSqlCalls() {
-        return (String[]) sqlCalls.toArray(new String[0]);
+        RingBuffer sqlCalls = this.sqlCalls;
+        if (sqlCalls == null) {
+            return new String[0];
+        }
+        // Some of them might be an SqlTrace that we haven't rendered yet
+        Object[] calls = sqlCalls.toArray();
+        String[] sqlCallStrings = new String[calls.length];
+        for (int i = 0; i < calls.length; i++) {
+            sqlCallStrings[i] = calls[i].toString();
+        }
+        return sqlCallStrings;
     }
 
     public String getLastSqlCall() {
-        if (sqlCalls != null && sqlCalls.size() > 0) {
-            return (String) sqlCalls.get(sqlCalls.size() - 1);
-        } else {
-            return null;
-        }
+        RingBuffer sqlCalls = this.sqlCalls;
+        Object lastSqlCall = sqlCalls != null ? sqlCalls.getLast() : null;
+        return lastSqlCall != null ? lastSqlCall.toString() : null;
     }
 
     public int getReasonCode() {
@@ -501,6 +731,29 @@ public class ProxyConnection implements ProxyConnectionIF {
     }
 
     public void addSqlCall(String sqlCall) {
-        this.sqlCalls.add(sqlCall);
+        getSqlCallBuffer().add(sqlCall);
+    }
+
+    /**
+     * Remember a call without rendering it as a String until somebody asks for it
+     * @param sqlTrace the call
+     * @see #getSqlCalls
+     */
+    protected void addSqlCall(SqlTrace sqlTrace) {
+        getSqlCallBuffer().add(sqlTrace);
+    }
+
+    /**
+     * Where we keep the {@link #getSqlCalls SQL calls}. Only the thread using the connection
+     * adds to it so we don't mind building it without a lock.
+     * @return the buffer
+     */
+    private RingBuffer getSqlCallBuffer() {
+        RingBuffer sqlCalls = this.sqlCalls;
+        if (sqlCalls == null) {
+            sqlCalls = new RingBuffer(definition.getSqlHistorySize());
+            this.sqlCalls = sqlCalls;
+        }
+        return sqlCalls;
     }
 }
@@ -125,6 +125,14 @@ public interface ProxyConnectionIF extends ConnectionInfoIF {
 
     ConnectionPoolDefinitionIF getDefinition();
 
+    /**
+     * How much sooner than the {@link ConnectionPoolDefinitionIF#getMaximumConnectionLifetime maximum-connection-lifetime}
+     * this connection expires. Chosen at random when it was built.
+     * @return the jitter (milliseconds)
+     * @see ConnectionPoolDefinitionIF#getMaximumConnectionLifetimeJitter
+     */
+    long getLifetimeJitter();
+
     /**
      * Get the most recent of all the {@link #getSqlCalls()}
      * @return the SQL (could be a batch of SQLs)
@@ -138,6 +146,7 @@ public interface ProxyConnectionIF extends ConnectionInfoIF {
      * {@link org.logicalcobwebs.proxool.ConnectionListenerIF#FATAL_SQL_EXCEPTION_DETECTED},
      * {@link org.logicalcobwebs.proxool.ConnectionListenerIF#MANUAL_EXPIRY},
      * {@link org.logicalcobwebs.proxool.ConnectionListenerIF#MAXIMUM_CONNECTION_LIFETIME_EXCEEDED},
+     * {@link org.logicalcobwebs.proxool.ConnectionListenerIF#MAXIMUM_IDLE_TIME_EXCEEDED},
      * {@link org.logicalcobwebs.proxool.ConnectionListenerIF#RESET_FAIL},
      * {@link org.logicalcobwebs.proxool.ConnectionListenerIF#SHUTDOWN}, or
      * {@link org.logicalcobwebs.proxool.ConnectionListenerIF#VALIDATION_FAIL}
@@ -7,7 +7,7 @@ package org.logicalcobwebs.proxool;
 
 import org.logicalcobwebs.cglib.proxy.Enhancer;
 import org.logicalcobwebs.cglib.proxy.Factory;
-import org.logicalcobwebs.cglib.proxy.Callback;
+import org.logicalcobwebs.cglib.proxy.MethodInterceptor;
 import org.logicalcobwebs.cglib.core.NamingPolicy;
 import org.logicalcobwebs.cglib.core.Predicate;
 import org.apache.commons.logging.Log;
@@ -36,7 +36,15 @@ class ProxyFactory {
 
     private static final Log LOG = LogFactory.getLog(ProxyFactory.class);
 
-    private static Map interfaceMap = new HashMap();
+    /**
+     * Maps each delegate class to a chain of {@link ProxyPrototype prototypes}, one for
+     * each combination of injectable interfaces we have been asked for. It is copied on
+     * write (which only happens the first time we see a new combination) so that
+     * looking up a prototype needs neither a lock nor a new object.
+     */
+    private static volatile Map prototypeMap = new HashMap();
+
+    private static final Object PROTOTYPE_WRITE_LOCK = new Object();
 
     /**
      * This naming policy stops conflicts with other Cglib instances that are running
@@ -91,10 +99,11 @@ class ProxyFactory {
      * @param connectionPool the pool it belongs to
      * @param proxyConnection the connection it was built from
      * @param sqlStatement Can be null?
+     * @param statementKey identifies the statement in the {@link StatementCache} (null if it can't be cached)
      * @return the proxied statement
      */
-    protected static Statement getStatement(Statement delegate, ConnectionPool connectionPool, ProxyConnectionIF proxyConnection, String sqlStatement) {
-        return (Statement) getProxy(delegate, new ProxyStatement(delegate, connectionPool, proxyConnection, sqlStatement), proxyConnection.getDefinition());
+    protected static Statement getStatement(Statement delegate, ConnectionPool connectionPool, ProxyConnectionIF proxyConnection, String sqlStatement, StatementCache.Key statementKey) {
+        return (Statement) getProxy(delegate, new ProxyStatement(delegate, connectionPool, proxyConnection, sqlStatement, statementKey), proxyConnection.getDefinition());
     }
 
     /**
@@ -107,13 +116,100 @@ class ProxyFactory {
         return (DatabaseMetaData) getProxy(databaseMetaData, new ProxyDatabaseMetaData(databaseMetaData, wrappedConnection), null);
     }
 
-    private static Object getProxy(Object delegate, Callback callback, ConnectionPoolDefinitionIF def) {
+    private static Object getProxy(Object delegate, MethodInterceptor callback, ConnectionPoolDefinitionIF def) {
+        return getFactory(delegate.getClass(), def).newInstance(callback);
+    }
+
+    /**
+     * Get a prototype proxy that implements all the interfaces of the delegate class
+     * (plus any injectable interfaces in the definition). Building the proxy class is
+     * expensive so we only do it once for each combination and then just call
+     * {@link Factory#newInstance(org.logicalcobwebs.cglib.proxy.Callback) newInstance}
+     * for each object we proxy.
+     * @param clazz the class of the delegate
+     * @param def the definition that provides the injectable interfaces (can be null)
+     * @return a factory for new proxies
+     */
+    private static Factory getFactory(Class clazz, ConnectionPoolDefinitionIF def) {
+        Class injectableConnectionInterface = null;
+        Class injectableStatementInterface = null;
+        Class injectablePreparedStatementInterface = null;
+        Class injectableCallableStatementInterface = null;
+        if (def != null) {
+            injectableConnectionInterface = def.getInjectableConnectionInterface();
+            injectableStatementInterface = def.getInjectableStatementInterface();
+            injectablePreparedStatementInterface = def.getInjectablePreparedStatementInterface();
+            injectableCallableStatementInterface = def.getInjectableCallableStatementInterface();
+        }
+
+        ProxyPrototype pp = findPrototype((ProxyPrototype) prototypeMap.get(clazz),
+                injectableConnectionInterface,
+                injectableStatementInterface,
+                injectablePreparedStatementInterface,
+                injectableCallableStatementInterface);
+        if (pp != null) {
+            return pp.factory;
+        }
+
         Enhancer e = new Enhancer();
         e.setNamingPolicy(NAMING_POLICY);
-        e.setInterfaces(getInterfaces(delegate.getClass(), def));
-        e.setCallback(callback);
+        e.setInterfaces(getInterfaces(clazz, def));
+        e.setCallbackType(MethodInterceptor.class);
         e.setClassLoader(ProxyFactory.class.getClassLoader());
-        return e.create();
+        Factory factory;
+        try {
+            // The prototype never gets a callback of its own so it doesn't keep hold
+            // of whichever connection or statement happened to be proxied first.
+            factory = (Factory) e.createClass().newInstance();
+        } catch (InstantiationException ie) {
+            throw new IllegalStateException("Couldn't create proxy for " + clazz + ": " + ie.getMessage());
+        } catch (IllegalAccessException iae) {
+            throw new IllegalStateException("Couldn't create proxy for " + clazz + ": " + iae.getMessage());
+        }
+
+        synchronized (PROTOTYPE_WRITE_LOCK) {
+            // Another thread may have got here first. It doesn't matter if we end up
+            // with two prototypes for the same combination (they share the same class)
+            // but it's tidier not to.
+            ProxyPrototype current = (ProxyPrototype) prototypeMap.get(clazz);
+            pp = findPrototype(current,
+                    injectableConnectionInterface,
+                    injectableStatementInterface,
+                    injectablePreparedStatementInterface,
+                    injectableCallableStatementInterface);
+            if (pp != null) {
+                return pp.factory;
+            }
+            pp = new ProxyPrototype(factory,
+                    injectableConnectionInterface,
+                    injectableStatementInterface,
+                    injectablePreparedStatementInterface,
+                    injectableCallableStatementInterface,
+                    current);
+            Map newPrototypeMap = new HashMap(prototypeMap);
+            newPrototypeMap.put(clazz, pp);
+            prototypeMap = newPrototypeMap;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Built proxy prototype for " + clazz);
+            }
+        }
+        return factory;
+    }
+
+    private static ProxyPrototype findPrototype(ProxyPrototype first,
+                                                Class injectableConnectionInterface,
+                                                Class injectableStatementInterface,
+                                                Class injectablePreparedStatementInterface,
+                                                Class injectableCallableStatementInterface) {
+        for (ProxyPrototype pp = first; pp != null; pp = pp.next) {
+            if (pp.injectableConnectionInterface == injectableConnectionInterface
+                    && pp.injectableStatementInterface == injectableStatementInterface
+                    && pp.injectablePreparedStatementInterface == injectablePreparedStatementInterface
+                    && pp.injectableCallableStatementInterface == injectableCallableStatementInterface) {
+                return pp;
+            }
+        }
+        return null;
     }
 
     /**
@@ -144,78 +240,68 @@ class ProxyFactory {
 
     /**
      * Get all the interfaces that a class implements. Drills down into super interfaces too
-     * and super classes too.
-     * The results are cached so it's very fast second time round.
+     * and super classes too. This is only called when we build a new
+     * {@link #getFactory prototype} so it isn't cached.
      * @param clazz the class to examine.
      * @return an array of classes (all interfaces) that this class implements.
      */
     private static Class[] getInterfaces(Class clazz, ConnectionPoolDefinitionIF cpd) {
-        Class[] interfaceArray = (Class[]) interfaceMap.get(clazz);
-        if (interfaceArray == null) {
-            Set interfaces = new HashSet();
-            traverseInterfacesRecursively(interfaces, clazz);
-            if (cpd != null) {
-                // Work out which interface we should be injecting (if it has been configured). Make sure
-                // we check CallableStatement then PreparedStatement then Statement or all three will get
-                // caught by Statement
-                if (Connection.class.isAssignableFrom(clazz)) {
-                    Class injectableClass = cpd.getInjectableConnectionInterface();
-                    // Inject it if it was configured.
-                    if (injectableClass != null) {
-                        interfaces.add(injectableClass);
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Injecting " + injectableClass + " into " + clazz);
-                        }
-                    }
-                }
-                if (CallableStatement.class.isAssignableFrom(clazz)) {
+        Set interfaces = new HashSet();
+        traverseInterfacesRecursively(interfaces, clazz);
+        if (cpd != null) {
+            // Work out which interface we should be injecting (if it has been configured). Make sure
+            // we check CallableStatement then PreparedStatement then Statement or all three will get
+            // caught by Statement
+            if (Connection.class.isAssignableFrom(clazz)) {
+                Class injectableClass = cpd.getInjectableConnectionInterface();
+                // Inject it if it was configured.
+                if (injectableClass != null) {
+                    interfaces.add(injectableClass);
                     if (LOG.isDebugEnabled()) {
-                        LOG.debug("Getting injectableCallableStatementInterface");
-                    }
-                    Class injectableClass = cpd.getInjectableCallableStatementInterface();
-                    // Inject it if it was configured.
-                    if (injectableClass != null) {
-                        interfaces.add(injectableClass);
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Injecting " + injectableClass + " into " + clazz);
-                        }
+                        LOG.debug("Injecting " + injectableClass + " into " + clazz);
                     }
                 }
-                if (PreparedStatement.class.isAssignableFrom(clazz)) {
-                    Class injectableClass = cpd.getInjectablePreparedStatementInterface();
-                    // Inject it if it was configured.
-                    if (injectableClass != null) {
-                        interfaces.add(injectableClass);
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Injecting " + injectableClass + " into " + clazz);
-                        }
+            }
+            if (CallableStatement.class.isAssignableFrom(clazz)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Getting injectableCallableStatementInterface");
+                }
+                Class injectableClass = cpd.getInjectableCallableStatementInterface();
+                // Inject it if it was configured.
+                if (injectableClass != null) {
+                    interfaces.add(injectableClass);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Injecting " + injectableClass + " into " + clazz);
                     }
                 }
-                if (Statement.class.isAssignableFrom(clazz)) {
-                    Class injectableClass = cpd.getInjectableStatementInterface();
-                    // Inject it if it was configured.
-                    if (injectableClass != null) {
-                        interfaces.add(injectableClass);
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Injecting " + injectableClass + " into " + clazz);
-                        }
+            }
+            if (PreparedStatement.class.isAssignableFrom(clazz)) {
+                Class injectableClass = cpd.getInjectablePreparedStatementInterface();
+                // Inject it if it was configured.
+                if (injectableClass != null) {
+                    interfaces.add(injectableClass);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Injecting " + injectableClass + " into " + clazz);
                     }
                 }
             }
-            interfaceArray = (Class[]) interfaces.toArray(new Class[interfaces.size()]);
-            if (LOG.isDebugEnabled()) {
-                for (int i = 0; i < interfaceArray.length; i++) {
-                    Class aClass = interfaceArray[i];
-                    LOG.debug("Implementing " + aClass);
+            if (Statement.class.isAssignableFrom(clazz)) {
+                Class injectableClass = cpd.getInjectableStatementInterface();
+                // Inject it if it was configured.
+                if (injectableClass != null) {
+                    interfaces.add(injectableClass);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Injecting " + injectableClass + " into " + clazz);
+                    }
                 }
             }
-            interfaceMap.put(clazz, interfaceArray);
-/*
-        } else {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Reusing " + interfaceArray.length + " interfaces already looked up for " + clazz);
+        }
+        Class[] interfaceArray = (Class[]) interfaces.toArray(new Class[interfaces.size()]);
+        if (LOG.isDebugEnabled()) {
+            for (int i = 0; i < interfaceArray.length; i++) {
+                Class aClass = interfaceArray[i];
+                LOG.debug("Implementing " + aClass);
             }
-*/
         }
         return interfaceArray;
     }
@@ -277,6 +363,40 @@ class ProxyFactory {
         return (WrappedConnection) ((Factory)connection).getCallback(0);
     }
 
+    /**
+     * A proxy that we can ask for {@link Factory#newInstance(org.logicalcobwebs.cglib.proxy.Callback) new
+     * instances}, together with the injectable interfaces it was built with. Prototypes for the same
+     * delegate class are chained together.
+     */
+    private static class ProxyPrototype {
+
+        private final Factory factory;
+
+        private final Class injectableConnectionInterface;
+
+        private final Class injectableStatementInterface;
+
+        private final Class injectablePreparedStatementInterface;
+
+        private final Class injectableCallableStatementInterface;
+
+        private final ProxyPrototype next;
+
+        ProxyPrototype(Factory factory,
+                       Class injectableConnectionInterface,
+                       Class injectableStatementInterface,
+                       Class injectablePreparedStatementInterface,
+                       Class injectableCallableStatementInterface,
+                       ProxyPrototype next) {
+            this.factory = factory;
+            this.injectableConnectionInterface = injectableConnectionInterface;
+            this.injectableStatementInterface = injectableStatementInterface;
+            this.injectablePreparedStatementInterface = injectablePreparedStatementInterface;
+            this.injectableCallableStatementInterface = injectableCallableStatementInterface;
+            this.next = next;
+        }
+    }
+
 }
 
 /*
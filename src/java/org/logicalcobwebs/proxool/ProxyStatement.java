@@ -12,9 +12,12 @@ import org.logicalcobwebs.cglib.proxy.MethodInterceptor;
 import org.logicalcobwebs.cglib.proxy.MethodProxy;
 import org.logicalcobwebs.cglib.proxy.InvocationHandler;
 import org.logicalcobwebs.proxool.proxy.InvokerFacade;
+import org.logicalcobwebs.proxool.util.CopyOnWriteMap;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Connection;
 
@@ -49,78 +52,179 @@ class ProxyStatement extends AbstractProxyStatement implements MethodInterceptor
 
     private static final String SET_PREFIX = "set";
 
-    public ProxyStatement(Statement statement, ConnectionPool connectionPool, ProxyConnectionIF proxyConnection, String sqlStatement) {
-        super(statement, connectionPool, proxyConnection, sqlStatement);
+    private static final String IS_CLOSED_METHOD = "isClosed";
+
+    private static final String SET_MAX_ROWS_METHOD = "setMaxRows";
+
+    private static final String SET_QUERY_TIMEOUT_METHOD = "setQueryTimeout";
+
+    private static final String SET_FETCH_SIZE_METHOD = "setFetchSize";
+
+    private static final String SET_FETCH_DIRECTION_METHOD = "setFetchDirection";
+
+    private static final String SET_MAX_FIELD_SIZE_METHOD = "setMaxFieldSize";
+
+    private static final String SET_ESCAPE_PROCESSING_METHOD = "setEscapeProcessing";
+
+    private static final String SET_CURSOR_NAME_METHOD = "setCursorName";
+
+    private static final String SET_POOLABLE_METHOD = "setPoolable";
+
+    private static final String CLOSE_ON_COMPLETION_METHOD = "closeOnCompletion";
+
+    private static final int OTHER = 0;
+
+    private static final int ADD_BATCH = 1;
+
+    private static final int EXECUTE_BATCH = 2;
+
+    private static final int EXECUTE = 3;
+
+    private static final int EQUALS = 4;
+
+    private static final int CLOSE = 5;
+
+    private static final int GET_CONNECTION = 6;
+
+    private static final int FINALIZE = 7;
+
+    private static final int SET_NULL = 8;
+
+    private static final int SET = 9;
+
+    private static final int IS_CLOSED = 10;
+
+    /** Changes something we can't put back before the statement is cached */
+    private static final int UNCACHEABLE_SETTING = 11;
+
+    private static final int SET_POOLABLE = 12;
+
+    /** Changes a setting that we put back before the statement is cached. Add the setting (like {@link #MAX_ROWS}). */
+    private static final int SETTING = 100;
+
+    /**
+     * What sort of method each one is (see {@link #getMethodId}), so that we only
+     * have to compare names once per method rather than on every call.
+     */
+    private static final CopyOnWriteMap METHOD_IDS = new CopyOnWriteMap();
+
+    public ProxyStatement(Statement statement, ConnectionPool connectionPool, ProxyConnectionIF proxyConnection, String sqlStatement, StatementCache.Key statementKey) {
+        super(statement, connectionPool, proxyConnection, sqlStatement, statementKey);
     }
 
     public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
         return invoke(proxy, method, args);
     }
 
+    /**
+     * Delegates to the statement, keeping track of the SQL and timing any execute
+     * methods. Methods that the delegate statement implements are called directly
+     * using the {@link MethodProxy} (if we are given one) rather than by reflection.
+     * @see InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+     */
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         Object result = null;
         long startTime = System.currentTimeMillis();
         final int argCount = args != null ? args.length : 0;
-
-        Method concreteMethod = InvokerFacade.getConcreteMethod(getStatement().getClass(), method);
+        final int methodId = getMethodId(method);
+
+        if (isParked() && method.getDeclaringClass() != Object.class) {
+            // The delegate statement is back in the cache and might belong to somebody else now
+            if (methodId == CLOSE) {
+                return null;
+            } else if (methodId == IS_CLOSED) {
+                return Boolean.TRUE;
+            } else {
+                throw new SQLException("You can't perform a " + method.getName() + " operation after the statement has been closed");
+            }
+        }
 
         // This gets called /before/ the method has run
-        if (concreteMethod.getName().equals(ADD_BATCH_METHOD)) {
+        if (methodId == ADD_BATCH) {
+            setBatchPending(true);
             // If we have just added a batch call then we need to update the sql log
-            if (argCount > 0 && args[0] instanceof String) {
-                setSqlStatementIfNull((String) args[0]);
-            }
-            appendToSqlLog();
-        } else if (concreteMethod.getName().equals(EXECUTE_BATCH_METHOD)) {
+            String sql = argCount > 0 && args[0] instanceof String ? (String) args[0] : null;
+            appendToSqlLog(sql);
+            rememberExecuteSql(sql, true);
+        } else if (methodId == EXECUTE_BATCH) {
             // executing a batch should do a trace
+            setBatchPending(false);
             startExecute();
-        } else if (concreteMethod.getName().startsWith(EXECUTE_FRAGMENT)) {
+        } else if (methodId == EXECUTE) {
             // executing should update the log and do a trace
-            if (argCount > 0 && args[0] instanceof String) {
-                setSqlStatementIfNull((String) args[0]);
-            }
-            appendToSqlLog();
+            String sql = argCount > 0 && args[0] instanceof String ? (String) args[0] : null;
+            appendToSqlLog(sql);
+            rememberExecuteSql(sql, false);
             startExecute();
+        } else if (methodId >= SETTING) {
+            // So that we can put it back before the statement is cached
+            settingChanged(methodId - SETTING);
+        } else if (methodId == UNCACHEABLE_SETTING
+                || (methodId == SET_POOLABLE && argCount > 0 && Boolean.FALSE.equals(args[0]))) {
+            setUncacheable();
         }
 
         // We need to remember an exceptions that get thrown so that we can optionally
         // pass them to the onExecute() call below
         Exception exception = null;
         try {
-            if (concreteMethod.getName().equals(EQUALS_METHOD) && argCount == 1) {
-                result = (equals(args[0])) ? Boolean.TRUE : Boolean.FALSE;
-            } else if (concreteMethod.getName().equals(CLOSE_METHOD) && argCount == 0) {
-                close();
-            } else if (concreteMethod.getName().equals(GET_CONNECTION_METHOD) && argCount == 0) {
-                result = getConnection();
-            } else if (concreteMethod.getName().equals(FINALIZE_METHOD) && argCount == 0) {
-                finalize();
-            } else {
-                try {
-                    result = concreteMethod.invoke(getStatement(), args);
-                } catch (IllegalAccessException e) {
-                    // This is probably because we are trying to access a non-public concrete class. But don't worry,
-                    // we can always use the proxy supplied method. This will only fail if we try to use an injectable
-                    // method on a method in a class that isn't public and for a method that isn't declared in an interface -
-                    // but if that is the case then that method is inaccessible by any means (even by bypassing Proxool and
-                    // using the vendor's driver directly).
-                    LOG.debug("Ignoring IllegalAccessException whilst invoking the " + concreteMethod + " concrete method and trying the " + method + " method directly.");
-                    // By overriding the method cached in the InvokerFacade we ensure that we only log this message once, and
-                    // we speed up subsequent usages by not calling the method that fails first.
-                    InvokerFacade.overrideConcreteMethod(getStatement().getClass(), method, method);
-                    result = method.invoke(getStatement(), args);
-                }
+            switch (methodId) {
+                case EQUALS:
+                    result = (equals(args[0])) ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                case CLOSE:
+                    close();
+                    break;
+                case GET_CONNECTION:
+                    result = getConnection();
+                    break;
+                case FINALIZE:
+                    finalize();
+                    break;
+                default:
+                    Statement statement = getStatement();
+                    if (proxy instanceof MethodProxy && method.getDeclaringClass().isInstance(statement)) {
+                        // The delegate implements this method's interface so we can call it directly
+                        // without any reflection.
+                        try {
+                            result = ((MethodProxy) proxy).invoke(statement, args);
+                        } catch (Throwable t) {
+                            throw new InvocationTargetException(t);
+                        }
+                    } else {
+                        Method concreteMethod = InvokerFacade.getConcreteMethod(statement.getClass(), method);
+                        try {
+                            result = concreteMethod.invoke(statement, args);
+                        } catch (IllegalAccessException e) {
+                            // This is probably because we are trying to access a non-public concrete class. But don't worry,
+                            // we can always use the proxy supplied method. This will only fail if we try to use an injectable
+                            // method on a method in a class that isn't public and for a method that isn't declared in an interface -
+                            // but if that is the case then that method is inaccessible by any means (even by bypassing Proxool and
+                            // using the vendor's driver directly).
+                            LOG.debug("Ignoring IllegalAccessException whilst invoking the " + concreteMethod + " concrete method and trying the " + method + " method directly.");
+                            // By overriding the method cached in the InvokerFacade we ensure that we only log this message once, and
+                            // we speed up subsequent usages by not calling the method that fails first.
+                            InvokerFacade.overrideConcreteMethod(statement.getClass(), method, method);
+                            result = method.invoke(statement, args);
+                        }
+                    }
             }
 
-            // We only dump sql calls if we are in verbose mode and debug is enabled
-            if (isTrace()) {
+            if (result instanceof ResultSet) {
+                resultSetReturned((ResultSet) result);
+            }
+
+            // We only remember parameters if we are tracing or logging slow queries
+            if (isCapture()) {
                 try {
 
                     // What sort of method is it
-                    if (concreteMethod.getName().equals(SET_NULL_METHOD) && argCount > 0 && args[0] instanceof Integer) {
-                        int index = ((Integer) args[0]).intValue();
-                        putParameter(index, null);
-                    } else if (concreteMethod.getName().startsWith(SET_PREFIX) && argCount > 1 && args[0] instanceof Integer) {
+                    if (methodId == SET_NULL) {
+                        if (argCount > 0 && args[0] instanceof Integer) {
+                            int index = ((Integer) args[0]).intValue();
+                            putParameter(index, null);
+                        }
+                    } else if (methodId == SET && argCount > 1 && args[0] instanceof Integer) {
                         int index = ((Integer) args[0]).intValue();
                         putParameter(index, args[1]);
                     }
@@ -151,7 +255,11 @@ class ProxyStatement extends AbstractProxyStatement implements MethodInterceptor
         } finally {
 
             // This gets called /after/ the method has run
-            if (concreteMethod.getName().equals(EXECUTE_BATCH_METHOD) || concreteMethod.getName().startsWith(EXECUTE_FRAGMENT)) {
+            if (methodId == EXECUTE_BATCH || methodId == EXECUTE) {
+                if (exception == null) {
+                    executeSucceeded(startTime);
+                }
+                executed(startTime, exception);
                 trace(startTime, exception);
             }
 
@@ -161,6 +269,59 @@ class ProxyStatement extends AbstractProxyStatement implements MethodInterceptor
 
     }
 
+    /**
+     * Work out what sort of method this is. We only do it once for each method.
+     * @param method the method being called on the proxy
+     * @return one of the method IDs, or {@link #OTHER} if it isn't one we treat specially
+     */
+    private static int getMethodId(Method method) {
+        Integer methodId = (Integer) METHOD_IDS.get(method);
+        if (methodId == null) {
+            String name = method.getName();
+            int argCount = method.getParameterTypes().length;
+            int id = OTHER;
+            if (name.equals(ADD_BATCH_METHOD)) {
+                id = ADD_BATCH;
+            } else if (name.equals(EXECUTE_BATCH_METHOD)) {
+                id = EXECUTE_BATCH;
+            } else if (name.startsWith(EXECUTE_FRAGMENT)) {
+                id = EXECUTE;
+            } else if (name.equals(EQUALS_METHOD) && argCount == 1) {
+                id = EQUALS;
+            } else if (name.equals(CLOSE_METHOD) && argCount == 0) {
+                id = CLOSE;
+            } else if (name.equals(GET_CONNECTION_METHOD) && argCount == 0) {
+                id = GET_CONNECTION;
+            } else if (name.equals(FINALIZE_METHOD) && argCount == 0) {
+                id = FINALIZE;
+            } else if (name.equals(IS_CLOSED_METHOD) && argCount == 0) {
+                id = IS_CLOSED;
+            } else if (name.equals(SET_MAX_ROWS_METHOD)) {
+                id = SETTING + MAX_ROWS;
+            } else if (name.equals(SET_QUERY_TIMEOUT_METHOD)) {
+                id = SETTING + QUERY_TIMEOUT;
+            } else if (name.equals(SET_FETCH_SIZE_METHOD)) {
+                id = SETTING + FETCH_SIZE;
+            } else if (name.equals(SET_FETCH_DIRECTION_METHOD)) {
+                id = SETTING + FETCH_DIRECTION;
+            } else if (name.equals(SET_MAX_FIELD_SIZE_METHOD)) {
+                id = SETTING + MAX_FIELD_SIZE;
+            } else if (name.equals(SET_ESCAPE_PROCESSING_METHOD)) {
+                id = SETTING + ESCAPE_PROCESSING;
+            } else if (name.equals(SET_CURSOR_NAME_METHOD) || name.equals(CLOSE_ON_COMPLETION_METHOD)) {
+                id = UNCACHEABLE_SETTING;
+            } else if (name.equals(SET_POOLABLE_METHOD)) {
+                id = SET_POOLABLE;
+            } else if (name.equals(SET_NULL_METHOD)) {
+                id = SET_NULL;
+            } else if (name.startsWith(SET_PREFIX)) {
+                id = SET;
+            }
+            methodId = (Integer) METHOD_IDS.putIfAbsent(method, new Integer(id));
+        }
+        return methodId.intValue();
+    }
+
 }
 
 /*
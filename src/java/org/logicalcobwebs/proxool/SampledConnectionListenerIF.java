@@ -0,0 +1,48 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+/**
+ * A {@link ConnectionListenerIF} that wants to know how many executions each one it
+ * is told about stands for. If the {@link ConnectionPoolDefinitionIF#getTraceSampleRate
+ * trace-sample-rate} is more than one then listeners only hear about some of the
+ * executions. Implement this interface instead of ConnectionListenerIF and you'll be
+ * called with the sample weight, so that you can keep your counts right. You register
+ * it in the same way.
+ *
+ * <pre>
+ * String alias = "myPool";
+ * ConnectionListenerIF myConnectionListener = new MySampledConnectionListener();
+ * ProxoolFacade.{@link org.logicalcobwebs.proxool.ProxoolFacade#addConnectionListener addConnectionListener}(alias, myConnectionListener);
+ * </pre>
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public interface SampledConnectionListenerIF extends ConnectionListenerIF {
+
+    /**
+     * Happens after a successful execute that was sampled. This is called instead
+     * of {@link #onExecute(String, long)}.
+     *
+     * @param command what command was being executed
+     * @param elapsedTime how long the call took (in milliseconds)
+     * @param sampleWeight how many executions this one stands for (1 if every one is traced)
+     */
+    void onExecute(String command, long elapsedTime, int sampleWeight);
+
+    /**
+     * Happens when an exception was thrown during an execute that was sampled. This is
+     * called instead of {@link #onFail(String, Exception)}.
+     *
+     * @param command what command was being executed
+     * @param exception what exception was thrown
+     * @param sampleWeight how many executions this one stands for (1 if every one is traced)
+     */
+    void onFail(String command, Exception exception, int sampleWeight);
+
+}
@@ -0,0 +1,178 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Logs slow (and sampled) statements on a thread of its own, so that a slow log appender
+ * never adds to the time a statement takes. The thread that executed the statement just
+ * puts what it already has (the {@link SqlTrace}, which isn't rendered until we log it)
+ * in a queue. There is one queue and one thread for all the pools. If statements are
+ * being logged faster than we can write them and the queue fills up then we drop them,
+ * and say how many we dropped next time we log one.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ * @see ConnectionPoolDefinitionIF#getSlowQueryThreshold
+ * @see ConnectionPoolDefinitionIF#getSlowQuerySampleRate
+ */
+class SlowQueryLog {
+
+    private static final Log LOG = LogFactory.getLog(SlowQueryLog.class);
+
+    /** The most entries we queue. Any more are dropped. */
+    protected static final int MAXIMUM_QUEUE_SIZE = 1000;
+
+    /** How long the thread waits for something to log before it stops */
+    private static final long MAXIMUM_IDLE_TIME = 60000;
+
+    /** The queue, in a ring. It is its own lock. */
+    private static final Entry[] QUEUE = new Entry[MAXIMUM_QUEUE_SIZE];
+
+    /** Where the oldest entry is. Guarded by QUEUE. */
+    private static int head;
+
+    /** How many entries are queued. Guarded by QUEUE. */
+    private static int size;
+
+    /** How many we've dropped since we last said so. Guarded by QUEUE. */
+    private static long droppedCount;
+
+    /** Logs what is queued. Null if there isn't anything to log. Guarded by QUEUE. */
+    private static Thread logThread;
+
+    /**
+     * Queue a statement to be logged
+     * @param log the pool's log
+     * @param slow true if it reached the threshold, false if it was sampled
+     * @param connectionId which connection executed it
+     * @param requester the thread that was using the connection
+     * @param executeTime how long it took
+     * @param sql what it executed (not rendered yet)
+     * @param exception what it threw (or null)
+     */
+    protected static void add(Log log, boolean slow, long connectionId, String requester, long executeTime, Object sql, Exception exception) {
+        Entry entry = new Entry(log, slow, connectionId, requester, executeTime, sql, exception);
+        synchronized (QUEUE) {
+            if (size == QUEUE.length) {
+                droppedCount++;
+                return;
+            }
+            QUEUE[(head + size) % QUEUE.length] = entry;
+            size++;
+            if (logThread == null) {
+                logThread = new Thread("SlowQueryLog") {
+                    public void run() {
+                        logAll();
+                    }
+                };
+                logThread.setDaemon(true);
+                logThread.start();
+            } else if (size == 1) {
+                QUEUE.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Run by the log thread. Log whatever is queued and wait for more, until there
+     * hasn't been anything for a while.
+     */
+    private static void logAll() {
+        while (true) {
+            Entry entry;
+            long dropped;
+            synchronized (QUEUE) {
+                if (size == 0) {
+                    try {
+                        QUEUE.wait(MAXIMUM_IDLE_TIME);
+                    } catch (InterruptedException e) {
+                        LOG.debug("Interruption", e);
+                    }
+                    if (size == 0) {
+                        logThread = null;
+                        return;
+                    }
+                }
+                entry = QUEUE[head];
+                QUEUE[head] = null;
+                head = (head + 1) % QUEUE.length;
+                size--;
+                dropped = droppedCount;
+                droppedCount = 0;
+            }
+            try {
+                if (dropped > 0) {
+                    entry.log.warn("Couldn't keep up with the slow query log so " + dropped + " statements weren't logged");
+                }
+                entry.write();
+            } catch (Throwable t) {
+                LOG.error("Couldn't log slow query", t);
+            }
+        }
+    }
+
+    /**
+     * How many statements are waiting to be logged
+     * @return size
+     */
+    protected static int getQueueSize() {
+        synchronized (QUEUE) {
+            return size;
+        }
+    }
+
+    /**
+     * One statement waiting to be logged
+     */
+    private static class Entry {
+
+        private Log log;
+
+        private boolean slow;
+
+        private long connectionId;
+
+        private String requester;
+
+        private long executeTime;
+
+        private Object sql;
+
+        private Exception exception;
+
+        Entry(Log log, boolean slow, long connectionId, String requester, long executeTime, Object sql, Exception exception) {
+            this.log = log;
+            this.slow = slow;
+            this.connectionId = connectionId;
+            this.requester = requester;
+            this.executeTime = executeTime;
+            this.sql = sql;
+            this.exception = exception;
+        }
+
+        /**
+         * Render the statement and log it. Slow ones are warnings.
+         */
+        void write() {
+            if (slow ? log.isWarnEnabled() : log.isInfoEnabled()) {
+                String message = (slow ? "Slow query" : "Sampled query") + " on connection #" + connectionId
+                        + " for " + (requester != null ? requester : "unknown thread") + " took " + executeTime
+                        + " milliseconds: " + sql
+                        + (exception != null ? " (threw a " + exception.getClass().getName() + ": " + exception.getMessage() + ")" : "");
+                if (slow) {
+                    log.warn(message);
+                } else {
+                    log.info(message);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+import java.util.Date;
+
+/**
+ * The SQL that a statement executed (or a batch of them) together with the
+ * parameters it used. Capturing it is cheap: we just remember the parameter objects
+ * and only turn the whole thing into a String (with the parameters filled in) when
+ * {@link #toString} is called. Large batches are cut short after the first
+ * {@link #MAXIMUM_ENTRIES} entries and the rest are just counted.
+ * <p>
+ * A trace is built up by one thread (the one using the statement) and then, once the
+ * statement has been executed, it doesn't change. After that anybody can call
+ * {@link #toString}.
+ * </p>
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+class SqlTrace {
+
+    /** The most entries we render. Any more are just counted. */
+    protected static final int MAXIMUM_ENTRIES = 10;
+
+    /** Stands for a parameter that was explicitly set to null */
+    private static final Object NULL = new Object();
+
+    /** Parameters for the entry we are building, by index - 1. Null until one is set. */
+    private Object[] parameters;
+
+    /** The highest parameter index that has been set for the entry we are building */
+    private int parameterCount;
+
+    private String[] entrySql;
+
+    private Object[][] entryParameters;
+
+    /** How many entries there have been (including the ones we didn't keep) */
+    private int entryCount;
+
+    /** Cached by {@link #toString} */
+    private String rendered;
+
+    /**
+     * Remember the value of a parameter for the next {@link #addEntry entry}
+     * @param index the parameter index (starting at 1)
+     * @param value the value (can be null). We only keep the class of anything that
+     * isn't a String, Number, Boolean or Date.
+     */
+    protected void setParameter(int index, Object value) {
+        if (index < 1) {
+            return;
+        }
+        if (parameters == null) {
+            parameters = new Object[Math.max(index, 8)];
+        } else if (index > parameters.length) {
+            Object[] newParameters = new Object[Math.max(index, parameters.length * 2)];
+            System.arraycopy(parameters, 0, newParameters, 0, parameterCount);
+            parameters = newParameters;
+        }
+        if (value == null) {
+            value = NULL;
+        } else if (!(value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof Date)) {
+            // Don't hang on to streams, blobs, byte arrays and the like
+            value = value.getClass();
+        }
+        parameters[index - 1] = value;
+        if (index > parameterCount) {
+            parameterCount = index;
+        }
+    }
+
+    /**
+     * Add an entry using the parameters set since the last one
+     * @param sql the SQL (can be null if we don't know it, in which case the parameters are
+     * just forgotten)
+     */
+    protected void addEntry(String sql) {
+        if (sql != null && sql.length() > 0) {
+            if (entryCount < MAXIMUM_ENTRIES) {
+                if (entrySql == null) {
+                    entrySql = new String[MAXIMUM_ENTRIES];
+                    entryParameters = new Object[MAXIMUM_ENTRIES][];
+                }
+                entrySql[entryCount] = sql;
+                if (parameterCount > 0) {
+                    // Hand over the array rather than copying it
+                    entryParameters[entryCount] = parameters;
+                    parameters = null;
+                }
+            }
+            entryCount++;
+            rendered = null;
+        }
+        if (parameters != null) {
+            for (int i = 0; i < parameterCount; i++) {
+                parameters[i] = null;
+            }
+        }
+        parameterCount = 0;
+    }
+
+    /**
+     * How many entries have been added
+     * @return count
+     */
+    protected int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * The SQL with the parameters filled in. Each entry ends with a semicolon.
+     * @return the SQL
+     */
+    public synchronized String toString() {
+        if (rendered == null) {
+            StringBuffer out = new StringBuffer();
+            int kept = Math.min(entryCount, MAXIMUM_ENTRIES);
+            for (int i = 0; i < kept; i++) {
+                appendEntry(out, entrySql[i], entryParameters[i]);
+            }
+            if (entryCount > kept) {
+                out.append("(and ");
+                out.append(entryCount - kept);
+                out.append(" more)");
+            }
+            rendered = out.toString();
+        }
+        return rendered;
+    }
+
+    private static void appendEntry(StringBuffer out, String sql, Object[] parameters) {
+        int parameterIndex = 0;
+        int start = 0;
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            if (sql.charAt(i) == '?') {
+                out.append(sql.substring(start, i));
+                Object value = parameters != null && parameterIndex < parameters.length ? parameters[parameterIndex] : null;
+                appendParameter(out, value);
+                parameterIndex++;
+                start = i + 1;
+            }
+        }
+        out.append(sql.substring(start));
+        if (!sql.trim().endsWith(";")) {
+            out.append("; ");
+        }
+    }
+
+    private static void appendParameter(StringBuffer out, Object value) {
+        if (value == null) {
+            // Never set
+            out.append('?');
+        } else if (value == NULL) {
+            out.append("NULL");
+        } else if (value instanceof String) {
+            out.append('\'');
+            out.append(value);
+            out.append('\'');
+        } else if (value instanceof Date) {
+            out.append('\'');
+            out.append(AbstractProxyStatement.getDateAsString((Date) value));
+            out.append('\'');
+        } else if (value instanceof Class) {
+            String className = ((Class) value).getName();
+            out.append(className.substring(className.lastIndexOf('.') + 1));
+        } else {
+            out.append(value);
+        }
+    }
+
+}
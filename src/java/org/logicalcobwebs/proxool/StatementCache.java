@@ -0,0 +1,267 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The prepared and callable statements that a connection keeps open after they
+ * have been closed, so that they can be used again next time somebody prepares the
+ * same SQL. It only holds statements that nobody is using: {@link #take taking}
+ * one removes it and {@link #put putting} it back makes it available again. Once
+ * there are more than the {@link ConnectionPoolDefinitionIF#getStatementCacheSize
+ * statement-cache-size} the least recently used one is closed for real.
+ * <p>
+ * Each connection has its own cache so it is rarely used by more than one
+ * thread at a time, but it is synchronized anyway.
+ * </p>
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+class StatementCache {
+
+    private ProxyConnection proxyConnection;
+
+    private int maximumSize;
+
+    /** Maps each {@link Key} to its {@link Entry}. Guarded by this. */
+    private Map entries = new HashMap();
+
+    /** The most recently used entry. Guarded by this. */
+    private Entry head;
+
+    /** The least recently used entry (the next to be evicted). Guarded by this. */
+    private Entry tail;
+
+    /**
+     * @param proxyConnection the connection whose statements we are caching
+     * @param maximumSize how many statements to keep
+     */
+    protected StatementCache(ProxyConnection proxyConnection, int maximumSize) {
+        this.proxyConnection = proxyConnection;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Work out the key for a call to prepareStatement or prepareCall. We only cache
+     * the versions that take the SQL and, optionally, the result set type, concurrency
+     * and holdability.
+     * @param callable true if it is a call to prepareCall
+     * @param args the arguments to the call
+     * @return the key, or null if we don't cache statements made this way
+     */
+    protected static Key getKey(boolean callable, Object[] args) {
+        if (args == null || args.length == 0 || !(args[0] instanceof String)) {
+            return null;
+        }
+        for (int i = 1; i < args.length; i++) {
+            if (!(args[i] instanceof Integer)) {
+                return null;
+            }
+        }
+        switch (args.length) {
+            case 1:
+                return new Key(callable, (String) args[0], Key.UNSPECIFIED, Key.UNSPECIFIED, Key.UNSPECIFIED);
+            case 3:
+                return new Key(callable, (String) args[0], ((Integer) args[1]).intValue(),
+                        ((Integer) args[2]).intValue(), Key.UNSPECIFIED);
+            case 4:
+                return new Key(callable, (String) args[0], ((Integer) args[1]).intValue(),
+                        ((Integer) args[2]).intValue(), ((Integer) args[3]).intValue());
+            default:
+                // prepareStatement(sql, autoGeneratedKeys) and friends
+                return null;
+        }
+    }
+
+    /**
+     * Take a statement out of the cache
+     * @param key identifies the statement
+     * @return the statement, or null if we haven't got one
+     */
+    protected Statement take(Key key) {
+        Statement statement = null;
+        synchronized (this) {
+            Entry entry = (Entry) entries.remove(key);
+            if (entry != null) {
+                unlink(entry);
+                statement = entry.statement;
+            }
+        }
+        proxyConnection.getConnectionPool().statementCacheEvent(proxyConnection,
+                statement != null ? ConnectionPool.STATEMENT_CACHE_HIT : ConnectionPool.STATEMENT_CACHE_MISS);
+        return statement;
+    }
+
+    /**
+     * Put a statement that has just been closed back in the cache. If there is
+     * already one for the same key, or the cache is full, then we close one for real.
+     * @param key identifies the statement
+     * @param statement the delegate statement
+     */
+    protected void put(Key key, Statement statement) {
+        Statement evicted = null;
+        synchronized (this) {
+            Entry existing = (Entry) entries.get(key);
+            if (existing != null) {
+                // Somebody prepared the same SQL twice at once. Keep the newer one.
+                unlink(existing);
+                evicted = existing.statement;
+            } else if (entries.size() >= maximumSize) {
+                evicted = tail.statement;
+                entries.remove(tail.key);
+                unlink(tail);
+            }
+            Entry entry = new Entry(key, statement);
+            entries.put(key, entry);
+            link(entry);
+        }
+        if (evicted != null) {
+            proxyConnection.getConnectionPool().statementCacheEvent(proxyConnection, ConnectionPool.STATEMENT_CACHE_EVICTION);
+            closeQuietly(evicted);
+        }
+    }
+
+    /**
+     * Close all the cached statements for real. Call this when the connection is closed.
+     */
+    protected void clear() {
+        Statement[] statements;
+        synchronized (this) {
+            statements = new Statement[entries.size()];
+            int i = 0;
+            for (Entry entry = head; entry != null; entry = entry.next) {
+                statements[i++] = entry.statement;
+            }
+            entries.clear();
+            head = null;
+            tail = null;
+        }
+        for (int i = 0; i < statements.length; i++) {
+            closeQuietly(statements[i]);
+        }
+    }
+
+    /**
+     * How many statements are cached
+     * @return size
+     */
+    protected synchronized int size() {
+        return entries.size();
+    }
+
+    private void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            proxyConnection.getConnectionPool().getLog().debug("#" + proxyConnection.getId() + " couldn't close cached statement", e);
+        }
+    }
+
+    private void link(Entry entry) {
+        entry.previous = null;
+        entry.next = head;
+        if (head != null) {
+            head.previous = entry;
+        }
+        head = entry;
+        if (tail == null) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous == null) {
+            head = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (entry.next == null) {
+            tail = entry.previous;
+        } else {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    /**
+     * Identifies a statement by how it was prepared
+     */
+    static class Key {
+
+        /** Used for any argument that wasn't passed */
+        static final int UNSPECIFIED = -1;
+
+        private final boolean callable;
+
+        private final String sql;
+
+        private final int resultSetType;
+
+        private final int resultSetConcurrency;
+
+        private final int resultSetHoldability;
+
+        private final int hashCode;
+
+        Key(boolean callable, String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+            this.callable = callable;
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.resultSetHoldability = resultSetHoldability;
+            int h = sql.hashCode();
+            h = 31 * h + resultSetType;
+            h = 31 * h + resultSetConcurrency;
+            h = 31 * h + resultSetHoldability;
+            this.hashCode = callable ? ~h : h;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && callable == other.callable
+                    && resultSetType == other.resultSetType
+                    && resultSetConcurrency == other.resultSetConcurrency
+                    && resultSetHoldability == other.resultSetHoldability
+                    && sql.equals(other.sql);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public String toString() {
+            return (callable ? "call " : "") + sql;
+        }
+    }
+
+    private static class Entry {
+
+        private final Key key;
+
+        private final Statement statement;
+
+        private Entry previous;
+
+        private Entry next;
+
+        Entry(Key key, Statement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+    }
+
+}
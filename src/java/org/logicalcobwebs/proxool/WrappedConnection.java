@@ -11,6 +11,7 @@ import org.logicalcobwebs.cglib.proxy.MethodProxy;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.logicalcobwebs.proxool.proxy.InvokerFacade;
+import org.logicalcobwebs.proxool.util.CopyOnWriteMap;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
@@ -43,6 +44,46 @@ public class WrappedConnection implements MethodInterceptor {
 
     private static final String TO_STRING_METHOD = "toString";
 
+    private static final String PREPARE_STATEMENT_METHOD = "prepareStatement";
+
+    private static final String PREPARE_CALL_METHOD = "prepareCall";
+
+    private static final String COMMIT_METHOD = "commit";
+
+    private static final String ROLLBACK_METHOD = "rollback";
+
+    private static final int OTHER = 0;
+
+    private static final int CLOSE = 1;
+
+    private static final int IS_CLOSED = 2;
+
+    private static final int EQUALS = 3;
+
+    private static final int GET_META_DATA = 4;
+
+    private static final int FINALIZE = 5;
+
+    private static final int HASH_CODE = 6;
+
+    private static final int TO_STRING = 7;
+
+    private static final int MUTATOR = 8;
+
+    private static final int PREPARE_STATEMENT = 9;
+
+    private static final int PREPARE_CALL = 10;
+
+    private static final int COMMIT = 11;
+
+    private static final int ROLLBACK = 12;
+
+    /**
+     * What sort of method each one is (see {@link #getMethodId}), so that we only
+     * have to compare names once per method rather than on every call.
+     */
+    private static final CopyOnWriteMap METHOD_IDS = new CopyOnWriteMap();
+
     /**
      * The wrapped object. We should protect this and not expose it. We have to make sure that
      * if we pass the proxyConnection to another WrappedConnection then this one can no longer
@@ -97,25 +138,25 @@ public class WrappedConnection implements MethodInterceptor {
      * <li>getMetaData()</li>
      * <li>finalize()</li>
      * </ul>
-     * It also spots mutators and remembers that the property has been changed so that it can
-     * be {@link ConnectionResetter reset}. And any statements that are returned are remembered
+     * It also spots mutators and remembers what the property has been changed to so that it can
+     * be {@link ConnectionResetter reset}, and remembers whether there is any work to roll back. And any statements that are returned are remembered
      * so that we can track whether all statements have been closed properly when the connection
-     * is returned to the pool.
+     * is returned to the pool. If there is a {@link StatementCache} then prepared and callable
+     * statements are taken from it when they can be. Methods that the delegate connection implements
+     * are called directly using the {@link MethodProxy} (if we are given one) rather than by reflection.
      * @see InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
      */
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         Object result = null;
         int argCount = args != null ? args.length : 0;
-        Method concreteMethod = method;
-        if (proxyConnection != null && proxyConnection.getConnection() != null) {
-            concreteMethod = InvokerFacade.getConcreteMethod(proxyConnection.getConnection().getClass(), method);
-        }
+        final int methodId = getMethodId(method);
+        StatementCache.Key statementKey = null;
         try {
-            if (proxyConnection != null && !concreteMethod.getName().equals(FINALIZE_METHOD) && proxyConnection.isReallyClosed()) {
+            if (proxyConnection != null && methodId != FINALIZE && proxyConnection.isReallyClosed()) {
                 // The user is trying to do something to this connection and it's been closed.
-                if (concreteMethod.getName().equals(IS_CLOSED_METHOD)) {
+                if (methodId == IS_CLOSED) {
                     // That's cool. No problem checking as many times as you like.
-                } else if (concreteMethod.getName().equals(CLOSE_METHOD)) {
+                } else if (methodId == CLOSE) {
                     // That's cool. You can call close as often as you like.
                 } else if (manuallyClosed) {
                     // We've already manually closed this connection yet we trying to do something
@@ -127,54 +168,60 @@ public class WrappedConnection implements MethodInterceptor {
                     throw new SQLException("You can't perform any operations on this connection. It has been automatically closed by Proxool for some reason (see logs).");
                 }
             }
-            if (concreteMethod.getName().equals(CLOSE_METHOD)) {
-                // It's okay to close a connection twice. Only we ignore the
-                // second time.
-                if (proxyConnection != null && !proxyConnection.isReallyClosed()) {
-                    proxyConnection.close();
-                    // Set it to null so that we can't do anything else to it.
-                    proxyConnection = null;
-                    manuallyClosed = true;
-                }
-            } else if (concreteMethod.getName().equals(EQUALS_METHOD) && argCount == 1) {
-                result = equals(args[0]) ? Boolean.TRUE : Boolean.FALSE;
-            } else if (concreteMethod.getName().equals(HASH_CODE_METHOD) && argCount == 0) {
-                result = new Integer(hashCode());
-            } else if (concreteMethod.getName().equals(IS_CLOSED_METHOD) && argCount == 0) {
-                result = (proxyConnection == null || proxyConnection.isClosed()) ? Boolean.TRUE : Boolean.FALSE;
-            } else if (concreteMethod.getName().equals(GET_META_DATA_METHOD) && argCount == 0) {
-                if (proxyConnection != null) {
-                    Connection connection = ProxyFactory.getWrappedConnection(proxyConnection);
-                    result = ProxyFactory.getDatabaseMetaData(proxyConnection.getConnection().getMetaData(), connection);
-                } else {
-                    throw new SQLException("You can't perform a " + concreteMethod.getName() + " operation after the connection has been closed");
-                }
-            } else if (concreteMethod.getName().equals(FINALIZE_METHOD)) {
-                super.finalize();
-            } else if (concreteMethod.getName().equals(TO_STRING_METHOD)) {
-                result = toString();
-            } else {
-                if (proxyConnection != null) {
-                    if (concreteMethod.getName().startsWith(ConnectionResetter.MUTATOR_PREFIX)) {
-                        proxyConnection.setNeedToReset(true);
+            switch (methodId) {
+                case CLOSE:
+                    // It's okay to close a connection twice. Only we ignore the
+                    // second time.
+                    if (proxyConnection != null && !proxyConnection.isReallyClosed()) {
+                        proxyConnection.close();
+                        // Set it to null so that we can't do anything else to it.
+                        proxyConnection = null;
+                        manuallyClosed = true;
                     }
-                    try {
-                        result = concreteMethod.invoke(proxyConnection.getConnection(), args);
-                    } catch (IllegalAccessException e) {
-                        // This is probably because we are trying to access a non-public concrete class. But don't worry,
-                        // we can always use the proxy supplied method. This will only fail if we try to use an injectable
-                        // method on a method in a class that isn't public and for a method that isn't declared in an interface -
-                        // but if that is the case then that method is inaccessible by any means (even by bypassing Proxool and
-                        // using the vendor's driver directly).
-                        LOG.debug("Ignoring IllegalAccessException whilst invoking the " + concreteMethod + " concrete method and trying the " + method + " method directly.");
-                        // By overriding the method cached in the InvokerFacade we ensure that we only log this message once, and
-                        // we speed up subsequent usages by not calling the method that fails first.
-                        InvokerFacade.overrideConcreteMethod(proxyConnection.getConnection().getClass(), method, method);
-                        result = method.invoke(proxyConnection.getConnection(), args);
+                    break;
+                case EQUALS:
+                    result = equals(args[0]) ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                case HASH_CODE:
+                    result = new Integer(hashCode());
+                    break;
+                case IS_CLOSED:
+                    result = (proxyConnection == null || proxyConnection.isClosed()) ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                case GET_META_DATA:
+                    if (proxyConnection != null) {
+                        Connection connection = ProxyFactory.getWrappedConnection(proxyConnection);
+                        result = ProxyFactory.getDatabaseMetaData(proxyConnection.getConnection().getMetaData(), connection);
+                    } else {
+                        throw new SQLException("You can't perform a " + method.getName() + " operation after the connection has been closed");
+                    }
+                    break;
+                case FINALIZE:
+                    super.finalize();
+                    break;
+                case TO_STRING:
+                    result = toString();
+                    break;
+                default:
+                    if (proxyConnection != null) {
+                        if (methodId == MUTATOR) {
+                            proxyConnection.registerChangedProperty(method.getName(), argCount == 1 ? args[0] : null);
+                        }
+                        if ((methodId == PREPARE_STATEMENT || methodId == PREPARE_CALL) && proxyConnection.getStatementCache() != null) {
+                            statementKey = StatementCache.getKey(methodId == PREPARE_CALL, args);
+                            if (statementKey != null) {
+                                result = proxyConnection.getStatementCache().take(statementKey);
+                            }
+                        }
+                        if (result == null) {
+                            result = invokeDelegate(proxy, method, args);
+                        }
+                        if (methodId == COMMIT || methodId == ROLLBACK) {
+                            proxyConnection.setUncommittedWork(false);
+                        }
+                    } else {
+                        throw new SQLException("You can't perform a " + method.getName() + " operation after the connection has been closed");
                     }
-                } else {
-                    throw new SQLException("You can't perform a " + concreteMethod.getName() + " operation after the connection has been closed");
-                }
             }
 
             // If we have just made some sort of Statement then we should rather return
@@ -193,7 +240,7 @@ public class WrappedConnection implements MethodInterceptor {
                 // We keep a track of all open statements
                 proxyConnection.addOpenStatement((Statement) result);
 
-                result = ProxyFactory.getStatement((Statement) result, proxyConnection.getConnectionPool(), proxyConnection, sqlStatement);
+                result = ProxyFactory.getStatement((Statement) result, proxyConnection.getConnectionPool(), proxyConnection, sqlStatement, statementKey);
 
             }
 
@@ -204,7 +251,7 @@ public class WrappedConnection implements MethodInterceptor {
             }
             throw e.getTargetException();
         } catch (SQLException e) {
-            throw new SQLException("Couldn't perform the operation " + concreteMethod.getName() + ": " + e.getMessage());
+            throw new SQLException("Couldn't perform the operation " + method.getName() + ": " + e.getMessage());
         } catch (Exception e) {
             LOG.error("Unexpected invocation exception", e);
             if (FatalSqlExceptionHelper.testException(proxyConnection.getDefinition(), e)) {
@@ -216,6 +263,85 @@ public class WrappedConnection implements MethodInterceptor {
         return result;
     }
 
+    /**
+     * Call the method on the delegate connection
+     * @param proxy the proxy (which is also a {@link MethodProxy} if we are using cglib)
+     * @param method the method being called
+     * @param args its arguments
+     * @return whatever the delegate returned
+     * @throws Throwable whatever the delegate threw, wrapped in an {@link InvocationTargetException}
+     */
+    private Object invokeDelegate(Object proxy, Method method, Object[] args) throws Throwable {
+        Connection delegate = proxyConnection.getConnection();
+        if (proxy instanceof MethodProxy && method.getDeclaringClass().isInstance(delegate)) {
+            // The delegate implements this method's interface so we can call it directly
+            // without any reflection.
+            try {
+                return ((MethodProxy) proxy).invoke(delegate, args);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        } else {
+            Method concreteMethod = InvokerFacade.getConcreteMethod(delegate.getClass(), method);
+            try {
+                return concreteMethod.invoke(delegate, args);
+            } catch (IllegalAccessException e) {
+                // This is probably because we are trying to access a non-public concrete class. But don't worry,
+                // we can always use the proxy supplied method. This will only fail if we try to use an injectable
+                // method on a method in a class that isn't public and for a method that isn't declared in an interface -
+                // but if that is the case then that method is inaccessible by any means (even by bypassing Proxool and
+                // using the vendor's driver directly).
+                LOG.debug("Ignoring IllegalAccessException whilst invoking the " + concreteMethod + " concrete method and trying the " + method + " method directly.");
+                // By overriding the method cached in the InvokerFacade we ensure that we only log this message once, and
+                // we speed up subsequent usages by not calling the method that fails first.
+                InvokerFacade.overrideConcreteMethod(delegate.getClass(), method, method);
+                return method.invoke(delegate, args);
+            }
+        }
+    }
+
+    /**
+     * Work out what sort of method this is. We only do it once for each method.
+     * @param method the method being called on the proxy
+     * @return one of the method IDs, or {@link #OTHER} if it isn't one we treat specially
+     */
+    private static int getMethodId(Method method) {
+        Integer methodId = (Integer) METHOD_IDS.get(method);
+        if (methodId == null) {
+            String name = method.getName();
+            int argCount = method.getParameterTypes().length;
+            int id = OTHER;
+            if (name.equals(CLOSE_METHOD)) {
+                id = CLOSE;
+            } else if (name.equals(EQUALS_METHOD) && argCount == 1) {
+                id = EQUALS;
+            } else if (name.equals(HASH_CODE_METHOD) && argCount == 0) {
+                id = HASH_CODE;
+            } else if (name.equals(IS_CLOSED_METHOD) && argCount == 0) {
+                id = IS_CLOSED;
+            } else if (name.equals(GET_META_DATA_METHOD) && argCount == 0) {
+                id = GET_META_DATA;
+            } else if (name.equals(FINALIZE_METHOD)) {
+                id = FINALIZE;
+            } else if (name.equals(TO_STRING_METHOD)) {
+                id = TO_STRING;
+            } else if (name.startsWith(ConnectionResetter.MUTATOR_PREFIX)) {
+                id = MUTATOR;
+            } else if (name.equals(PREPARE_STATEMENT_METHOD)) {
+                id = PREPARE_STATEMENT;
+            } else if (name.equals(PREPARE_CALL_METHOD)) {
+                id = PREPARE_CALL;
+            } else if (name.equals(COMMIT_METHOD) && argCount == 0) {
+                id = COMMIT;
+            } else if (name.equals(ROLLBACK_METHOD) && argCount == 0) {
+                // But not rollback(Savepoint), which might leave some work behind
+                id = ROLLBACK;
+            }
+            methodId = (Integer) METHOD_IDS.putIfAbsent(method, new Integer(id));
+        }
+        return methodId.intValue();
+    }
+
     /**
      * The ID for the encapsulated {@link ProxyConnection}. This will still
      * return the correct value after the connection is closed.
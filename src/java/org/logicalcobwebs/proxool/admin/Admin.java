@@ -7,6 +7,7 @@ package org.logicalcobwebs.proxool.admin;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.logicalcobwebs.proxool.ConnectionInfoIF;
 import org.logicalcobwebs.proxool.ConnectionPoolDefinitionIF;
 import org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF;
 import org.logicalcobwebs.proxool.ProxoolException;
@@ -36,8 +37,30 @@ public class Admin {
 
     private Map statsRollers = new HashMap();
 
+    /** The same as the {@link #statsRollers} values, so that we don't need an iterator every time */
+    private StatsRoller[] statsRollerArray;
+
     private CompositeStatisticsListener  compositeStatisticsListener  = new CompositeStatisticsListener();
 
+    /**
+     * Is told each time statistics are rolled, instead of the listeners. Null if the rollers
+     * tell the listeners themselves.
+     * @see #setStatisticsDispatcher
+     */
+    private volatile StatisticsListenerIF statisticsDispatcher;
+
+    /** What the rollers tell. It passes the statistics on to the dispatcher, if there is one. */
+    private StatisticsListenerIF rolledStatisticsListener = new StatisticsListenerIF() {
+        public void statistics(String alias, StatisticsIF statistics) {
+            StatisticsListenerIF statisticsDispatcher = Admin.this.statisticsDispatcher;
+            if (statisticsDispatcher != null) {
+                statisticsDispatcher.statistics(alias, statistics);
+            } else {
+                compositeStatisticsListener.statistics(alias, statistics);
+            }
+        }
+    };
+
     /**
      * @param definition gives access to pool definition
      * @param definition see {@link org.logicalcobwebs.proxool.ConnectionPoolDefinitionIF#getStatistics definition}
@@ -48,8 +71,9 @@ public class Admin {
         StringTokenizer st = new StringTokenizer(definition.getStatistics(), ",");
         while (st.hasMoreTokens()) {
             String token = st.nextToken();
-            statsRollers.put(token, new StatsRoller(definition.getAlias(), compositeStatisticsListener, token));
+            statsRollers.put(token, new StatsRoller(definition.getAlias(), rolledStatisticsListener, token));
         }
+        statsRollerArray = (StatsRoller[]) statsRollers.values().toArray(new StatsRoller[statsRollers.size()]);
 
         if (definition.getStatisticsLogLevel() != null) {
             compositeStatisticsListener.addListener(new StatisticsLogger(log, definition.getStatisticsLogLevel()));
@@ -61,6 +85,24 @@ public class Admin {
         this.compositeStatisticsListener.addListener(statisticsListener);
     }
 
+    /**
+     * All the statistics listeners, as one
+     * @return a listener that tells each of them
+     */
+    public StatisticsListenerIF getStatisticsListener() {
+        return compositeStatisticsListener;
+    }
+
+    /**
+     * Have something else tell the listeners when statistics are rolled (on a thread of its
+     * own, say) so that a slow listener doesn't hold up the thread that rolls them.
+     * @param statisticsDispatcher is told about each set of statistics instead, and should pass
+     * them on to the {@link #getStatisticsListener listeners}. Or null to tell them directly.
+     */
+    public void setStatisticsDispatcher(StatisticsListenerIF statisticsDispatcher) {
+        this.statisticsDispatcher = statisticsDispatcher;
+    }
+
 
     /**
      * Call this every time an active connection is returned to the pool
@@ -68,31 +110,98 @@ public class Admin {
      */
     public void connectionReturned(long activeTime) {
         try {
-            Iterator i = statsRollers.values().iterator();
-            while (i.hasNext()) {
-                StatsRoller statsRoller = (StatsRoller) i.next();
-                statsRoller.connectionReturned(activeTime);
+            for (int i = 0; i < statsRollerArray.length; i++) {
+                statsRollerArray[i].connectionReturned(activeTime);
             }
         } catch (Throwable e) {
             LOG.error("Stats connectionReturned call failed. Ignoring.", e);
         }
     }
 
+    /**
+     * Call this every time a connection is served
+     * @param borrowTime how long the caller spent getting it
+     * @param onDemand true if it was built for the caller, false if it already existed
+     */
+    public void connectionServed(long borrowTime, boolean onDemand) {
+        try {
+            for (int i = 0; i < statsRollerArray.length; i++) {
+                statsRollerArray[i].connectionServed(borrowTime, onDemand);
+            }
+        } catch (Throwable e) {
+            LOG.error("Stats connectionServed call failed. Ignoring.", e);
+        }
+    }
+
     /**
      * Call this every time a connection is refused
+     * @param borrowTime how long the caller spent asking for it
      */
-    public void connectionRefused() {
+    public void connectionRefused(long borrowTime) {
         try {
-            Iterator i = statsRollers.values().iterator();
-            while (i.hasNext()) {
-                StatsRoller statsRoller = (StatsRoller) i.next();
-                statsRoller.connectionRefused();
+            for (int i = 0; i < statsRollerArray.length; i++) {
+                statsRollerArray[i].connectionRefused(borrowTime);
             }
         } catch (Exception e) {
             LOG.error("Stats connectionRefused call failed. Ignoring.", e);
         }
     }
 
+    /**
+     * Call this every time a caller has waited for a connection to be returned
+     * @param waitTime how long they waited (whether or not they got one)
+     */
+    public void connectionWaited(long waitTime) {
+        try {
+            for (int i = 0; i < statsRollerArray.length; i++) {
+                statsRollerArray[i].connectionWaited(waitTime);
+            }
+        } catch (Exception e) {
+            LOG.error("Stats connectionWaited call failed. Ignoring.", e);
+        }
+    }
+
+    /**
+     * Call this every time a new connection is built
+     * @param buildTime how long it took
+     */
+    public void connectionBuilt(long buildTime) {
+        try {
+            for (int i = 0; i < statsRollerArray.length; i++) {
+                statsRollerArray[i].connectionBuilt(buildTime);
+            }
+        } catch (Exception e) {
+            LOG.error("Stats connectionBuilt call failed. Ignoring.", e);
+        }
+    }
+
+    /**
+     * Call this every time building a new connection fails
+     */
+    public void connectionBuildFailed() {
+        try {
+            for (int i = 0; i < statsRollerArray.length; i++) {
+                statsRollerArray[i].connectionBuildFailed();
+            }
+        } catch (Exception e) {
+            LOG.error("Stats connectionBuildFailed call failed. Ignoring.", e);
+        }
+    }
+
+    /**
+     * Call this every time a statement is executed
+     * @param executeTime how long it took
+     */
+    public void statementExecuted(long executeTime) {
+        try {
+            for (int i = 0; i < statsRollerArray.length; i++) {
+                statsRollerArray[i].statementExecuted(executeTime);
+            }
+        } catch (Exception e) {
+            LOG.error("Stats statementExecuted call failed. Ignoring.", e);
+        }
+    }
+
     /**
      * Returns the most recent sample that has completed its period
      * @return sample (or null if no statistics are complete yet)
@@ -147,6 +256,36 @@ public class Admin {
         s.setRefusedCount(cps.getConnectionsRefusedCount());
         s.setConnectionInfos(connectionInfos);
         s.setConnectionCount(cps.getConnectionCount());
+        s.setWaitingCount(cps.getWaitingCount());
+        s.setWaitedCount(cps.getWaitedCount());
+        s.setTotalWaitTime(cps.getTotalWaitTime());
+        s.setWaitTimeoutCount(cps.getWaitTimeoutCount());
+        s.setThreadAffinityHitCount(cps.getThreadAffinityHitCount());
+        s.setThreadAffinityMissCount(cps.getThreadAffinityMissCount());
+        s.setStatementCacheHitCount(cps.getStatementCacheHitCount());
+        s.setStatementCacheMissCount(cps.getStatementCacheMissCount());
+        s.setStatementCacheEvictionCount(cps.getStatementCacheEvictionCount());
+        s.setBuildQueueSize(cps.getBuildQueueSize());
+        s.setBuildingCount(cps.getBuildingCount());
+        s.setBuiltCount(cps.getBuiltCount());
+        s.setTotalBuildTime(cps.getTotalBuildTime());
+        s.setBuildFailureCount(cps.getBuildFailureCount());
+        s.setIdleBorrowCount(cps.getIdleBorrowCount());
+        s.setTotalIdleBorrowTime(cps.getTotalIdleBorrowTime());
+        s.setOnDemandBorrowCount(cps.getOnDemandBorrowCount());
+        s.setTotalOnDemandBorrowTime(cps.getTotalOnDemandBorrowTime());
+        s.setTotalRefusedBorrowTime(cps.getTotalRefusedBorrowTime());
+        s.setListenerEventDropCount(cps.getListenerEventDropCount());
+        s.setHouseKeepingCount(cps.getHouseKeepingCount());
+        s.setTotalHouseKeepingTime(cps.getTotalHouseKeepingTime());
+
+        if (connectionInfos != null) {
+            // The status of each connection can change without locking the pool, so the
+            // counts above might not quite match the detail. Count the detail instead.
+            s.setActiveConnectionCount(getCount(connectionInfos, ConnectionInfoIF.STATUS_ACTIVE));
+            s.setAvailableConnectionCount(getCount(connectionInfos, ConnectionInfoIF.STATUS_AVAILABLE));
+            s.setOfflineConnectionCount(getCount(connectionInfos, ConnectionInfoIF.STATUS_OFFLINE));
+        }
 
         /*
         if (s.getActiveConnectionCount() != getCount(s.getConnectionInfos(), ConnectionInfoIF.STATUS_ACTIVE)) {
@@ -163,6 +302,18 @@ public class Admin {
         return s;
     }
 
+    private static int getCount(Collection connectionInfos, int status) {
+        int count = 0;
+        Iterator i = connectionInfos.iterator();
+        while (i.hasNext()) {
+            ConnectionInfoIF connectionInfo = (ConnectionInfoIF) i.next();
+            if (connectionInfo.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
 }
 
 
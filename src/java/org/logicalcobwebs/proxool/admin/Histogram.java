@@ -0,0 +1,159 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.admin;
+
+/**
+ * Implementation of HistogramIF. Values below 8 get a bucket each. After that, each
+ * power of two is split into 8 buckets. Recording a value doesn't create any garbage.
+ * Like {@link org.logicalcobwebs.proxool.util.StripedCounter} the counts are spread
+ * across a few stripes so that threads recording at the same time don't queue for one
+ * lock. Once it is {@link #stop stopped} the totals are fixed.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+class Histogram implements HistogramIF {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The largest value we keep in its own bucket. Anything bigger goes in the last one. */
+    private static final long HIGHEST_VALUE = Integer.MAX_VALUE;
+
+    private static final int BUCKET_COUNT = getBucket(HIGHEST_VALUE) + 1;
+
+    /** Where each stripe keeps the number of values */
+    private static final int COUNT = BUCKET_COUNT;
+
+    /** Where each stripe keeps the largest value */
+    private static final int MAXIMUM = BUCKET_COUNT + 1;
+
+    private static final int STRIPE_COUNT = 4;
+
+    /** A count for each bucket, then the {@link #COUNT} and the {@link #MAXIMUM}. Each stripe is its own lock. */
+    private long[][] stripes = new long[STRIPE_COUNT][BUCKET_COUNT + 2];
+
+    /** The stripes added together. Null until we are {@link #stop stopped}. */
+    private volatile long[] totals;
+
+    /**
+     * Record a value
+     * @param value the value (negative values count as zero)
+     */
+    protected void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int bucket = getBucket(Math.min(value, HIGHEST_VALUE));
+        int i = Thread.currentThread().hashCode() % STRIPE_COUNT;
+        long[] stripe = stripes[i < 0 ? i + STRIPE_COUNT : i];
+        synchronized (stripe) {
+            stripe[bucket]++;
+            stripe[COUNT]++;
+            if (value > stripe[MAXIMUM]) {
+                stripe[MAXIMUM] = value;
+            }
+        }
+    }
+
+    /**
+     * Fix the totals. Anything recorded after this isn't counted.
+     */
+    protected void stop() {
+        totals = sumStripes();
+    }
+
+    /**
+     * @see HistogramIF#getCount
+     */
+    public long getCount() {
+        return getTotals()[COUNT];
+    }
+
+    /**
+     * @see HistogramIF#getMaximum
+     */
+    public long getMaximum() {
+        return getTotals()[MAXIMUM];
+    }
+
+    /**
+     * @see HistogramIF#getPercentile
+     */
+    public long getPercentile(double percentile) {
+        long[] totals = getTotals();
+        long count = totals[COUNT];
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += totals[bucket];
+            if (seen >= rank) {
+                // The last bucket also holds everything that was too big for it
+                return bucket < BUCKET_COUNT - 1 ? Math.min(getHighestValue(bucket), totals[MAXIMUM]) : totals[MAXIMUM];
+            }
+        }
+        return totals[MAXIMUM];
+    }
+
+    private long[] getTotals() {
+        long[] totals = this.totals;
+        return totals != null ? totals : sumStripes();
+    }
+
+    private long[] sumStripes() {
+        long[] sum = new long[BUCKET_COUNT + 2];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            long[] stripe = stripes[i];
+            synchronized (stripe) {
+                for (int j = 0; j < MAXIMUM; j++) {
+                    sum[j] += stripe[j];
+                }
+                sum[MAXIMUM] = Math.max(sum[MAXIMUM], stripe[MAXIMUM]);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Which bucket a value goes in
+     * @param value between zero and {@link #HIGHEST_VALUE}
+     * @return the bucket
+     */
+    protected static int getBucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = SUB_BUCKET_BITS;
+        while ((value >> (exponent + 1)) != 0) {
+            exponent++;
+        }
+        int subBucket = (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * The largest value that goes in a bucket
+     * @param bucket the bucket
+     * @return the value
+     */
+    protected static long getHighestValue(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long lowest = ((long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+}
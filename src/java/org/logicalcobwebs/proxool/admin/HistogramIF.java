@@ -0,0 +1,42 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.admin;
+
+/**
+ * How a set of times (or any other values) were spread out. Averages hide the
+ * slow ones, so this lets you ask how long, say, 99% of them took. Values are
+ * kept in buckets whose width grows with the value, so what you get back is
+ * within about 12% of the real value (and never less than it).
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ * @see StatisticsIF
+ */
+public interface HistogramIF {
+
+    /**
+     * How many values were recorded
+     * @return count
+     */
+    long getCount();
+
+    /**
+     * The largest value recorded (exactly)
+     * @return maximum, or zero if nothing was recorded
+     */
+    long getMaximum();
+
+    /**
+     * The value that this percentage of the recorded values were less than or equal to.
+     * For instance, 50 gives you the median and 99.9 gives you the value that only one in
+     * a thousand were worse than.
+     * @param percentile between 0 and 100
+     * @return the value, or zero if nothing was recorded
+     */
+    long getPercentile(double percentile);
+
+}
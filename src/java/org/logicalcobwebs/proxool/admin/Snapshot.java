@@ -44,6 +44,50 @@ class Snapshot implements SnapshotIF {
 
     private long connectionCount;
 
+    private int waitingCount;
+
+    private long waitedCount;
+
+    private long totalWaitTime;
+
+    private long waitTimeoutCount;
+
+    private long threadAffinityHitCount;
+
+    private long threadAffinityMissCount;
+
+    private long statementCacheHitCount;
+
+    private long statementCacheMissCount;
+
+    private long statementCacheEvictionCount;
+
+    private long buildQueueSize;
+
+    private long buildingCount;
+
+    private long builtCount;
+
+    private long totalBuildTime;
+
+    private long buildFailureCount;
+
+    private long idleBorrowCount;
+
+    private long totalIdleBorrowTime;
+
+    private long onDemandBorrowCount;
+
+    private long totalOnDemandBorrowTime;
+
+    private long totalRefusedBorrowTime;
+
+    private long listenerEventDropCount;
+
+    private long houseKeepingCount;
+
+    private long totalHouseKeepingTime;
+
     /**
      * @param snapshotDate see {@link org.logicalcobwebs.proxool.admin.SnapshotIF#getSnapshotDate}
      */
@@ -198,6 +242,314 @@ class Snapshot implements SnapshotIF {
     public void setConnectionCount(long connectionCount) {
         this.connectionCount = connectionCount;
     }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getWaitingCount
+     */
+    public int getWaitingCount() {
+        return waitingCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getWaitingCount
+     */
+    public void setWaitingCount(int waitingCount) {
+        this.waitingCount = waitingCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getWaitedCount
+     */
+    public long getWaitedCount() {
+        return waitedCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getWaitedCount
+     */
+    public void setWaitedCount(long waitedCount) {
+        this.waitedCount = waitedCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalWaitTime
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalWaitTime
+     */
+    public void setTotalWaitTime(long totalWaitTime) {
+        this.totalWaitTime = totalWaitTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getWaitTimeoutCount
+     */
+    public long getWaitTimeoutCount() {
+        return waitTimeoutCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getWaitTimeoutCount
+     */
+    public void setWaitTimeoutCount(long waitTimeoutCount) {
+        this.waitTimeoutCount = waitTimeoutCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getThreadAffinityHitCount
+     */
+    public long getThreadAffinityHitCount() {
+        return threadAffinityHitCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getThreadAffinityHitCount
+     */
+    public void setThreadAffinityHitCount(long threadAffinityHitCount) {
+        this.threadAffinityHitCount = threadAffinityHitCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getThreadAffinityMissCount
+     */
+    public long getThreadAffinityMissCount() {
+        return threadAffinityMissCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getThreadAffinityMissCount
+     */
+    public void setThreadAffinityMissCount(long threadAffinityMissCount) {
+        this.threadAffinityMissCount = threadAffinityMissCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getStatementCacheHitCount
+     */
+    public long getStatementCacheHitCount() {
+        return statementCacheHitCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getStatementCacheHitCount
+     */
+    public void setStatementCacheHitCount(long statementCacheHitCount) {
+        this.statementCacheHitCount = statementCacheHitCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getStatementCacheMissCount
+     */
+    public long getStatementCacheMissCount() {
+        return statementCacheMissCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getStatementCacheMissCount
+     */
+    public void setStatementCacheMissCount(long statementCacheMissCount) {
+        this.statementCacheMissCount = statementCacheMissCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getStatementCacheEvictionCount
+     */
+    public long getStatementCacheEvictionCount() {
+        return statementCacheEvictionCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getStatementCacheEvictionCount
+     */
+    public void setStatementCacheEvictionCount(long statementCacheEvictionCount) {
+        this.statementCacheEvictionCount = statementCacheEvictionCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuildQueueSize
+     */
+    public long getBuildQueueSize() {
+        return buildQueueSize;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuildQueueSize
+     */
+    public void setBuildQueueSize(long buildQueueSize) {
+        this.buildQueueSize = buildQueueSize;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuildingCount
+     */
+    public long getBuildingCount() {
+        return buildingCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuildingCount
+     */
+    public void setBuildingCount(long buildingCount) {
+        this.buildingCount = buildingCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuiltCount
+     */
+    public long getBuiltCount() {
+        return builtCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuiltCount
+     */
+    public void setBuiltCount(long builtCount) {
+        this.builtCount = builtCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalBuildTime
+     */
+    public long getTotalBuildTime() {
+        return totalBuildTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalBuildTime
+     */
+    public void setTotalBuildTime(long totalBuildTime) {
+        this.totalBuildTime = totalBuildTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuildFailureCount
+     */
+    public long getBuildFailureCount() {
+        return buildFailureCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getBuildFailureCount
+     */
+    public void setBuildFailureCount(long buildFailureCount) {
+        this.buildFailureCount = buildFailureCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getIdleBorrowCount
+     */
+    public long getIdleBorrowCount() {
+        return idleBorrowCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getIdleBorrowCount
+     */
+    public void setIdleBorrowCount(long idleBorrowCount) {
+        this.idleBorrowCount = idleBorrowCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalIdleBorrowTime
+     */
+    public long getTotalIdleBorrowTime() {
+        return totalIdleBorrowTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalIdleBorrowTime
+     */
+    public void setTotalIdleBorrowTime(long totalIdleBorrowTime) {
+        this.totalIdleBorrowTime = totalIdleBorrowTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getOnDemandBorrowCount
+     */
+    public long getOnDemandBorrowCount() {
+        return onDemandBorrowCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getOnDemandBorrowCount
+     */
+    public void setOnDemandBorrowCount(long onDemandBorrowCount) {
+        this.onDemandBorrowCount = onDemandBorrowCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalOnDemandBorrowTime
+     */
+    public long getTotalOnDemandBorrowTime() {
+        return totalOnDemandBorrowTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalOnDemandBorrowTime
+     */
+    public void setTotalOnDemandBorrowTime(long totalOnDemandBorrowTime) {
+        this.totalOnDemandBorrowTime = totalOnDemandBorrowTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalRefusedBorrowTime
+     */
+    public long getTotalRefusedBorrowTime() {
+        return totalRefusedBorrowTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalRefusedBorrowTime
+     */
+    public void setTotalRefusedBorrowTime(long totalRefusedBorrowTime) {
+        this.totalRefusedBorrowTime = totalRefusedBorrowTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getListenerEventDropCount
+     */
+    public long getListenerEventDropCount() {
+        return listenerEventDropCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getListenerEventDropCount
+     */
+    public void setListenerEventDropCount(long listenerEventDropCount) {
+        this.listenerEventDropCount = listenerEventDropCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getHouseKeepingCount
+     */
+    public long getHouseKeepingCount() {
+        return houseKeepingCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getHouseKeepingCount
+     */
+    public void setHouseKeepingCount(long houseKeepingCount) {
+        this.houseKeepingCount = houseKeepingCount;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalHouseKeepingTime
+     */
+    public long getTotalHouseKeepingTime() {
+        return totalHouseKeepingTime;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.SnapshotIF#getTotalHouseKeepingTime
+     */
+    public void setTotalHouseKeepingTime(long totalHouseKeepingTime) {
+        this.totalHouseKeepingTime = totalHouseKeepingTime;
+    }
 }
 
 
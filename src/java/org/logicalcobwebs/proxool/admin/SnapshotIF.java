@@ -95,6 +95,160 @@ public interface SnapshotIF {
     boolean isDetail();
 
     long getConnectionCount();
+
+    /**
+     * The number of callers waiting for a connection
+     * @return waitingCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getWaitingCount
+     */
+    int getWaitingCount();
+
+    /**
+     * How many callers have had to wait for a connection since the pool started
+     * @return waitedCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getWaitedCount
+     */
+    long getWaitedCount();
+
+    /**
+     * How long callers have spent waiting for a connection since the pool started
+     * @return totalWaitTime (milliseconds)
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getTotalWaitTime
+     */
+    long getTotalWaitTime();
+
+    /**
+     * How many callers gave up waiting for a connection since the pool started
+     * @return waitTimeoutCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getWaitTimeoutCount
+     */
+    long getWaitTimeoutCount();
+
+    /**
+     * How many times a thread got back the connection it returned last time
+     * @return threadAffinityHitCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getThreadAffinityHitCount
+     */
+    long getThreadAffinityHitCount();
+
+    /**
+     * How many times a thread couldn't get back the connection it returned last time
+     * @return threadAffinityMissCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getThreadAffinityMissCount
+     */
+    long getThreadAffinityMissCount();
+
+    /**
+     * How many statements were taken from a statement cache
+     * @return statementCacheHitCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getStatementCacheHitCount
+     */
+    long getStatementCacheHitCount();
+
+    /**
+     * How many statements had to be prepared because they weren't in a statement cache
+     * @return statementCacheMissCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getStatementCacheMissCount
+     */
+    long getStatementCacheMissCount();
+
+    /**
+     * How many statements were closed to make room in a statement cache
+     * @return statementCacheEvictionCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getStatementCacheEvictionCount
+     */
+    long getStatementCacheEvictionCount();
+
+    /**
+     * How many connections are waiting to be built
+     * @return buildQueueSize
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getBuildQueueSize
+     */
+    long getBuildQueueSize();
+
+    /**
+     * How many connections are being built right now
+     * @return buildingCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getBuildingCount
+     */
+    long getBuildingCount();
+
+    /**
+     * How many connections have been built since the pool started
+     * @return builtCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getBuiltCount
+     */
+    long getBuiltCount();
+
+    /**
+     * The total time it took to build all the connections (milliseconds)
+     * @return totalBuildTime
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getTotalBuildTime
+     */
+    long getTotalBuildTime();
+
+    /**
+     * The number of times building a connection failed
+     * @return buildFailureCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getBuildFailureCount
+     */
+    long getBuildFailureCount();
+
+    /**
+     * The number of connections served that already existed
+     * @return idleBorrowCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getIdleBorrowCount
+     */
+    long getIdleBorrowCount();
+
+    /**
+     * The total time spent getting connections that already existed
+     * @return totalIdleBorrowTime
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getTotalIdleBorrowTime
+     */
+    long getTotalIdleBorrowTime();
+
+    /**
+     * The number of connections served that were built on demand
+     * @return onDemandBorrowCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getOnDemandBorrowCount
+     */
+    long getOnDemandBorrowCount();
+
+    /**
+     * The total time spent getting connections that were built on demand
+     * @return totalOnDemandBorrowTime
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getTotalOnDemandBorrowTime
+     */
+    long getTotalOnDemandBorrowTime();
+
+    /**
+     * The total time spent asking for connections that were refused
+     * @return totalRefusedBorrowTime
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getTotalRefusedBorrowTime
+     */
+    long getTotalRefusedBorrowTime();
+
+    /**
+     * The number of listener events dropped because the queue was full
+     * @return listenerEventDropCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getListenerEventDropCount
+     */
+    long getListenerEventDropCount();
+
+    /**
+     * How many times the house keeper has run
+     * @return houseKeepingCount
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getHouseKeepingCount
+     */
+    long getHouseKeepingCount();
+
+    /**
+     * The total time the house keeper has spent running (milliseconds)
+     * @return totalHouseKeepingTime
+     * @see org.logicalcobwebs.proxool.ConnectionPoolStatisticsIF#getTotalHouseKeepingTime
+     */
+    long getTotalHouseKeepingTime();
 }
 
 
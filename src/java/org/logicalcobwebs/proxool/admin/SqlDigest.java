@@ -0,0 +1,123 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.admin;
+
+/**
+ * Implementation of SqlDigestIF. The counts are guarded by the {@link SqlDigestTable}
+ * it belongs to, which updates them while it has the digest looked up anyway. What
+ * {@link SqlDigestTable#getSqlDigests} hands out is a {@link #copy copy}.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+class SqlDigest implements SqlDigestIF {
+
+    private String sql;
+
+    private long count;
+
+    private long errorCount;
+
+    private long totalTime;
+
+    private long maximumTime;
+
+    /** Keeps its own locks, so we record to it after letting go of the table */
+    private Histogram timeHistogram;
+
+    /**
+     * @param sql see {@link SqlDigestIF#getSql}
+     */
+    protected SqlDigest(String sql) {
+        this(sql, new Histogram());
+    }
+
+    private SqlDigest(String sql, Histogram timeHistogram) {
+        this.sql = sql;
+        this.timeHistogram = timeHistogram;
+    }
+
+    /**
+     * Count an execution (but not in the histogram)
+     * @param executeTime how long it took
+     * @param failed whether it threw an exception
+     */
+    protected void count(long executeTime, boolean failed) {
+        count++;
+        totalTime += executeTime;
+        if (executeTime > maximumTime) {
+            maximumTime = executeTime;
+        }
+        if (failed) {
+            errorCount++;
+        }
+    }
+
+    /**
+     * Record how long an execution took in the histogram
+     * @param executeTime how long it took
+     */
+    protected void recordTime(long executeTime) {
+        timeHistogram.record(executeTime);
+    }
+
+    /**
+     * The counts as they are now (the histogram is shared)
+     * @return the copy
+     */
+    protected SqlDigest copy() {
+        SqlDigest copy = new SqlDigest(sql, timeHistogram);
+        copy.count = count;
+        copy.errorCount = errorCount;
+        copy.totalTime = totalTime;
+        copy.maximumTime = maximumTime;
+        return copy;
+    }
+
+    /**
+     * @see SqlDigestIF#getSql
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @see SqlDigestIF#getCount
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @see SqlDigestIF#getErrorCount
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @see SqlDigestIF#getTotalTime
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @see SqlDigestIF#getMaximumTime
+     */
+    public long getMaximumTime() {
+        return maximumTime;
+    }
+
+    /**
+     * @see SqlDigestIF#getTimeHistogram
+     */
+    public HistogramIF getTimeHistogram() {
+        return timeHistogram;
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.admin;
+
+/**
+ * Statistics for one shape of SQL statement: all the statements that only differ in
+ * their literal values (and in how many values they have in an IN list) count as one.
+ * You get these from {@link org.logicalcobwebs.proxool.ProxoolFacade#getSqlDigests ProxoolFacade}
+ * if the {@link org.logicalcobwebs.proxool.ConnectionPoolDefinitionIF#getSqlDigestSize sql-digest-size}
+ * is set.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ * @see SqlDigestTable#getFingerprint
+ */
+public interface SqlDigestIF {
+
+    /**
+     * The SQL with its literals replaced by ? (which is what makes statements the same shape)
+     * @return sql
+     */
+    String getSql();
+
+    /**
+     * How many times a statement of this shape was executed
+     * @return count
+     */
+    long getCount();
+
+    /**
+     * How many of them threw an exception
+     * @return errorCount
+     */
+    long getErrorCount();
+
+    /**
+     * How long they took altogether. Divide by {@link #getCount} to get the average.
+     * @return totalTime (milliseconds)
+     */
+    long getTotalTime();
+
+    /**
+     * How long the slowest one took
+     * @return maximumTime (milliseconds)
+     */
+    long getMaximumTime();
+
+    /**
+     * How long each one took
+     * @return histogram (milliseconds)
+     */
+    HistogramIF getTimeHistogram();
+
+}
@@ -0,0 +1,431 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.admin;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps {@link SqlDigestIF statistics} for each shape of SQL statement a pool executes,
+ * for up to a fixed number of shapes. Statements are grouped by their
+ * {@link #getFingerprint fingerprint}. Each fingerprint is only stored once, as the
+ * key of its digest, and it is never longer than {@link #MAXIMUM_SQL_LENGTH} so
+ * however much SQL goes through the pool the table stays the same size. When it
+ * is full, the shape that has been run the fewest times makes way for the new one, which
+ * takes over its count when deciding what goes next (but not in the count it reports). That
+ * way a shape that is run often enough always finds its way in, however late it turns up.
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ * @see org.logicalcobwebs.proxool.ConnectionPoolDefinitionIF#getSqlDigestSize
+ */
+public class SqlDigestTable {
+
+    /** Fingerprints are cut off after this many characters */
+    public static final int MAXIMUM_SQL_LENGTH = 1000;
+
+    /** What an IN list is collapsed to */
+    private static final String LIST = "(...)";
+
+    private static final Comparator LONGEST_TOTAL_TIME_FIRST = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            long t1 = ((SqlDigestIF) o1).getTotalTime();
+            long t2 = ((SqlDigestIF) o2).getTotalTime();
+            return t1 > t2 ? -1 : (t1 < t2 ? 1 : 0);
+        }
+    };
+
+    /** The {@link Entry entries} keyed by fingerprint. It is its own lock. */
+    private Map digests = new HashMap();
+
+    /**
+     * The entries grouped by how many executions they stand for, fewest first, so that
+     * finding the least used and moving one up are both quick. Guarded by {@link #digests}.
+     */
+    private Bucket leastBucket;
+
+    private int size;
+
+    /**
+     * @param size the most shapes of statement we keep statistics for
+     */
+    public SqlDigestTable(int size) {
+        this.size = size;
+    }
+
+    /**
+     * The most shapes of statement we keep statistics for
+     * @return size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Count a statement that was executed
+     * @param fingerprint what it looks like without its literals (see {@link #getFingerprint})
+     * @param executeTime how long it took (milliseconds)
+     * @param failed whether it threw an exception
+     */
+    public void record(String fingerprint, long executeTime, boolean failed) {
+        SqlDigest digest;
+        synchronized (digests) {
+            Entry entry = (Entry) digests.get(fingerprint);
+            if (entry == null) {
+                long inherited = 0;
+                if (digests.size() >= size) {
+                    inherited = removeLeastUsed();
+                }
+                entry = new Entry(new SqlDigest(fingerprint));
+                digests.put(fingerprint, entry);
+                // If others are still on the count we inherited then we go in just above them
+                addTo(inherited + 1, entry, leastBucket != null && leastBucket.count <= inherited ? leastBucket : null);
+            } else {
+                increment(entry);
+            }
+            digest = entry.digest;
+            digest.count(executeTime, failed);
+        }
+        digest.recordTime(executeTime);
+    }
+
+    /**
+     * Make way for a new digest. The one that has been on the fewest executions the longest
+     * goes, and whoever takes its place starts from its count. Otherwise a new shape would
+     * always be the next to go, and one that turned up after the table filled could never
+     * stay however often it ran.
+     * @return the count the new digest starts from
+     */
+    private long removeLeastUsed() {
+        Entry leastUsed = leastBucket.last;
+        removeFrom(leastUsed);
+        digests.remove(leastUsed.digest.getSql());
+        return leastUsed.bucket.count;
+    }
+
+    /**
+     * Move an entry up to the next count.
+     * @param entry the one that was executed again
+     */
+    private void increment(Entry entry) {
+        Bucket bucket = entry.bucket;
+        long count = bucket.count + 1;
+        if (bucket.first == bucket.last && (bucket.next == null || bucket.next.count > count)) {
+            // It's on its own, so it can take its bucket with it
+            bucket.count = count;
+        } else {
+            removeFrom(entry);
+            addTo(count, entry, bucket.first == null ? bucket.previous : bucket);
+        }
+    }
+
+    /**
+     * @param count the count of the bucket to add the entry to
+     * @param entry the entry (not in any bucket)
+     * @param after the bucket the one we want comes after, or null to start at the bottom
+     */
+    private void addTo(long count, Entry entry, Bucket after) {
+        Bucket bucket = after == null ? leastBucket : after.next;
+        if (bucket == null || bucket.count != count) {
+            Bucket newBucket = new Bucket(count);
+            newBucket.previous = after;
+            newBucket.next = bucket;
+            if (bucket != null) {
+                bucket.previous = newBucket;
+            }
+            if (after == null) {
+                leastBucket = newBucket;
+            } else {
+                after.next = newBucket;
+            }
+            bucket = newBucket;
+        }
+        entry.bucket = bucket;
+        entry.previous = null;
+        entry.next = bucket.first;
+        if (bucket.first == null) {
+            bucket.last = entry;
+        } else {
+            bucket.first.previous = entry;
+        }
+        bucket.first = entry;
+    }
+
+    /**
+     * Take an entry out of its bucket, and the bucket out of the list if that leaves it empty.
+     * The entry still knows which bucket it was in.
+     * @param entry the entry
+     */
+    private void removeFrom(Entry entry) {
+        Bucket bucket = entry.bucket;
+        if (entry.previous == null) {
+            bucket.first = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (entry.next == null) {
+            bucket.last = entry.previous;
+        } else {
+            entry.next.previous = entry.previous;
+        }
+        if (bucket.first == null) {
+            if (bucket.previous == null) {
+                leastBucket = bucket.next;
+            } else {
+                bucket.previous.next = bucket.next;
+            }
+            if (bucket.next != null) {
+                bucket.next.previous = bucket.previous;
+            }
+        }
+    }
+
+    /**
+     * The statistics as they are now
+     * @return the digests, the ones that have taken the longest altogether first
+     */
+    public SqlDigestIF[] getSqlDigests() {
+        SqlDigestIF[] copies;
+        synchronized (digests) {
+            copies = new SqlDigestIF[digests.size()];
+            Iterator i = digests.values().iterator();
+            for (int j = 0; j < copies.length; j++) {
+                copies[j] = ((Entry) i.next()).digest.copy();
+            }
+        }
+        Arrays.sort(copies, LONGEST_TOTAL_TIME_FIRST);
+        return copies;
+    }
+
+    /**
+     * Work out what shape a statement is. Whitespace is collapsed, comments are removed,
+     * string and number literals are replaced with ? and IN lists of literals become
+     * <code>IN (...)</code>, so <code>select * from t where a = 'x' and b in (1, 2, 3)</code>
+     * and <code>select * from t where a = 'y' and b in (4)</code> have the same fingerprint.
+     * Quoted identifiers are left alone.
+     * @param sql the statement
+     * @return the fingerprint (never longer than {@link #MAXIMUM_SQL_LENGTH})
+     */
+    public static String getFingerprint(String sql) {
+        StringBuffer fingerprint = new StringBuffer(Math.min(sql.length(), MAXIMUM_SQL_LENGTH));
+        boolean space = false;
+        int i = 0;
+        while (i < sql.length() && fingerprint.length() < MAXIMUM_SQL_LENGTH) {
+            char c = sql.charAt(i);
+            char next = i + 1 < sql.length() ? sql.charAt(i + 1) : 0;
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            } else if (c == '-' && next == '-') {
+                i = sql.indexOf('\n', i);
+                i = i < 0 ? sql.length() : i;
+                space = true;
+                continue;
+            } else if (c == '/' && next == '*') {
+                i = sql.indexOf("*/", i + 2);
+                i = i < 0 ? sql.length() : i + 2;
+                space = true;
+                continue;
+            }
+
+            if (space && fingerprint.length() > 0) {
+                fingerprint.append(' ');
+            }
+            space = false;
+
+            if (c == '\'') {
+                i = skipString(sql, i);
+                fingerprint.append('?');
+            } else if (c == '"' || c == '`') {
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? sql.length() : end + 1;
+                fingerprint.append(sql.substring(i, end));
+                i = end;
+            } else if ((Character.isDigit(c) || (c == '.' && Character.isDigit(next)))
+                    && !isIdentifierPart(fingerprint)) {
+                i = skipNumber(sql, i);
+                fingerprint.append('?');
+            } else {
+                fingerprint.append(c);
+                i++;
+            }
+        }
+        String collapsed = collapseLists(fingerprint.toString());
+        return collapsed.length() > MAXIMUM_SQL_LENGTH ? collapsed.substring(0, MAXIMUM_SQL_LENGTH) : collapsed;
+    }
+
+    /**
+     * @param sql the statement
+     * @param start where the opening quote is
+     * @return the index after the closing quote. Two quotes together are an escaped quote.
+     */
+    private static int skipString(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @param sql the statement
+     * @param start where the first digit (or decimal point) is
+     * @return the index after the number, including any exponent (1.5e-3) or hex digits (0x1F)
+     */
+    private static int skipNumber(String sql, int start) {
+        int i = start;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if ((c == 'e' || c == 'E') && i + 1 < sql.length() && (sql.charAt(i + 1) == '-' || sql.charAt(i + 1) == '+')) {
+                i += 2;
+            } else if (Character.isLetterOrDigit(c) || c == '.') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @param fingerprint what we have so far
+     * @return true if the last character belongs to a name (so that a digit after it isn't a number, as in t1)
+     */
+    private static boolean isIdentifierPart(StringBuffer fingerprint) {
+        if (fingerprint.length() == 0) {
+            return false;
+        }
+        char c = fingerprint.charAt(fingerprint.length() - 1);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    /**
+     * Replace lists of literals after IN with <code>IN (...)</code>
+     * @param fingerprint with its literals replaced by ?
+     * @return the fingerprint with its lists collapsed
+     */
+    private static String collapseLists(String fingerprint) {
+        StringBuffer collapsed = null;
+        int copied = 0;
+        int open = fingerprint.indexOf('(');
+        while (open >= 0) {
+            int close = getEndOfList(fingerprint, open);
+            if (close > 0 && isAfterIn(fingerprint, open)) {
+                if (collapsed == null) {
+                    collapsed = new StringBuffer(fingerprint.length());
+                }
+                // Always with a space in front, whether there was one or not
+                collapsed.append(fingerprint.substring(copied, fingerprint.charAt(open - 1) == ' ' ? open - 1 : open));
+                collapsed.append(' ');
+                collapsed.append(LIST);
+                copied = close + 1;
+                open = fingerprint.indexOf('(', copied);
+            } else {
+                open = fingerprint.indexOf('(', open + 1);
+            }
+        }
+        if (collapsed == null) {
+            return fingerprint;
+        }
+        collapsed.append(fingerprint.substring(copied));
+        return collapsed.toString();
+    }
+
+    /**
+     * @param fingerprint with its literals replaced by ?
+     * @param open where the opening bracket is
+     * @return where the closing bracket is, or -1 if there is anything other than ? in between
+     */
+    private static int getEndOfList(String fingerprint, int open) {
+        boolean literal = false;
+        for (int i = open + 1; i < fingerprint.length(); i++) {
+            char c = fingerprint.charAt(i);
+            if (c == ')') {
+                return literal ? i : -1;
+            } else if (c == '?') {
+                literal = true;
+            } else if (c != ',' && c != ' ') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param fingerprint with its literals replaced by ?
+     * @param open where the opening bracket is
+     * @return true if the word before the bracket is IN
+     */
+    private static boolean isAfterIn(String fingerprint, int open) {
+        int end = open;
+        if (end > 0 && fingerprint.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end < 2 || !fingerprint.substring(end - 2, end).equalsIgnoreCase("in")) {
+            return false;
+        }
+        if (end == 2) {
+            return true;
+        }
+        char before = fingerprint.charAt(end - 3);
+        return !Character.isLetterOrDigit(before) && before != '_';
+    }
+
+
+    /**
+     * A digest and where it is in the {@link #leastBucket buckets}
+     */
+    private static class Entry {
+
+        private SqlDigest digest;
+
+        private Bucket bucket;
+
+        private Entry previous;
+
+        private Entry next;
+
+        private Entry(SqlDigest digest) {
+            this.digest = digest;
+        }
+
+    }
+
+    /**
+     * The entries that stand for the same number of executions, most recently arrived first
+     */
+    private static class Bucket {
+
+        private long count;
+
+        private Entry first;
+
+        private Entry last;
+
+        private Bucket previous;
+
+        private Bucket next;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+
+    }
+
+}
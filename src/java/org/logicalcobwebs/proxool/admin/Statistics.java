@@ -5,10 +5,15 @@
  */
 package org.logicalcobwebs.proxool.admin;
 
+import org.logicalcobwebs.proxool.util.StripedCounter;
+
 import java.util.Date;
 
 /**
- * Implementation of StatisticsIF
+ * Implementation of StatisticsIF. While it is current the counts are kept in a
+ * {@link StripedCounter} so that connections returned at the same time don't
+ * queue for one lock (or lose updates). When the period ends the
+ * {@link StatsRoller} {@link #setStopDate stops} it and the totals are fixed.
  *
  * @version $Revision: 1.2 $, $Date: 2003/03/03 11:11:59 $
  * @author bill
@@ -21,12 +26,41 @@ class Statistics implements StatisticsIF {
 
     private Date stopDate;
 
+    private static final int SERVED = 0;
+
+    private static final int REFUSED = 1;
+
+    private static final int TOTAL_ACTIVE_TIME = 2;
+
+    private static final int BUILD_FAILURE = 3;
+
+    private StripedCounter counts = new StripedCounter(4);
+
+    /** Fixed when we are stopped. Until then we read the {@link #counts} */
+    private volatile boolean stopped;
+
     private long servedCount;
 
     private long refusedCount;
 
     private long totalActiveTime;
 
+    private long buildFailureCount;
+
+    private Histogram activeTimeHistogram = new Histogram();
+
+    private Histogram waitTimeHistogram = new Histogram();
+
+    private Histogram buildTimeHistogram = new Histogram();
+
+    private Histogram executeTimeHistogram = new Histogram();
+
+    private Histogram idleBorrowTimeHistogram = new Histogram();
+
+    private Histogram onDemandBorrowTimeHistogram = new Histogram();
+
+    private Histogram refusedBorrowTimeHistogram = new Histogram();
+
     /**
      * @param startDate see {@link org.logicalcobwebs.proxool.admin.StatisticsIF#getStartDate}
      */
@@ -38,15 +72,57 @@ class Statistics implements StatisticsIF {
      * @see org.logicalcobwebs.proxool.admin.Admin#connectionReturned
      */
     protected void connectionReturned(long activeTime) {
-        totalActiveTime += activeTime;
-        servedCount++;
+        long hint = Thread.currentThread().hashCode();
+        counts.add(hint, TOTAL_ACTIVE_TIME, activeTime);
+        counts.add(hint, SERVED, 1);
+        activeTimeHistogram.record(activeTime);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionServed
+     */
+    protected void connectionServed(long borrowTime, boolean onDemand) {
+        if (onDemand) {
+            onDemandBorrowTimeHistogram.record(borrowTime);
+        } else {
+            idleBorrowTimeHistogram.record(borrowTime);
+        }
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionWaited
+     */
+    protected void connectionWaited(long waitTime) {
+        waitTimeHistogram.record(waitTime);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionBuilt
+     */
+    protected void connectionBuilt(long buildTime) {
+        buildTimeHistogram.record(buildTime);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionBuildFailed
+     */
+    protected void connectionBuildFailed() {
+        counts.add(Thread.currentThread().hashCode(), BUILD_FAILURE, 1);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#statementExecuted
+     */
+    protected void statementExecuted(long executeTime) {
+        executeTimeHistogram.record(executeTime);
     }
 
     /**
      * @see org.logicalcobwebs.proxool.admin.Admin#connectionRefused
      */
-    protected void connectionRefused() {
-        refusedCount++;
+    protected void connectionRefused(long borrowTime) {
+        counts.add(Thread.currentThread().hashCode(), REFUSED, 1);
+        refusedBorrowTimeHistogram.record(borrowTime);
     }
 
     /**
@@ -54,6 +130,20 @@ class Statistics implements StatisticsIF {
      */
     protected void setStopDate(Date stopDate) {
         this.stopDate = stopDate;
+        // Anything that arrives after this (from a thread that picked us up just before
+        // we were swapped out) isn't counted.
+        servedCount = counts.get(SERVED);
+        refusedCount = counts.get(REFUSED);
+        totalActiveTime = counts.get(TOTAL_ACTIVE_TIME);
+        buildFailureCount = counts.get(BUILD_FAILURE);
+        activeTimeHistogram.stop();
+        waitTimeHistogram.stop();
+        buildTimeHistogram.stop();
+        executeTimeHistogram.stop();
+        idleBorrowTimeHistogram.stop();
+        onDemandBorrowTimeHistogram.stop();
+        refusedBorrowTimeHistogram.stop();
+        stopped = true;
     }
 
     /**
@@ -85,8 +175,9 @@ class Statistics implements StatisticsIF {
      * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getAverageActiveTime
      */
     public double getAverageActiveTime() {
+        long servedCount = getServedCount();
         if (servedCount > 0) {
-            return ((double) totalActiveTime / (double) servedCount);
+            return ((double) getTotalActiveTime() / (double) servedCount);
         } else {
             return 0.0;
         }
@@ -96,35 +187,95 @@ class Statistics implements StatisticsIF {
      * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getAverageActiveCount
      */
     public double getAverageActiveCount() {
-        return (double) totalActiveTime / (double) getPeriod();
+        return (double) getTotalActiveTime() / (double) getPeriod();
     }
 
     /**
      * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getServedPerSecond
      */
     public double getServedPerSecond() {
-        return (double) servedCount / ((double) getPeriod() / 1000.0);
+        return (double) getServedCount() / ((double) getPeriod() / 1000.0);
     }
 
     /**
      * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getRefusedPerSecond
      */
     public double getRefusedPerSecond() {
-        return (double) refusedCount / ((double) getPeriod() / 1000.0);
+        return (double) getRefusedCount() / ((double) getPeriod() / 1000.0);
     }
 
     /**
      * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getServedCount
      */
     public long getServedCount() {
-        return servedCount;
+        return stopped ? servedCount : counts.get(SERVED);
     }
 
     /**
      * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getRefusedCount
      */
     public long getRefusedCount() {
-        return refusedCount;
+        return stopped ? refusedCount : counts.get(REFUSED);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getBuildFailureCount
+     */
+    public long getBuildFailureCount() {
+        return stopped ? buildFailureCount : counts.get(BUILD_FAILURE);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getActiveTimeHistogram
+     */
+    public HistogramIF getActiveTimeHistogram() {
+        return activeTimeHistogram;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getWaitTimeHistogram
+     */
+    public HistogramIF getWaitTimeHistogram() {
+        return waitTimeHistogram;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getBuildTimeHistogram
+     */
+    public HistogramIF getBuildTimeHistogram() {
+        return buildTimeHistogram;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getExecuteTimeHistogram
+     */
+    public HistogramIF getExecuteTimeHistogram() {
+        return executeTimeHistogram;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getIdleBorrowTimeHistogram
+     */
+    public HistogramIF getIdleBorrowTimeHistogram() {
+        return idleBorrowTimeHistogram;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getOnDemandBorrowTimeHistogram
+     */
+    public HistogramIF getOnDemandBorrowTimeHistogram() {
+        return onDemandBorrowTimeHistogram;
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.StatisticsIF#getRefusedBorrowTimeHistogram
+     */
+    public HistogramIF getRefusedBorrowTimeHistogram() {
+        return refusedBorrowTimeHistogram;
+    }
+
+    private long getTotalActiveTime() {
+        return stopped ? totalActiveTime : counts.get(TOTAL_ACTIVE_TIME);
     }
 
 }
@@ -76,6 +76,58 @@ public interface StatisticsIF {
      */
     double getRefusedPerSecond();
 
+    /**
+     * How long connections were active for, from being served to being returned
+     * @return histogram (milliseconds)
+     */
+    HistogramIF getActiveTimeHistogram();
+
+    /**
+     * How long callers waited for a connection to be returned when the pool was at its
+     * {@link org.logicalcobwebs.proxool.ConnectionPoolDefinitionIF#getMaximumConnectionCount maximum-connection-count}.
+     * Only callers that had to wait are included (whether or not they got one in the end).
+     * @return histogram (milliseconds)
+     * @see org.logicalcobwebs.proxool.ConnectionPoolDefinitionIF#getMaximumWaitTime
+     */
+    HistogramIF getWaitTimeHistogram();
+
+    /**
+     * How long it took to build each new connection
+     * @return histogram (milliseconds)
+     */
+    HistogramIF getBuildTimeHistogram();
+
+    /**
+     * How long each statement took to execute (including ones that failed)
+     * @return histogram (milliseconds)
+     */
+    HistogramIF getExecuteTimeHistogram();
+
+    /**
+     * How long callers took to get a connection that already existed (an idle hit)
+     * @return histogram (milliseconds)
+     */
+    HistogramIF getIdleBorrowTimeHistogram();
+
+    /**
+     * How long callers took to get a connection that had to be built for them
+     * because none were available
+     * @return histogram (milliseconds)
+     */
+    HistogramIF getOnDemandBorrowTimeHistogram();
+
+    /**
+     * How long callers spent asking for a connection before being refused
+     * @return histogram (milliseconds)
+     */
+    HistogramIF getRefusedBorrowTimeHistogram();
+
+    /**
+     * The number of times building a new connection failed during this sample.
+     * @return buildFailureCount
+     */
+    long getBuildFailureCount();
+
 }
 
 
@@ -13,7 +13,12 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 
 /**
- * Listens to statistics and logs them
+ * Listens to statistics and logs them. Times that we keep a
+ * {@link HistogramIF histogram} of are shown as p50/p90/p99/p99.9/max: at is
+ * active time, w is wait time, b is build time, e is execute time and bi, bd and br
+ * are how long it took to borrow an idle connection, one built on demand or to be
+ * refused (we leave out the ones with nothing in them). bf is the number of builds
+ * that failed, if there were any.
  * @version $Revision: 1.3 $, $Date: 2006/01/18 14:39:57 $
  * @author bill
  * @author $Author: billhorsman $ (current maintainer)
@@ -58,6 +63,18 @@ public class StatisticsLogger implements StatisticsListenerIF {
                 out.append("ms/");
                 out.append(DECIMAL_FORMAT.format(statistics.getAverageActiveCount()));
 
+                appendHistogram(out, "at", statistics.getActiveTimeHistogram());
+                appendHistogram(out, "w", statistics.getWaitTimeHistogram());
+                appendHistogram(out, "b", statistics.getBuildTimeHistogram());
+                appendHistogram(out, "e", statistics.getExecuteTimeHistogram());
+                appendHistogram(out, "bi", statistics.getIdleBorrowTimeHistogram());
+                appendHistogram(out, "bd", statistics.getOnDemandBorrowTimeHistogram());
+                appendHistogram(out, "br", statistics.getRefusedBorrowTimeHistogram());
+                if (statistics.getBuildFailureCount() > 0) {
+                    out.append(", bf:");
+                    out.append(statistics.getBuildFailureCount());
+                }
+
                 if (logLevel.equals(ProxoolConstants.STATISTICS_LOG_LEVEL_TRACE)) {
                     log.trace(out.toString());
                 } else if (logLevel.equals(ProxoolConstants.STATISTICS_LOG_LEVEL_DEBUG)) {
@@ -69,6 +86,24 @@ public class StatisticsLogger implements StatisticsListenerIF {
             }
 
     }
+
+    private static void appendHistogram(StringBuffer out, String label, HistogramIF histogram) {
+        if (histogram != null && histogram.getCount() > 0) {
+            out.append(", ");
+            out.append(label);
+            out.append(":");
+            out.append(histogram.getPercentile(50));
+            out.append("/");
+            out.append(histogram.getPercentile(90));
+            out.append("/");
+            out.append(histogram.getPercentile(99));
+            out.append("/");
+            out.append(histogram.getPercentile(99.9));
+            out.append("/");
+            out.append(histogram.getMaximum());
+            out.append("ms");
+        }
+    }
 }
 
 
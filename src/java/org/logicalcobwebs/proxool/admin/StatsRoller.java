@@ -5,18 +5,26 @@
  */
 package org.logicalcobwebs.proxool.admin;
 
-import org.logicalcobwebs.concurrent.WriterPreferenceReadWriteLock;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.logicalcobwebs.proxool.ProxoolException;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
 
 
 /**
  * Responsbile for a single set of statistics. It rolls over to a new set
  * whenever it should. It provides access to the latest complete set
  * when it is available.
+ * <p>
+ * One thread rolls the statistics for every pool (and stops when there
+ * aren't any left). Recording a returned or refused connection just adds
+ * to the current set: it doesn't take a lock or check whether it's time
+ * to roll.
+ * </p>
  *
  * @version $Revision: 1.9 $, $Date: 2006/01/18 14:39:58 $
  * @author bill
@@ -27,27 +35,42 @@ class StatsRoller {
 
     private static final Log LOG = LogFactory.getLog(StatsRoller.class);
 
-    private WriterPreferenceReadWriteLock readWriteLock = new WriterPreferenceReadWriteLock();
+    /**
+     * The longest the roller thread sleeps before it checks again, even if no roll is
+     * due, in case the clock changes.
+     */
+    private static final long MAXIMUM_SLEEP_TIME = 5000;
+
+    /** Every roller that hasn't been cancelled, for all pools. Guarded by itself. */
+    private static final List ROLLERS = new ArrayList();
+
+    /** Rolls all the {@link #ROLLERS}. Null if there aren't any. Guarded by ROLLERS. */
+    private static Thread rollerThread;
 
-    private Statistics completeStatistics;
+    /** Whether a roller has been added since the roller thread last looked. Guarded by ROLLERS. */
+    private static boolean rollersChanged;
 
-    private Statistics currentStatistics;
+    private volatile Statistics completeStatistics;
 
+    private volatile Statistics currentStatistics;
+
+    /** Only used by the roller thread (once we are registered) */
     private Calendar nextRollDate;
 
+    /** @see #nextRollDate */
+    private long nextRollTime;
+
     private int period;
 
     private int units;
 
-    private boolean running = true;
-
-    private CompositeStatisticsListener compositeStatisticsListener;
+    private StatisticsListenerIF statisticsListener;
 
     private String alias;
 
-    public StatsRoller(String alias, CompositeStatisticsListener compositeStatisticsListener, String token) throws ProxoolException {
+    public StatsRoller(String alias, StatisticsListenerIF statisticsListener, String token) throws ProxoolException {
         this.alias = alias;
-        this.compositeStatisticsListener = compositeStatisticsListener;
+        this.statisticsListener = statisticsListener;
 
         nextRollDate = Calendar.getInstance();
         if (token.endsWith("s")) {
@@ -82,87 +105,150 @@ class StatsRoller {
         while (nextRollDate.before(now)) {
             nextRollDate.add(units, period);
         }
+        nextRollTime = nextRollDate.getTime().getTime();
 
         LOG.debug("Collecting first statistics for '" + token + "' at " + nextRollDate.getTime());
         currentStatistics = new Statistics(now.getTime());
 
-        // Automatically trigger roll if no activity
-        final Thread t = new Thread() {
+        register(this);
+    }
 
-            public void run() {
-                while (running) {
+    /**
+     * Add a roller to the ones that the roller thread looks after, and start the thread
+     * if it isn't running
+     * @param statsRoller the new roller
+     */
+    private static void register(StatsRoller statsRoller) {
+        synchronized (ROLLERS) {
+            ROLLERS.add(statsRoller);
+            rollersChanged = true;
+            if (rollerThread == null) {
+                rollerThread = new Thread("StatsRoller") {
+                    public void run() {
+                        rollAll();
+                    }
+                };
+                rollerThread.setDaemon(true);
+                rollerThread.start();
+            } else {
+                ROLLERS.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Run by the roller thread. Roll whichever statistics are due and then sleep until
+     * the next ones are, until there aren't any rollers left.
+     */
+    private static void rollAll() {
+        while (true) {
+            StatsRoller[] rollers;
+            synchronized (ROLLERS) {
+                if (ROLLERS.isEmpty()) {
+                    rollerThread = null;
+                    return;
+                }
+                rollers = (StatsRoller[]) ROLLERS.toArray(new StatsRoller[ROLLERS.size()]);
+                rollersChanged = false;
+            }
+
+            long nextRollTime = Long.MAX_VALUE;
+            for (int i = 0; i < rollers.length; i++) {
+                rollers[i].roll();
+                nextRollTime = Math.min(nextRollTime, rollers[i].nextRollTime);
+            }
+
+            synchronized (ROLLERS) {
+                long sleepTime = Math.min(nextRollTime - System.currentTimeMillis(), MAXIMUM_SLEEP_TIME);
+                if (sleepTime > 0 && !rollersChanged) {
                     try {
-                        Thread.sleep(5000);
+                        ROLLERS.wait(sleepTime);
                     } catch (InterruptedException e) {
                         LOG.debug("Interruption", e);
                     }
-                    roll();
                 }
             }
-
-        };
-        t.setDaemon(true);
-        t.start();
+        }
     }
 
     /**
      * Cancels the timer that outputs the stats
      */
     protected void cancel() {
-        running = false;
+        synchronized (ROLLERS) {
+            ROLLERS.remove(this);
+            ROLLERS.notifyAll();
+        }
     }
 
+    /**
+     * Swap in a new set of statistics if the current one has finished its period.
+     * Only called by the roller thread.
+     */
     private void roll() {
-        if (!isCurrent()) {
+        if (System.currentTimeMillis() >= nextRollTime) {
             try {
-                readWriteLock.writeLock().acquire();
-                if (!isCurrent()) {
-                    currentStatistics.setStopDate(nextRollDate.getTime());
-                    completeStatistics = currentStatistics;
-                    currentStatistics = new Statistics(nextRollDate.getTime());
-                    nextRollDate.add(units, period);
-                    compositeStatisticsListener.statistics(alias, completeStatistics);
-                }
+                Statistics statistics = currentStatistics;
+                Date rollDate = nextRollDate.getTime();
+                currentStatistics = new Statistics(rollDate);
+                statistics.setStopDate(rollDate);
+                completeStatistics = statistics;
+                nextRollDate.add(units, period);
+                nextRollTime = nextRollDate.getTime().getTime();
+                statisticsListener.statistics(alias, statistics);
             } catch (Throwable e) {
                 LOG.error("Unable to roll statistics log", e);
-            } finally {
-                readWriteLock.writeLock().release();
             }
         }
     }
 
-    private boolean isCurrent() {
-        return (System.currentTimeMillis() < nextRollDate.getTime().getTime());
-    }
-
     /**
      * @see org.logicalcobwebs.proxool.admin.Admin#connectionReturned
      */
     public void connectionReturned(long activeTime) {
-        roll();
-        try {
-            readWriteLock.readLock().acquire();
-            currentStatistics.connectionReturned(activeTime);
-        } catch (InterruptedException e) {
-            LOG.error("Unable to log connectionReturned", e);
-        } finally {
-            readWriteLock.readLock().release();
-        }
+        currentStatistics.connectionReturned(activeTime);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionServed
+     */
+    public void connectionServed(long borrowTime, boolean onDemand) {
+        currentStatistics.connectionServed(borrowTime, onDemand);
     }
 
     /**
      * @see org.logicalcobwebs.proxool.admin.Admin#connectionRefused
      */
-    public void connectionRefused() {
-        roll();
-        try {
-            readWriteLock.readLock().acquire();
-            currentStatistics.connectionRefused();
-        } catch (InterruptedException e) {
-            LOG.error("Unable to log connectionRefused", e);
-        } finally {
-            readWriteLock.readLock().release();
-        }
+    public void connectionRefused(long borrowTime) {
+        currentStatistics.connectionRefused(borrowTime);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionWaited
+     */
+    public void connectionWaited(long waitTime) {
+        currentStatistics.connectionWaited(waitTime);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionBuilt
+     */
+    public void connectionBuilt(long buildTime) {
+        currentStatistics.connectionBuilt(buildTime);
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#connectionBuildFailed
+     */
+    public void connectionBuildFailed() {
+        currentStatistics.connectionBuildFailed();
+    }
+
+    /**
+     * @see org.logicalcobwebs.proxool.admin.Admin#statementExecuted
+     */
+    public void statementExecuted(long executeTime) {
+        currentStatistics.statementExecuted(executeTime);
     }
 
     /**
@@ -170,15 +256,7 @@ class StatsRoller {
      * @return
      */
     public Statistics getCompleteStatistics() {
-        try {
-            readWriteLock.readLock().acquire();
-            return completeStatistics;
-        } catch (InterruptedException e) {
-            LOG.error("Couldn't read statistics", e);
-            return null;
-        } finally {
-            readWriteLock.readLock().release();
-        }
+        return completeStatistics;
     }
 }
 
@@ -12,6 +12,8 @@ import org.logicalcobwebs.proxool.ProxoolFacade;
 import org.logicalcobwebs.proxool.ProxoolException;
 import org.logicalcobwebs.proxool.ProxoolListenerIF;
 import org.logicalcobwebs.proxool.ConfigurationListenerIF;
+import org.logicalcobwebs.proxool.admin.SnapshotIF;
+import org.logicalcobwebs.proxool.admin.SqlDigestIF;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -60,6 +62,24 @@ import java.text.MessageFormat;
  * <li>houseKeepingSleeptime</li>
  * <li>houseKeepingTestSql</li>
  * <li>maximumActiveTime</li>
+ * <li>maximumWaitTime</li>
+ * <li>maximumWaitQueueSize</li>
+ * <li>threadAffinity</li>
+ * <li>statementCacheSize</li>
+ * <li>houseKeepingBatchSize</li>
+ * <li>validationInterval</li>
+ * <li>testWithIsValid</li>
+ * <li>maximumIdleTime</li>
+ * <li>minimumIdle</li>
+ * <li>borrowOrder</li>
+ * <li>maximumConnectionLifetimeJitter</li>
+ * <li>sqlHistorySize</li>
+ * <li>sqlDigestSize</li>
+ * <li>slowQueryThreshold</li>
+ * <li>slowQuerySampleRate</li>
+ * <li>traceSampleRate</li>
+ * <li>listenerQueueSize</li>
+ * <li>listenerQueueBlocking</li>
  * <li>maximumConnectionCount</li>
  * <li>maximumConnectionLifetime</li>
  * <li>minimumConnectionCount</li>
@@ -105,6 +125,30 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
 
     private static final String OPERATION_NAME_SHUTDOWN = "shutdown";
 
+    /**
+     * Read only attributes that come from the pool's {@link SnapshotIF snapshot} rather
+     * than its definition. Named like properties so that they get described the same way.
+     */
+    private static final String[] STATISTIC_NAMES = new String[]{
+        "served-count",
+        "refused-count",
+        "idle-borrow-count",
+        "total-idle-borrow-time",
+        "on-demand-borrow-count",
+        "total-on-demand-borrow-time",
+        "total-refused-borrow-time",
+        "built-count",
+        "total-build-time",
+        "build-failure-count",
+        "listener-event-drop-count",
+    };
+
+    /**
+     * Read only attribute that lists the pool's {@link SqlDigestIF SQL digests}, one line each.
+     * Named like a property so that it gets described the same way.
+     */
+    private static final String SQL_DIGESTS = "sql-digests";
+
     private static final ResourceBundle ATTRIBUTE_DESCRIPTIONS_RESOURCE = createAttributeDescriptionsResource();
     private static final ResourceBundle JMX_RESOURCE = createJMXResource();
 
@@ -180,6 +224,7 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
         }
 
         // build the result attribute list
+        SnapshotIF snapshot = null;
         for (int i = 0; i < attributeNames.length; i++) {
             try {
                 if (equalsProperty(attributeNames[i], ProxoolConstants.ALIAS)) {
@@ -209,6 +254,61 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
                 } else if (equalsProperty(attributeNames[i], ProxoolConstants.MAXIMUM_ACTIVE_TIME)) {
                     resultList.add(new Attribute(attributeNames[i],
                             new Long(this.poolDefinition.getMaximumActiveTime())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.MAXIMUM_WAIT_TIME)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Long(this.poolDefinition.getMaximumWaitTime())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.MAXIMUM_WAIT_QUEUE_SIZE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getMaximumWaitQueueSize())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.THREAD_AFFINITY)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Boolean(this.poolDefinition.isThreadAffinity())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.STATEMENT_CACHE_SIZE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getStatementCacheSize())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getHouseKeepingBatchSize())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.VALIDATION_INTERVAL)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Long(this.poolDefinition.getValidationInterval())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.TEST_WITH_IS_VALID)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Boolean(this.poolDefinition.isTestWithIsValid())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.MAXIMUM_IDLE_TIME)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Long(this.poolDefinition.getMaximumIdleTime())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.MINIMUM_IDLE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getMinimumIdle())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.BORROW_ORDER)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            getValueOrEmpty(this.poolDefinition.getBorrowOrder())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Long(this.poolDefinition.getMaximumConnectionLifetimeJitter())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.SQL_HISTORY_SIZE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getSqlHistorySize())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.SQL_DIGEST_SIZE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getSqlDigestSize())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.SLOW_QUERY_THRESHOLD)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getSlowQueryThreshold())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.SLOW_QUERY_SAMPLE_RATE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getSlowQuerySampleRate())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.TRACE_SAMPLE_RATE)) {
+                    // The pool's current rate, which might have been changed since it was defined
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(getTraceSampleRate())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.LISTENER_QUEUE_SIZE)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Integer(this.poolDefinition.getListenerQueueSize())));
+                } else if (equalsProperty(attributeNames[i], ProxoolConstants.LISTENER_QUEUE_BLOCKING)) {
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Boolean(this.poolDefinition.isListenerQueueBlocking())));
                 } else if (equalsProperty(attributeNames[i], ProxoolConstants.MAXIMUM_CONNECTION_COUNT)) {
                     resultList.add(new Attribute(attributeNames[i],
                             new Integer(this.poolDefinition.getMaximumConnectionCount())));
@@ -248,6 +348,14 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
                 } else if (equalsProperty(attributeNames[i], ProxoolConstants.FATAL_SQL_EXCEPTION_WRAPPER_CLASS)) {
                     resultList.add(new Attribute(attributeNames[i],
                             getValueOrEmpty(this.poolDefinition.getFatalSqlExceptionWrapper())));
+                } else if (equalsProperty(attributeNames[i], SQL_DIGESTS)) {
+                    resultList.add(new Attribute(attributeNames[i], getSqlDigests()));
+                } else if (getStatisticName(attributeNames[i]) != null) {
+                    if (snapshot == null) {
+                        snapshot = getSnapshot();
+                    }
+                    resultList.add(new Attribute(attributeNames[i],
+                            new Long(getStatistic(snapshot, getStatisticName(attributeNames[i])))));
                 } else {
                     final String message = "Unknown attribute: " + attributeNames[i];
                     LOG.error(message);
@@ -334,6 +442,77 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
                 } else if (equalsProperty(name, ProxoolConstants.MAXIMUM_ACTIVE_TIME)) {
                     setIntegerAttribute(name, ProxoolConstants.MAXIMUM_ACTIVE_TIME_PROPERTY, value,
                             ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_ACTIVE_TIME, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.MAXIMUM_WAIT_TIME)) {
+                    // Zero is meaningful here (refuse immediately) so we don't fall back to the default
+                    checkAssignable(name, Integer.class, value);
+                    newProperties.setProperty(ProxoolConstants.MAXIMUM_WAIT_TIME_PROPERTY, value.toString());
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.MAXIMUM_WAIT_QUEUE_SIZE)) {
+                    setIntegerAttribute(name, ProxoolConstants.MAXIMUM_WAIT_QUEUE_SIZE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_WAIT_QUEUE_SIZE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.THREAD_AFFINITY)) {
+                    checkAssignable(name, Boolean.class, value);
+                    newProperties.setProperty(ProxoolConstants.THREAD_AFFINITY_PROPERTY, value.toString());
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.STATEMENT_CACHE_SIZE)) {
+                    setIntegerAttribute(name, ProxoolConstants.STATEMENT_CACHE_SIZE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_STATEMENT_CACHE_SIZE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE)) {
+                    setIntegerAttribute(name, ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_HOUSE_KEEPING_BATCH_SIZE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.VALIDATION_INTERVAL)) {
+                    // Zero is meaningful here (always test) so we don't fall back to the default
+                    checkAssignable(name, Integer.class, value);
+                    newProperties.setProperty(ProxoolConstants.VALIDATION_INTERVAL_PROPERTY, value.toString());
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.TEST_WITH_IS_VALID)) {
+                    checkAssignable(name, Boolean.class, value);
+                    newProperties.setProperty(ProxoolConstants.TEST_WITH_IS_VALID_PROPERTY, value.toString());
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.MAXIMUM_IDLE_TIME)) {
+                    // Zero is meaningful here (never close idle connections) so we don't fall back to the default
+                    checkAssignable(name, Integer.class, value);
+                    newProperties.setProperty(ProxoolConstants.MAXIMUM_IDLE_TIME_PROPERTY, value.toString());
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.MINIMUM_IDLE)) {
+                    setIntegerAttribute(name, ProxoolConstants.MINIMUM_IDLE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_MINIMUM_IDLE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.BORROW_ORDER)) {
+                    checkAssignable(name, String.class, value);
+                    if (notEmpty(value)) {
+                        newProperties.setProperty(ProxoolConstants.BORROW_ORDER_PROPERTY, value.toString());
+                    } else {
+                        newProperties.setProperty(ProxoolConstants.BORROW_ORDER_PROPERTY, "");
+                    }
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER)) {
+                    checkAssignable(name, Integer.class, value);
+                    newProperties.setProperty(ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER_PROPERTY, value.toString());
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.SQL_HISTORY_SIZE)) {
+                    setIntegerAttribute(name, ProxoolConstants.SQL_HISTORY_SIZE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_SQL_HISTORY_SIZE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.SQL_DIGEST_SIZE)) {
+                    setIntegerAttribute(name, ProxoolConstants.SQL_DIGEST_SIZE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_SQL_DIGEST_SIZE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.SLOW_QUERY_THRESHOLD)) {
+                    setIntegerAttribute(name, ProxoolConstants.SLOW_QUERY_THRESHOLD_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_SLOW_QUERY_THRESHOLD, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.SLOW_QUERY_SAMPLE_RATE)) {
+                    setIntegerAttribute(name, ProxoolConstants.SLOW_QUERY_SAMPLE_RATE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_SLOW_QUERY_SAMPLE_RATE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.TRACE_SAMPLE_RATE)) {
+                    // Changed straight away, without redefining the pool
+                    checkAssignable(name, Integer.class, value);
+                    setTraceSampleRate(((Integer) value).intValue());
+                    resultList.add(new Attribute(name, value));
+                } else if (equalsProperty(name, ProxoolConstants.LISTENER_QUEUE_SIZE)) {
+                    setIntegerAttribute(name, ProxoolConstants.LISTENER_QUEUE_SIZE_PROPERTY, value,
+                            ConnectionPoolDefinitionIF.DEFAULT_LISTENER_QUEUE_SIZE, newProperties, resultList);
+                } else if (equalsProperty(name, ProxoolConstants.LISTENER_QUEUE_BLOCKING)) {
+                    checkAssignable(name, Boolean.class, value);
+                    newProperties.setProperty(ProxoolConstants.LISTENER_QUEUE_BLOCKING_PROPERTY, value.toString());
+                    resultList.add(new Attribute(name, value));
                 } else if (equalsProperty(name, ProxoolConstants.MAXIMUM_CONNECTION_COUNT)) {
                     setIntegerAttribute(name, ProxoolConstants.MAXIMUM_CONNECTION_COUNT_PROPERTY, value,
                             ConnectionPoolDefinitionIF.DEFAULT_MAXIMUM_CONNECTION_COUNT, newProperties, resultList);
@@ -447,6 +626,24 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
             createProxoolAttribute(ProxoolConstants.TEST_BEFORE_USE, Boolean.class),
             createProxoolAttribute(ProxoolConstants.TEST_AFTER_USE, Boolean.class),
             createProxoolAttribute(ProxoolConstants.MAXIMUM_ACTIVE_TIME, Integer.class),
+            createProxoolAttribute(ProxoolConstants.MAXIMUM_WAIT_TIME, Integer.class),
+            createProxoolAttribute(ProxoolConstants.MAXIMUM_WAIT_QUEUE_SIZE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.THREAD_AFFINITY, Boolean.class),
+            createProxoolAttribute(ProxoolConstants.STATEMENT_CACHE_SIZE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.VALIDATION_INTERVAL, Integer.class),
+            createProxoolAttribute(ProxoolConstants.TEST_WITH_IS_VALID, Boolean.class),
+            createProxoolAttribute(ProxoolConstants.MAXIMUM_IDLE_TIME, Integer.class),
+            createProxoolAttribute(ProxoolConstants.MINIMUM_IDLE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.BORROW_ORDER, String.class),
+            createProxoolAttribute(ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER, Integer.class),
+            createProxoolAttribute(ProxoolConstants.SQL_HISTORY_SIZE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.SQL_DIGEST_SIZE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.SLOW_QUERY_THRESHOLD, Integer.class),
+            createProxoolAttribute(ProxoolConstants.SLOW_QUERY_SAMPLE_RATE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.TRACE_SAMPLE_RATE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.LISTENER_QUEUE_SIZE, Integer.class),
+            createProxoolAttribute(ProxoolConstants.LISTENER_QUEUE_BLOCKING, Boolean.class),
             createProxoolAttribute(ProxoolConstants.MAXIMUM_CONNECTION_COUNT, Integer.class),
             createProxoolAttribute(ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME, Integer.class),
             createProxoolAttribute(ProxoolConstants.SIMULTANEOUS_BUILD_THROTTLE, Integer.class),
@@ -460,6 +657,12 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
             createProxoolAttribute(ProxoolConstants.VERBOSE, Boolean.class),
             createProxoolAttribute(ProxoolConstants.FATAL_SQL_EXCEPTION_WRAPPER_CLASS, String.class),
         };
+        final MBeanAttributeInfo[] allAttributeInfos = new MBeanAttributeInfo[attributeInfos.length + STATISTIC_NAMES.length + 1];
+        System.arraycopy(attributeInfos, 0, allAttributeInfos, 0, attributeInfos.length);
+        for (int i = 0; i < STATISTIC_NAMES.length; i++) {
+            allAttributeInfos[attributeInfos.length + i] = createProxoolAttribute(STATISTIC_NAMES[i], Long.class, false);
+        }
+        allAttributeInfos[allAttributeInfos.length - 1] = createProxoolAttribute(SQL_DIGESTS, String[].class, false);
 
         final MBeanConstructorInfo[] constructorInfos = new MBeanConstructorInfo[]{
             new MBeanConstructorInfo("ConnectionPoolMBean(): Construct a ConnectionPoolMBean object.", ConnectionPoolMBean.class.getConstructors()[0])
@@ -471,7 +674,7 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
         };
 
         return new MBeanInfo(CLASS_NAME, MessageFormat.format(getJMXText(RECOURCE_NAME_MBEAN_POOL_DESCRIPTION),
-                new Object[]{alias}), attributeInfos, constructorInfos, operationInfos, new MBeanNotificationInfo[0]);
+                new Object[]{alias}), allAttributeInfos, constructorInfos, operationInfos, new MBeanNotificationInfo[0]);
     }
 
     private static String getAttributeDescription(String attributeName) {
@@ -540,6 +743,88 @@ public class ConnectionPoolMBean implements DynamicMBean, MBeanRegistration, Not
         }
     }
 
+    private static String getStatisticName(String beanAttribute) {
+        for (int i = 0; i < STATISTIC_NAMES.length; i++) {
+            if (beanAttribute.equals(ProxoolJMXHelper.getValidIdentifier(STATISTIC_NAMES[i]))) {
+                return STATISTIC_NAMES[i];
+            }
+        }
+        return null;
+    }
+
+    private SnapshotIF getSnapshot() {
+        try {
+            return ProxoolFacade.getSnapshot(this.poolDefinition.getAlias(), false);
+        } catch (ProxoolException e) {
+            LOG.error("Couldn't get snapshot of pool " + this.poolDefinition.getAlias(), e);
+            throw new RuntimeOperationsException(new RuntimeException(e.getMessage()));
+        }
+    }
+
+    private int getTraceSampleRate() {
+        try {
+            return ProxoolFacade.getTraceSampleRate(this.poolDefinition.getAlias());
+        } catch (ProxoolException e) {
+            LOG.error("Couldn't get trace sample rate of pool " + this.poolDefinition.getAlias(), e);
+            throw new RuntimeOperationsException(new RuntimeException(e.getMessage()));
+        }
+    }
+
+    private void setTraceSampleRate(int traceSampleRate) {
+        try {
+            ProxoolFacade.setTraceSampleRate(this.poolDefinition.getAlias(), traceSampleRate);
+        } catch (ProxoolException e) {
+            LOG.error("Couldn't set trace sample rate of pool " + this.poolDefinition.getAlias(), e);
+            throw new RuntimeOperationsException(new RuntimeException(e.getMessage()));
+        }
+    }
+
+    private String[] getSqlDigests() {
+        SqlDigestIF[] sqlDigests;
+        try {
+            sqlDigests = ProxoolFacade.getSqlDigests(this.poolDefinition.getAlias());
+        } catch (ProxoolException e) {
+            LOG.error("Couldn't get SQL digests of pool " + this.poolDefinition.getAlias(), e);
+            throw new RuntimeOperationsException(new RuntimeException(e.getMessage()));
+        }
+        final String[] lines = new String[sqlDigests.length];
+        for (int i = 0; i < sqlDigests.length; i++) {
+            lines[i] = "count=" + sqlDigests[i].getCount()
+                    + " errors=" + sqlDigests[i].getErrorCount()
+                    + " total=" + sqlDigests[i].getTotalTime()
+                    + " max=" + sqlDigests[i].getMaximumTime()
+                    + " 99%=" + sqlDigests[i].getTimeHistogram().getPercentile(99.0)
+                    + " sql=" + sqlDigests[i].getSql();
+        }
+        return lines;
+    }
+
+    private static long getStatistic(SnapshotIF snapshot, String statisticName) {
+        if (statisticName.equals("served-count")) {
+            return snapshot.getServedCount();
+        } else if (statisticName.equals("refused-count")) {
+            return snapshot.getRefusedCount();
+        } else if (statisticName.equals("idle-borrow-count")) {
+            return snapshot.getIdleBorrowCount();
+        } else if (statisticName.equals("total-idle-borrow-time")) {
+            return snapshot.getTotalIdleBorrowTime();
+        } else if (statisticName.equals("on-demand-borrow-count")) {
+            return snapshot.getOnDemandBorrowCount();
+        } else if (statisticName.equals("total-on-demand-borrow-time")) {
+            return snapshot.getTotalOnDemandBorrowTime();
+        } else if (statisticName.equals("total-refused-borrow-time")) {
+            return snapshot.getTotalRefusedBorrowTime();
+        } else if (statisticName.equals("built-count")) {
+            return snapshot.getBuiltCount();
+        } else if (statisticName.equals("total-build-time")) {
+            return snapshot.getTotalBuildTime();
+        } else if (statisticName.equals("build-failure-count")) {
+            return snapshot.getBuildFailureCount();
+        } else {
+            return snapshot.getListenerEventDropCount();
+        }
+    }
+
     private boolean equalsProperty(String beanAttribute, String proxoolProperty) {
         return beanAttribute.equals(ProxoolJMXHelper.getValidIdentifier(proxoolProperty));
     }
@@ -9,6 +9,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.logicalcobwebs.proxool.*;
 import org.logicalcobwebs.proxool.admin.SnapshotIF;
+import org.logicalcobwebs.proxool.admin.HistogramIF;
+import org.logicalcobwebs.proxool.admin.SqlDigestIF;
 import org.logicalcobwebs.proxool.admin.StatisticsIF;
 
 import javax.servlet.ServletConfig;
@@ -179,6 +181,7 @@ public class AdminServlet extends HttpServlet {
      *   <li>{@link #TAB_DEFINITION} (default)</li>
      *   <li>{@link #TAB_SNAPSHOT}</li>
      *   <li>{@link #TAB_STATISTICS}</li>
+     *   <li>{@link #TAB_SQL}</li>
      *  </ol>
      */
     private static final String TAB = "tab";
@@ -198,6 +201,12 @@ public class AdminServlet extends HttpServlet {
      */
     private static final String TAB_STATISTICS = "statistics";
 
+    /**
+     * Only there if the {@link ConnectionPoolDefinitionIF#getSqlDigestSize sql-digest-size} is set
+     * @see #TAB
+     */
+    private static final String TAB_SQL = "sql";
+
     /**
      * The request parameter name that defines the pool
      */
@@ -278,13 +287,20 @@ public class AdminServlet extends HttpServlet {
                 if (!statisticsComingSoon && tab.equals(TAB_STATISTICS)) {
                     tab = TAB_DEFINITION;
                 }
-                doTabs(response.getOutputStream(), alias, link, tab, statisticsAvailable, statisticsComingSoon);
+                // Or on the SQL tab if we aren't digesting SQL
+                final boolean sqlDigested = def.getSqlDigestSize() > 0;
+                if (!sqlDigested && tab.equals(TAB_SQL)) {
+                    tab = TAB_DEFINITION;
+                }
+                doTabs(response.getOutputStream(), alias, link, tab, statisticsAvailable, statisticsComingSoon, sqlDigested);
                 if (tab.equals(TAB_DEFINITION)) {
                     doDefinition(response.getOutputStream(), def);
                 } else if (tab.equals(TAB_SNAPSHOT)) {
                     doSnapshot(response.getOutputStream(), def, link, snapshotDetail, snapshotConnectionId);
                 } else if (tab.equals(TAB_STATISTICS)) {
                     doStatistics(response.getOutputStream(), statisticsArray, def);
+                } else if (tab.equals(TAB_SQL)) {
+                    doSql(response.getOutputStream(), ProxoolFacade.getSqlDigests(alias));
                 } else {
                     throw new ServletException("Unrecognised tab '" + tab + "'");
                 }
@@ -307,8 +323,9 @@ public class AdminServlet extends HttpServlet {
      * @param tab the active tab
      * @param statisticsAvailable whether statistics are available (true if configured and ready)
      * @param statisticsComingSoon whether statistics will be available (true if configured but not ready yet)
+     * @param sqlDigested whether we are keeping statistics for each shape of SQL statement
      */
-    private void doTabs(ServletOutputStream out, String alias, String link, String tab, boolean statisticsAvailable, boolean statisticsComingSoon) throws IOException {
+    private void doTabs(ServletOutputStream out, String alias, String link, String tab, boolean statisticsAvailable, boolean statisticsComingSoon, boolean sqlDigested) throws IOException {
         out.println("<ul>");
         out.println("<li class=\"" + (tab.equals(TAB_DEFINITION) ? "active" : "inactive") + "\"><a class=\"quiet\" href=\"" + link + "?alias=" + alias + "&tab=" + TAB_DEFINITION + "\">Definition</a></li>");
         out.println("<li class=\"" + (tab.equals(TAB_SNAPSHOT) ? "active" : "inactive") + "\"><a class=\"quiet\" href=\"" + link + "?alias=" + alias + "&tab=" + TAB_SNAPSHOT + "\">Snapshot</a></li>");
@@ -317,9 +334,63 @@ public class AdminServlet extends HttpServlet {
         } else if (statisticsComingSoon) {
             out.println("<li class=\"disabled\">Statistics</li>");
         }
+        if (sqlDigested) {
+            out.println("<li class=\"" + (tab.equals(TAB_SQL) ? "active" : "inactive") + "\"><a class=\"quiet\" href=\"" + link + "?alias=" + alias + "&tab=" + TAB_SQL + "\">SQL</a></li>");
+        }
         out.println("</ul>");
     }
 
+    /**
+     * Output the statistics for each shape of SQL statement, one row each
+     * @param out where to write HTML to
+     * @param sqlDigests the ones that have taken the longest altogether first
+     */
+    private void doSql(ServletOutputStream out, SqlDigestIF[] sqlDigests) throws IOException {
+
+        if (sqlDigests.length > 0) {
+            out.println("<table cellpadding=\"2\" cellspacing=\"0\" border=\"0\">");
+            out.println("  <tbody>");
+
+            out.print("<tr>");
+            out.print("<td>&nbsp;sql</td>");
+            out.print("<td align=\"right\">count</td>");
+            out.print("<td align=\"right\">errors</td>");
+            out.print("<td align=\"right\">total<br>(ms)</td>");
+            out.print("<td align=\"right\">average<br>(ms)</td>");
+            out.print("<td align=\"right\">50%<br>(ms)</td>");
+            out.print("<td align=\"right\">99%<br>(ms)</td>");
+            out.print("<td align=\"right\">max<br>(ms)</td>");
+            out.println("</tr>");
+
+            for (int i = 0; i < sqlDigests.length; i++) {
+                SqlDigestIF sqlDigest = sqlDigests[i];
+                out.print("<tr>");
+                out.print("<td>&nbsp;");
+                out.print(sqlDigest.getSql());
+                out.print("</td>");
+                printSqlDigestCell(out, sqlDigest.getCount());
+                printSqlDigestCell(out, sqlDigest.getErrorCount());
+                printSqlDigestCell(out, sqlDigest.getTotalTime());
+                printSqlDigestCell(out, sqlDigest.getCount() > 0 ? sqlDigest.getTotalTime() / sqlDigest.getCount() : 0);
+                printSqlDigestCell(out, sqlDigest.getTimeHistogram().getPercentile(50));
+                printSqlDigestCell(out, sqlDigest.getTimeHistogram().getPercentile(99));
+                printSqlDigestCell(out, sqlDigest.getMaximumTime());
+                out.println("</tr>");
+            }
+
+            out.println("  </tbody>");
+            out.println("</table>");
+        } else {
+            out.println("No SQL yet");
+        }
+    }
+
+    private void printSqlDigestCell(ServletOutputStream out, long value) throws IOException {
+        out.print("<td align=\"right\">&nbsp;");
+        out.print(value);
+        out.print("&nbsp;&nbsp;</td>");
+    }
+
     /**
      * Output the statistics. If there are more than one set of statistics then show them all.
      * @param out where to write HTML to
@@ -347,6 +418,18 @@ public class AdminServlet extends HttpServlet {
             // averageActiveTime
             printDefinitionEntry(out, "Average active time", DECIMAL_FORMAT.format(statistics.getAverageActiveTime() / 1000) + "s", STATISTIC);
 
+            // How the times were spread out
+            printDefinitionEntry(out, "Active time", getPercentiles(statistics.getActiveTimeHistogram()), STATISTIC);
+            printDefinitionEntry(out, "Wait time", getPercentiles(statistics.getWaitTimeHistogram()), STATISTIC);
+            printDefinitionEntry(out, "Build time", getPercentiles(statistics.getBuildTimeHistogram()), STATISTIC);
+            printDefinitionEntry(out, "Execute time", getPercentiles(statistics.getExecuteTimeHistogram()), STATISTIC);
+            printDefinitionEntry(out, "Borrow time (idle)", getPercentiles(statistics.getIdleBorrowTimeHistogram()), STATISTIC);
+            printDefinitionEntry(out, "Borrow time (on demand)", getPercentiles(statistics.getOnDemandBorrowTimeHistogram()), STATISTIC);
+            printDefinitionEntry(out, "Borrow time (refused)", getPercentiles(statistics.getRefusedBorrowTimeHistogram()), STATISTIC);
+            if (statistics.getBuildFailureCount() > 0) {
+                printDefinitionEntry(out, "Build failures", String.valueOf(statistics.getBuildFailureCount()), STATISTIC);
+            }
+
             // activityLevel
             StringBuffer activityLevelBuffer = new StringBuffer();
             int activityLevel = (int) (100 * statistics.getAverageActiveCount() / cpd.getMaximumConnectionCount());
@@ -361,6 +444,31 @@ public class AdminServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Describe how many connections were borrowed one way and how long it took on average
+     * @param count how many
+     * @param totalTime how long they took altogether (milliseconds)
+     * @param label which way
+     * @return the summary
+     */
+    private static String getBorrowSummary(long count, long totalTime, String label) {
+        return count + " " + label + " (" + (count > 0 ? totalTime / count : 0) + "ms average)";
+    }
+
+    /**
+     * Describe how the values in a histogram were spread out
+     * @param histogram the histogram
+     * @return the percentiles and maximum, or null if there is nothing in it
+     */
+    private static String getPercentiles(HistogramIF histogram) {
+        if (histogram == null || histogram.getCount() == 0) {
+            return null;
+        }
+        return "50%: " + histogram.getPercentile(50) + "ms, 90%: " + histogram.getPercentile(90)
+                + "ms, 99%: " + histogram.getPercentile(99) + "ms, 99.9%: " + histogram.getPercentile(99.9)
+                + "ms, max: " + histogram.getMaximum() + "ms (" + histogram.getCount() + ")";
+    }
+
     /**
      * We can draw a bar chart simply enough. The two arrays passed as parameters must be of equal length
      * @param out where to write the HTML
@@ -412,6 +520,24 @@ public class AdminServlet extends HttpServlet {
         printDefinitionEntry(out, ProxoolConstants.SIMULTANEOUS_BUILD_THROTTLE, String.valueOf(cpd.getSimultaneousBuildThrottle()), STANDARD_PROPERTY);
         printDefinitionEntry(out, ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME, formatMilliseconds(cpd.getMaximumConnectionLifetime()), STANDARD_PROPERTY);
         printDefinitionEntry(out, ProxoolConstants.MAXIMUM_ACTIVE_TIME, formatMilliseconds(cpd.getMaximumActiveTime()), STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.MAXIMUM_WAIT_TIME, cpd.getMaximumWaitTime() > 0 ? formatMilliseconds(cpd.getMaximumWaitTime()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.MAXIMUM_WAIT_QUEUE_SIZE, cpd.getMaximumWaitTime() > 0 ? String.valueOf(cpd.getMaximumWaitQueueSize()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.THREAD_AFFINITY, String.valueOf(cpd.isThreadAffinity()), STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.STATEMENT_CACHE_SIZE, cpd.getStatementCacheSize() > 0 ? String.valueOf(cpd.getStatementCacheSize()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.HOUSE_KEEPING_BATCH_SIZE, cpd.getHouseKeepingBatchSize() > 0 ? String.valueOf(cpd.getHouseKeepingBatchSize()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.VALIDATION_INTERVAL, cpd.getValidationInterval() > 0 ? String.valueOf(cpd.getValidationInterval()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.TEST_WITH_IS_VALID, String.valueOf(cpd.isTestWithIsValid()), STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.MAXIMUM_IDLE_TIME, cpd.getMaximumIdleTime() > 0 ? String.valueOf(cpd.getMaximumIdleTime()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.MINIMUM_IDLE, cpd.getMinimumIdle() > 0 ? String.valueOf(cpd.getMinimumIdle()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.BORROW_ORDER, cpd.getBorrowOrder(), STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.MAXIMUM_CONNECTION_LIFETIME_JITTER, cpd.getMaximumConnectionLifetimeJitter() > 0 ? String.valueOf(cpd.getMaximumConnectionLifetimeJitter()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.SQL_HISTORY_SIZE, cpd.isTrace() ? String.valueOf(cpd.getSqlHistorySize()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.SQL_DIGEST_SIZE, cpd.getSqlDigestSize() > 0 ? String.valueOf(cpd.getSqlDigestSize()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.SLOW_QUERY_THRESHOLD, cpd.getSlowQueryThreshold() > 0 ? String.valueOf(cpd.getSlowQueryThreshold()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.SLOW_QUERY_SAMPLE_RATE, cpd.getSlowQuerySampleRate() > 0 ? String.valueOf(cpd.getSlowQuerySampleRate()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.TRACE_SAMPLE_RATE, cpd.getTraceSampleRate() > 1 ? String.valueOf(cpd.getTraceSampleRate()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.LISTENER_QUEUE_SIZE, cpd.getListenerQueueSize() > 0 ? String.valueOf(cpd.getListenerQueueSize()) : null, STANDARD_PROPERTY);
+        printDefinitionEntry(out, ProxoolConstants.LISTENER_QUEUE_BLOCKING, String.valueOf(cpd.isListenerQueueBlocking()), STANDARD_PROPERTY);
         printDefinitionEntry(out, ProxoolConstants.HOUSE_KEEPING_SLEEP_TIME, (cpd.getHouseKeepingSleepTime() / 1000) + "s", STANDARD_PROPERTY);
         printDefinitionEntry(out, ProxoolConstants.HOUSE_KEEPING_TEST_SQL, cpd.getHouseKeepingTestSql(), STANDARD_PROPERTY);
         printDefinitionEntry(out, ProxoolConstants.TEST_BEFORE_USE, String.valueOf(cpd.isTestBeforeUse()), STANDARD_PROPERTY);
@@ -468,7 +594,8 @@ public class AdminServlet extends HttpServlet {
      */
     private void doSnapshot(ServletOutputStream out, ConnectionPoolDefinitionIF cpd, String link, String level, String connectionId) throws IOException, ProxoolException {
         boolean detail = (level != null && level.equals(DETAIL_MORE));
-        SnapshotIF snapshot = ProxoolFacade.getSnapshot(cpd.getAlias(), detail);
+        // We only need the SQL calls if we're drilling down into a connection
+        SnapshotIF snapshot = ProxoolFacade.getSnapshot(cpd.getAlias(), detail, connectionId != null);
 
         if (snapshot != null) {
 
@@ -506,6 +633,54 @@ public class AdminServlet extends HttpServlet {
             // refusedCount
             printDefinitionEntry(out, "Refused", String.valueOf(snapshot.getRefusedCount()), SNAPSHOT);
 
+            // waiting
+            if (snapshot.getWaitedCount() > 0) {
+                printDefinitionEntry(out, "Waiting", snapshot.getWaitingCount() + " (now), "
+                        + snapshot.getWaitedCount() + " (total), "
+                        + snapshot.getWaitTimeoutCount() + " (timed out), "
+                        + (snapshot.getTotalWaitTime() / snapshot.getWaitedCount()) + "ms (average)", SNAPSHOT);
+            }
+
+            // borrowing
+            if (snapshot.getIdleBorrowCount() + snapshot.getOnDemandBorrowCount() + snapshot.getRefusedCount() > 0) {
+                printDefinitionEntry(out, "Borrowing", getBorrowSummary(snapshot.getIdleBorrowCount(), snapshot.getTotalIdleBorrowTime(), "idle") + ", "
+                        + getBorrowSummary(snapshot.getOnDemandBorrowCount(), snapshot.getTotalOnDemandBorrowTime(), "on demand") + ", "
+                        + getBorrowSummary(snapshot.getRefusedCount(), snapshot.getTotalRefusedBorrowTime(), "refused"), SNAPSHOT);
+            }
+
+            // thread affinity
+            if (snapshot.getThreadAffinityHitCount() + snapshot.getThreadAffinityMissCount() > 0) {
+                printDefinitionEntry(out, "Thread affinity", snapshot.getThreadAffinityHitCount() + " (hit), "
+                        + snapshot.getThreadAffinityMissCount() + " (miss)", SNAPSHOT);
+            }
+
+            // statement cache
+            if (snapshot.getStatementCacheHitCount() + snapshot.getStatementCacheMissCount() > 0) {
+                printDefinitionEntry(out, "Statement cache", snapshot.getStatementCacheHitCount() + " (hit), "
+                        + snapshot.getStatementCacheMissCount() + " (miss), "
+                        + snapshot.getStatementCacheEvictionCount() + " (evicted)", SNAPSHOT);
+            }
+
+            // building
+            if (snapshot.getBuiltCount() > 0 || snapshot.getBuildQueueSize() > 0) {
+                printDefinitionEntry(out, "Building", snapshot.getBuildingCount() + " (now), "
+                        + snapshot.getBuildQueueSize() + " (queued), "
+                        + snapshot.getBuiltCount() + " (total), "
+                        + (snapshot.getBuiltCount() > 0 ? snapshot.getTotalBuildTime() / snapshot.getBuiltCount() : 0) + "ms (average), "
+                        + snapshot.getBuildFailureCount() + " (failed)", SNAPSHOT);
+            }
+
+            // listener queue
+            if (snapshot.getListenerEventDropCount() > 0) {
+                printDefinitionEntry(out, "Listener events", snapshot.getListenerEventDropCount() + " (dropped)", SNAPSHOT);
+            }
+
+            // house keeping
+            if (snapshot.getHouseKeepingCount() > 0) {
+                printDefinitionEntry(out, "House keeping", snapshot.getHouseKeepingCount() + " (total), "
+                        + snapshot.getTotalHouseKeepingTime() / snapshot.getHouseKeepingCount() + "ms (average)", SNAPSHOT);
+            }
+
             if (!detail) {
                 out.println("    <tr>");
                 out.print("        <td colspan=\"2\" align=\"right\"><form action=\"" + link + "\" method=\"GET\">");
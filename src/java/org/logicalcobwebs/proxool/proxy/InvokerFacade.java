@@ -6,9 +6,8 @@
 package org.logicalcobwebs.proxool.proxy;
 
 import org.logicalcobwebs.proxool.ProxoolException;
+import org.logicalcobwebs.proxool.util.CopyOnWriteMap;
 
-import java.util.Map;
-import java.util.HashMap;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
@@ -21,8 +20,12 @@ import java.lang.reflect.Modifier;
  */
 public class InvokerFacade {
     
-    private static Map methodMappers = new HashMap();
-    
+    /**
+     * One {@link MethodMapper} for each concrete class. Looking one up doesn't
+     * create any objects or take a lock.
+     */
+    private static CopyOnWriteMap methodMappers = new CopyOnWriteMap();
+
     /**
      * Returns the method in the concrete class with an indentical signature to that passed
      * @param concreteClass the class that we want to invoke methods on. It should either implement all methods on
@@ -34,13 +37,7 @@ public class InvokerFacade {
     public static Method getConcreteMethod(Class concreteClass, Method injectableMethod) throws ProxoolException {
         // Unless the concrete class is public we can't do anything
         if (Modifier.isPublic(concreteClass.getModifiers())) {
-            Object key = concreteClass.getName() + ":" + injectableMethod.getName();
-            MethodMapper methodMapper = (MethodMapper) methodMappers.get(key);
-            if (methodMapper == null) {
-                methodMapper = new MethodMapper(concreteClass);
-                methodMappers.put(key, methodMapper);
-            }
-            return methodMapper.getConcreteMethod(injectableMethod);
+            return getMethodMapper(concreteClass).getConcreteMethod(injectableMethod);
         } else {
             return injectableMethod;
         }
@@ -55,13 +52,21 @@ public class InvokerFacade {
      * @param overridenMethod the one we are going to use (probably the same as injectrableMethod actually)
      */
     public static void overrideConcreteMethod(Class concreteClass, Method injectableMethod, Method overridenMethod) {
-        Object key = concreteClass.getName() + ":" + injectableMethod.getName();
-        MethodMapper methodMapper = (MethodMapper) methodMappers.get(key);
+        getMethodMapper(concreteClass).overrideConcreteMethod(injectableMethod, overridenMethod);
+    }
+
+    /**
+     * Get the method mapper for a class, creating it if necessary. If two threads
+     * create one at the same time they both end up using the same one.
+     * @param concreteClass the class that we want to invoke methods on
+     * @return the method mapper for that class
+     */
+    private static MethodMapper getMethodMapper(Class concreteClass) {
+        MethodMapper methodMapper = (MethodMapper) methodMappers.get(concreteClass);
         if (methodMapper == null) {
-            methodMapper = new MethodMapper(concreteClass);
-            methodMappers.put(key, methodMapper);
+            methodMapper = (MethodMapper) methodMappers.putIfAbsent(concreteClass, new MethodMapper(concreteClass));
         }
-        methodMapper.overrideConcreteMethod(injectableMethod, overridenMethod);
+        return methodMapper;
     }
 
 }
@@ -6,17 +6,17 @@
 package org.logicalcobwebs.proxool.proxy;
 
 import org.logicalcobwebs.proxool.ProxoolException;
+import org.logicalcobwebs.proxool.util.CopyOnWriteMap;
 
 import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.HashMap;
 
 /**
  * Handles the mapping between methods with identical signatures but that are not related
  * by inheritance. This allows you to invoke a method on a class using an interface that
  * it doesn't actually implement. It caches the result of its reflective lookup to save time.
  * If the concreteClass does in fact implement the injectable interface then it quickly
- * returns the method without the penalty of mapping using reflection.
+ * returns the method without the penalty of mapping using reflection. Once a method has
+ * been looked up, finding it again doesn't create any objects or take a lock.
  *
  * @author <a href="mailto:bill@logicalcobwebs.co.uk">Bill Horsman</a>
  * @author $Author: billhorsman $ (current maintainer)
@@ -27,8 +27,8 @@ public class MethodMapper {
 
     private Class concreteClass;
 
-    private Map cachedConcreteMethods = new HashMap();
-    ;
+    private CopyOnWriteMap cachedConcreteMethods = new CopyOnWriteMap();
+
     /**
      * @param concreteClass the class that we want to invoke methods on. It should either implement all methods on
      *                      the injectable interface, or provide methods with an identical signature.
@@ -80,8 +80,8 @@ public class MethodMapper {
                 throw new ProxoolException("Couldn't match injectable method " + injectableMethod + " with any of those " +
                         "found in " + concreteClass.getName());
             }
-            // Remember it
-            cachedConcreteMethods.put(injectableMethod, concreteMethod);
+            // Remember it (unless another thread got there first, or it has been overridden)
+            concreteMethod = (Method) cachedConcreteMethods.putIfAbsent(injectableMethod, concreteMethod);
         }
         return concreteMethod;
     }
@@ -0,0 +1,74 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map for caches that are read on every JDBC call but only written the first
+ * time something new turns up. Reading takes no lock and creates no objects.
+ * Writing copies the whole map, so don't use it for anything that keeps changing.
+ * <p>
+ * A value, once added, is never replaced by {@link #putIfAbsent putIfAbsent}, so if
+ * two threads race to add the same key they both end up using the same value.
+ * </p>
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class CopyOnWriteMap {
+
+    /** Never changed once published. Replaced by writers while holding this. */
+    private volatile Map map = new HashMap();
+
+    /**
+     * Get a value
+     * @param key the key
+     * @return the value, or null if there isn't one
+     */
+    public Object get(Object key) {
+        return map.get(key);
+    }
+
+    /**
+     * Add a value unless there already is one for this key
+     * @param key the key
+     * @param value the value to add
+     * @return the value now in the map (which is the one that was already there, if any)
+     */
+    public synchronized Object putIfAbsent(Object key, Object value) {
+        Object existing = map.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        Map newMap = new HashMap(map);
+        newMap.put(key, value);
+        map = newMap;
+        return value;
+    }
+
+    /**
+     * Add a value, replacing any that is already there
+     * @param key the key
+     * @param value the value to add
+     */
+    public synchronized void put(Object key, Object value) {
+        Map newMap = new HashMap(map);
+        newMap.put(key, value);
+        map = newMap;
+    }
+
+    /**
+     * The number of entries
+     * @return size
+     */
+    public int size() {
+        return map.size();
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.util;
+
+/**
+ * Remembers the most recent things that were added to it, up to a fixed number. Once
+ * it is full each new one replaces the oldest, so it never takes up more room than
+ * that however many are added.
+ * <p>
+ * There are no locks. It is meant for one thread adding at a time (the one using a
+ * connection, say) and any number of threads reading. A reader gets the ones that were
+ * there when it looked and leaves out any that were being replaced while it was copying
+ * them. If two threads do add at the same time then one of the things they add might
+ * be lost, which is fine for a history.
+ * </p>
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class RingBuffer {
+
+    private Object[] slots;
+
+    /**
+     * How many have ever been added. It is written after the slot so that anyone
+     * who reads it also sees what was put in the slot.
+     */
+    private volatile long addedCount;
+
+    /**
+     * Like {@link #addedCount} but written before the slot, so that readers can tell
+     * which slot is being replaced.
+     */
+    private volatile long startedCount;
+
+    /** The {@link #addedCount} when we were last {@link #clear cleared} */
+    private volatile long clearedCount;
+
+    /**
+     * @param capacity the most it remembers (zero or less means it doesn't remember anything)
+     */
+    public RingBuffer(int capacity) {
+        slots = new Object[Math.max(capacity, 0)];
+    }
+
+    /**
+     * The most it remembers
+     * @return capacity
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Remember something, forgetting the oldest if we are full
+     * @param o what to remember
+     */
+    public void add(Object o) {
+        if (slots.length > 0) {
+            long count = addedCount;
+            startedCount = count + 1;
+            slots[(int) (count % slots.length)] = o;
+            addedCount = count + 1;
+        }
+    }
+
+    /**
+     * Forget everything
+     */
+    public void clear() {
+        clearedCount = addedCount;
+    }
+
+    /**
+     * The one that was added most recently
+     * @return the last one, or null if there isn't one
+     */
+    public Object getLast() {
+        long count = addedCount;
+        if (slots.length == 0 || count <= clearedCount) {
+            return null;
+        }
+        return slots[(int) ((count - 1) % slots.length)];
+    }
+
+    /**
+     * Everything we remember
+     * @return oldest first
+     */
+    public Object[] toArray() {
+        long end = addedCount;
+        long start = Math.max(clearedCount, end - slots.length);
+        if (start >= end) {
+            return new Object[0];
+        }
+        Object[] copy = new Object[(int) (end - start)];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = slots[(int) ((start + i) % slots.length)];
+        }
+        // Any that were replaced while we were copying (or are being replaced now) are no good
+        long firstSafe = startedCount - slots.length;
+        if (firstSafe > start) {
+            int skip = (int) Math.min(firstSafe - start, copy.length);
+            Object[] safe = new Object[copy.length - skip];
+            System.arraycopy(copy, skip, safe, 0, safe.length);
+            copy = safe;
+        }
+        return copy;
+    }
+
+}
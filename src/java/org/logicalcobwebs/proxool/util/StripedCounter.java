@@ -0,0 +1,124 @@
+/*
+ * This software is released under a licence similar to the Apache Software Licence.
+ * See org.logicalcobwebs.proxool.package.html for details.
+ * The latest version is available at http://proxool.sourceforge.net
+ */
+package org.logicalcobwebs.proxool.util;
+
+/**
+ * A fixed number of counters that can be updated by many threads at once
+ * without them all queueing for the same lock. Each counter is split across
+ * a number of stripes, each with its own lock. Updates only lock the stripe
+ * picked by the hint you give them (a connection ID, say) and reads add up
+ * all the stripes.
+ * <p>
+ * Because each {@link #move move} happens within one stripe, a value you
+ * read is always made up of complete updates: something that is moved from
+ * one counter to another is never counted twice, or not at all, in the
+ * total of all the counters.
+ * </p>
+ *
+ * @version $Revision$, $Date$
+ * @author $Author$ (current maintainer)
+ * @since Proxool 0.9.2
+ */
+public class StripedCounter {
+
+    /** The number of stripes if you don't say otherwise */
+    public static final int DEFAULT_STRIPES = 16;
+
+    /** Each stripe holds a value for every counter and is its own lock */
+    private long[][] stripes;
+
+    private int size;
+
+    /**
+     * @param size the number of counters
+     */
+    public StripedCounter(int size) {
+        this(size, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param size the number of counters
+     * @param stripeCount how many stripes to spread the counters across
+     */
+    public StripedCounter(int size, int stripeCount) {
+        this.size = size;
+        stripes = new long[stripeCount][];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new long[size];
+        }
+    }
+
+    /**
+     * Add to one of the counters
+     * @param hint used to pick a stripe. Updates with the same hint always use the same stripe.
+     * @param index which counter
+     * @param delta how much to add (may be negative)
+     */
+    public void add(long hint, int index, long delta) {
+        long[] stripe = getStripe(hint);
+        synchronized (stripe) {
+            stripe[index] += delta;
+        }
+    }
+
+    /**
+     * Decrement one counter and increment another in one step
+     * @param hint used to pick a stripe. Updates with the same hint always use the same stripe.
+     * @param fromIndex the counter to decrement
+     * @param toIndex the counter to increment
+     */
+    public void move(long hint, int fromIndex, int toIndex) {
+        long[] stripe = getStripe(hint);
+        synchronized (stripe) {
+            stripe[fromIndex]--;
+            stripe[toIndex]++;
+        }
+    }
+
+    /**
+     * Get the value of one counter
+     * @param index which counter
+     * @return the sum across all stripes
+     */
+    public long get(int index) {
+        long total = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            long[] stripe = stripes[i];
+            synchronized (stripe) {
+                total += stripe[index];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Set all the counters back to zero
+     */
+    public void reset() {
+        for (int i = 0; i < stripes.length; i++) {
+            long[] stripe = stripes[i];
+            synchronized (stripe) {
+                for (int j = 0; j < size; j++) {
+                    stripe[j] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of counters
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    private long[] getStripe(long hint) {
+        int i = (int) (hint ^ (hint >>> 32)) % stripes.length;
+        return stripes[i < 0 ? i + stripes.length : i];
+    }
+
+}